@@ -0,0 +1,98 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures drawing a tall graph a band at a time and streaming it as a
+ * PNG file, from bands of a few rows up to one band holding the whole
+ * graph. Bytes written are counted and discarded.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BandBenchmark {
+
+    /**
+     * Rows drawn at a time.
+     */
+    @Param({"64", "512", "8000"})
+    public int bandHeight;
+
+    private BandRenderer renderer;
+    private List<Series> series;
+    private PngEncoder encoder;
+    private WritableByteChannel out;
+    private long written;
+
+    @Setup
+    public void setUp() {
+        Grapher grapher = new Grapher();
+        grapher.setDirectRaster(true);
+        grapher.setSamplingPool(null);
+        grapher.setWindow(-10, 10, -100, 100);
+        ColorModel model = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getColorModel();
+        renderer = new BandRenderer(grapher.getSpec(), 2000, 8000, bandHeight, model);
+        Random random = new Random(42);
+        double[][] points = new double[2][100_000];
+        for(int i = 0; i < points[0].length; i++) {
+            points[0][i] = random.nextGaussian() * 4;
+            points[1][i] = random.nextGaussian() * 40;
+        }
+        series = Arrays.asList(Series.points(points),
+                Series.function(BatchFunction.of(x -> 90 * Math.sin(x)), -10, 10));
+        encoder = new PngEncoder(1, null);
+        out = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) {
+                int length = src.remaining();
+                src.position(src.limit());
+                written += length;
+                return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Benchmark
+    public long renderPng() throws IOException {
+        written = 0;
+        renderer.writePng(series, encoder, out);
+        return written;
+    }
+}
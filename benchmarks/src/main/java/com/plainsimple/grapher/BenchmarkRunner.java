@@ -0,0 +1,50 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. Accepts the same options as
+ * org.openjdk.jmh.Main, but unless told otherwise runs every benchmark
+ * with the GC profiler (to report allocation rates) and writes results
+ * as JSON to grapher-benchmarks.json so they can be compared across
+ * releases.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions command_line = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(command_line);
+        if(command_line.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if(!command_line.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if(!command_line.getResult().hasValue()) {
+            options.result("grapher-benchmarks.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
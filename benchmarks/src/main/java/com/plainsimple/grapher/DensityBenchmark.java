@@ -0,0 +1,78 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures drawing a density plot onto a pre-rendered grid with
+ * drawDensityOnGrid(BufferedImage, double[][]). The points are a
+ * correlated two-dimensional Gaussian cloud, so most pixels are hit
+ * by many points and counts are scattered across the whole grid.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class DensityBenchmark {
+
+    /**
+     * Number of points plotted.
+     */
+    @Param({"100000", "10000000"})
+    public int points;
+
+    /**
+     * Whether or not to count points on the common ForkJoinPool.
+     */
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Grapher grapher;
+    private BufferedImage grid;
+    private BufferedImage image;
+    private double[][] data;
+
+    @Setup
+    public void setUp() {
+        grapher = new Grapher();
+        grapher.setSamplingPool(parallel ? ForkJoinPool.commonPool() : null);
+        grid = new BufferedImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+        grapher.drawGrid(grid);
+        image = new BufferedImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+
+        Random random = new Random(42);
+        data = new double[2][points];
+        for(int i = 0; i < points; i++) {
+            data[0][i] = random.nextGaussian() * 3;
+            data[1][i] = random.nextGaussian() * 3 + data[0][i] * 0.5;
+        }
+    }
+
+    @Benchmark
+    public BufferedImage drawDensity() {
+        image.setData(grid.getRaster());
+        grapher.drawDensityOnGrid(image, data);
+        return image;
+    }
+}
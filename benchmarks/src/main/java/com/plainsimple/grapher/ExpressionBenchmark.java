@@ -0,0 +1,96 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Measures evaluating compiled Expressions, one value at a time and
+ * over arrays, against the same functions written in Java.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ExpressionBenchmark {
+
+    /**
+     * Number of x-values evaluated per invocation.
+     */
+    private static final int SAMPLES = 4096;
+
+    /**
+     * Expression evaluated: a polynomial, a trigonometric sum and a
+     * piecewise function.
+     */
+    @Param({"x^2 + 4x + 4", "5sin(x) + cos(3x)", "x < 0 ? x^3 - 2x : sqrt(x) * exp(-x / 4)"})
+    public String source;
+
+    private Expression expression;
+    private DoubleUnaryOperator handWritten;
+    private double[] x, y;
+
+    @Setup
+    public void setUp() {
+        expression = Expression.compile(source);
+        switch(source) {
+            case "x^2 + 4x + 4":
+                handWritten = v -> v * v + 4 * v + 4;
+                break;
+            case "5sin(x) + cos(3x)":
+                handWritten = v -> 5 * Math.sin(v) + Math.cos(3 * v);
+                break;
+            default:
+                handWritten = v -> v < 0 ? Math.pow(v, 3) - 2 * v : Math.sqrt(v) * Math.exp(-v / 4);
+                break;
+        }
+        x = new double[SAMPLES];
+        y = new double[SAMPLES];
+        for(int i = 0; i < SAMPLES; i++) {
+            x[i] = -10 + i * 20.0 / SAMPLES;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double[] handWritten() {
+        for(int i = 0; i < SAMPLES; i++) {
+            y[i] = handWritten.applyAsDouble(x[i]);
+        }
+        return y;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double[] scalar() {
+        for(int i = 0; i < SAMPLES; i++) {
+            y[i] = expression.applyAsDouble(x[i]);
+        }
+        return y;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double[] batch() {
+        expression.evaluate(x, y, 0, SAMPLES);
+        return y;
+    }
+}
@@ -0,0 +1,77 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Measures plotting functions onto a pre-rendered grid, both through
+ * an overridden calculate(double) and through a DoubleUnaryOperator,
+ * across image sizes and sampling modes.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FunctionBenchmark {
+
+    /**
+     * Width, in pixels, of the image. The image is 3/4 as tall.
+     */
+    @Param({"500", "2000", "8000"})
+    public int size;
+
+    /**
+     * Whether or not to sample functions adaptively.
+     */
+    @Param({"false", "true"})
+    public boolean adaptive;
+
+    private Grapher grapher;
+    private BufferedImage image;
+    private final DoubleUnaryOperator function = x -> 5 * Math.sin(x) + Math.cos(3 * x);
+
+    @Setup
+    public void setUp() {
+        grapher = new Grapher() {
+            @Override
+            public double calculate(double x) {
+                return 5 * Math.sin(x) + Math.cos(3 * x);
+            }
+        };
+        grapher.setAdaptiveSampling(adaptive, 100000);
+        image = new BufferedImage(size, size * 3 / 4, BufferedImage.TYPE_INT_RGB);
+        grapher.drawGrid(image);
+    }
+
+    @Benchmark
+    public BufferedImage drawCalculate() {
+        grapher.drawGraphOnGrid(image, -10, 10);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage drawOperator() {
+        grapher.drawGraphOnGrid(image, function, -10, 10);
+        return image;
+    }
+}
@@ -0,0 +1,62 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures drawing the grid alone: background, grid lines, axis,
+ * ticks and tick labels.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GridBenchmark {
+
+    /**
+     * Width and height, in pixels, of the image.
+     */
+    @Param({"500", "2000"})
+    public int size;
+
+    /**
+     * Whether or not to draw directly into the image's pixels.
+     */
+    @Param({"false", "true"})
+    public boolean directRaster;
+
+    private Grapher grapher;
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() {
+        grapher = new Grapher();
+        grapher.setDirectRaster(directRaster);
+        image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage drawGrid() {
+        grapher.drawGrid(image);
+        return image;
+    }
+}
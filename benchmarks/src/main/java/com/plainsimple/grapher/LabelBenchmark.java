@@ -0,0 +1,80 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures label-heavy renders: a grid with hundreds of tick labels,
+ * and a scatter plot with every point labeled.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LabelBenchmark {
+
+    /**
+     * Number of labeled points.
+     */
+    @Param({"100", "1000"})
+    public int points;
+
+    /**
+     * Whether or not to draw directly into the image's pixels, which
+     * draws labels from the glyphs in a LabelCache.
+     */
+    @Param({"false", "true"})
+    public boolean directRaster;
+
+    private Grapher grapher;
+    private BufferedImage image;
+    private double[][] data;
+
+    @Setup
+    public void setUp() {
+        grapher = new Grapher();
+        /* One unit per grid line, so this window has 200 ticks on each axis */
+        grapher.setWindow(-100, 100, -100, 100);
+        grapher.setDirectRaster(directRaster);
+        image = new BufferedImage(2000, 2000, BufferedImage.TYPE_INT_RGB);
+
+        Random random = new Random(42);
+        data = new double[2][points];
+        for(int i = 0; i < points; i++) {
+            data[0][i] = random.nextDouble() * 200 - 100;
+            data[1][i] = random.nextDouble() * 200 - 100;
+        }
+    }
+
+    @Benchmark
+    public BufferedImage drawTickLabels() {
+        grapher.drawGrid(image);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage drawPointLabels() {
+        grapher.drawGraphOnGrid(image, data, true);
+        return image;
+    }
+}
@@ -0,0 +1,77 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one frame of a scrolling LiveChart, each adding 60 Hz
+ * worth of samples from a 1 kHz feed, with different amounts of
+ * history held. The time per frame should not grow with history.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LiveChartBenchmark {
+
+    private static final double STEP = 0.001;
+
+    /**
+     * Samples appended per frame.
+     */
+    private static final int SAMPLES_PER_FRAME = 17;
+
+    /**
+     * Capacity of the ring buffer, all of which is filled before measuring.
+     */
+    @Param({"16384", "4194304"})
+    public int history;
+
+    private SampleRingBuffer samples;
+    private LiveChart chart;
+    private double time;
+
+    @Setup
+    public void setUp() {
+        samples = new SampleRingBuffer(history);
+        for(int i = 0; i < history; i++) {
+            append();
+        }
+        Grapher grapher = new Grapher();
+        grapher.setDirectRaster(true);
+        chart = new LiveChart(grapher.getSpec(), samples, 10, -2, 2, 1200, 400, BufferedImage.TYPE_INT_RGB);
+        chart.render(time);
+    }
+
+    private void append() {
+        samples.append(time, Math.sin(time * 3) + Math.sin(time * 47) * 0.1);
+        time += STEP;
+    }
+
+    @Benchmark
+    public BufferedImage frame() {
+        for(int i = 0; i < SAMPLES_PER_FRAME; i++) {
+            append();
+        }
+        return chart.render(time);
+    }
+}
@@ -0,0 +1,91 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a large rendered graph as a PNG file with ImageIO
+ * and with PngEncoder, on one thread and in parallel, across
+ * compression levels.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PngBenchmark {
+
+    /**
+     * zlib compression level used by PngEncoder.
+     */
+    @Param({"1", "3", "6"})
+    public int level;
+
+    private BufferedImage image;
+    private PngEncoder sequential, parallel;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() {
+        image = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        double[][] points = new double[2][200000];
+        for(int i = 0; i < points[0].length; i++) {
+            points[0][i] = random.nextGaussian() * 4;
+            points[1][i] = random.nextGaussian() * 4;
+        }
+        Grapher grapher = new Grapher();
+        grapher.setDirectRaster(true);
+        grapher.drawGraph(image, points, false);
+        grapher.drawGraphOnGrid(image, x -> 5 * Math.sin(x) + Math.cos(3 * x), -10, 10);
+        sequential = new PngEncoder(level, null);
+        parallel = new PngEncoder(level, ForkJoinPool.commonPool());
+        out = new ByteArrayOutputStream(1 << 23);
+    }
+
+    @Benchmark
+    public int imageIO() throws IOException {
+        out.reset();
+        ImageIO.write(image, "png", out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int encoderSequential() throws IOException {
+        out.reset();
+        sequential.write(image, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int encoderParallel() throws IOException {
+        out.reset();
+        parallel.write(image, out);
+        return out.size();
+    }
+}
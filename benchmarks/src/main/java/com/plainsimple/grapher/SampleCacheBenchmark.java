@@ -0,0 +1,80 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Measures plotting an expensive function while the window pans a
+ * few pixels per render, as when a user drags the graph, with and
+ * without a SampleCache.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SampleCacheBenchmark {
+
+    /**
+     * Pixels the window moves by each render.
+     */
+    private static final int PAN = 7;
+
+    /**
+     * Whether or not function samples are cached between renders.
+     */
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private Grapher grapher;
+    private BufferedImage image;
+    private double offset;
+
+    /**
+     * Partial sum of a Fourier series, costing 200 sines per sample.
+     */
+    private final DoubleUnaryOperator function = x -> {
+        double sum = 0;
+        for(int k = 1; k <= 200; k++) {
+            sum += Math.sin(k * x) / k;
+        }
+        return sum;
+    };
+
+    @Setup
+    public void setUp() {
+        grapher = new Grapher();
+        grapher.setSamplingPool(null);
+        if(cached) {
+            grapher.setSampleCache(new SampleCache(64 << 20), 1);
+        }
+        image = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage pan() {
+        offset += PAN * 20.0 / image.getWidth();
+        grapher.setWindow(-10 + offset, 10 + offset, -3, 3);
+        grapher.drawGraphOnGrid(image, function, -1000, 1000);
+        return image;
+    }
+}
@@ -0,0 +1,85 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures plotting a scatter plot onto a pre-rendered grid with
+ * drawGraphOnGrid(BufferedImage, double[][], boolean). The points
+ * are a random walk sorted by x, like a sampled time series.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class ScatterBenchmark {
+
+    /**
+     * Number of points plotted.
+     */
+    @Param({"1000", "100000", "10000000"})
+    public int points;
+
+    /**
+     * Whether or not to decimate points to one per pixel.
+     */
+    @Param({"false", "true"})
+    public boolean decimate;
+
+    /**
+     * Whether or not to draw directly into the image's pixels.
+     */
+    @Param({"false", "true"})
+    public boolean directRaster;
+
+    private Grapher grapher;
+    private BufferedImage grid;
+    private BufferedImage image;
+    private double[][] data;
+
+    @Setup
+    public void setUp() {
+        grapher = new Grapher();
+        grapher.setDecimation(decimate);
+        grapher.setDirectRaster(directRaster);
+        grid = new BufferedImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+        grapher.drawGrid(grid);
+        image = new BufferedImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+
+        Random random = new Random(42);
+        data = new double[2][points];
+        double y = 0;
+        for(int i = 0; i < points; i++) {
+            y = Math.max(-10, Math.min(10, y + random.nextGaussian() * 0.05));
+            data[0][i] = -10 + 20.0 * i / points;
+            data[1][i] = y;
+        }
+    }
+
+    @Benchmark
+    public BufferedImage drawPoints() {
+        image.setData(grid.getRaster());
+        grapher.drawGraphOnGrid(image, data, false);
+        return image;
+    }
+}
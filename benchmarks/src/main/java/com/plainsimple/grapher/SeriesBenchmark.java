@@ -0,0 +1,118 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures plotting several styled series onto a pre-rendered grid:
+ * with one drawGraphOnGrid() call per series, in one pass with
+ * drawSeriesOnGrid(), and in parallel on layers.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SeriesBenchmark {
+
+    private static final Color[] COLORS = {Color.RED, Color.BLUE, Color.GREEN, Color.ORANGE};
+
+    /**
+     * Number of series, half of them points and half functions.
+     */
+    @Param({"2", "8"})
+    public int series;
+
+    /**
+     * Number of points in each series of points.
+     */
+    @Param({"10000", "200000"})
+    public int points;
+
+    private Grapher grapher;
+    private BufferedImage image;
+    private List<Series> list;
+    private List<double[][]> pointSets;
+    private List<Expression> functions;
+
+    @Setup
+    public void setUp() {
+        grapher = new Grapher();
+        grapher.setDirectRaster(true);
+        image = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+        grapher.drawGrid(image);
+
+        Random random = new Random(42);
+        list = new ArrayList<>();
+        pointSets = new ArrayList<>();
+        functions = new ArrayList<>();
+        for(int k = 0; k < series; k++) {
+            Series s;
+            if(k % 2 == 0) {
+                double[][] set = new double[2][points];
+                for(int i = 0; i < points; i++) {
+                    set[0][i] = random.nextGaussian() * 5;
+                    set[1][i] = random.nextGaussian() * 5 + k - series / 2;
+                }
+                pointSets.add(set);
+                s = Series.points(set);
+            } else {
+                Expression function = Expression.compile("sin(x * " + k + ") * " + k);
+                functions.add(function);
+                s = Series.function(function, -10, 10);
+                s.setStroke(new BasicStroke(2));
+            }
+            s.setColor(COLORS[k % COLORS.length]);
+            list.add(s);
+        }
+    }
+
+    @Benchmark
+    public BufferedImage separateCalls() {
+        for(double[][] set : pointSets) {
+            grapher.drawGraphOnGrid(image, set, false);
+        }
+        for(Expression function : functions) {
+            grapher.drawGraphOnGrid(image, function, -10, 10);
+        }
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage onePass() {
+        grapher.setSeriesLayers(null);
+        grapher.drawSeriesOnGrid(image, list);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage layers() {
+        grapher.setSeriesLayers(ForkJoinPool.commonPool());
+        grapher.drawSeriesOnGrid(image, list);
+        return image;
+    }
+}
@@ -0,0 +1,113 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures plotting a scatter plot streamed from a file with
+ * drawGraphOnGrid(BufferedImage, PointSource, boolean), reading
+ * either a memory-mapped binary file or a CSV file. The points are
+ * the same random walk as in ScatterBenchmark, and are decimated.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx256m"})
+public class StreamingBenchmark {
+
+    /**
+     * Number of points in the file.
+     */
+    @Param({"100000", "10000000"})
+    public int points;
+
+    /**
+     * Format of the file: "binary" or "csv".
+     */
+    @Param({"binary", "csv"})
+    public String format;
+
+    private Grapher grapher;
+    private BufferedImage grid;
+    private BufferedImage image;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        grapher = new Grapher();
+        grapher.setDecimation(true);
+        grid = new BufferedImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+        grapher.drawGrid(grid);
+        image = new BufferedImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+
+        Random random = new Random(42);
+        file = Files.createTempFile("grapher-points", "." + format);
+        double[] x = new double[points], y = new double[points];
+        double walk = 0;
+        for(int i = 0; i < points; i++) {
+            walk = Math.max(-10, Math.min(10, walk + random.nextGaussian() * 0.05));
+            x[i] = -10 + 20.0 * i / points;
+            y[i] = walk;
+        }
+        if(format.equals("binary")) {
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                for(int i = 0; i < points; i++) {
+                    out.writeDouble(x[i]);
+                    out.writeDouble(y[i]);
+                }
+            }
+        } else {
+            try(Writer out = Files.newBufferedWriter(file)) {
+                for(int i = 0; i < points; i++) {
+                    out.write(x[i] + "," + y[i] + "\n");
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public BufferedImage drawPoints() throws IOException {
+        image.setData(grid.getRaster());
+        if(format.equals("binary")) {
+            try(MappedPointSource source = new MappedPointSource(file)) {
+                grapher.drawGraphOnGrid(image, source, false);
+            }
+        } else {
+            try(CsvPointSource source = new CsvPointSource(file)) {
+                grapher.drawGraphOnGrid(image, source, false);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,70 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a line series and a function as an SVG image,
+ * with the output thrown away, as the number of points in the line
+ * grows. Time and output size should follow the image, not the
+ * number of points.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SvgBenchmark {
+
+    /**
+     * Number of points in the line.
+     */
+    @Param({"10000", "1000000"})
+    public int points;
+
+    private Grapher grapher;
+    private List<Series> series;
+    private Writer out;
+
+    @Setup
+    public void setUp() {
+        grapher = new Grapher();
+        double[][] line = new double[2][points];
+        Random random = new Random(42);
+        double walk = 0;
+        for(int i = 0; i < points; i++) {
+            line[0][i] = -10 + 20.0 * i / points;
+            walk += random.nextGaussian() * 0.01;
+            line[1][i] = walk + Math.sin(line[0][i]);
+        }
+        series = Arrays.asList(Series.line(line), Series.function(Expression.compile("sin(3x) * 4"), -10, 10));
+        out = Writer.nullWriter();
+    }
+
+    @Benchmark
+    public void writeSvg() throws IOException {
+        grapher.writeSvg(out, 1600, 1200, series);
+    }
+}
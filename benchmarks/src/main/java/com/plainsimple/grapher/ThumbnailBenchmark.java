@@ -0,0 +1,85 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures drawing a small scatter plot and function and encoding it
+ * as a PNG, as a batch of thumbnails would, in a full-color image and
+ * in each compact image type, with images reused from a RasterPool.
+ * Compact images should draw and encode faster and allocate less.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ThumbnailBenchmark {
+
+    /**
+     * Type of image drawn on.
+     */
+    @Param({"INT_RGB", "BYTE_GRAY", "BYTE_INDEXED", "BYTE_BINARY"})
+    public String imageType;
+
+    private Grapher grapher;
+    private ColorModel model;
+    private RasterPool pool;
+    private PngEncoder encoder;
+    private ByteArrayOutputStream out;
+    private double[][] points;
+
+    @Setup
+    public void setUp() {
+        grapher = new Grapher();
+        grapher.setDirectRaster(true);
+        grapher.setSamplingPool(null);
+        int type = imageType.equals("INT_RGB") ? BufferedImage.TYPE_INT_RGB
+                : imageType.equals("BYTE_GRAY") ? BufferedImage.TYPE_BYTE_GRAY
+                : imageType.equals("BYTE_INDEXED") ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY;
+        model = type == BufferedImage.TYPE_INT_RGB ? new BufferedImage(1, 1, type).getColorModel()
+                : grapher.createColorModel(type);
+        pool = new RasterPool(1);
+        encoder = new PngEncoder(6, null);
+        out = new ByteArrayOutputStream(1 << 16);
+        Random random = new Random(42);
+        points = new double[2][500];
+        for(int i = 0; i < points[0].length; i++) {
+            points[0][i] = random.nextGaussian() * 4;
+            points[1][i] = random.nextGaussian() * 4;
+        }
+    }
+
+    @Benchmark
+    public int drawAndEncode() throws IOException {
+        BufferedImage image = pool.acquire(model, 200, 150);
+        grapher.drawGraph(image, points, false);
+        grapher.drawGraphOnGrid(image, x -> 5 * Math.sin(x) + Math.cos(3 * x), -10, 10);
+        out.reset();
+        encoder.write(image, out);
+        pool.release(image);
+        return out.size();
+    }
+}
@@ -0,0 +1,89 @@
+package com.plainsimple.grapher;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting points from graph space to pixels, one point
+ * at a time with and without allocating an array per point, and a
+ * whole array of points at once.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TransformBenchmark {
+
+    /**
+     * Number of points converted per invocation.
+     */
+    private static final int POINTS = 1024;
+
+    private Grapher grapher;
+    private PixelTransform transform;
+    private double[] x, y;
+    private int[] px, py;
+
+    @Setup
+    public void setUp() {
+        grapher = new Grapher();
+        /* Drawing the grid sets the width and height used by the transform */
+        grapher.drawGrid(new BufferedImage(1000, 600, BufferedImage.TYPE_INT_RGB));
+        transform = new PixelTransform(1000, 600, -10, 10, -10, 10, 0, 0);
+
+        Random random = new Random(42);
+        x = new double[POINTS];
+        y = new double[POINTS];
+        for(int i = 0; i < POINTS; i++) {
+            x[i] = random.nextDouble() * 20 - 10;
+            y[i] = random.nextDouble() * 20 - 10;
+        }
+        px = new int[POINTS];
+        py = new int[POINTS];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void coordinateToPixel(Blackhole blackhole) {
+        for(int i = 0; i < POINTS; i++) {
+            blackhole.consume(grapher.coordinateToPixel(x[i], y[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void xyToPixel(Blackhole blackhole) {
+        for(int i = 0; i < POINTS; i++) {
+            blackhole.consume(grapher.xToPixel(x[i]));
+            blackhole.consume(grapher.yToPixel(y[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int[] toPixels() {
+        transform.toPixels(x, y, 0, POINTS, px, py);
+        return py;
+    }
+}
@@ -0,0 +1,350 @@
+package com.plainsimple.grapher;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Chooses where to sample a function so that the polyline through the
+ * samples is accurate to within a fraction of a pixel. Sampling starts
+ * from a coarse uniform grid and repeatedly splits intervals whose
+ * midpoint is more than half a pixel away from the straight line
+ * between their endpoints, or whose endpoints are more than a few
+ * pixels apart vertically, so flat regions get few samples while
+ * spikes and steep regions get many. Intervals that still cannot be
+ * resolved at a tiny fraction of a pixel are treated as
+ * discontinuities, and NaN or infinite values break the polyline.
+ * Midpoints are evaluated one refinement pass at a time, in a single
+ * batch per pass, so BatchFunctions and parallel sampling still apply.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+class AdaptiveSampler {
+
+    /**
+     * Spacing, in pixels, of the initial uniform grid of samples.
+     */
+    private static final int INITIAL_SPACING = 16;
+
+    /**
+     * Maximum distance, in pixels, between a midpoint and the line
+     * through its interval's endpoints for the interval to be accepted.
+     */
+    private static final double TOLERANCE = 0.5;
+
+    /**
+     * Width, in pixels, below which intervals are no longer split.
+     */
+    private static final double MIN_WIDTH = 1.0 / 64;
+
+    /**
+     * Maximum vertical distance, in pixels, between the endpoints of
+     * an accepted interval. Keeps the midpoint test from accepting
+     * intervals that jump over a feature symmetrically, e.g. two
+     * steps of a step function.
+     */
+    private static final double MAX_SEGMENT = 4;
+
+    /**
+     * Jump, in pixels, across an unresolved interval that is
+     * treated as a discontinuity.
+     */
+    private static final double MAX_JUMP = 2;
+
+    /**
+     * States of the interval between two consecutive samples.
+     */
+    private static final byte DONE = 0, ACTIVE = 1, UNRESOLVED = 2;
+
+    /**
+     * Function being sampled.
+     */
+    private final BatchFunction function;
+
+    /**
+     * ForkJoinPool used to evaluate each pass, or null.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Units per pixel along the x-axis and pixels per unit along the y-axis.
+     */
+    private final double xUnitPx, yPxUnit;
+
+    /**
+     * Range of y-values visible on the graph.
+     */
+    private final double yMin, yMax;
+
+    /**
+     * Maximum number of times function may be evaluated.
+     */
+    private final int maxEvaluations;
+
+    /**
+     * Samples found so far, in increasing order of x. Breaks in the
+     * polyline are marked by samples with a y-value of NaN.
+     */
+    private double[] x = new double[0], y = new double[0];
+
+    /**
+     * Number of samples in x and y.
+     */
+    private int size;
+
+    /**
+     * Number of times function has been evaluated.
+     */
+    private int evaluations;
+
+    /**
+     * @param function function to sample
+     * @param pool ForkJoinPool to evaluate samples on, or null
+     * @param xUnitPx units per pixel along the x-axis
+     * @param yPxUnit pixels per unit along the y-axis
+     * @param yMin y-value at the bottom edge of the graph
+     * @param yMax y-value at the top edge of the graph
+     * @param maxEvaluations maximum number of times to evaluate function
+     */
+    AdaptiveSampler(BatchFunction function, ForkJoinPool pool, double xUnitPx,
+                    double yPxUnit, double yMin, double yMax, int maxEvaluations) {
+        this.function = function;
+        this.pool = pool;
+        this.xUnitPx = xUnitPx;
+        this.yPxUnit = yPxUnit;
+        this.yMin = yMin;
+        this.yMax = yMax;
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    /**
+     * Samples the part of a function's range from low to high,
+     * inclusive. The initial grid is laid out from rangeLow, so
+     * sampling any two parts of the range gives the same samples
+     * where they overlap, as long as the budget is not used up.
+     *
+     * @param rangeLow lowest x-value the function is drawn from
+     * @param rangeHigh highest x-value the function is drawn to
+     * @param low lowest x-value to sample, no less than rangeLow
+     * @param high highest x-value to sample, no more than rangeHigh
+     */
+    void sample(double rangeLow, double rangeHigh, double low, double high) {
+        /* Start from a coarse uniform grid, leaving room in the budget for refinement */
+        int max_intervals = Math.max(1, maxEvaluations / 2 - 1);
+        double spacing = xUnitPx * INITIAL_SPACING;
+        while((high - low) / spacing + 2 > max_intervals && spacing < high - low) {
+            spacing *= 2;
+        }
+        long first = (long) Math.floor((low - rangeLow) / spacing);
+        long last = Math.max(first + 1, (long) Math.ceil((high - rangeLow) / spacing));
+        size = (int) (last - first + 1);
+        x = new double[size];
+        y = new double[size];
+        for(int i = 0; i < size; i++) {
+            x[i] = Math.min(rangeHigh, rangeLow + (first + i) * spacing);
+        }
+        ParallelSampler.sample(function, x, y, size, pool);
+        evaluations = size;
+
+        byte[] state = new byte[size - 1];
+        Arrays.fill(state, ACTIVE);
+        int active = state.length;
+
+        while(active > 0 && evaluations < maxEvaluations) {
+            /* Limit this pass to the remaining budget, keeping the intervals with the largest error */
+            double cutoff = active > maxEvaluations - evaluations
+                    ? errorCutoff(state, maxEvaluations - evaluations) : -1;
+
+            int limit = Math.min(active, maxEvaluations - evaluations);
+            double[] mid_x = new double[limit];
+            int[] split = new int[limit];
+            int count = 0;
+            for(int i = 0; i < state.length && count < limit; i++) {
+                if(state[i] == ACTIVE && (cutoff < 0 || spread(i) >= cutoff)) {
+                    mid_x[count] = (x[i] + x[i + 1]) / 2;
+                    split[count++] = i;
+                }
+            }
+            double[] mid_y = new double[count];
+            ParallelSampler.sample(function, mid_x, mid_y, count, pool);
+            evaluations += count;
+
+            /* Merge midpoints into the samples and decide which halves to keep refining */
+            double[] new_x = new double[size + count];
+            double[] new_y = new double[size + count];
+            byte[] new_state = new byte[size + count - 1];
+            active = 0;
+            for(int i = 0, j = 0, k = 0; i < size; i++) {
+                new_x[k] = x[i];
+                new_y[k] = y[i];
+                if(i == size - 1) {
+                    break;
+                }
+                if(j < count && split[j] == i) {
+                    byte next = needsRefinement(y[i], mid_y[j], y[i + 1]) ? ACTIVE : DONE;
+                    if(next == ACTIVE && (x[i + 1] - x[i]) / 2 < MIN_WIDTH * xUnitPx) {
+                        next = UNRESOLVED;
+                    }
+                    new_state[k] = next;
+                    new_state[k + 1] = next;
+                    if(next == ACTIVE) {
+                        active += 2;
+                    }
+                    new_x[k + 1] = mid_x[j];
+                    new_y[k + 1] = mid_y[j];
+                    k += 2;
+                    j++;
+                } else {
+                    new_state[k] = state[i] == ACTIVE ? DONE : state[i];
+                    k++;
+                }
+            }
+            x = new_x;
+            y = new_y;
+            state = new_state;
+            size += count;
+        }
+
+        markDiscontinuities(state);
+    }
+
+    /**
+     * Checks whether an interval is not well approximated by a straight
+     * line, given the values at its endpoints and midpoint. An interval
+     * entirely above or below the graph never needs refinement.
+     *
+     * @param y0 value at the start of the interval
+     * @param ym value at the midpoint of the interval
+     * @param y1 value at the end of the interval
+     * @return whether the interval should be split further
+     */
+    private boolean needsRefinement(double y0, double ym, double y1) {
+        boolean finite0 = Double.isFinite(y0), finite_m = Double.isFinite(ym),
+                finite1 = Double.isFinite(y1);
+        if(!finite0 && !finite_m && !finite1) {
+            return false;
+        }
+        if(!finite0 || !finite_m || !finite1) {
+            /* Narrow down where the function stops being defined */
+            return true;
+        }
+        if((y0 > yMax && ym > yMax && y1 > yMax) || (y0 < yMin && ym < yMin && y1 < yMin)) {
+            return false;
+        }
+        return Math.abs(y1 - y0) * yPxUnit > MAX_SEGMENT
+                || Math.abs(ym - (y0 + y1) / 2) * yPxUnit > TOLERANCE;
+    }
+
+    /**
+     * Finds the smallest spread (see spread()) among the budget active
+     * intervals with the largest spread.
+     *
+     * @param state states of intervals
+     * @param budget number of intervals that may be split
+     * @return spread an active interval must reach to be split
+     */
+    private double errorCutoff(byte[] state, int budget) {
+        double[] spreads = new double[state.length];
+        int count = 0;
+        for(int i = 0; i < state.length; i++) {
+            if(state[i] == ACTIVE) {
+                spreads[count++] = spread(i);
+            }
+        }
+        Arrays.sort(spreads, 0, count);
+        return spreads[count - budget];
+    }
+
+    /**
+     * Estimates how badly an interval may be approximated as the
+     * vertical distance, in pixels, between its endpoints. Intervals
+     * with a non-finite endpoint are given the largest spread.
+     *
+     * @param i index of interval
+     * @return vertical extent of the interval in pixels
+     */
+    private double spread(int i) {
+        double dy = Math.abs(y[i + 1] - y[i]) * yPxUnit;
+        return Double.isFinite(dy) ? dy : Double.MAX_VALUE;
+    }
+
+    /**
+     * Replaces unresolved intervals that jump more than MAX_JUMP pixels
+     * with a break in the polyline, by inserting a sample with a
+     * y-value of NaN.
+     *
+     * @param state states of intervals
+     */
+    private void markDiscontinuities(byte[] state) {
+        int breaks = 0;
+        for(int i = 0; i < state.length; i++) {
+            if(isDiscontinuity(state, i)) {
+                breaks++;
+            }
+        }
+        if(breaks == 0) {
+            return;
+        }
+        double[] new_x = new double[size + breaks];
+        double[] new_y = new double[size + breaks];
+        for(int i = 0, k = 0; i < size; i++) {
+            new_x[k] = x[i];
+            new_y[k++] = y[i];
+            if(i < state.length && isDiscontinuity(state, i)) {
+                new_x[k] = (x[i] + x[i + 1]) / 2;
+                new_y[k++] = Double.NaN;
+            }
+        }
+        x = new_x;
+        y = new_y;
+        size += breaks;
+    }
+
+    /**
+     * @return whether interval i is unresolved and jumps more than MAX_JUMP pixels
+     */
+    private boolean isDiscontinuity(byte[] state, int i) {
+        return state[i] == UNRESOLVED && Double.isFinite(y[i]) && Double.isFinite(y[i + 1])
+                && Math.abs(y[i + 1] - y[i]) * yPxUnit > MAX_JUMP;
+    }
+
+    /**
+     * @return x-values of samples, valid up to size()
+     */
+    double[] getX() {
+        return x;
+    }
+
+    /**
+     * @return y-values of samples, valid up to size(). NaN marks a break.
+     */
+    double[] getY() {
+        return y;
+    }
+
+    /**
+     * @return number of samples
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return number of times the function was evaluated
+     */
+    int getEvaluations() {
+        return evaluations;
+    }
+}
@@ -0,0 +1,159 @@
+package com.plainsimple.grapher;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Renders graphs too tall to hold in memory, such as gigapixel posters,
+ * one horizontal band at a time. Each band is drawn into the same
+ * small image with everything outside it skipped, then handed on,
+ * e.g. to a PngEncoder writing the file as it goes or to a
+ * memory-mapped file, before the next band is drawn over it. Memory
+ * used depends on the width of the graph and the height of a band,
+ * not on the height of the graph, and the rows given out are exactly
+ * those drawSeries() would draw on one image of the whole graph,
+ * of the standard type with the same ColorModel. Models of no standard type
+ * give images of TYPE_CUSTOM, which Java2D may draw some lines on
+ * differently, unless the graph is drawn directly into the raster.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class BandRenderer {
+
+    /**
+     * Rows drawn below each band, other than the last, so that it is
+     * not clipped where the full image would not be.
+     */
+    private static final int EDGE_ROWS = 8;
+
+    /**
+     * Receives each band of a graph as it is drawn.
+     */
+    public interface BandConsumer {
+
+        /**
+         * Takes a band of the graph. The image is drawn over by the next
+         * band once this returns, so rows must be copied or written out
+         * rather than kept.
+         *
+         * @param band image holding the band as its top rows
+         * @param top row of the graph the band's top row is
+         * @param rows number of rows of the graph the band holds, which
+         * is less than the image's height only for the last band
+         * @throws IOException if the band cannot be written
+         */
+        void accept(BufferedImage band, int top, int rows) throws IOException;
+    }
+
+    /**
+     * Grapher bands are drawn with, used only by this renderer.
+     */
+    private final Grapher grapher;
+
+    /**
+     * Image each band is drawn into.
+     */
+    private final BufferedImage band;
+
+    /**
+     * Rows of the graph each band holds, and height, in pixels, of the
+     * whole graph.
+     */
+    private final int bandRows, height;
+
+    /**
+     * Creates a renderer drawing graphs of the given size.
+     *
+     * @param spec settings to draw the graph with
+     * @param width width, in pixels, of the graph
+     * @param height height, in pixels, of the graph
+     * @param bandHeight rows drawn at a time, rounded up to a multiple
+     * of 8. Memory used is about width * (bandHeight + 8) pixels of
+     * the model
+     * @param model ColorModel of the image bands are drawn into, e.g.
+     * from Grapher.createColorModel() or the getColorModel() of an
+     * image of a standard type such as TYPE_3BYTE_BGR
+     * @throws IndexOutOfBoundsException if width, height or bandHeight
+     * is less than 1
+     */
+    public BandRenderer(GraphSpec spec, int width, int height, int bandHeight, ColorModel model) {
+        if(width < 1 || height < 1 || bandHeight < 1) {
+            throw new IndexOutOfBoundsException("width, height and bandHeight must be at least 1");
+        }
+        grapher = new Grapher(spec);
+        bandRows = (int) Math.min(height, (bandHeight + 7L) / 8 * 8);
+        int rows = Math.min(height, bandRows + EDGE_ROWS);
+        band = createBand(model, width, rows);
+        this.height = height;
+    }
+
+    /**
+     * Creates the image bands are drawn into. Java2D draws some lines
+     * differently on images of TYPE_CUSTOM than on the standard type
+     * with the same ColorModel (e.g. a TYPE_3BYTE_BGR model, whose
+     * compatible raster stores RGB rather than BGR), so the standard
+     * type is used whenever the model is that of one.
+     *
+     * @param model ColorModel of the image
+     * @param width width, in pixels, of the image
+     * @param rows height, in pixels, of the image
+     * @return the image
+     */
+    private static BufferedImage createBand(ColorModel model, int width, int rows) {
+        BufferedImage band = new BufferedImage(model, model.createCompatibleWritableRaster(width, rows),
+                model.isAlphaPremultiplied(), null);
+        if(band.getType() != BufferedImage.TYPE_CUSTOM) {
+            return band;
+        }
+        for(int type = BufferedImage.TYPE_INT_RGB; type <= BufferedImage.TYPE_BYTE_INDEXED; type++) {
+            if(new BufferedImage(1, 1, type).getColorModel().equals(model)) {
+                return new BufferedImage(width, rows, type);
+            }
+        }
+        return band;
+    }
+
+    /**
+     * Draws the graph and plots several series (see Grapher.drawSeries())
+     * a band at a time from top to bottom, giving each band to consumer
+     * once it is drawn. Functions are sampled and series decimated once,
+     * for the whole graph, before the first band is drawn.
+     *
+     * @param series series to plot, in the order they are drawn
+     * @param consumer receives each band
+     * @throws IOException if consumer throws it
+     */
+    public void render(List<Series> series, BandConsumer consumer) throws IOException {
+        grapher.drawBands(band, bandRows, height, series, consumer);
+    }
+
+    /**
+     * Draws the graph and plots several series (see render()), writing
+     * it as a PNG file as each band is drawn. The channel is not closed.
+     *
+     * @param series series to plot, in the order they are drawn
+     * @param encoder encoder to write the file with
+     * @param out channel to write to
+     * @throws IOException if the channel cannot be written to
+     */
+    public void writePng(List<Series> series, PngEncoder encoder, WritableByteChannel out) throws IOException {
+        PngEncoder.RowWriter writer = encoder.start(out, band.getWidth(), height);
+        render(series, (image, top, rows) -> writer.write(image, rows));
+    }
+}
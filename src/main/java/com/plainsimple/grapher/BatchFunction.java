@@ -0,0 +1,84 @@
+package com.plainsimple.grapher;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A function y = f(x) that is evaluated over a whole range of an
+ * array of x-values at once. Implementing this instead of
+ * DoubleUnaryOperator lets a function amortize setup work or use
+ * a vectorizable loop over many samples. Grapher may call evaluate()
+ * from several threads at once on disjoint ranges of the arrays.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public interface BatchFunction {
+
+    /**
+     * Calculates y[i] = f(x[i]) for every i from index from, inclusive,
+     * to index to, exclusive.
+     *
+     * @param x x-values to calculate f(x) for
+     * @param y array to store f(x) values in
+     * @param from first index to calculate
+     * @param to index after the last index to calculate
+     */
+    void evaluate(double[] x, double[] y, int from, int to);
+
+    /**
+     * Adapts a function of one value to a BatchFunction that
+     * calls it once per x-value.
+     *
+     * @param function function to evaluate
+     * @return BatchFunction evaluating function
+     */
+    static BatchFunction of(DoubleUnaryOperator function) {
+        return (x, y, from, to) -> {
+            for(int i = from; i < to; i++) {
+                y[i] = function.applyAsDouble(x[i]);
+            }
+        };
+    }
+
+    /**
+     * Creates a polynomial c[0] + c[1] x + c[2] x^2 + ... evaluated by
+     * Horner's method. Rather than evaluating each x-value in turn,
+     * each step of Horner's method is applied to a block of x-values
+     * at once, so every step is a simple loop the JIT can vectorize.
+     * The results are identical to evaluating one value at a time.
+     *
+     * @param coefficients coefficients, from the constant term up
+     * @return BatchFunction evaluating the polynomial
+     */
+    static BatchFunction polynomial(double... coefficients) {
+        double[] c = coefficients.clone();
+        int block = 256;
+        return (x, y, from, to) -> {
+            for(int start = from; start < to; start += block) {
+                int end = Math.min(to, start + block);
+                double highest = c.length == 0 ? 0 : c[c.length - 1];
+                for(int i = start; i < end; i++) {
+                    y[i] = highest;
+                }
+                for(int k = c.length - 2; k >= 0; k--) {
+                    double coefficient = c[k];
+                    for(int i = start; i < end; i++) {
+                        y[i] = y[i] * x[i] + coefficient;
+                    }
+                }
+            }
+        };
+    }
+}
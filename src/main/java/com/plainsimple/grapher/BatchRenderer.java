@@ -0,0 +1,224 @@
+package com.plainsimple.grapher;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Renders many graphs concurrently. Each job pairs a GraphSpec with
+ * the image to draw on and what to draw, and is drawn by a Grapher
+ * created from the spec for that job alone, so jobs never share
+ * mutable state. Jobs run on a fixed pool of threads owned by the
+ * renderer or on an Executor supplied by the caller (e.g. one
+ * starting a virtual thread per task). At most maxPending jobs may
+ * be submitted but not yet finished: submitting more blocks until
+ * earlier jobs complete, so producers cannot queue up work faster
+ * than it is drawn. Each job's completion is reported through the
+ * CompletableFuture returned when it is submitted.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class BatchRenderer implements AutoCloseable {
+
+    /**
+     * Draws a graph on an image using a Grapher configured for the job.
+     */
+    public interface Job {
+
+        /**
+         * @param grapher Grapher created from the job's GraphSpec
+         * @param image image to draw on
+         */
+        void render(Grapher grapher, BufferedImage image);
+    }
+
+    /**
+     * Executor jobs run on.
+     */
+    private final Executor executor;
+
+    /**
+     * Executor created by the renderer, shut down when it is closed,
+     * or null if the executor was supplied by the caller.
+     */
+    private final ExecutorService ownExecutor;
+
+    /**
+     * Maximum number of jobs submitted but not finished.
+     */
+    private final int maxPending;
+
+    /**
+     * One permit per job that may be pending at once.
+     */
+    private final Semaphore pending;
+
+    /**
+     * Whether or not the renderer has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates a renderer drawing on its own fixed pool of daemon threads.
+     *
+     * @param threads number of jobs drawn at once
+     * @param maxPending maximum number of jobs submitted but not finished
+     * @throws IllegalArgumentException if threads or maxPending is less than 1
+     */
+    public BatchRenderer(int threads, int maxPending) {
+        this(createPool(threads), maxPending, true);
+    }
+
+    /**
+     * Creates a renderer drawing on the given executor, which is not
+     * shut down when the renderer is closed.
+     *
+     * @param executor executor to run jobs on
+     * @param maxPending maximum number of jobs submitted but not finished
+     * @throws IllegalArgumentException if maxPending is less than 1
+     */
+    public BatchRenderer(Executor executor, int maxPending) {
+        this(executor, maxPending, false);
+    }
+
+    private BatchRenderer(Executor executor, int maxPending, boolean owned) {
+        if(maxPending < 1) {
+            throw new IllegalArgumentException("maxPending must be at least 1");
+        }
+        this.executor = executor;
+        ownExecutor = owned ? (ExecutorService) executor : null;
+        this.maxPending = maxPending;
+        pending = new Semaphore(maxPending);
+    }
+
+    /**
+     * Submits a job, waiting first if maxPending jobs are already pending.
+     *
+     * @param spec settings to draw the graph with
+     * @param image image to draw on
+     * @param job what to draw
+     * @return future completed with the image once it is drawn, or
+     * exceptionally if drawing fails
+     * @throws InterruptedException if interrupted while waiting to submit
+     * @throws IllegalStateException if the renderer has been closed
+     */
+    public CompletableFuture<BufferedImage> submit(GraphSpec spec, BufferedImage image, Job job)
+            throws InterruptedException {
+        pending.acquire();
+        if(closed) {
+            pending.release();
+            throw new IllegalStateException("BatchRenderer has been closed");
+        }
+        CompletableFuture<BufferedImage> result = new CompletableFuture<BufferedImage>();
+        try {
+            executor.execute(() -> {
+                try {
+                    job.render(new Grapher(spec), image);
+                    result.complete(image);
+                } catch(Throwable t) {
+                    result.completeExceptionally(t);
+                } finally {
+                    pending.release();
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            pending.release();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Submits a job drawing a graph of points (see Grapher.drawGraph()).
+     *
+     * @param spec settings to draw the graph with
+     * @param image image to draw on
+     * @param points x- and y-values of points to plot
+     * @param labelPoints whether or not to label points with their coordinates
+     * @return future completed with the image once it is drawn
+     * @throws InterruptedException if interrupted while waiting to submit
+     */
+    public CompletableFuture<BufferedImage> submitGraph(GraphSpec spec, BufferedImage image,
+            double[][] points, boolean labelPoints) throws InterruptedException {
+        return submit(spec, image, (grapher, blankImage) -> grapher.drawGraph(blankImage, points, labelPoints));
+    }
+
+    /**
+     * Submits a job drawing a graph of a function (see Grapher.drawGraph()).
+     *
+     * @param spec settings to draw the graph with
+     * @param image image to draw on
+     * @param function function to plot
+     * @param rangeLow lowest x-value, inclusive, to plot
+     * @param rangeHigh highest x-value, inclusive, to plot
+     * @return future completed with the image once it is drawn
+     * @throws InterruptedException if interrupted while waiting to submit
+     */
+    public CompletableFuture<BufferedImage> submitGraph(GraphSpec spec, BufferedImage image,
+            DoubleUnaryOperator function, double rangeLow, double rangeHigh) throws InterruptedException {
+        return submit(spec, image, (grapher, blankImage) -> grapher.drawGraph(blankImage, function, rangeLow, rangeHigh));
+    }
+
+    /**
+     * Stops accepting jobs and waits for those already submitted to
+     * finish. The renderer's own threads are then stopped; an executor
+     * supplied by the caller is left running. If the calling thread is
+     * interrupted while waiting, close() stops waiting and returns with
+     * the thread's interrupt status set, and jobs already submitted
+     * still run to completion.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            /* Every permit is free once every pending job has finished */
+            pending.acquire(maxPending);
+            pending.release(maxPending);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Creates a fixed pool of daemon threads.
+     *
+     * @param threads number of threads
+     * @return the pool
+     * @throws IllegalArgumentException if threads is less than 1
+     */
+    private static ExecutorService createPool(int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "grapher-batch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, factory);
+    }
+}
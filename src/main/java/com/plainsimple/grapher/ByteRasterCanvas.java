@@ -0,0 +1,263 @@
+package com.plainsimple.grapher;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+
+/**
+ * PixelCanvas that writes pixels straight into the byte[] backing a
+ * compact BufferedImage: TYPE_BYTE_GRAY, with a byte per pixel,
+ * TYPE_BYTE_INDEXED, with a byte per pixel indexing a palette of up
+ * to 256 colors, or 1-bit TYPE_BYTE_BINARY, with eight pixels per
+ * byte. Gray pixels hold the luma of the color drawn, weighted as
+ * Graphics2D weighs it, and are blended as they are stored. Palette
+ * pixels are set to the palette color nearest the color drawn, and a
+ * blend of the current color over a palette color is rounded to one
+ * of 16 weights and looked up once per weight and palette entry, then
+ * remembered until the color changes, so partly covered pixels of
+ * antialiased edges and text cost an array lookup. A 1-bit pixel
+ * cannot be partly covered, so antialiasing is always off on 1-bit
+ * images. Alpha in the palette is ignored.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class ByteRasterCanvas extends PixelCanvas {
+
+    /**
+     * Number of weights a blend over a palette color is rounded to.
+     */
+    private static final int BLEND_LEVELS = 16;
+
+    /**
+     * Pixels of the image, row by row.
+     */
+    private final byte[] pixels;
+
+    /**
+     * Bytes per row of pixels.
+     */
+    private final int stride;
+
+    /**
+     * Bits per pixel: 8 or, for TYPE_BYTE_BINARY, 1.
+     */
+    private final int bits;
+
+    /**
+     * Red, green and blue components of each palette color, or null
+     * if the image is gray.
+     */
+    private final int[] red, green, blue;
+
+    /**
+     * Gray level, or palette index, of the current color.
+     */
+    private int value;
+
+    /**
+     * Current color as an ARGB int.
+     */
+    private int argb;
+
+    /**
+     * Palette index of the current color blended over each palette
+     * index at each weight, or -1 if it has not been looked up yet.
+     * Created when first needed and cleared when the color changes.
+     */
+    private int[] blends;
+
+    /**
+     * @param image TYPE_BYTE_GRAY, TYPE_BYTE_INDEXED or 1-bit
+     * TYPE_BYTE_BINARY image to draw on
+     * @param labelCache cache to draw text from
+     * @throws IllegalArgumentException if the image is not one of
+     * the supported types or is not packed
+     */
+    ByteRasterCanvas(BufferedImage image, LabelCache labelCache) {
+        super(image.getWidth(), image.getHeight(), labelCache);
+        if(!supports(image)) {
+            throw new IllegalArgumentException("image must be a packed TYPE_BYTE_GRAY, TYPE_BYTE_INDEXED or 1-bit TYPE_BYTE_BINARY image");
+        }
+        pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        bits = image.getType() == BufferedImage.TYPE_BYTE_BINARY ? 1 : 8;
+        stride = bits == 1 ? (image.getWidth() + 7) / 8 : image.getWidth();
+        if(image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            red = green = blue = null;
+        } else {
+            IndexColorModel palette = (IndexColorModel) image.getColorModel();
+            red = new int[palette.getMapSize()];
+            green = new int[red.length];
+            blue = new int[red.length];
+            for(int i = 0; i < red.length; i++) {
+                red[i] = palette.getRed(i);
+                green[i] = palette.getGreen(i);
+                blue[i] = palette.getBlue(i);
+            }
+        }
+        setColor(Color.BLACK);
+    }
+
+    /**
+     * Checks whether a ByteRasterCanvas can draw on the image.
+     *
+     * @param image image to check
+     * @return whether the image is TYPE_BYTE_GRAY, TYPE_BYTE_INDEXED
+     * or TYPE_BYTE_BINARY with one bit per pixel, and packed (see
+     * PixelCanvas.isPacked()), which a subimage usually is not
+     */
+    static boolean supports(BufferedImage image) {
+        int type = image.getType();
+        if(type == BufferedImage.TYPE_BYTE_GRAY || type == BufferedImage.TYPE_BYTE_INDEXED) {
+            return isPacked(image, image.getWidth());
+        }
+        return type == BufferedImage.TYPE_BYTE_BINARY && image.getColorModel().getPixelSize() == 1
+                && isPacked(image, (image.getWidth() + 7) / 8);
+    }
+
+    @Override
+    public void setColor(Color color) {
+        super.setColor(color);
+        argb = color.getRGB();
+        if(red == null) {
+            value = (77 * ((argb >> 16) & 0xFF) + 150 * ((argb >> 8) & 0xFF) + 29 * (argb & 0xFF) + 128) >> 8;
+        } else {
+            value = nearest((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF);
+            if(blends != null) {
+                Arrays.fill(blends, -1);
+            }
+        }
+    }
+
+    @Override
+    public void setAntialiasing(boolean antialiasing) {
+        super.setAntialiasing(antialiasing && bits != 1);
+    }
+
+    @Override
+    void fill(int row, int from, int to) {
+        int offset = row * stride;
+        if(bits == 8) {
+            Arrays.fill(pixels, offset + from, offset + to, (byte) value);
+            return;
+        }
+        /* Whole bytes in the middle of the run are filled at once, and the bits at each end one by one */
+        int first = (from + 7) >> 3, last = to >> 3;
+        if(first >= last) {
+            for(int col = from; col < to; col++) {
+                put(row, col);
+            }
+            return;
+        }
+        for(int col = from; col < first << 3; col++) {
+            put(row, col);
+        }
+        Arrays.fill(pixels, offset + first, offset + last, (byte) (value == 0 ? 0 : 0xFF));
+        for(int col = last << 3; col < to; col++) {
+            put(row, col);
+        }
+    }
+
+    @Override
+    void put(int row, int col) {
+        if(bits == 8) {
+            pixels[row * stride + col] = (byte) value;
+        } else {
+            set(row * stride + (col >> 3), 0x80 >> (col & 7), value);
+        }
+    }
+
+    @Override
+    void blend(int row, int col, int a) {
+        if(red == null) {
+            int i = row * stride + col;
+            int dst = pixels[i] & 0xFF;
+            pixels[i] = (byte) (((value * a + dst * (255 - a) + 1) * 257) >> 16);
+            return;
+        }
+        int level = (a * (BLEND_LEVELS - 1) + 127) / 255;
+        if(level == 0) {
+            return;
+        }
+        if(bits == 8) {
+            int i = row * stride + col;
+            pixels[i] = (byte) blendIndex(pixels[i] & 0xFF, level);
+        } else {
+            int i = row * stride + (col >> 3), bit = 0x80 >> (col & 7);
+            set(i, bit, blendIndex((pixels[i] & bit) == 0 ? 0 : 1, level));
+        }
+    }
+
+    /**
+     * Sets or clears one bit of a 1-bit image.
+     *
+     * @param i index of the byte holding the pixel
+     * @param bit mask of the pixel's bit in the byte
+     * @param index palette index, 0 or 1, to give the pixel
+     */
+    private void set(int i, int bit, int index) {
+        pixels[i] = (byte) (index == 0 ? pixels[i] & ~bit : pixels[i] | bit);
+    }
+
+    /**
+     * Looks up the palette color nearest the current color blended
+     * over a palette color.
+     *
+     * @param dst palette index of the pixel blended over
+     * @param level weight of the current color, from 1 to BLEND_LEVELS - 1
+     * @return palette index of the blend
+     */
+    private int blendIndex(int dst, int level) {
+        if(blends == null) {
+            blends = new int[red.length * BLEND_LEVELS];
+            Arrays.fill(blends, -1);
+        }
+        int slot = dst * BLEND_LEVELS + level;
+        int index = blends[slot];
+        if(index < 0) {
+            int w = level * 255 / (BLEND_LEVELS - 1), nw = 255 - w;
+            int r = (((argb >> 16) & 0xFF) * w + red[dst] * nw + 127) / 255;
+            int g = (((argb >> 8) & 0xFF) * w + green[dst] * nw + 127) / 255;
+            int b = ((argb & 0xFF) * w + blue[dst] * nw + 127) / 255;
+            index = nearest(r, g, b);
+            blends[slot] = index;
+        }
+        return index;
+    }
+
+    /**
+     * Finds the palette color nearest a color.
+     *
+     * @param r red component of color
+     * @param g green component of color
+     * @param b blue component of color
+     * @return palette index of the color with the smallest squared
+     * distance to the given color
+     */
+    private int nearest(int r, int g, int b) {
+        int best = 0, best_distance = Integer.MAX_VALUE;
+        for(int i = 0; i < red.length && best_distance > 0; i++) {
+            int dr = red[i] - r, dg = green[i] - g, db = blue[i] - b;
+            int distance = dr * dr + dg * dg + db * db;
+            if(distance < best_distance) {
+                best = i;
+                best_distance = distance;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,123 @@
+package com.plainsimple.grapher;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+
+/**
+ * Surface a graph is drawn on. Grapher draws grids, points and functions
+ * through a Canvas so the same drawing code can target a Graphics2D
+ * object (GraphicsCanvas) or write pixels straight into an image's
+ * raster (a PixelCanvas). All coordinates are in user space, where
+ * (0,0) is the top-left corner of the image.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+interface Canvas {
+
+    /**
+     * Sets the color used by all following drawing operations.
+     *
+     * @param color color to draw with
+     */
+    void setColor(Color color);
+
+    /**
+     * Sets the stroke used by following calls to drawLine().
+     *
+     * @param stroke stroke to draw lines with
+     */
+    void setStroke(BasicStroke stroke);
+
+    /**
+     * Sets whether or not following lines are antialiased.
+     *
+     * @param antialiasing whether or not to antialias
+     */
+    void setAntialiasing(boolean antialiasing);
+
+    /**
+     * Sets the font used by following calls to drawChars().
+     *
+     * @param font font to draw text with
+     */
+    void setFont(Font font);
+
+    /**
+     * @return metrics of the current font
+     */
+    FontMetrics getFontMetrics();
+
+    /**
+     * Restricts all following drawing to the intersection of the
+     * current clip and the given rectangle.
+     *
+     * @param x x-coordinate of the left edge of the rectangle
+     * @param y y-coordinate of the top edge of the rectangle
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     */
+    void clipRect(int x, int y, int width, int height);
+
+    /**
+     * Fills a rectangle with the current color.
+     *
+     * @param x x-coordinate of the left edge of the rectangle
+     * @param y y-coordinate of the top edge of the rectangle
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     */
+    void fillRect(int x, int y, int width, int height);
+
+    /**
+     * Draws a line between two points using the current color and stroke.
+     *
+     * @param x0 x-coordinate of the first point
+     * @param y0 y-coordinate of the first point
+     * @param x1 x-coordinate of the second point
+     * @param y1 y-coordinate of the second point
+     */
+    void drawLine(int x0, int y0, int x1, int y1);
+
+    /**
+     * Draws a point marker in the current color, with the top-left
+     * corner of the marker's box at (x,y).
+     *
+     * @param sprite pre-rendered marker to draw
+     * @param x x-coordinate of the left edge of the marker's box
+     * @param y y-coordinate of the top edge of the marker's box
+     */
+    void drawSprite(PointSprite sprite, int x, int y);
+
+    /**
+     * Draws characters with their baseline starting at (x,y) using the
+     * current color and font, like Graphics.drawChars().
+     *
+     * @param chars array holding the characters to be drawn
+     * @param offset index of the first character to be drawn
+     * @param length number of characters to be drawn
+     * @param x x-coordinate of the start of the baseline
+     * @param y y-coordinate of the baseline
+     */
+    void drawChars(char[] chars, int offset, int length, int x, int y);
+
+    /**
+     * Releases resources held by the canvas. The canvas cannot be
+     * drawn on afterwards.
+     */
+    void dispose();
+}
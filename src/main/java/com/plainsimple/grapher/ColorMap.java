@@ -0,0 +1,118 @@
+package com.plainsimple.grapher;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * Maps fractions from 0 to 1 to colors, by interpolating between
+ * evenly spaced colors. Used to color density plots, where 0 is the
+ * color of the least dense pixels drawn and 1 that of the densest
+ * (see Grapher.setDensityColors()). Colors are always opaque; the
+ * alpha of the colors a map is created from is ignored.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class ColorMap {
+
+    /**
+     * Dark purple through blue and green to yellow, approximating
+     * matplotlib's perceptually uniform "viridis" map.
+     */
+    public static final ColorMap VIRIDIS = new ColorMap(new Color(68, 1, 84), new Color(59, 82, 139),
+            new Color(33, 145, 140), new Color(94, 201, 98), new Color(253, 231, 37));
+
+    /**
+     * Black through red and yellow to white.
+     */
+    public static final ColorMap HEAT = new ColorMap(Color.BLACK, new Color(230, 0, 0),
+            new Color(255, 210, 0), Color.WHITE);
+
+    /**
+     * Light grey to black, for graphs on a light background.
+     */
+    public static final ColorMap GRAYSCALE = new ColorMap(new Color(210, 210, 210), Color.BLACK);
+
+    /**
+     * Number of colors in the lookup table.
+     */
+    private static final int TABLE_SIZE = 256;
+
+    /**
+     * Colors the map was created from.
+     */
+    private final Color[] colors;
+
+    /**
+     * Opaque ARGB colors of TABLE_SIZE evenly spaced fractions.
+     */
+    private final int[] table = new int[TABLE_SIZE];
+
+    /**
+     * Creates a map interpolating between colors spaced evenly from
+     * 0 (the first color) to 1 (the last).
+     *
+     * @param colors colors to interpolate between
+     * @throws IllegalArgumentException if fewer than two colors are given
+     */
+    public ColorMap(Color... colors) {
+        if(colors.length < 2) {
+            throw new IllegalArgumentException("A ColorMap needs at least two colors");
+        }
+        this.colors = colors.clone();
+        for(int i = 0; i < TABLE_SIZE; i++) {
+            double position = (double) i / (TABLE_SIZE - 1) * (colors.length - 1);
+            int low = Math.min((int) position, colors.length - 2);
+            double t = position - low;
+            Color a = colors[low], b = colors[low + 1];
+            table[i] = 0xFF000000 | mix(a.getRed(), b.getRed(), t) << 16
+                    | mix(a.getGreen(), b.getGreen(), t) << 8 | mix(a.getBlue(), b.getBlue(), t);
+        }
+    }
+
+    /**
+     * Returns the color of a fraction. Fractions are rounded to one
+     * of 256 evenly spaced values.
+     *
+     * @param fraction fraction from 0 to 1. Values outside that range
+     * are clamped to it
+     * @return opaque ARGB color of the fraction
+     */
+    public int getRGB(double fraction) {
+        return table[(int) (Math.max(0, Math.min(1, fraction)) * (TABLE_SIZE - 1) + 0.5)];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ColorMap && Arrays.equals(colors, ((ColorMap) o).colors);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(colors);
+    }
+
+    /**
+     * Interpolates between two color components.
+     *
+     * @param a component at t = 0
+     * @param b component at t = 1
+     * @param t position between a and b
+     * @return the component, rounded
+     */
+    private static int mix(int a, int b, double t) {
+        return (int) Math.round(a + (b - a) * t);
+    }
+}
@@ -0,0 +1,321 @@
+package com.plainsimple.grapher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads points from delimited text, one point per line, e.g. a CSV
+ * file with lines of the form "x,y". The text is read in fixed-size
+ * chunks and numbers are parsed straight from them, so files of any
+ * size can be plotted without reading them onto the heap. Fields are
+ * not unquoted, and blank lines are skipped. Simple decimal numbers
+ * are parsed without creating Strings; others, such as numbers with
+ * exponents, are parsed with Double.parseDouble().
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class CsvPointSource implements PointSource, Closeable {
+
+    /**
+     * Powers of ten that are exactly representable as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for(int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Text being read.
+     */
+    private final Reader reader;
+
+    /**
+     * Character separating fields.
+     */
+    private final char delimiter;
+
+    /**
+     * Index, starting at 0, of the fields holding x- and y-coordinates.
+     */
+    private final int xColumn, yColumn;
+
+    /**
+     * Number of lines still to be skipped before points are read.
+     */
+    private int skipLines;
+
+    /**
+     * Characters read but not parsed yet, from index start to index end.
+     * Grows only if a line is longer than it.
+     */
+    private char[] buffer = new char[1 << 16];
+    private int start, end;
+
+    /**
+     * Whether or not the end of the text has been read into buffer.
+     */
+    private boolean eof;
+
+    /**
+     * Number of the line parsed last, for error messages.
+     */
+    private long line;
+
+    /**
+     * Reads UTF-8 text with x-coordinates in the first field and
+     * y-coordinates in the second, separated by commas.
+     *
+     * @param path path of file to read
+     * @throws IOException if the file cannot be opened
+     */
+    public CsvPointSource(Path path) throws IOException {
+        this(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads UTF-8 text with the given layout.
+     *
+     * @param path path of file to read
+     * @param delimiter character separating fields, e.g. ',' or '\t'
+     * @param xColumn index, starting at 0, of the field holding x-coordinates
+     * @param yColumn index, starting at 0, of the field holding y-coordinates
+     * @param skipLines number of lines at the start of the text to
+     * skip, e.g. 1 to skip a header
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if a column or skipLines is negative
+     */
+    public CsvPointSource(Path path, char delimiter, int xColumn, int yColumn, int skipLines)
+            throws IOException {
+        this(Files.newBufferedReader(path, StandardCharsets.UTF_8), delimiter, xColumn, yColumn, skipLines);
+    }
+
+    /**
+     * Reads text with x-coordinates in the first field and
+     * y-coordinates in the second, separated by commas.
+     *
+     * @param reader text to read
+     */
+    public CsvPointSource(Reader reader) {
+        this(reader, ',', 0, 1, 0);
+    }
+
+    /**
+     * Reads text with the given layout.
+     *
+     * @param reader text to read
+     * @param delimiter character separating fields, e.g. ',' or '\t'
+     * @param xColumn index, starting at 0, of the field holding x-coordinates
+     * @param yColumn index, starting at 0, of the field holding y-coordinates
+     * @param skipLines number of lines at the start of the text to
+     * skip, e.g. 1 to skip a header
+     * @throws IllegalArgumentException if a column or skipLines is negative
+     */
+    public CsvPointSource(Reader reader, char delimiter, int xColumn, int yColumn, int skipLines) {
+        if(xColumn < 0 || yColumn < 0) {
+            throw new IllegalArgumentException("Columns cannot be negative");
+        }
+        if(skipLines < 0) {
+            throw new IllegalArgumentException("skipLines cannot be negative");
+        }
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.xColumn = xColumn;
+        this.yColumn = yColumn;
+        this.skipLines = skipLines;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IOException if the text cannot be read, or a line has
+     * too few fields or fields that are not numbers
+     */
+    @Override
+    public int read(double[] x, double[] y) throws IOException {
+        int count = 0;
+        while(count < x.length) {
+            int line_end = findLineEnd();
+            if(line_end < 0) {
+                break;
+            }
+            line++;
+            int line_start = start;
+            start = line_end + 1;
+            if(skipLines > 0) {
+                skipLines--;
+            } else if(parseLine(line_start, line_end, x, y, count)) {
+                count++;
+            }
+        }
+        return count == 0 && x.length > 0 ? -1 : count;
+    }
+
+    /**
+     * Closes the text being read.
+     *
+     * @throws IOException if the text cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Finds the end of the next line, reading more of the text if
+     * the line does not end within buffer. The last line of the
+     * text need not end with a line break.
+     *
+     * @return index in buffer of the line break ending the next line,
+     * or of the end of the text, or -1 if no lines remain
+     * @throws IOException if the text cannot be read
+     */
+    private int findLineEnd() throws IOException {
+        int i = start;
+        while(true) {
+            for(; i < end; i++) {
+                if(buffer[i] == '\n') {
+                    return i;
+                }
+            }
+            if(eof) {
+                return start < end ? end : -1;
+            }
+            /* Move the partial line to the front of the buffer, growing it if the line fills it */
+            int length = end - start;
+            if(length == buffer.length) {
+                char[] grown = new char[buffer.length * 2];
+                System.arraycopy(buffer, start, grown, 0, length);
+                buffer = grown;
+            } else {
+                System.arraycopy(buffer, start, buffer, 0, length);
+            }
+            start = 0;
+            end = length;
+            i = length;
+            int read = reader.read(buffer, end, buffer.length - end);
+            if(read < 0) {
+                eof = true;
+            } else {
+                end += read;
+            }
+        }
+    }
+
+    /**
+     * Parses the coordinates of a point from a line.
+     *
+     * @param from index in buffer of the start of the line
+     * @param to index in buffer of the end of the line, exclusive
+     * @param x array to store the x-coordinate in
+     * @param y array to store the y-coordinate in
+     * @param index index in x and y to store the coordinates at
+     * @return whether or not the line held a point, as opposed to
+     * being blank
+     * @throws IOException if the line has too few fields or fields
+     * that are not numbers
+     */
+    private boolean parseLine(int from, int to, double[] x, double[] y, int index) throws IOException {
+        if(to > from && buffer[to - 1] == '\r') {
+            to--;
+        }
+        if(to == from) {
+            return false;
+        }
+        int last_column = Math.max(xColumn, yColumn);
+        int field_start = from;
+        for(int column = 0; column <= last_column; column++) {
+            if(field_start > to) {
+                throw new IOException("Line " + line + " has fewer than " + (last_column + 1) + " fields");
+            }
+            int field_end = field_start;
+            while(field_end < to && buffer[field_end] != delimiter) {
+                field_end++;
+            }
+            if(column == xColumn) {
+                x[index] = parseNumber(field_start, field_end);
+            }
+            if(column == yColumn) {
+                y[index] = parseNumber(field_start, field_end);
+            }
+            field_start = field_end + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Parses a number from a field. Numbers made of an optional sign,
+     * digits and an optional decimal point with at most 22 digits
+     * after it are parsed directly: their digits form a whole number
+     * that a double holds exactly, which is then divided by an exact
+     * power of ten, so the result is rounded once, exactly as by
+     * Double.parseDouble(). Other numbers are parsed by
+     * Double.parseDouble().
+     *
+     * @param from index in buffer of the start of the field
+     * @param to index in buffer of the end of the field, exclusive
+     * @return the number
+     * @throws IOException if the field is not a number
+     */
+    private double parseNumber(int from, int to) throws IOException {
+        while(from < to && buffer[from] == ' ') {
+            from++;
+        }
+        while(to > from && buffer[to - 1] == ' ') {
+            to--;
+        }
+        int i = from;
+        boolean negative = false;
+        if(i < to && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i++] == '-';
+        }
+        long mantissa = 0;
+        int digits = 0, decimals = -1;
+        for(; i < to; i++) {
+            char c = buffer[i];
+            if(c >= '0' && c <= '9') {
+                if(++digits > 18) {
+                    break;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if(decimals >= 0) {
+                    decimals++;
+                }
+            } else if(c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                break;
+            }
+        }
+        if(i == to && digits > 0 && mantissa <= 1L << 53 && decimals < POWERS_OF_TEN.length) {
+            double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(buffer, from, to - from));
+        } catch(NumberFormatException e) {
+            throw new IOException("Line " + line + " has a field that is not a number: \""
+                    + new String(buffer, from, to - from) + "\"", e);
+        }
+    }
+}
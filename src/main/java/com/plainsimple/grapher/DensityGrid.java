@@ -0,0 +1,212 @@
+package com.plainsimple.grapher;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Counts how many points fall in each pixel of a graph, and colors
+ * each pixel by its count to draw a density plot. Points are binned
+ * with the same arithmetic Grapher uses to convert coordinates to
+ * pixels, straight into an int per pixel, so adding a point costs a
+ * few multiplications and an increment and allocates nothing. Large
+ * batches of points are split between the threads of a ForkJoinPool,
+ * each counting into its own grid, and the grids are summed once
+ * before the plot is drawn. The extra grids are limited to
+ * PARTIAL_BYTES in all, so large graphs are counted on fewer threads
+ * rather than taking a grid per core.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class DensityGrid {
+
+    /**
+     * Smallest number of points worth handing to another thread.
+     */
+    private static final int MIN_CHUNK = 1 << 15;
+
+    /**
+     * Largest number of bytes taken by the grids of points counted on
+     * other threads.
+     */
+    private static final long PARTIAL_BYTES = 64L << 20;
+
+    /**
+     * Largest count whose color is looked up rather than calculated.
+     */
+    private static final int LOOKUP_COUNTS = 4096;
+
+    /**
+     * Dimensions, in pixels, of the graph.
+     */
+    private final int width, height;
+
+    /**
+     * Converts points to pixels the same way as Grapher.xToPixel()
+     * and yToPixel().
+     */
+    private final PixelTransform transform;
+
+    /**
+     * Number of points in each pixel, row by row.
+     */
+    private final int[] counts;
+
+    /**
+     * Counts of points added on other threads, not yet summed into
+     * counts.
+     */
+    private final List<int[]> partials = new ArrayList<int[]>();
+
+    /**
+     * Creates an empty grid for a graph with the given window
+     * settings and size.
+     *
+     * @param width width, in pixels, of the graph
+     * @param height height, in pixels, of the graph
+     * @param xMin value of x-coordinate at the left edge of the window
+     * @param xMax value of x-coordinate at the right edge of the window
+     * @param yMin value of y-coordinate at the bottom edge of the window
+     * @param yMax value of y-coordinate at the top edge of the window
+     * @param originX pixels the graph is scrolled right by
+     * @param originY pixels the graph is scrolled down by
+     */
+    DensityGrid(int width, int height, double xMin, double xMax, double yMin, double yMax,
+                int originX, int originY) {
+        this.width = width;
+        this.height = height;
+        transform = new PixelTransform(width, height, xMin, xMax, yMin, yMax, originX, originY);
+        counts = new int[width * height];
+    }
+
+    /**
+     * Counts the first count points of the given arrays. If pool is
+     * not null and there are enough points, they are counted on
+     * several of its threads.
+     *
+     * @param x x-coordinates of points
+     * @param y y-coordinates of points
+     * @param count number of points to add
+     * @param pool ForkJoinPool to count points on, or null
+     */
+    void add(double[] x, double[] y, int count, ForkJoinPool pool) {
+        int parts = pool == null ? 1 : Math.min(pool.getParallelism(), count / MIN_CHUNK);
+        parts = (int) Math.min(parts, 1 + PARTIAL_BYTES / (4L * counts.length));
+        if(parts <= 1) {
+            add(counts, x, y, 0, count);
+            return;
+        }
+        while(partials.size() < parts - 1) {
+            partials.add(new int[counts.length]);
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for(int part = 1; part < parts; part++) {
+            int[] bins = partials.get(part - 1);
+            int from = (int) ((long) count * part / parts), to = (int) ((long) count * (part + 1) / parts);
+            tasks.add(pool.submit(() -> add(bins, x, y, from, to)));
+        }
+        /* Count the first part on this thread while the others run */
+        add(counts, x, y, 0, count / parts);
+        for(ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Counts points into a grid.
+     *
+     * @param bins grid to count points into
+     * @param x x-coordinates of points
+     * @param y y-coordinates of points
+     * @param from index of the first point to add
+     * @param to index after the last point to add
+     */
+    private void add(int[] bins, double[] x, double[] y, int from, int to) {
+        transform.countPixels(x, y, from, to, bins);
+    }
+
+    /**
+     * Colors each pixel holding at least one point by its count,
+     * leaving empty pixels untouched. The densest pixel in the graph
+     * is given the color of 1, and the others colors in proportion to
+     * their count, or to the logarithm of one more than their count.
+     *
+     * @param image image to draw on
+     * @param area area of the image to draw, or null to draw all of it
+     * @param colors colors to draw counts with
+     * @param logScale whether or not to color pixels by the logarithm
+     * of their count
+     */
+    void draw(BufferedImage image, Rectangle area, ColorMap colors, boolean logScale) {
+        for(int[] partial : partials) {
+            for(int i = 0; i < counts.length; i++) {
+                counts[i] += partial[i];
+            }
+        }
+        partials.clear();
+        int max = 0;
+        for(int count : counts) {
+            max = Math.max(max, count);
+        }
+        if(max == 0) {
+            return;
+        }
+
+        /* Look up the colors of small counts, which cover most pixels */
+        double scale = logScale ? 1 / Math.log1p(max) : 1.0 / max;
+        int[] lookup = new int[Math.min(max, LOOKUP_COUNTS) + 1];
+        for(int count = 1; count < lookup.length; count++) {
+            lookup[count] = colors.getRGB(logScale ? Math.log1p(count) * scale : count * scale);
+        }
+
+        Rectangle drawn = new Rectangle(width, height);
+        if(area != null) {
+            drawn = drawn.intersection(area);
+            if(drawn.isEmpty()) {
+                return;
+            }
+        }
+        /* Counts are indexed like the pixels of a packed image, which supports() checks for */
+        boolean direct = RasterCanvas.supports(image);
+        int[] pixels = direct ? ((DataBufferInt) image.getRaster().getDataBuffer()).getData() : null;
+        int[] row_colors = direct ? null : new int[drawn.width];
+        for(int row = drawn.y; row < drawn.y + drawn.height; row++) {
+            if(!direct) {
+                image.getRGB(drawn.x, row, drawn.width, 1, row_colors, 0, drawn.width);
+            }
+            for(int column = drawn.x, i = row * width + drawn.x; column < drawn.x + drawn.width; column++, i++) {
+                int count = counts[i];
+                if(count == 0) {
+                    continue;
+                }
+                int rgb = count < lookup.length ? lookup[count]
+                        : colors.getRGB(logScale ? Math.log1p(count) * scale : count * scale);
+                if(direct) {
+                    pixels[i] = rgb;
+                } else {
+                    row_colors[column - drawn.x] = rgb;
+                }
+            }
+            if(!direct) {
+                image.setRGB(drawn.x, row, drawn.width, 1, row_colors, 0, drawn.width);
+            }
+        }
+    }
+}
@@ -0,0 +1,685 @@
+package com.plainsimple.grapher;
+
+import com.plainsimple.grapher.ExpressionNode.Op;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A function y = f(x) compiled from text such as "x^2 + 4x + 4",
+ * "3sin(2x) / x" or "x &lt; 0 ? -x : sqrt(x)", so that functions typed
+ * in by users can be plotted without overriding Grapher.calculate().
+ * Expressions support + - * / ^, implicit multiplication ("4x"),
+ * comparisons (&lt; &lt;= &gt; &gt;= == !=), logical operators (&amp;&amp; || !),
+ * conditionals ("c ? a : b" or "if(c, a, b)"), the constants pi and
+ * e, named parameters, and the functions sin, cos, tan, asin, acos,
+ * atan, sinh, cosh, tanh, exp, log (natural, also "ln"), log10,
+ * sqrt, cbrt, abs, floor, ceil, round, sign, pow, atan2, hypot, min
+ * and max. round(a) is floor(a + 0.5), so halves round up as with
+ * Math.round(), but it returns NaN and infinities as they are rather
+ * than clamping them to a long. Comparisons and logical operators
+ * return 1 for true and 0 for false, and any value other than 0 or
+ * NaN counts as true.
+ * <p>
+ * Compiling folds every constant subexpression, including the values
+ * of parameters, and merges identical subexpressions. Single values
+ * are then calculated by a tree of closures specialized to each
+ * operation and constant operand, which calculates a subexpression
+ * again wherever it appears. Arrays of values (see evaluate()) are
+ * calculated one operation at a time over blocks of x-values, each
+ * merged subexpression once per block, so each operation runs as a
+ * tight loop over primitive arrays that the JIT compiles much like
+ * hand-written code.
+ * Expressions are immutable and may be evaluated by several threads at
+ * once, so they can be plotted with parallel sampling.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class Expression implements DoubleUnaryOperator, BatchFunction {
+
+    /**
+     * Number of x-values each operation is applied to at a time when
+     * evaluating arrays. Small enough for every register to stay in
+     * the L1 or L2 cache.
+     */
+    private static final int BLOCK = 256;
+
+    /**
+     * Forms of an instruction: every operand is read from a register,
+     * or the first or second operand is a constant.
+     */
+    private static final byte REGISTERS = 0, CONSTANT_A = 1, CONSTANT_B = 2;
+
+    /**
+     * Longest chain of sums, products, ands or ors compiled into nested
+     * closures. Longer chains are compiled into a loop over their terms.
+     */
+    private static final int CHAIN = 8;
+
+    /**
+     * Text the expression was compiled from.
+     */
+    private final String source;
+
+    /**
+     * Values of the parameters the expression was compiled with.
+     */
+    private final Map<String, Double> parameters;
+
+    /**
+     * Closure calculating the expression for a single value.
+     */
+    private final DoubleUnaryOperator scalar;
+
+    /**
+     * Instructions evaluating the expression over a block of x-values,
+     * in order. Instruction i applies operations[i] in forms[i] to the
+     * registers or constant given by its operands, and stores the
+     * result in register targets[i].
+     */
+    private final Op[] operations;
+    private final byte[] forms;
+    private final int[] targets, operandA, operandB, operandC;
+    private final double[] constants;
+
+    /**
+     * Number of registers, each holding one block of values.
+     */
+    private final int registers;
+
+    /**
+     * Register x-values are copied into, or -1 if x is not used.
+     */
+    private final int xRegister;
+
+    /**
+     * Registers holding constants, and the constants they hold.
+     */
+    private final int[] constantRegisters;
+    private final double[] constantValues;
+
+    /**
+     * Register holding the value of the expression.
+     */
+    private final int result;
+
+    private Expression(String source, Map<String, Double> parameters, ExpressionNode root) {
+        this.source = source;
+        this.parameters = parameters;
+        scalar = compile(root);
+
+        /* List every distinct node so that operands come before the nodes using them */
+        List<ExpressionNode> order = postOrder(root);
+        List<ExpressionNode> instructions = new ArrayList<>();
+        for(ExpressionNode node : order) {
+            if(node.op.arity > 0) {
+                instructions.add(node);
+            }
+        }
+        int count = instructions.size();
+        operations = new Op[count];
+        forms = new byte[count];
+        targets = new int[count];
+        operandA = new int[count];
+        operandB = new int[count];
+        operandC = new int[count];
+        constants = new double[count];
+        for(int i = 0; i < count; i++) {
+            ExpressionNode node = instructions.get(i);
+            operations[i] = node.op;
+            forms[i] = formOf(node);
+        }
+
+        /* Find the last instruction to read each node from a register */
+        Map<ExpressionNode, Integer> lastUse = new IdentityHashMap<>();
+        for(int i = 0; i < count; i++) {
+            for(ExpressionNode operand : registerOperands(instructions.get(i), forms[i])) {
+                lastUse.put(operand, i);
+            }
+        }
+
+        /* x and constants keep their own registers, filled once per call to evaluate() */
+        Map<ExpressionNode, Integer> assigned = new IdentityHashMap<>();
+        List<ExpressionNode> leaves = new ArrayList<>();
+        for(ExpressionNode node : order) {
+            if(node.op.arity == 0 && (lastUse.containsKey(node) || node == root)) {
+                assigned.put(node, leaves.size());
+                leaves.add(node);
+            }
+        }
+        ExpressionNode x = null;
+        List<ExpressionNode> fixed = new ArrayList<>();
+        for(ExpressionNode leaf : leaves) {
+            if(leaf.op == Op.X) {
+                x = leaf;
+            } else {
+                fixed.add(leaf);
+            }
+        }
+        xRegister = x == null ? -1 : assigned.get(x);
+        constantRegisters = new int[fixed.size()];
+        constantValues = new double[fixed.size()];
+        for(int i = 0; i < fixed.size(); i++) {
+            constantRegisters[i] = assigned.get(fixed.get(i));
+            constantValues[i] = fixed.get(i).value;
+        }
+
+        /* Give each instruction a register, reusing registers whose value is no longer needed */
+        int used = leaves.size();
+        Deque<Integer> free = new ArrayDeque<>();
+        for(int i = 0; i < count; i++) {
+            ExpressionNode node = instructions.get(i);
+            List<ExpressionNode> operands = registerOperands(node, forms[i]);
+            ExpressionNode[] all = {node.a, node.b, node.c};
+            int[][] fields = {operandA, operandB, operandC};
+            for(int k = 0; k < node.op.arity; k++) {
+                if(all[k].isConstant() && !operands.contains(all[k])) {
+                    constants[i] = all[k].value;
+                } else {
+                    fields[k][i] = assigned.get(all[k]);
+                }
+            }
+            for(ExpressionNode operand : new LinkedHashSet<>(operands)) {
+                if(operand.op.arity > 0 && lastUse.get(operand) == i) {
+                    free.push(assigned.get(operand));
+                }
+            }
+            int target = free.isEmpty() ? used++ : free.pop();
+            targets[i] = target;
+            assigned.put(node, target);
+        }
+        registers = used;
+        result = assigned.get(root);
+    }
+
+    /**
+     * Compiles an expression of x.
+     *
+     * @param source text of the expression
+     * @return the compiled expression
+     * @throws IllegalArgumentException if source is not a valid
+     * expression, is nested too deeply or has too many terms
+     */
+    public static Expression compile(String source) {
+        return compile(source, Collections.emptyMap());
+    }
+
+    /**
+     * Compiles an expression of x that may use named parameters, such
+     * as "a sin(b x)". Parameters are folded into the expression like
+     * constants, so changing one means compiling again.
+     *
+     * @param source text of the expression
+     * @param parameters value of each parameter, by name. Names must
+     * start with a letter and may not be x, pi, e or a function name
+     * @return the compiled expression
+     * @throws IllegalArgumentException if source is not a valid
+     * expression, is nested too deeply or has too many terms, or a
+     * parameter is invalid
+     */
+    public static Expression compile(String source, Map<String, Double> parameters) {
+        if(source == null) {
+            throw new IllegalArgumentException("source cannot be null");
+        }
+        Map<String, Double> copy = new HashMap<>(parameters);
+        for(Map.Entry<String, Double> parameter : copy.entrySet()) {
+            String name = parameter.getKey();
+            if(name == null || name.isEmpty() || !Character.isLetter(name.charAt(0))
+                    || !name.chars().allMatch(c -> Character.isLetterOrDigit(c) || c == '_')) {
+                throw new IllegalArgumentException("Invalid parameter name \"" + name + "\"");
+            }
+            if(ExpressionParser.isReserved(name)) {
+                throw new IllegalArgumentException("Parameter name \"" + name + "\" is reserved");
+            }
+            if(parameter.getValue() == null) {
+                throw new IllegalArgumentException("Parameter \"" + name + "\" has no value");
+            }
+        }
+        return new Expression(source, Collections.unmodifiableMap(copy),
+                ExpressionParser.parse(source, copy));
+    }
+
+    /**
+     * @return the values of the parameters the expression was compiled with
+     */
+    public Map<String, Double> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Calculates f(x).
+     *
+     * @param x x-value to calculate f(x) for
+     * @return f(x)
+     */
+    @Override
+    public double applyAsDouble(double x) {
+        return scalar.applyAsDouble(x);
+    }
+
+    /**
+     * Calculates y[i] = f(x[i]) for every i from index from, inclusive,
+     * to index to, exclusive. Gives the same results as
+     * applyAsDouble(), many times faster for large ranges.
+     *
+     * @param x x-values to calculate f(x) for
+     * @param y array to store f(x) values in
+     * @param from first index to calculate
+     * @param to index after the last index to calculate
+     */
+    @Override
+    public void evaluate(double[] x, double[] y, int from, int to) {
+        if(to <= from) {
+            return;
+        }
+        int size = Math.min(BLOCK, to - from);
+        double[][] values = new double[registers][size];
+        for(int i = 0; i < constantRegisters.length; i++) {
+            Arrays.fill(values[constantRegisters[i]], constantValues[i]);
+        }
+        for(int start = from; start < to; start += size) {
+            int n = Math.min(size, to - start);
+            if(xRegister >= 0) {
+                System.arraycopy(x, start, values[xRegister], 0, n);
+            }
+            for(int i = 0; i < operations.length; i++) {
+                execute(i, values, n);
+            }
+            System.arraycopy(values[result], 0, y, start, n);
+        }
+    }
+
+    /**
+     * @return the text the expression was compiled from
+     */
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * Applies one instruction to a block of values.
+     *
+     * @param i index of the instruction
+     * @param values registers
+     * @param n number of values in the block
+     */
+    private void execute(int i, double[][] values, int n) {
+        double[] d = values[targets[i]];
+        double[] a = forms[i] == CONSTANT_A ? null : values[operandA[i]];
+        double k = constants[i];
+        byte form = forms[i];
+        switch(operations[i]) {
+            case NEG: for(int j = 0; j < n; j++) d[j] = -a[j]; return;
+            case NOT: for(int j = 0; j < n; j++) d[j] = ExpressionNode.isTrue(a[j]) ? 0 : 1; return;
+            case SQUARE: for(int j = 0; j < n; j++) d[j] = a[j] * a[j]; return;
+            case SIN: for(int j = 0; j < n; j++) d[j] = Math.sin(a[j]); return;
+            case COS: for(int j = 0; j < n; j++) d[j] = Math.cos(a[j]); return;
+            case TAN: for(int j = 0; j < n; j++) d[j] = Math.tan(a[j]); return;
+            case ASIN: for(int j = 0; j < n; j++) d[j] = Math.asin(a[j]); return;
+            case ACOS: for(int j = 0; j < n; j++) d[j] = Math.acos(a[j]); return;
+            case ATAN: for(int j = 0; j < n; j++) d[j] = Math.atan(a[j]); return;
+            case SINH: for(int j = 0; j < n; j++) d[j] = Math.sinh(a[j]); return;
+            case COSH: for(int j = 0; j < n; j++) d[j] = Math.cosh(a[j]); return;
+            case TANH: for(int j = 0; j < n; j++) d[j] = Math.tanh(a[j]); return;
+            case EXP: for(int j = 0; j < n; j++) d[j] = Math.exp(a[j]); return;
+            case LOG: for(int j = 0; j < n; j++) d[j] = Math.log(a[j]); return;
+            case LOG10: for(int j = 0; j < n; j++) d[j] = Math.log10(a[j]); return;
+            case SQRT: for(int j = 0; j < n; j++) d[j] = Math.sqrt(a[j]); return;
+            case CBRT: for(int j = 0; j < n; j++) d[j] = Math.cbrt(a[j]); return;
+            case ABS: for(int j = 0; j < n; j++) d[j] = Math.abs(a[j]); return;
+            case FLOOR: for(int j = 0; j < n; j++) d[j] = Math.floor(a[j]); return;
+            case CEIL: for(int j = 0; j < n; j++) d[j] = Math.ceil(a[j]); return;
+            case ROUND: for(int j = 0; j < n; j++) d[j] = Math.floor(a[j] + 0.5); return;
+            case SIGN: for(int j = 0; j < n; j++) d[j] = Math.signum(a[j]); return;
+            default: break;
+        }
+
+        /* Arithmetic with a constant operand reads the constant instead of a register */
+        if(form == CONSTANT_B) {
+            switch(operations[i]) {
+                case ADD: for(int j = 0; j < n; j++) d[j] = a[j] + k; return;
+                case SUB: for(int j = 0; j < n; j++) d[j] = a[j] - k; return;
+                case MUL: for(int j = 0; j < n; j++) d[j] = a[j] * k; return;
+                case DIV: for(int j = 0; j < n; j++) d[j] = a[j] / k; return;
+                case POW: for(int j = 0; j < n; j++) d[j] = Math.pow(a[j], k); return;
+                default: throw new IllegalStateException("No constant form of " + operations[i]);
+            }
+        }
+        double[] b = values[operandB[i]];
+        if(form == CONSTANT_A) {
+            switch(operations[i]) {
+                case SUB: for(int j = 0; j < n; j++) d[j] = k - b[j]; return;
+                case DIV: for(int j = 0; j < n; j++) d[j] = k / b[j]; return;
+                case POW: for(int j = 0; j < n; j++) d[j] = Math.pow(k, b[j]); return;
+                default: throw new IllegalStateException("No constant form of " + operations[i]);
+            }
+        }
+        switch(operations[i]) {
+            case ADD: for(int j = 0; j < n; j++) d[j] = a[j] + b[j]; return;
+            case SUB: for(int j = 0; j < n; j++) d[j] = a[j] - b[j]; return;
+            case MUL: for(int j = 0; j < n; j++) d[j] = a[j] * b[j]; return;
+            case DIV: for(int j = 0; j < n; j++) d[j] = a[j] / b[j]; return;
+            case POW: for(int j = 0; j < n; j++) d[j] = Math.pow(a[j], b[j]); return;
+            case ATAN2: for(int j = 0; j < n; j++) d[j] = Math.atan2(a[j], b[j]); return;
+            case HYPOT: for(int j = 0; j < n; j++) d[j] = Math.hypot(a[j], b[j]); return;
+            case MIN: for(int j = 0; j < n; j++) d[j] = Math.min(a[j], b[j]); return;
+            case MAX: for(int j = 0; j < n; j++) d[j] = Math.max(a[j], b[j]); return;
+            case LT: for(int j = 0; j < n; j++) d[j] = a[j] < b[j] ? 1 : 0; return;
+            case LE: for(int j = 0; j < n; j++) d[j] = a[j] <= b[j] ? 1 : 0; return;
+            case GT: for(int j = 0; j < n; j++) d[j] = a[j] > b[j] ? 1 : 0; return;
+            case GE: for(int j = 0; j < n; j++) d[j] = a[j] >= b[j] ? 1 : 0; return;
+            case EQ: for(int j = 0; j < n; j++) d[j] = a[j] == b[j] ? 1 : 0; return;
+            case NE: for(int j = 0; j < n; j++) d[j] = a[j] != b[j] ? 1 : 0; return;
+            case AND:
+                for(int j = 0; j < n; j++) d[j] = ExpressionNode.isTrue(a[j]) && ExpressionNode.isTrue(b[j]) ? 1 : 0;
+                return;
+            case OR:
+                for(int j = 0; j < n; j++) d[j] = ExpressionNode.isTrue(a[j]) || ExpressionNode.isTrue(b[j]) ? 1 : 0;
+                return;
+            case SELECT: {
+                /* Both branches have been calculated for the whole block; pick one per value */
+                double[] c = values[operandC[i]];
+                for(int j = 0; j < n; j++) d[j] = ExpressionNode.isTrue(a[j]) ? b[j] : c[j];
+                return;
+            }
+            default: throw new IllegalStateException("Cannot execute " + operations[i]);
+        }
+    }
+
+    /**
+     * Chooses whether an instruction reads one of its operands as a
+     * constant instead of from a register. Only arithmetic operations
+     * have forms taking a constant.
+     *
+     * @param node node the instruction calculates
+     * @return form of the instruction
+     */
+    private static byte formOf(ExpressionNode node) {
+        switch(node.op) {
+            case ADD:
+            case MUL:
+                /* Constants of commutative operations are always on the right */
+                return node.b.isConstant() ? CONSTANT_B : REGISTERS;
+            case SUB:
+            case DIV:
+            case POW:
+                return node.b.isConstant() ? CONSTANT_B : node.a.isConstant() ? CONSTANT_A : REGISTERS;
+            default:
+                return REGISTERS;
+        }
+    }
+
+    /**
+     * @param node node an instruction calculates
+     * @param form form of the instruction
+     * @return operands the instruction reads from registers
+     */
+    private static List<ExpressionNode> registerOperands(ExpressionNode node, byte form) {
+        List<ExpressionNode> operands = new ArrayList<>(3);
+        ExpressionNode[] all = {node.a, node.b, node.c};
+        for(int k = 0; k < node.op.arity; k++) {
+            if(!(k == 0 && form == CONSTANT_A) && !(k == 1 && form == CONSTANT_B)) {
+                operands.add(all[k]);
+            }
+        }
+        return operands;
+    }
+
+    /**
+     * Lists the nodes of an expression so that each node comes after
+     * its operands, listing shared nodes only once. Walks the nodes
+     * with a stack of its own, so long sums and products cannot run
+     * out of call stack.
+     *
+     * @param root node to list with its operands
+     * @return every distinct node, operands first
+     */
+    private static List<ExpressionNode> postOrder(ExpressionNode root) {
+        List<ExpressionNode> order = new ArrayList<>();
+        Set<ExpressionNode> expanded = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<ExpressionNode> listed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<ExpressionNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while(!stack.isEmpty()) {
+            ExpressionNode node = stack.peek();
+            if(expanded.add(node)) {
+                /* Pushed last so that the first operand is listed first */
+                for(ExpressionNode operand : new ExpressionNode[] {node.c, node.b, node.a}) {
+                    if(operand != null && !expanded.contains(operand)) {
+                        stack.push(operand);
+                    }
+                }
+            } else {
+                stack.pop();
+                if(listed.add(node)) {
+                    order.add(node);
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Compiles a node into a closure calculating it for one value.
+     * Arithmetic with a constant operand is specialized so that the
+     * constant is captured instead of being calculated by a closure.
+     * Chains of more than CHAIN sums, products, ands or ors, such as
+     * "x + x + ... + x", are compiled into one closure looping over
+     * their terms, so neither compiling nor calculating them recurses
+     * once per term. The parser limits how deeply everything else is
+     * nested.
+     *
+     * @param node node to compile
+     * @return closure calculating the node
+     */
+    private static DoubleUnaryOperator compile(ExpressionNode node) {
+        if(chainLength(node) > CHAIN) {
+            return compileChain(node);
+        }
+        if(node.op == Op.CONST) {
+            double value = node.value;
+            return x -> value;
+        } else if(node.op == Op.X) {
+            return x -> x;
+        }
+        DoubleUnaryOperator a = compile(node.a);
+        switch(node.op) {
+            case NEG: return x -> -a.applyAsDouble(x);
+            case NOT: return x -> ExpressionNode.isTrue(a.applyAsDouble(x)) ? 0 : 1;
+            case SQUARE: return x -> {
+                double v = a.applyAsDouble(x);
+                return v * v;
+            };
+            case SIN: return x -> Math.sin(a.applyAsDouble(x));
+            case COS: return x -> Math.cos(a.applyAsDouble(x));
+            case TAN: return x -> Math.tan(a.applyAsDouble(x));
+            case ASIN: return x -> Math.asin(a.applyAsDouble(x));
+            case ACOS: return x -> Math.acos(a.applyAsDouble(x));
+            case ATAN: return x -> Math.atan(a.applyAsDouble(x));
+            case SINH: return x -> Math.sinh(a.applyAsDouble(x));
+            case COSH: return x -> Math.cosh(a.applyAsDouble(x));
+            case TANH: return x -> Math.tanh(a.applyAsDouble(x));
+            case EXP: return x -> Math.exp(a.applyAsDouble(x));
+            case LOG: return x -> Math.log(a.applyAsDouble(x));
+            case LOG10: return x -> Math.log10(a.applyAsDouble(x));
+            case SQRT: return x -> Math.sqrt(a.applyAsDouble(x));
+            case CBRT: return x -> Math.cbrt(a.applyAsDouble(x));
+            case ABS: return x -> Math.abs(a.applyAsDouble(x));
+            case FLOOR: return x -> Math.floor(a.applyAsDouble(x));
+            case CEIL: return x -> Math.ceil(a.applyAsDouble(x));
+            case ROUND: return x -> Math.floor(a.applyAsDouble(x) + 0.5);
+            case SIGN: return x -> Math.signum(a.applyAsDouble(x));
+            default: break;
+        }
+
+        byte form = formOf(node);
+        if(form == CONSTANT_B) {
+            DoubleUnaryOperator left = a;
+            double k = node.b.value;
+            switch(node.op) {
+                case ADD: return x -> left.applyAsDouble(x) + k;
+                case SUB: return x -> left.applyAsDouble(x) - k;
+                case MUL: return x -> left.applyAsDouble(x) * k;
+                case DIV: return x -> left.applyAsDouble(x) / k;
+                case POW: return x -> Math.pow(left.applyAsDouble(x), k);
+                default: throw new IllegalStateException("No constant form of " + node.op);
+            }
+        }
+        DoubleUnaryOperator b = compile(node.b);
+        if(form == CONSTANT_A) {
+            double k = node.a.value;
+            switch(node.op) {
+                case SUB: return x -> k - b.applyAsDouble(x);
+                case DIV: return x -> k / b.applyAsDouble(x);
+                case POW: return x -> Math.pow(k, b.applyAsDouble(x));
+                default: throw new IllegalStateException("No constant form of " + node.op);
+            }
+        }
+        switch(node.op) {
+            case ADD: return x -> a.applyAsDouble(x) + b.applyAsDouble(x);
+            case SUB: return x -> a.applyAsDouble(x) - b.applyAsDouble(x);
+            case MUL: return x -> a.applyAsDouble(x) * b.applyAsDouble(x);
+            case DIV: return x -> a.applyAsDouble(x) / b.applyAsDouble(x);
+            case POW: return x -> Math.pow(a.applyAsDouble(x), b.applyAsDouble(x));
+            case ATAN2: return x -> Math.atan2(a.applyAsDouble(x), b.applyAsDouble(x));
+            case HYPOT: return x -> Math.hypot(a.applyAsDouble(x), b.applyAsDouble(x));
+            case MIN: return x -> Math.min(a.applyAsDouble(x), b.applyAsDouble(x));
+            case MAX: return x -> Math.max(a.applyAsDouble(x), b.applyAsDouble(x));
+            case LT: return x -> a.applyAsDouble(x) < b.applyAsDouble(x) ? 1 : 0;
+            case LE: return x -> a.applyAsDouble(x) <= b.applyAsDouble(x) ? 1 : 0;
+            case GT: return x -> a.applyAsDouble(x) > b.applyAsDouble(x) ? 1 : 0;
+            case GE: return x -> a.applyAsDouble(x) >= b.applyAsDouble(x) ? 1 : 0;
+            case EQ: return x -> a.applyAsDouble(x) == b.applyAsDouble(x) ? 1 : 0;
+            case NE: return x -> a.applyAsDouble(x) != b.applyAsDouble(x) ? 1 : 0;
+            /* Logical operators and conditionals only calculate the operands they need */
+            case AND: return x -> ExpressionNode.isTrue(a.applyAsDouble(x))
+                    && ExpressionNode.isTrue(b.applyAsDouble(x)) ? 1 : 0;
+            case OR: return x -> ExpressionNode.isTrue(a.applyAsDouble(x))
+                    || ExpressionNode.isTrue(b.applyAsDouble(x)) ? 1 : 0;
+            case SELECT: {
+                DoubleUnaryOperator c = compile(node.c);
+                return x -> ExpressionNode.isTrue(a.applyAsDouble(x)) ? b.applyAsDouble(x) : c.applyAsDouble(x);
+            }
+            default: throw new IllegalStateException("Cannot compile " + node.op);
+        }
+    }
+
+    /**
+     * @param op an operation
+     * @return operation that op chains with: ADD for sums, MUL for
+     * products, op itself for ands and ors, or null if op does not chain
+     */
+    private static Op family(Op op) {
+        switch(op) {
+            case ADD: case SUB: return Op.ADD;
+            case MUL: case DIV: return Op.MUL;
+            case AND: case OR: return op;
+            default: return null;
+        }
+    }
+
+    /**
+     * @param node node to measure
+     * @return number of operations in the chain ending at node, each the
+     * first operand of the next
+     */
+    private static int chainLength(ExpressionNode node) {
+        Op family = family(node.op);
+        int length = 0;
+        while(family != null && family(node.op) == family) {
+            length++;
+            node = node.a;
+        }
+        return length;
+    }
+
+    /**
+     * Compiles a chain of sums, products, ands or ors into one closure
+     * that calculates its terms left to right, in the same order and
+     * with the same rounding as nested closures would.
+     *
+     * @param node last operation of the chain
+     * @return closure calculating the chain
+     */
+    private static DoubleUnaryOperator compileChain(ExpressionNode node) {
+        Op family = family(node.op);
+        List<ExpressionNode> links = new ArrayList<>();
+        while(family(node.op) == family) {
+            links.add(node);
+            node = node.a;
+        }
+        Collections.reverse(links);
+        DoubleUnaryOperator first = compile(node);
+        int n = links.size();
+        DoubleUnaryOperator[] terms = new DoubleUnaryOperator[n];
+        boolean[] inverse = new boolean[n];
+        for(int i = 0; i < n; i++) {
+            terms[i] = compile(links.get(i).b);
+            inverse[i] = links.get(i).op == Op.SUB || links.get(i).op == Op.DIV;
+        }
+        switch(family) {
+            case ADD: return x -> {
+                double v = first.applyAsDouble(x);
+                for(int i = 0; i < n; i++) {
+                    v = inverse[i] ? v - terms[i].applyAsDouble(x) : v + terms[i].applyAsDouble(x);
+                }
+                return v;
+            };
+            case MUL: return x -> {
+                double v = first.applyAsDouble(x);
+                for(int i = 0; i < n; i++) {
+                    v = inverse[i] ? v / terms[i].applyAsDouble(x) : v * terms[i].applyAsDouble(x);
+                }
+                return v;
+            };
+            /* Stop at the first term that decides the result, like nested && and || */
+            case AND: return x -> {
+                if(!ExpressionNode.isTrue(first.applyAsDouble(x))) {
+                    return 0;
+                }
+                for(DoubleUnaryOperator term : terms) {
+                    if(!ExpressionNode.isTrue(term.applyAsDouble(x))) {
+                        return 0;
+                    }
+                }
+                return 1;
+            };
+            case OR: return x -> {
+                if(ExpressionNode.isTrue(first.applyAsDouble(x))) {
+                    return 1;
+                }
+                for(DoubleUnaryOperator term : terms) {
+                    if(ExpressionNode.isTrue(term.applyAsDouble(x))) {
+                        return 1;
+                    }
+                }
+                return 0;
+            };
+            default: throw new IllegalStateException("Cannot chain " + family);
+        }
+    }
+}
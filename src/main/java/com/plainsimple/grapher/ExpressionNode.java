@@ -0,0 +1,292 @@
+package com.plainsimple.grapher;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A node of a parsed Expression: a constant, the variable x, or an
+ * operation on up to three other nodes. Nodes are only created
+ * through a Factory, which folds operations on constants into
+ * constants, applies identities that never change a result (such as
+ * a + 0 or a ^ 1), and returns the existing node whenever an
+ * identical one has already been created. Identical subexpressions
+ * therefore share a single node, which Expression evaluates once.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class ExpressionNode {
+
+    /**
+     * Operations a node can perform. Comparisons and logical
+     * operations return 1 for true and 0 for false, and treat any
+     * value other than 0 or NaN as true.
+     */
+    enum Op {
+        CONST(0), X(0),
+        NEG(1), NOT(1), SQUARE(1),
+        SIN(1), COS(1), TAN(1), ASIN(1), ACOS(1), ATAN(1),
+        SINH(1), COSH(1), TANH(1), EXP(1), LOG(1), LOG10(1),
+        SQRT(1), CBRT(1), ABS(1), FLOOR(1), CEIL(1), ROUND(1), SIGN(1),
+        ADD(2), SUB(2), MUL(2), DIV(2), POW(2), ATAN2(2), HYPOT(2), MIN(2), MAX(2),
+        LT(2), LE(2), GT(2), GE(2), EQ(2), NE(2), AND(2), OR(2),
+        SELECT(3);
+
+        /**
+         * Number of operands.
+         */
+        final int arity;
+
+        Op(int arity) {
+            this.arity = arity;
+        }
+    }
+
+    /**
+     * Operation of this node.
+     */
+    final Op op;
+
+    /**
+     * Operands, or null beyond the operation's arity.
+     */
+    final ExpressionNode a, b, c;
+
+    /**
+     * Value of a CONST node.
+     */
+    final double value;
+
+    private ExpressionNode(Op op, ExpressionNode a, ExpressionNode b, ExpressionNode c, double value) {
+        this.op = op;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.value = value;
+    }
+
+    /**
+     * @return whether this node is a constant
+     */
+    boolean isConstant() {
+        return op == Op.CONST;
+    }
+
+    /**
+     * @param constant a value
+     * @return whether this node is a constant with exactly that value
+     */
+    private boolean is(double constant) {
+        return op == Op.CONST && Double.compare(value, constant) == 0;
+    }
+
+    /**
+     * Applies an operation to values. Used to fold constants, and by
+     * Expression to evaluate nodes one value at a time.
+     *
+     * @param op operation to apply
+     * @param a first operand
+     * @param b second operand, if any
+     * @param c third operand, if any
+     * @return result of the operation
+     */
+    static double apply(Op op, double a, double b, double c) {
+        switch(op) {
+            case NEG: return -a;
+            case NOT: return isTrue(a) ? 0 : 1;
+            case SQUARE: return a * a;
+            case SIN: return Math.sin(a);
+            case COS: return Math.cos(a);
+            case TAN: return Math.tan(a);
+            case ASIN: return Math.asin(a);
+            case ACOS: return Math.acos(a);
+            case ATAN: return Math.atan(a);
+            case SINH: return Math.sinh(a);
+            case COSH: return Math.cosh(a);
+            case TANH: return Math.tanh(a);
+            case EXP: return Math.exp(a);
+            case LOG: return Math.log(a);
+            case LOG10: return Math.log10(a);
+            case SQRT: return Math.sqrt(a);
+            case CBRT: return Math.cbrt(a);
+            case ABS: return Math.abs(a);
+            case FLOOR: return Math.floor(a);
+            case CEIL: return Math.ceil(a);
+            case ROUND: return Math.floor(a + 0.5);
+            case SIGN: return Math.signum(a);
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case DIV: return a / b;
+            case POW: return Math.pow(a, b);
+            case ATAN2: return Math.atan2(a, b);
+            case HYPOT: return Math.hypot(a, b);
+            case MIN: return Math.min(a, b);
+            case MAX: return Math.max(a, b);
+            case LT: return a < b ? 1 : 0;
+            case LE: return a <= b ? 1 : 0;
+            case GT: return a > b ? 1 : 0;
+            case GE: return a >= b ? 1 : 0;
+            case EQ: return a == b ? 1 : 0;
+            case NE: return a != b ? 1 : 0;
+            case AND: return isTrue(a) && isTrue(b) ? 1 : 0;
+            case OR: return isTrue(a) || isTrue(b) ? 1 : 0;
+            case SELECT: return isTrue(a) ? b : c;
+            default: throw new IllegalArgumentException("Cannot apply " + op);
+        }
+    }
+
+    /**
+     * @param condition value of a condition
+     * @return whether the condition holds: it is neither 0 nor NaN
+     */
+    static boolean isTrue(double condition) {
+        return condition != 0 && condition == condition;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(!(o instanceof ExpressionNode)) {
+            return false;
+        }
+        /* Operands are always shared nodes, so they can be compared by identity */
+        ExpressionNode n = (ExpressionNode) o;
+        return op == n.op && a == n.a && b == n.b && c == n.c
+                && Double.doubleToLongBits(value) == Double.doubleToLongBits(n.value);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = op.hashCode();
+        hash = 31 * hash + System.identityHashCode(a);
+        hash = 31 * hash + System.identityHashCode(b);
+        hash = 31 * hash + System.identityHashCode(c);
+        return 31 * hash + Double.hashCode(value);
+    }
+
+    /**
+     * Creates the nodes of one expression, sharing identical nodes
+     * and simplifying operations as they are created.
+     */
+    static final class Factory {
+
+        /**
+         * Every node created so far, mapped to itself.
+         */
+        private final Map<ExpressionNode, ExpressionNode> nodes = new HashMap<>();
+
+        /**
+         * @param value value of the constant
+         * @return a constant node
+         */
+        ExpressionNode constant(double value) {
+            return intern(new ExpressionNode(Op.CONST, null, null, null, value));
+        }
+
+        /**
+         * @return the node of the variable x
+         */
+        ExpressionNode x() {
+            return intern(new ExpressionNode(Op.X, null, null, null, 0));
+        }
+
+        /**
+         * Creates a node applying an operation to operands, or an
+         * equivalent simpler node.
+         *
+         * @param op operation to apply
+         * @param operands as many operands as the operation takes
+         * @return node computing the operation
+         */
+        ExpressionNode apply(Op op, ExpressionNode... operands) {
+            ExpressionNode a = operands[0];
+            ExpressionNode b = op.arity > 1 ? operands[1] : null;
+            ExpressionNode c = op.arity > 2 ? operands[2] : null;
+
+            /* Fold operations on constants, and conditionals with constant conditions */
+            if(a.isConstant() && (b == null || b.isConstant()) && (c == null || c.isConstant())) {
+                return constant(ExpressionNode.apply(op, a.value, b == null ? 0 : b.value,
+                        c == null ? 0 : c.value));
+            }
+            if(op == Op.SELECT && a.isConstant()) {
+                return isTrue(a.value) ? b : c;
+            }
+            /* Keep constants on the right of commutative operations */
+            if((op == Op.ADD || op == Op.MUL) && a.isConstant()) {
+                ExpressionNode swap = a;
+                a = b;
+                b = swap;
+            }
+
+            /* Identities that hold for every value, including NaN, infinities and -0 */
+            switch(op) {
+                case NEG:
+                    if(a.op == Op.NEG) {
+                        return a.a;
+                    }
+                    break;
+                case SUB:
+                    if(b.is(0)) {
+                        return a;
+                    }
+                    break;
+                case ADD:
+                    if(b.is(-0.0)) {
+                        return a;
+                    }
+                    break;
+                case MUL:
+                case DIV:
+                    if(b.is(1)) {
+                        return a;
+                    }
+                    if(b.is(-1)) {
+                        return apply(Op.NEG, a);
+                    }
+                    break;
+                case POW:
+                    if(b.is(1)) {
+                        return a;
+                    }
+                    if(b.is(2)) {
+                        return apply(Op.SQUARE, a);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if(op == Op.MUL && a == b) {
+                return apply(Op.SQUARE, a);
+            }
+            return intern(new ExpressionNode(op, a, b, c, 0));
+        }
+
+        /**
+         * @return number of distinct nodes created so far
+         */
+        int size() {
+            return nodes.size();
+        }
+
+        /**
+         * @param node a newly created node
+         * @return the identical node created before, or node if there is none
+         */
+        private ExpressionNode intern(ExpressionNode node) {
+            ExpressionNode existing = nodes.putIfAbsent(node, node);
+            return existing == null ? node : existing;
+        }
+    }
+}
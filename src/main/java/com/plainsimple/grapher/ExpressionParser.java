@@ -0,0 +1,441 @@
+package com.plainsimple.grapher;
+
+import com.plainsimple.grapher.ExpressionNode.Op;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses the source of an Expression into ExpressionNodes by
+ * recursive descent. From lowest to highest precedence, the grammar is:
+ * <pre>
+ * conditional := or ['?' conditional ':' conditional]
+ * or          := and {'||' and}
+ * and         := comparison {'&amp;&amp;' comparison}
+ * comparison  := sum [('&lt;' | '&lt;=' | '&gt;' | '&gt;=' | '==' | '!=') sum]
+ * sum         := product {('+' | '-') product}
+ * product     := unary {('*' | '/' | implicit) unary}
+ * unary       := ('-' | '+' | '!') unary | power
+ * power       := primary ['^' unary]
+ * primary     := number | name | function '(' arguments ')' | '(' conditional ')'
+ * </pre>
+ * so "-x^2" is -(x^2) and "2^3^2" is 2^(3^2). A factor directly
+ * followed by a name or an opening parenthesis is multiplied by it,
+ * so "4x + 2(x - 1)" is 4 * x + 2 * (x - 1).
+ * Parentheses, function calls, conditionals, powers and prefix
+ * operators may be nested at most MAX_DEPTH deep, and an expression
+ * may have at most MAX_NODES distinct nodes, so that neither parsing
+ * nor compiling can run out of stack on long input.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class ExpressionParser {
+
+    /**
+     * Functions that can be called by name, and the operations they perform.
+     */
+    private static final Map<String, Op> FUNCTIONS = new HashMap<>();
+
+    static {
+        for(Op op : new Op[] {Op.SIN, Op.COS, Op.TAN, Op.ASIN, Op.ACOS, Op.ATAN, Op.SINH, Op.COSH,
+                Op.TANH, Op.EXP, Op.LOG, Op.LOG10, Op.SQRT, Op.CBRT, Op.ABS, Op.FLOOR, Op.CEIL,
+                Op.ROUND, Op.SIGN, Op.POW, Op.ATAN2, Op.HYPOT, Op.MIN, Op.MAX}) {
+            FUNCTIONS.put(op.name().toLowerCase(), op);
+        }
+        FUNCTIONS.put("ln", Op.LOG);
+        FUNCTIONS.put("if", Op.SELECT);
+    }
+
+    /**
+     * Deepest that parentheses, function calls, conditionals, powers
+     * and prefix operators may be nested.
+     */
+    static final int MAX_DEPTH = 64;
+
+    /**
+     * Most distinct nodes an expression may have.
+     */
+    static final int MAX_NODES = 100_000;
+
+    /**
+     * Source being parsed.
+     */
+    private final String source;
+
+    /**
+     * Values of named parameters.
+     */
+    private final Map<String, Double> parameters;
+
+    /**
+     * Creates the nodes of the expression.
+     */
+    private final ExpressionNode.Factory nodes = new ExpressionNode.Factory();
+
+    /**
+     * Index of the next character to read.
+     */
+    private int position;
+
+    /**
+     * Number of parentheses, function calls, conditionals, powers and
+     * prefix operators the parser is nested in.
+     */
+    private int depth;
+
+    private ExpressionParser(String source, Map<String, Double> parameters) {
+        this.source = source;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Parses an expression of x.
+     *
+     * @param source text of the expression
+     * @param parameters values of the names, other than x, pi and e,
+     * the expression may use
+     * @return root node of the expression
+     * @throws IllegalArgumentException if source is not a valid expression
+     */
+    static ExpressionNode parse(String source, Map<String, Double> parameters) {
+        ExpressionParser parser = new ExpressionParser(source, parameters);
+        ExpressionNode root = parser.conditional();
+        parser.skipSpaces();
+        if(parser.position < source.length()) {
+            throw parser.error("Unexpected '" + source.charAt(parser.position) + "'");
+        }
+        return root;
+    }
+
+    /**
+     * @param name a name
+     * @return whether name is taken by x, a constant or a function
+     */
+    static boolean isReserved(String name) {
+        return name.equals("x") || name.equals("pi") || name.equals("e") || FUNCTIONS.containsKey(name);
+    }
+
+    private ExpressionNode conditional() {
+        ExpressionNode condition = or();
+        if(!accept("?")) {
+            return condition;
+        }
+        ExpressionNode then = nested();
+        expect(":");
+        return nodes.apply(Op.SELECT, condition, then, nested());
+    }
+
+    private ExpressionNode or() {
+        ExpressionNode left = and();
+        while(accept("||")) {
+            left = nodes.apply(Op.OR, left, and());
+        }
+        return left;
+    }
+
+    private ExpressionNode and() {
+        ExpressionNode left = comparison();
+        while(accept("&&")) {
+            left = nodes.apply(Op.AND, left, comparison());
+        }
+        return left;
+    }
+
+    private ExpressionNode comparison() {
+        ExpressionNode left = sum();
+        /* Two-character operators are tried first so that "<=" is not read as "<" */
+        if(accept("<=")) {
+            return nodes.apply(Op.LE, left, sum());
+        } else if(accept(">=")) {
+            return nodes.apply(Op.GE, left, sum());
+        } else if(accept("==")) {
+            return nodes.apply(Op.EQ, left, sum());
+        } else if(accept("!=")) {
+            return nodes.apply(Op.NE, left, sum());
+        } else if(accept("<")) {
+            return nodes.apply(Op.LT, left, sum());
+        } else if(accept(">")) {
+            return nodes.apply(Op.GT, left, sum());
+        }
+        return left;
+    }
+
+    private ExpressionNode sum() {
+        ExpressionNode left = product();
+        while(true) {
+            if(accept("+")) {
+                left = nodes.apply(Op.ADD, left, product());
+            } else if(accept("-")) {
+                left = nodes.apply(Op.SUB, left, product());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private ExpressionNode product() {
+        ExpressionNode left = unary();
+        while(true) {
+            if(accept("*")) {
+                left = nodes.apply(Op.MUL, left, unary());
+            } else if(accept("/")) {
+                left = nodes.apply(Op.DIV, left, unary());
+            } else if(startsImplicitProduct()) {
+                left = nodes.apply(Op.MUL, left, unary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private ExpressionNode unary() {
+        if(accept("-")) {
+            return nodes.apply(Op.NEG, nestedUnary());
+        } else if(accept("+")) {
+            return nestedUnary();
+        } else if(peek() == '!' && !source.startsWith("!=", position)) {
+            position++;
+            return nodes.apply(Op.NOT, nestedUnary());
+        }
+        return power();
+    }
+
+    private ExpressionNode power() {
+        ExpressionNode base = primary();
+        if(accept("^")) {
+            /* The exponent may be negated, and is itself raised to any power after it */
+            return nodes.apply(Op.POW, base, nestedUnary());
+        }
+        return base;
+    }
+
+    private ExpressionNode primary() {
+        char next = peek();
+        if(nodes.size() > MAX_NODES) {
+            throw error("Expression has more than " + MAX_NODES + " nodes");
+        }
+        if(accept("(")) {
+            ExpressionNode inner = nested();
+            expect(")");
+            return inner;
+        } else if(isDigit(next) || next == '.') {
+            return nodes.constant(number());
+        } else if(Character.isLetter(next)) {
+            int start = position;
+            String name = name();
+            Op function = FUNCTIONS.get(name);
+            if(function != null) {
+                return call(function, name, start);
+            }
+            if(name.equals("x")) {
+                return nodes.x();
+            }
+            Double value = parameters.get(name);
+            if(value != null) {
+                return nodes.constant(value);
+            } else if(name.equals("pi")) {
+                return nodes.constant(Math.PI);
+            } else if(name.equals("e")) {
+                return nodes.constant(Math.E);
+            }
+            position = start;
+            throw error("Unknown name \"" + name + "\"");
+        } else if(next == 0) {
+            throw error("Unexpected end of expression");
+        }
+        throw error("Unexpected '" + next + "'");
+    }
+
+    /**
+     * Parses the parenthesized arguments of a function call.
+     *
+     * @param function operation the function performs
+     * @param name name the function was called by
+     * @param start position of the name
+     * @return node calling the function
+     */
+    private ExpressionNode call(Op function, String name, int start) {
+        expect("(");
+        List<ExpressionNode> arguments = new ArrayList<>();
+        if(!accept(")")) {
+            do {
+                arguments.add(nested());
+            } while(accept(","));
+            expect(")");
+        }
+        if(arguments.size() != function.arity) {
+            position = start;
+            throw error(name + "() takes " + function.arity
+                    + (function.arity == 1 ? " argument" : " arguments") + ", not " + arguments.size());
+        }
+        return nodes.apply(function, arguments.toArray(new ExpressionNode[0]));
+    }
+
+    /**
+     * Parses a conditional nested in parentheses, a function call or
+     * another conditional.
+     *
+     * @return root node of the conditional
+     * @throws IllegalArgumentException if nesting it would exceed MAX_DEPTH
+     */
+    private ExpressionNode nested() {
+        enter();
+        ExpressionNode node = conditional();
+        depth--;
+        return node;
+    }
+
+    /**
+     * Parses the operand of a prefix operator or the exponent of a power.
+     *
+     * @return root node of the operand
+     * @throws IllegalArgumentException if nesting it would exceed MAX_DEPTH
+     */
+    private ExpressionNode nestedUnary() {
+        enter();
+        ExpressionNode node = unary();
+        depth--;
+        return node;
+    }
+
+    /**
+     * Counts one more level of nesting.
+     *
+     * @throws IllegalArgumentException if it would exceed MAX_DEPTH
+     */
+    private void enter() {
+        if(++depth > MAX_DEPTH) {
+            throw error("Expression is nested more than " + MAX_DEPTH + " deep");
+        }
+    }
+
+    /**
+     * Reads a number, such as "4", "0.5", ".5" or "1.5e-3". An "e"
+     * not followed by an exponent is left to be read as the constant e.
+     *
+     * @return value of the number
+     */
+    private double number() {
+        int start = position;
+        while(isDigit(charAt(position)) || charAt(position) == '.') {
+            position++;
+        }
+        if(charAt(position) == 'e' || charAt(position) == 'E') {
+            int exponent = position + 1;
+            if(charAt(exponent) == '+' || charAt(exponent) == '-') {
+                exponent++;
+            }
+            if(isDigit(charAt(exponent))) {
+                position = exponent;
+                while(isDigit(charAt(position))) {
+                    position++;
+                }
+            }
+        }
+        String text = source.substring(start, position);
+        try {
+            return Double.parseDouble(text);
+        } catch(NumberFormatException e) {
+            position = start;
+            throw error("Invalid number \"" + text + "\"");
+        }
+    }
+
+    /**
+     * @return the letters and digits starting at position
+     */
+    private String name() {
+        int start = position;
+        while(Character.isLetterOrDigit(charAt(position)) || charAt(position) == '_') {
+            position++;
+        }
+        return source.substring(start, position);
+    }
+
+    /**
+     * @return whether the next token is multiplied by the previous one
+     * without an operator between them
+     */
+    private boolean startsImplicitProduct() {
+        char next = peek();
+        return next == '(' || Character.isLetter(next);
+    }
+
+    /**
+     * Skips spaces and returns the next character.
+     *
+     * @return next character, or 0 at the end of the source
+     */
+    private char peek() {
+        skipSpaces();
+        return charAt(position);
+    }
+
+    /**
+     * Reads a token if it comes next.
+     *
+     * @param token token to read
+     * @return whether the token was read
+     */
+    private boolean accept(String token) {
+        skipSpaces();
+        if(source.startsWith(token, position)) {
+            position += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads a token that must come next.
+     *
+     * @param token token to read
+     * @throws IllegalArgumentException if the token does not come next
+     */
+    private void expect(String token) {
+        if(!accept(token)) {
+            throw error(position < source.length() ? "Expected '" + token + "' but found '"
+                    + source.charAt(position) + "'" : "Expected '" + token + "' at end of expression");
+        }
+    }
+
+    private void skipSpaces() {
+        while(Character.isWhitespace(charAt(position))) {
+            position++;
+        }
+    }
+
+    /**
+     * @return character at index i, or 0 past the end of the source
+     */
+    private char charAt(int i) {
+        return i < source.length() ? source.charAt(i) : 0;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @param message description of the error
+     * @return exception reporting the error at the current position
+     */
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of \"" + source + "\"");
+    }
+}
@@ -0,0 +1,735 @@
+package com.plainsimple.grapher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Embedded HTTP server that draws graphs with a Grapher and returns
+ * them as PNG images. Every graph is drawn with the settings of one
+ * GraphSpec, with the size, window and what to plot taken from the
+ * request to /graph:
+ * <pre>
+ * GET  /graph?f=sin%28x%29%2Fx&amp;width=800&amp;height=600&amp;xmin=-20&amp;xmax=20&amp;ymin=-1&amp;ymax=1
+ * POST /graph?width=800&amp;height=600&amp;density=true   (body: lines of "x,y")
+ * </pre>
+ * Parameters are percent-encoded, except that a '+' stands for itself
+ * rather than for a space as in HTML forms, so that "f=x+1" plots
+ * x + 1 and "1e+3" is a number. It may also be written %2B, and a
+ * space %20.
+ * A GET plots the Expression f from the parameters from to to, which
+ * default to the edges of the window. A POST plots the points in the
+ * body, labeled if labels=true, or draws a density plot of them if
+ * density=true. The window is set only if all of xmin, xmax, ymin and
+ * ymax are given.
+ * <p>
+ * Images are cached by a SHA-256 digest of the request's method,
+ * parameters and body, up to a maximum number of bytes of PNG data,
+ * and the least recently used are evicted first. Requests for an
+ * image that is already being drawn wait for it instead of drawing it
+ * again, so a burst of identical requests draws it once. Responses
+ * carry an ETag, a digest of the PNG itself, and are answered with
+ * 304 Not Modified when the client already has them.
+ * <p>
+ * Requests are handled on a virtual thread each when the JDK provides
+ * them (Java 21 and later), and otherwise on a pool of daemon threads
+ * that grows as needed, unless an Executor is supplied. However many
+ * requests are handled at once, at most maxRenders images are drawn
+ * at once and at most maxRenders POST bodies are held in memory:
+ * further requests wait for one to finish, as BatchRenderer makes
+ * producers wait, so a burst of distinct requests cannot exhaust the
+ * heap. Images may have at most MAX_PIXELS pixels.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class GraphServer implements AutoCloseable {
+
+    /**
+     * Path graphs are requested from.
+     */
+    public static final String PATH = "/graph";
+
+    /**
+     * Largest width or height, in pixels, that may be requested.
+     */
+    private static final int MAX_DIMENSION = 8192;
+
+    /**
+     * Largest number of pixels, width times height, that may be
+     * requested: 64 MB of raster.
+     */
+    private static final int MAX_PIXELS = 16 << 20;
+
+    /**
+     * Largest request body, in bytes, that is accepted.
+     */
+    private static final int MAX_BODY = 64 << 20;
+
+    /**
+     * Size, in pixels, of images when it is not requested.
+     */
+    private static final int DEFAULT_WIDTH = 600, DEFAULT_HEIGHT = 400;
+
+    /**
+     * zlib compression level images are encoded at.
+     */
+    private static final int COMPRESSION_LEVEL = 6;
+
+    private static final Logger LOG = Logger.getLogger(GraphServer.class.getName());
+
+    private final HttpServer server;
+
+    /**
+     * Settings every graph is drawn with.
+     */
+    private final GraphSpec spec;
+
+    /**
+     * Encodes images on the thread handling the request, since
+     * requests are already handled in parallel.
+     */
+    private final PngEncoder encoder = new PngEncoder(COMPRESSION_LEVEL, null);
+
+    /**
+     * Executor created by the server, shut down when it is closed,
+     * or null if the executor was supplied by the caller.
+     */
+    private final ExecutorService ownExecutor;
+
+    /**
+     * Recently drawn images.
+     */
+    private final ImageCache cache;
+
+    /**
+     * Images being drawn, by the digest of the request drawing them.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Image>> drawing = new ConcurrentHashMap<>();
+
+    /**
+     * One permit per image that may be drawn at once.
+     */
+    private final Semaphore rendering;
+
+    /**
+     * One permit per POST body that may be held in memory at once.
+     * Taken before rendering permits and held until the response is
+     * sent, so requests waiting for an identical one never hold a
+     * permit it needs.
+     */
+    private final Semaphore receiving;
+
+    /**
+     * Number of images drawn, requests that waited for an image
+     * another request was drawing, and requests answered with 304.
+     */
+    private final LongAdder renders = new LongAdder(), coalesced = new LongAdder(),
+            notModified = new LongAdder();
+
+    /**
+     * Creates a server handling requests on virtual threads, or on
+     * its own pool of daemon threads if the JDK has none, and drawing
+     * as many images at once as there are processors. The server
+     * does not accept requests until it is started.
+     *
+     * @param address address to listen on, e.g. new InetSocketAddress("localhost", 8080),
+     * or port 0 for any free port
+     * @param spec settings to draw graphs with
+     * @param cacheBytes maximum number of bytes of PNG data to cache
+     * @throws IOException if the server cannot listen on the address
+     * @throws IllegalArgumentException if cacheBytes is negative
+     */
+    public GraphServer(InetSocketAddress address, GraphSpec spec, long cacheBytes) throws IOException {
+        this(address, spec, cacheBytes, createExecutor(), Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * Creates a server handling requests on the given executor, which
+     * is not shut down when the server is closed, and drawing as many
+     * images at once as there are processors. The server does not
+     * accept requests until it is started.
+     *
+     * @param address address to listen on, or port 0 for any free port
+     * @param spec settings to draw graphs with
+     * @param cacheBytes maximum number of bytes of PNG data to cache
+     * @param executor executor to handle requests on
+     * @throws IOException if the server cannot listen on the address
+     * @throws IllegalArgumentException if cacheBytes is negative
+     */
+    public GraphServer(InetSocketAddress address, GraphSpec spec, long cacheBytes, Executor executor)
+            throws IOException {
+        this(address, spec, cacheBytes, executor, Runtime.getRuntime().availableProcessors(), false);
+    }
+
+    /**
+     * Creates a server handling requests on the given executor, which
+     * is not shut down when the server is closed. The server does not
+     * accept requests until it is started.
+     *
+     * @param address address to listen on, or port 0 for any free port
+     * @param spec settings to draw graphs with
+     * @param cacheBytes maximum number of bytes of PNG data to cache
+     * @param executor executor to handle requests on
+     * @param maxRenders maximum number of images drawn, and of POST
+     * bodies held in memory, at once
+     * @throws IOException if the server cannot listen on the address
+     * @throws IllegalArgumentException if cacheBytes is negative or
+     * maxRenders is less than 1
+     */
+    public GraphServer(InetSocketAddress address, GraphSpec spec, long cacheBytes, Executor executor,
+                       int maxRenders) throws IOException {
+        this(address, spec, cacheBytes, executor, maxRenders, false);
+    }
+
+    private GraphServer(InetSocketAddress address, GraphSpec spec, long cacheBytes, Executor executor,
+                        int maxRenders, boolean owned) throws IOException {
+        if(cacheBytes < 0) {
+            throw new IllegalArgumentException("cacheBytes cannot be negative");
+        }
+        if(maxRenders < 1) {
+            throw new IllegalArgumentException("maxRenders must be at least 1");
+        }
+        this.spec = spec;
+        rendering = new Semaphore(maxRenders);
+        receiving = new Semaphore(maxRenders);
+        cache = new ImageCache(cacheBytes);
+        ownExecutor = owned ? (ExecutorService) executor : null;
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+    }
+
+    /**
+     * Starts accepting requests in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return address the server listens on, with the port chosen if
+     * it was created with port 0
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops accepting requests, and stops the server's own threads.
+     * Requests being handled are given up to a second to finish. An
+     * executor supplied by the caller is left running.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        if(ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    /**
+     * @return number of images drawn
+     */
+    public long getRenders() {
+        return renders.sum();
+    }
+
+    /**
+     * @return number of requests that waited for an identical request
+     * to draw their image instead of drawing it themselves
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return number of requests answered from the cache
+     */
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * @return number of requests answered with 304 Not Modified
+     */
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    /**
+     * Handles a request to PATH.
+     *
+     * @param exchange the request and its response
+     * @throws IOException if the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean received = false;
+        try {
+            String method = exchange.getRequestMethod();
+            if(!exchange.getRequestURI().getPath().equals(PATH)) {
+                sendError(exchange, 404, "Not found");
+                return;
+            }
+            if(!method.equals("GET") && !method.equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            /* Only a POST's body is drawn from, so only it is read and held */
+            byte[] body = new byte[0];
+            if(method.equals("POST")) {
+                receiving.acquire();
+                received = true;
+                body = exchange.getRequestBody().readNBytes(MAX_BODY + 1);
+            }
+            if(body.length > MAX_BODY) {
+                sendError(exchange, 413, "Request body is larger than " + MAX_BODY + " bytes");
+                return;
+            }
+            Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            String key = digest(method, parameters, body);
+
+            Image image;
+            String source;
+            try {
+                image = cache.get(key);
+                source = "hit";
+                if(image == null) {
+                    CompletableFuture<Image> drawn = new CompletableFuture<>();
+                    CompletableFuture<Image> other = drawing.putIfAbsent(key, drawn);
+                    if(other != null) {
+                        coalesced.increment();
+                        image = other.join();
+                        source = "coalesced";
+                    } else {
+                        image = draw(key, method, parameters, body, drawn);
+                        source = "miss";
+                    }
+                }
+            } catch(CompletionException e) {
+                throw e.getCause();
+            }
+
+            exchange.getResponseHeaders().set("ETag", image.etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.getResponseHeaders().set("X-Grapher-Cache", source);
+            if(matches(exchange.getRequestHeaders().get("If-None-Match"), image.etag)) {
+                notModified.increment();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, image.png.length);
+            try(OutputStream out = exchange.getResponseBody()) {
+                out.write(image.png);
+            }
+        } catch(IllegalArgumentException | IndexOutOfBoundsException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch(IOException e) {
+            throw e;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendError(exchange, 503, "Server is shutting down");
+        } catch(Throwable t) {
+            /* The details are logged rather than shown to the client */
+            LOG.log(Level.SEVERE, "Failed to handle " + exchange.getRequestMethod() + " "
+                    + exchange.getRequestURI(), t);
+            sendError(exchange, 500, "Internal server error");
+        } finally {
+            if(received) {
+                receiving.release();
+            }
+            exchange.close();
+        }
+    }
+
+    /**
+     * Checks whether the client already has an image: whether an
+     * If-None-Match header lists its ETag, weak or not, or is "*".
+     *
+     * @param headers values of the If-None-Match headers, or null if
+     * there are none
+     * @param etag ETag of the image
+     * @return whether the image matches
+     */
+    private static boolean matches(List<String> headers, String etag) {
+        if(headers == null) {
+            return false;
+        }
+        for(String header : headers) {
+            for(String tag : header.split(",")) {
+                tag = tag.trim();
+                if(tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if(tag.equals(etag) || tag.equals("*")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Draws the image for a request and caches it, unless it was
+     * cached since it was looked up, and completes drawn with it.
+     * Waits first while maxRenders other images are being drawn.
+     *
+     * @param key digest of the request
+     * @param method GET or POST
+     * @param parameters parameters of the request
+     * @param body body of the request
+     * @param drawn future other requests for the image wait on
+     * @return the image
+     * @throws IOException if the points in the body cannot be read
+     * @throws InterruptedException if interrupted while waiting to draw
+     */
+    private Image draw(String key, String method, Map<String, String> parameters, byte[] body,
+                       CompletableFuture<Image> drawn) throws IOException, InterruptedException {
+        try {
+            rendering.acquire();
+            Image image;
+            try {
+                /* An identical request may have finished while this one looked in the cache or waited */
+                image = cache.get(key);
+                if(image == null) {
+                    BufferedImage graph = render(method, parameters, body);
+                    ByteArrayOutputStream png = new ByteArrayOutputStream();
+                    encoder.write(graph, png);
+                    image = new Image(png.toByteArray());
+                    cache.put(key, image);
+                    renders.increment();
+                }
+            } finally {
+                rendering.release();
+            }
+            drawn.complete(image);
+            return image;
+        } catch(Throwable t) {
+            drawn.completeExceptionally(t);
+            throw t;
+        } finally {
+            drawing.remove(key, drawn);
+        }
+    }
+
+    /**
+     * Draws the graph a request asks for.
+     *
+     * @param method GET or POST
+     * @param parameters parameters of the request
+     * @param body body of the request
+     * @return the graph
+     * @throws IOException if the points in the body cannot be read
+     * @throws IllegalArgumentException if a parameter is invalid
+     * @throws IndexOutOfBoundsException if the window is invalid
+     */
+    private BufferedImage render(String method, Map<String, String> parameters, byte[] body)
+            throws IOException {
+        for(String name : parameters.keySet()) {
+            if(!name.matches("width|height|xmin|xmax|ymin|ymax|f|from|to|labels|density")) {
+                throw new IllegalArgumentException("Unknown parameter \"" + name + "\"");
+            }
+        }
+        int width = dimension(parameters, "width", DEFAULT_WIDTH);
+        int height = dimension(parameters, "height", DEFAULT_HEIGHT);
+        if((long) width * height > MAX_PIXELS) {
+            throw new IllegalArgumentException("Image may have at most " + MAX_PIXELS + " pixels");
+        }
+        Grapher grapher = new Grapher(spec);
+        if(parameters.containsKey("xmin") || parameters.containsKey("xmax")
+                || parameters.containsKey("ymin") || parameters.containsKey("ymax")) {
+            grapher.setWindow(number(parameters, "xmin"), number(parameters, "xmax"),
+                    number(parameters, "ymin"), number(parameters, "ymax"));
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        if(method.equals("GET")) {
+            if(!parameters.containsKey("f")) {
+                throw new IllegalArgumentException("Parameter \"f\" is required");
+            }
+            Expression function = Expression.compile(parameters.get("f"));
+            double from = parameters.containsKey("from") ? number(parameters, "from") : grapher.getXMin();
+            double to = parameters.containsKey("to") ? number(parameters, "to") : grapher.getXMax();
+            grapher.drawGraph(image, function, from, to);
+        } else {
+            CsvPointSource points = new CsvPointSource(new InputStreamReader(
+                    new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+            if(Boolean.parseBoolean(parameters.get("density"))) {
+                grapher.drawDensity(image, points);
+            } else {
+                grapher.drawGraph(image, points, Boolean.parseBoolean(parameters.get("labels")));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * @param parameters parameters of a request
+     * @param name name of a width or height
+     * @param defaultValue value if the parameter is not given
+     * @return the width or height
+     * @throws IllegalArgumentException if it is not from 1 to MAX_DIMENSION
+     */
+    private static int dimension(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        if(value == null) {
+            return defaultValue;
+        }
+        try {
+            int pixels = Integer.parseInt(value);
+            if(pixels >= 1 && pixels <= MAX_DIMENSION) {
+                return pixels;
+            }
+        } catch(NumberFormatException e) {
+            /* Reported below */
+        }
+        throw new IllegalArgumentException("Parameter \"" + name + "\" must be from 1 to " + MAX_DIMENSION);
+    }
+
+    /**
+     * @param parameters parameters of a request
+     * @param name name of a parameter
+     * @return the parameter's finite value
+     * @throws IllegalArgumentException if the parameter is missing or
+     * is not a finite number
+     */
+    private static double number(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if(value == null) {
+            throw new IllegalArgumentException("Parameter \"" + name + "\" is required");
+        }
+        try {
+            double number = Double.parseDouble(value);
+            if(Double.isFinite(number)) {
+                return number;
+            }
+        } catch(NumberFormatException e) {
+            /* Reported below */
+        }
+        throw new IllegalArgumentException("Parameter \"" + name + "\" must be a finite number");
+    }
+
+    /**
+     * Decodes a query string into its parameters, sorted by name so
+     * that the order they are given in does not change the digest.
+     *
+     * @param query raw query string, or null
+     * @return value of each parameter
+     * @throws IllegalArgumentException if a parameter is given twice
+     */
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new TreeMap<>();
+        if(query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for(String pair : query.split("&")) {
+            if(pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = decode(equals < 0 ? pair : pair.substring(0, equals));
+            String value = equals < 0 ? "" : decode(pair.substring(equals + 1));
+            if(parameters.put(name, value) != null) {
+                throw new IllegalArgumentException("Parameter \"" + name + "\" is given more than once");
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Decodes a percent-encoded name or value of a query, keeping each
+     * '+' as it is. URLDecoder would turn it into a space, which in an
+     * expression silently multiplies ("x+1" would become "x 1").
+     *
+     * @param text raw name or value
+     * @return the decoded text
+     * @throws IllegalArgumentException if a percent sign is not
+     * followed by two hexadecimal digits
+     */
+    private static String decode(String text) {
+        return URLDecoder.decode(text.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param method GET or POST
+     * @param parameters parameters of the request
+     * @param body body of the request
+     * @return hexadecimal SHA-256 digest of everything a request's image is drawn from
+     */
+    private static String digest(String method, Map<String, String> parameters, byte[] body) {
+        MessageDigest digest = sha256();
+        StringBuilder text = new StringBuilder(method).append('\n');
+        for(Map.Entry<String, String> parameter : parameters.entrySet()) {
+            /* Lengths are included so that no two sets of parameters run together the same way */
+            text.append(parameter.getKey().length()).append(':').append(parameter.getKey())
+                    .append(parameter.getValue().length()).append(':').append(parameter.getValue());
+        }
+        digest.update(text.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+        return hex(digest.digest(body));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException e) {
+            /* Every Java platform is required to support SHA-256 */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder text = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes) {
+            text.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Sends a plain-text error response.
+     *
+     * @param exchange the request and its response
+     * @param status HTTP status code
+     * @param message description of the error
+     * @throws IOException if the response cannot be sent
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] text = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, text.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(text);
+        }
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per request if
+     * the JDK supports them, or else a pool of daemon threads that
+     * grows as needed. Virtual threads are found by reflection so
+     * that Grapher still runs on Java 11.
+     *
+     * @return the executor
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = r -> {
+                Thread thread = new Thread(r, "grapher-http-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+
+    /**
+     * An encoded image and its ETag.
+     */
+    private static final class Image {
+
+        private final byte[] png;
+
+        /**
+         * Quoted digest of the PNG data.
+         */
+        private final String etag;
+
+        Image(byte[] png) {
+            this.png = png;
+            etag = '"' + hex(sha256().digest(png)) + '"';
+        }
+    }
+
+    /**
+     * Least recently used cache of encoded images holding at most
+     * maxBytes of PNG data, as GridCache does for grids.
+     */
+    private static final class ImageCache {
+
+        private final long maxBytes;
+        private long bytes;
+        private long hits;
+
+        /**
+         * Cached images in access order, least recently used first.
+         */
+        private final LinkedHashMap<String, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+
+        ImageCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized Image get(String key) {
+            Image image = images.get(key);
+            if(image != null) {
+                hits++;
+            }
+            return image;
+        }
+
+        synchronized void put(String key, Image image) {
+            if(image.png.length > maxBytes) {
+                return;
+            }
+            Image previous = images.put(key, image);
+            if(previous != null) {
+                bytes -= previous.png.length;
+            }
+            bytes += image.png.length;
+
+            Iterator<Image> eldest = images.values().iterator();
+            while(bytes > maxBytes) {
+                bytes -= eldest.next().png.length;
+                eldest.remove();
+            }
+        }
+
+        synchronized long getHits() {
+            return hits;
+        }
+    }
+}
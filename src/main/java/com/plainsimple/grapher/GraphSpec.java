@@ -0,0 +1,61 @@
+package com.plainsimple.grapher;
+
+import java.util.List;
+
+/**
+ * Immutable snapshot of the settings a Grapher draws with: window,
+ * grid, colors, strokes, fonts, and the caches and pools it uses.
+ * A GraphSpec is created from a configured Grapher with getSpec()
+ * and can be shared freely between threads, while each thread draws
+ * with its own Grapher created from it with new Grapher(spec). Two
+ * GraphSpecs are equal if they hold equal settings and share the
+ * same caches and pools. Only settings are captured, not an
+ * overridden calculate(), so functions drawn with a GraphSpec are
+ * given as a DoubleUnaryOperator or Expression.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class GraphSpec {
+
+    /**
+     * Private copy of the Grapher the settings were taken from.
+     * It is never drawn with or changed, only copied.
+     */
+    final Grapher settings;
+
+    /**
+     * Settings listed by Grapher.getSettings(), used for equality.
+     */
+    private final List<Object> key;
+
+    /**
+     * @param settings private copy of the Grapher holding the settings
+     */
+    GraphSpec(Grapher settings) {
+        this.settings = settings;
+        key = settings.getSettings();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof GraphSpec && key.equals(((GraphSpec) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+}
@@ -0,0 +1,2569 @@
+package com.plainsimple.grapher;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A java library for drawing highly-customizable, two-dimensional graphs.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class Grapher {
+
+    /**
+     * Maximum number of characters in a tick label: the length of
+     * the longest number Double.toString() returns, e.g.
+     * "-1.2345678901234567E-308".
+     */
+    private static final int MAX_LABEL_LENGTH = 24;
+
+    /**
+     * Number of points read from a PointSource at a time.
+     */
+    private static final int POINT_BATCH = 8192;
+
+    /**
+     * Number of points read from a PointSource at a time for a
+     * density plot, large enough to split between threads.
+     */
+    private static final int DENSITY_BATCH = 1 << 18;
+
+    /**
+     * Stroke lines are drawn with when none is set: the default
+     * stroke of a Graphics2D, one pixel wide.
+     */
+    private static final BasicStroke LINE_STROKE = new BasicStroke(1);
+
+    /**
+     * Fraction of a pixel by which a cached sample's x-value may
+     * differ from the x-value sampled and still be used as is, so
+     * that rounding error in the window's bounds does not stop a
+     * moved window's samples from being reused.
+     */
+    private static final double SAME_SAMPLE = 1e-6;
+
+    /**
+     * The height, in pixels, of the graph to be generated.
+     * Must be greater than zero.
+     */
+    private int height;
+
+    /**
+     * The width, in pixels, of the graph to be generated.
+     * Must be greater than zero.
+     */
+    private int width;
+
+    /**
+     * Value of y-coordinate at the bottom edge of the graph.
+     * Must be less than yMax. Considered a "window setting"
+     * because it defines the range of the graph.
+     */
+    private double yMin;
+
+    /**
+     * Value of y-coordinate at the top edge of the graph.
+     * Must be greater than yMin. Considered a "window setting"
+     * because it defines the range of the graph.
+     */
+    private double yMax;
+
+    /**
+     * Value of x-coordinate at the left edge of the graph.
+     * Must be less than xMax. Considered a "window setting"
+     * because it defines the range of the graph.
+     */
+    private double xMin;
+
+    /**
+     * Value of x-coordinate at the right edge of the graph.
+     * Must be greater than xMin. Considered a "window setting"
+     * because it defines the range of the graph.
+     */
+    private double xMax;
+
+    /**
+     * Whether or not to draw grid lines in the graph's background,
+     * behind the axis. Grid lines are drawn vertically and
+     * horizontally across the graph. Note that no lines are drawn
+     * along the edges of the graph.
+     */
+    private boolean drawGridlines;
+
+    /**
+     * Spacing of grid lines to be drawn if drawGridLines = true.
+     * For example, a gridLineSpacing of 1.0 will draw grid lines
+     * at one unit intervals. Because ticks are only drawn where
+     * there are grid lines, this setting also determines the spacing
+     * of ticks.
+     */
+    private double gridLineSpacing;
+
+    /**
+     * Color used to draw grid lines.
+     */
+    private Color gridLineColor;
+
+    /**
+     * BasicStroke used to draw grid lines and ticks.
+     */
+    private BasicStroke gridLineStroke;
+
+    /**
+     * Whether or not to draw ticks along the x- and y-axis.
+     * Ticks are small lines drawn along the axis using
+     * the same spacing and stroke as grid lines and the same
+     * color as the axis. Ticks extend to the right of the y-axis
+     * and up from the x-axis.
+     */
+    private boolean drawTicks;
+
+    /**
+     * Length, in pixels, of ticks to be drawn perpendicularly
+     * from the x- and y-axis.
+     */
+    private int tickLength;
+
+    /**
+     * Whether or not to label ticks with their graphical
+     * coordinates along the axis. Labels are printed to
+     * the left of the y-axis and below the x-axis.
+     * Spacing and precision of the labels is defined by
+     * how much space there is between grid lines.
+     */
+    private boolean labelTicks;
+
+    /**
+     * Background color of graph.
+     */
+    private Color backgroundColor;
+
+    /**
+     * Color used to draw axis and ticks
+     */
+    private Color axisColor;
+
+    /**
+     * BasicStroke style used for drawing the axis
+     */
+    private BasicStroke axisStroke;
+
+    /**
+     * Thickness, in pixels, of lines drawn on the graph. // todo: individual points thicker than sets
+     */
+    private int plotWidth;
+
+    /**
+     * Diameter (px) of points plotted individually on
+     * the graph.
+     */
+    private int pointWidth;
+
+    /**
+     * Shape of points plotted individually on the graph.
+     */
+    private PointMarker pointMarker;
+
+    /**
+     * Color used to draw points on the graph.
+     */
+    private Color plotColor;
+
+    /**
+     * Font used when labeling ticks and specified points.
+     */
+    private Font labelFont;
+
+    /**
+     * Whether or not to decimate large point sets before plotting
+     * them. When true, sets with more points than a few per pixel
+     * column are reduced to the first point to fall on each pixel
+     * (see MarkerDecimator), so the time to draw them depends on the
+     * number of pixels they cover rather than the number of points.
+     * Every marker is still drawn, but a marker drawn over itself is
+     * only drawn once, so its antialiased edges are lighter than if
+     * it were drawn for every point. Points are not decimated if they
+     * are to be labeled.
+     */
+    private boolean decimatePoints;
+
+    /**
+     * Cache of pre-rendered grids to copy from instead of drawing
+     * the grid again, or null to always draw the grid.
+     */
+    private GridCache gridCache;
+
+    /**
+     * Whether or not to draw directly into the pixels of TYPE_INT_RGB
+     * and TYPE_INT_ARGB images (see RasterCanvas) and of compact
+     * TYPE_BYTE_GRAY, TYPE_BYTE_INDEXED and 1-bit TYPE_BYTE_BINARY
+     * images (see ByteRasterCanvas) instead of through Graphics2D.
+     * Other types of images are always drawn through Graphics2D.
+     */
+    private boolean directRaster;
+
+    /**
+     * ForkJoinPool used to calculate values of functions passed to
+     * drawGraph() and drawGraphOnGrid() in parallel, or null to
+     * calculate them on the calling thread.
+     */
+    private ForkJoinPool samplingPool;
+
+    /**
+     * Whether or not functions are sampled adaptively (see
+     * AdaptiveSampler) instead of once per pixel. Adaptive sampling
+     * evaluates flat regions sparsely, refines steep regions and
+     * spikes, and leaves gaps at discontinuities.
+     */
+    private boolean adaptiveSampling;
+
+    /**
+     * Maximum number of times a function is evaluated when it is
+     * sampled adaptively.
+     */
+    private int samplingBudget;
+
+    /**
+     * Width and height, in pixels, of the tiles images are split into
+     * when they are drawn in parallel, or 0 to draw images in one piece.
+     */
+    private int tileSize;
+
+    /**
+     * ForkJoinPool tiles are drawn on, or null to draw them one
+     * after another on the calling thread.
+     */
+    private ForkJoinPool tilePool;
+
+    /**
+     * Cache of rendered glyphs that tick and point labels are drawn
+     * from when drawing directly into an image's pixels.
+     */
+    private LabelCache labelCache;
+
+    /**
+     * Colors density plots are drawn with, from the least dense
+     * pixels drawn to the densest.
+     */
+    private ColorMap densityColors;
+
+    /**
+     * Whether density plots color pixels by the logarithm of the
+     * number of points in them, rather than by the number itself.
+     */
+    private boolean densityLogScale;
+
+    /**
+     * Metrics the work and time spent drawing are recorded in, or
+     * null. Phases are reported to JDK Flight Recorder as well while
+     * RenderPhaseEvents are enabled in a recording.
+     */
+    private RenderMetrics metrics;
+
+    /**
+     * ForkJoinPool the series passed to drawSeries() are drawn on in
+     * parallel, each on its own layer, or null to draw them one after
+     * another directly on the image.
+     */
+    private ForkJoinPool layerPool;
+
+    /**
+     * Maximum distance, in pixels, that points left out of the lines
+     * of vector images may be from the lines kept.
+     */
+    private double vectorTolerance;
+
+    /**
+     * Cache functions' values are taken from and added to, or null
+     * to evaluate functions for every image.
+     */
+    private SampleCache sampleCache;
+
+    /**
+     * How far apart, in pixels across and up the graph, cached
+     * samples may be to have values interpolated between them rather
+     * than the function evaluated (see setSampleCache()).
+     */
+    private double sampleTolerance;
+
+    /**
+     * Offset, in pixels, of the image being drawn from the top-left
+     * corner of the window: the image shows the graph scrolled right
+     * by originX and down by originY pixels. Used to pan an image by
+     * whole pixels without changing how coordinates are rounded to
+     * pixels (see IncrementalRenderer).
+     */
+    private int originX, originY;
+
+    /**
+     * Bounds of the part of the window shown on the image being
+     * drawn: the window itself, moved by originX and originY.
+     */
+    private double viewXMin, viewXMax, viewYMin, viewYMax;
+
+    /**
+     * Height, in pixels, of the graph that following images are
+     * horizontal bands of (see BandRenderer), or 0 if each image is
+     * the whole graph.
+     */
+    private int pageHeight;
+
+    /**
+     * Height, in pixels, of the whole graph being drawn: pageHeight,
+     * or the height of the image if it is the whole graph.
+     */
+    private int graphHeight;
+
+    /**
+     * Bounds of y that functions are sampled for: those of the part
+     * of the window shown, or of the whole window if the image is a
+     * band of a taller graph, so that every band draws the same lines.
+     */
+    private double dataYMin, dataYMax;
+
+    /**
+     * Area of the image drawn by following calls, or null to draw
+     * the whole image.
+     */
+    private Rectangle region;
+
+    /**
+     * Converts coordinates to pixels on the image being drawn, using
+     * the window settings and origin it was drawn with.
+     */
+    private PixelTransform transform;
+
+    // todo: allow user to set BasicStrokes for components
+    /**
+     * Default constructor. Sets window range from -10 to 10
+     * on the x-axis and -10 to 10 on the y-axis. Sets
+     * drawGridLines and drawTicks to true. gridLineSpacing is
+     * set to 1, gridLineStroke and axisStroke to 1 pixel thick,
+     * plotWidth to 2, and pointWidth to 6. Default colors are
+     * white for background, black for plot and axis, and grey
+     * for grid lines and ticks. Labels are drawn in 12 point
+     * SansSerif.
+     */
+    public Grapher() {
+        yMin = -10;
+        yMax = 10;     // todo: remember precision of each value. Label with lowest precision
+        xMin = -10;
+        xMax = 10;
+
+        drawGridlines = true;
+        gridLineSpacing = 1;
+        gridLineStroke = new BasicStroke(1);
+        gridLineColor = new Color(192, 192, 192);
+
+        drawTicks = true;
+        tickLength = 4;
+        labelTicks = true;
+
+        backgroundColor = Color.WHITE;
+
+        axisColor = Color.BLACK;
+        axisStroke = new BasicStroke(1);
+
+        plotWidth = 2;
+        pointWidth = 6;
+        pointMarker = PointMarker.CIRCLE;
+        plotColor = Color.BLACK;
+        labelFont = new Font("SansSerif", Font.PLAIN, 12);
+        labelCache = new LabelCache(1 << 20);
+        densityColors = ColorMap.VIRIDIS;
+        densityLogScale = true;
+
+        samplingPool = ForkJoinPool.commonPool();
+        samplingBudget = 100000;
+        vectorTolerance = 0.5;
+    }
+
+    /**
+     * Creates a Grapher with the settings captured in a GraphSpec.
+     * Each thread rendering graphs concurrently should use its own
+     * Grapher, which can be created cheaply from a shared GraphSpec
+     * (see BatchRenderer).
+     *
+     * @param spec settings to draw graphs with
+     */
+    public Grapher(GraphSpec spec) {
+        this(spec.settings);
+    }
+
+    /**
+     * Creates a Grapher with the same settings as another.
+     *
+     * @param other Grapher to copy settings from
+     */
+    private Grapher(Grapher other) {
+        yMin = other.yMin;
+        yMax = other.yMax;
+        xMin = other.xMin;
+        xMax = other.xMax;
+        drawGridlines = other.drawGridlines;
+        gridLineSpacing = other.gridLineSpacing;
+        gridLineColor = other.gridLineColor;
+        gridLineStroke = other.gridLineStroke;
+        drawTicks = other.drawTicks;
+        tickLength = other.tickLength;
+        labelTicks = other.labelTicks;
+        backgroundColor = other.backgroundColor;
+        axisColor = other.axisColor;
+        axisStroke = other.axisStroke;
+        plotWidth = other.plotWidth;
+        pointWidth = other.pointWidth;
+        pointMarker = other.pointMarker;
+        plotColor = other.plotColor;
+        labelFont = other.labelFont;
+        decimatePoints = other.decimatePoints;
+        gridCache = other.gridCache;
+        directRaster = other.directRaster;
+        samplingPool = other.samplingPool;
+        adaptiveSampling = other.adaptiveSampling;
+        samplingBudget = other.samplingBudget;
+        tileSize = other.tileSize;
+        tilePool = other.tilePool;
+        labelCache = other.labelCache;
+        densityColors = other.densityColors;
+        densityLogScale = other.densityLogScale;
+        metrics = other.metrics;
+        layerPool = other.layerPool;
+        vectorTolerance = other.vectorTolerance;
+        sampleCache = other.sampleCache;
+        sampleTolerance = other.sampleTolerance;
+    }
+
+    /**
+     * Captures the current settings in an immutable GraphSpec that
+     * can be shared between threads. Changing this Grapher's settings
+     * afterwards does not affect the GraphSpec.
+     * <p>
+     * A GraphSpec holds settings only: the Graphers created from it
+     * are plain Graphers, which would plot the default calculate()
+     * instead of a subclass's. A subclass overriding calculate()
+     * therefore cannot create one, and should plot its function as a
+     * DoubleUnaryOperator or Expression instead.
+     *
+     * @return snapshot of the current settings
+     * @throws IllegalStateException if this Grapher's class overrides calculate()
+     */
+    public GraphSpec getSpec() {
+        if(overridesCalculate()) {
+            throw new IllegalStateException(getClass().getName() + " overrides calculate(), which a "
+                    + "GraphSpec cannot capture; plot a DoubleUnaryOperator or Expression instead");
+        }
+        return new GraphSpec(new Grapher(this));
+    }
+
+    /**
+     * @return whether this Grapher's class overrides calculate()
+     */
+    private boolean overridesCalculate() {
+        try {
+            return getClass().getMethod("calculate", double.class).getDeclaringClass() != Grapher.class;
+        } catch(NoSuchMethodException e) {
+            /* calculate() is public, so every subclass has it */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Lists every setting, other than the size of the image being
+     * drawn, so that GraphSpecs can be compared.
+     *
+     * @return settings in a fixed order
+     */
+    List<Object> getSettings() {
+        return Arrays.asList(yMin, yMax, xMin, xMax, drawGridlines, gridLineSpacing, gridLineColor,
+                gridLineStroke, drawTicks, tickLength, labelTicks, backgroundColor, axisColor,
+                axisStroke, plotWidth, pointWidth, pointMarker, plotColor, labelFont, decimatePoints,
+                gridCache, directRaster, samplingPool, adaptiveSampling, samplingBudget, tileSize,
+                tilePool, labelCache, densityColors, densityLogScale, metrics, layerPool,
+                vectorTolerance, sampleCache, sampleTolerance);
+    }
+
+    /**
+     * @return cache function samples are kept in, or null
+     */
+    SampleCache getSampleCache() {
+        return sampleCache;
+    }
+
+    /**
+     * Sets the offset of following images from the top-left corner
+     * of the window.
+     *
+     * @param originX pixels to scroll the graph right by
+     * @param originY pixels to scroll the graph down by
+     */
+    void setOrigin(int originX, int originY) {
+        this.originX = originX;
+        this.originY = originY;
+    }
+
+    /**
+     * Makes following images horizontal bands of a taller graph,
+     * scaled to its height and placed on it by the origin (see
+     * setOrigin()).
+     *
+     * @param pageHeight height, in pixels, of the whole graph, or 0
+     * for each image to be the whole graph
+     */
+    void setPageHeight(int pageHeight) {
+        this.pageHeight = pageHeight;
+    }
+
+    /**
+     * Restricts following calls to drawing one area of the image,
+     * leaving the rest of it untouched.
+     *
+     * @param region area of the image to draw, or null to draw all of it
+     */
+    void setRegion(Rectangle region) {
+        this.region = region;
+    }
+
+    /**
+     * Sets window of graph using specified values.
+     * Values will be ignored if they are invalid.
+     *
+     * @param xMin minimum x-value to display
+     * @param xMax maximum x-value to display
+     * @param yMin minimum y-value to display
+     * @param yMax maximum y-value to display
+     * @throws IndexOutOfBoundsException if xMin >= xMax
+     * or yMin >= yMax
+     */
+    public void setWindow(double xMin, double xMax, double yMin,
+                          double yMax) throws IndexOutOfBoundsException {
+        if(xMin >= xMax) {
+            throw new IndexOutOfBoundsException("Error: Invalid Window Range. " +
+                    "xMin cannot be greater than or equal to xMax");
+        }
+        if(yMin >= yMax) {
+            throw new IndexOutOfBoundsException("Error: Invalid Window Range. " +
+                    "yMin cannot be greater than or equal to yMax");
+        }
+        this.xMin = xMin;
+        this.xMax = xMax;
+        this.yMin = yMin;
+        this.yMax = yMax;
+    }
+
+    /**
+     * @return minimum x-value displayed
+     */
+    double getXMin() {
+        return xMin;
+    }
+
+    /**
+     * @return maximum x-value displayed
+     */
+    double getXMax() {
+        return xMax;
+    }
+
+    /**
+     * Setter function for colors used to draw graph.
+     *
+     * @param backgroundColor base color of graph
+     * @param gridLineColor color used to draw grid lines
+     * @param axisColor color used to draw axis and ticks
+     * @param plotColor color used to draw plotted points
+     */
+    public void setColors(Color backgroundColor, Color gridLineColor,
+                           Color axisColor, Color plotColor) {
+        this.backgroundColor = backgroundColor;
+        this.gridLineColor = gridLineColor;
+        this.axisColor = axisColor;
+        this.plotColor = plotColor;
+    }
+
+    /**
+     * Setter function for strokes used to draw graph.
+     * For a simpler method, see setStrokes(int, int).
+     *
+     * @param gridLineStroke BasicStroke used to draw grid lines
+     * @param axisStroke BasicStroke used to draw axis
+     */
+    public void setStrokes(BasicStroke gridLineStroke, BasicStroke axisStroke) {
+        this.gridLineStroke = gridLineStroke;
+        this.axisStroke = axisStroke;
+    }
+
+    /**
+     * Setter function for strokes used to draw graph.
+     *
+     * @param gridLineThickness width (px) of grid lines to be drawn
+     * @param axisThickness width (px) of axis to be drawn
+     */
+    public void setStrokes(int gridLineThickness, int axisThickness) {
+        this.gridLineStroke = new BasicStroke(gridLineThickness);
+        this.axisStroke = new BasicStroke(axisThickness);
+    }
+
+    /**
+     * Setter function for general graph settings.
+     *
+     * @param drawGridlines whether or not to draw grid lines on the graph
+     * @param drawTicks whether or not to draw ticks along the axis
+     * @param labelTicks whether or not to numerically label ticks
+     */
+    public void setSettings(boolean drawGridlines, boolean drawTicks,
+                             boolean labelTicks) {
+        this.drawGridlines = drawGridlines;
+        this.drawTicks = drawTicks;
+        this.labelTicks = labelTicks;
+    }
+
+    /**
+     * Sets width, in pixels, of points plotted in
+     * using a function.
+     *
+     * @param plotWidth diameter of points to be plotted using function
+     */
+    public void setPlotWidth(int plotWidth) {
+        this.plotWidth = plotWidth;
+    }
+
+    /**
+     * Sets width, in pixels, of individually plotted
+     * points.
+     *
+     * @param pointWidth diameter of points to be plotted individually
+     */
+    public void setPointWidth(int pointWidth) {
+        this.pointWidth = pointWidth;
+    }
+
+    /**
+     * Sets the shape of individually plotted points. Each shape is
+     * rendered once per pointWidth and stamped at every point, so
+     * the choice does not affect how long plotting takes.
+     *
+     * @param pointMarker shape to draw points as (default CIRCLE)
+     * @throws IllegalArgumentException if pointMarker is null
+     */
+    public void setPointMarker(PointMarker pointMarker) {
+        if(pointMarker == null) {
+            throw new IllegalArgumentException("pointMarker cannot be null");
+        }
+        this.pointMarker = pointMarker;
+    }
+
+    /**
+     * Setter function for the font used to label ticks and points.
+     *
+     * @param labelFont Font used to draw labels
+     */
+    public void setLabelFont(Font labelFont) {
+        this.labelFont = labelFont;
+    }
+
+    /**
+     * Sets the cache of glyphs labels are drawn from when drawing
+     * directly into an image's pixels (see setDirectRaster()). Glyphs
+     * are rendered into the cache the first time they are drawn, so
+     * sharing a cache between Graphers that use the same fonts lets
+     * them reuse each other's glyphs.
+     *
+     * @param labelCache cache to draw labels from
+     * @throws IllegalArgumentException if labelCache is null
+     */
+    public void setLabelCache(LabelCache labelCache) {
+        if(labelCache == null) {
+            throw new IllegalArgumentException("labelCache cannot be null");
+        }
+        this.labelCache = labelCache;
+    }
+
+    /**
+     * Sets whether or not large point sets are decimated to one
+     * point per pixel before they are plotted. Markers drawn over
+     * each other are then drawn once, with lighter antialiased edges.
+     *
+     * @param decimatePoints whether or not to decimate large point sets
+     */
+    public void setDecimation(boolean decimatePoints) {
+        this.decimatePoints = decimatePoints;
+    }
+
+    /**
+     * Sets the cache used to store and reuse rendered grids. A cache
+     * may be shared by several Grapher instances. Passing null disables
+     * caching so the grid is drawn on every call to drawGrid().
+     *
+     * @param gridCache cache of rendered grids, or null
+     */
+    public void setGridCache(GridCache gridCache) {
+        this.gridCache = gridCache;
+    }
+
+    /**
+     * Sets whether or not to draw directly into the pixel data of
+     * TYPE_INT_RGB and TYPE_INT_ARGB images and of TYPE_BYTE_GRAY,
+     * TYPE_BYTE_INDEXED and 1-bit TYPE_BYTE_BINARY images. Direct
+     * drawing avoids the overhead of Graphics2D and does not allocate
+     * per point or line, but lines may differ slightly from those
+     * drawn by Graphics2D. Other types of images are always drawn
+     * through Graphics2D.
+     *
+     * @param directRaster whether or not to draw directly into supported images
+     */
+    public void setDirectRaster(boolean directRaster) {
+        this.directRaster = directRaster;
+    }
+
+    /**
+     * Creates the ColorModel of compact images for graphs drawn with
+     * this Grapher's colors, to be drawn on directly (see
+     * setDirectRaster()) and written by PngEncoder with a byte or a
+     * bit per pixel instead of three or four. Images can be created
+     * from it with a RasterPool, or with
+     * model.createCompatibleWritableRaster(). TYPE_BYTE_GRAY gives the
+     * standard 8-bit gray model. TYPE_BYTE_INDEXED gives an 8-bit
+     * palette of the background, grid line, axis and plot colors and
+     * the given series colors, with its remaining entries spent on
+     * even steps from the background to each of the other colors so
+     * that antialiased edges keep their shading. TYPE_BYTE_BINARY gives
+     * a 1-bit palette of the background and whichever of the other
+     * colors differs from it most; every color is drawn as the nearer
+     * of the two, and nothing is antialiased. Palettes are opaque.
+     *
+     * @param imageType BufferedImage.TYPE_BYTE_GRAY, TYPE_BYTE_INDEXED
+     * or TYPE_BYTE_BINARY
+     * @param seriesColors colors of Series to be drawn other than plotColor
+     * @return color model of images of the given type
+     * @throws IllegalArgumentException if imageType is not one of the
+     * compact types, or the graph has more than 256 colors
+     */
+    public ColorModel createColorModel(int imageType, Color... seriesColors) {
+        if(imageType == BufferedImage.TYPE_BYTE_GRAY) {
+            return new BufferedImage(1, 1, imageType).getColorModel();
+        } else if(imageType != BufferedImage.TYPE_BYTE_INDEXED && imageType != BufferedImage.TYPE_BYTE_BINARY) {
+            throw new IllegalArgumentException("imageType must be TYPE_BYTE_GRAY, TYPE_BYTE_INDEXED or TYPE_BYTE_BINARY");
+        }
+        /* Distinct opaque colors of the graph, the background first */
+        Set<Integer> distinct = new LinkedHashSet<Integer>();
+        for(Color color : new Color[] {backgroundColor, gridLineColor, axisColor, plotColor}) {
+            distinct.add(color.getRGB() | 0xFF000000);
+        }
+        for(Color color : seriesColors) {
+            distinct.add(color.getRGB() | 0xFF000000);
+        }
+        int[] colors = new int[distinct.size()];
+        int count = 0;
+        for(int rgb : distinct) {
+            colors[count++] = rgb;
+        }
+        int background = colors[0];
+
+        if(imageType == BufferedImage.TYPE_BYTE_BINARY) {
+            int ink = background, ink_distance = -1;
+            for(int rgb : colors) {
+                int dr = ((rgb >> 16) & 0xFF) - ((background >> 16) & 0xFF);
+                int dg = ((rgb >> 8) & 0xFF) - ((background >> 8) & 0xFF);
+                int db = (rgb & 0xFF) - (background & 0xFF);
+                int distance = dr * dr + dg * dg + db * db;
+                if(distance > ink_distance) {
+                    ink = rgb;
+                    ink_distance = distance;
+                }
+            }
+            return new IndexColorModel(1, 2, new int[] {background, ink}, 0, false, -1, DataBuffer.TYPE_BYTE);
+        }
+        if(colors.length > 256) {
+            throw new IllegalArgumentException("a palette cannot hold more than 256 colors");
+        }
+        int[] palette = Arrays.copyOf(colors, 256);
+        int steps = colors.length == 1 ? 0 : (256 - colors.length) / (colors.length - 1);
+        for(int c = 1; c < colors.length; c++) {
+            for(int step = 1; step <= steps; step++) {
+                double weight = (double) step / (steps + 1);
+                int r = blendComponent(colors[c] >> 16, background >> 16, weight);
+                int g = blendComponent(colors[c] >> 8, background >> 8, weight);
+                int b = blendComponent(colors[c], background, weight);
+                palette[count++] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return new IndexColorModel(8, count, palette, 0, false, -1, DataBuffer.TYPE_BYTE);
+    }
+
+    /**
+     * Blends one 8-bit color component over another.
+     *
+     * @param source component drawn, in its lowest 8 bits
+     * @param destination component drawn over, in its lowest 8 bits
+     * @param weight weight of source, from 0 to 1
+     * @return blended component
+     */
+    private static int blendComponent(int source, int destination, double weight) {
+        return (int) Math.round((source & 0xFF) * weight + (destination & 0xFF) * (1 - weight));
+    }
+
+    /**
+     * Sets how density plots are colored (see drawDensity()). Pixels
+     * are colored in proportion to the number of points in them,
+     * relative to the densest pixel, or, with logScale, in proportion
+     * to the logarithm of one more than that number, which keeps
+     * sparse pixels visible next to very dense ones. Defaults to
+     * ColorMap.VIRIDIS on a log scale.
+     *
+     * @param densityColors colors to draw pixels with, from the least
+     * dense pixels drawn to the densest
+     * @param logScale whether or not to color pixels by the logarithm
+     * of their number of points
+     * @throws IllegalArgumentException if densityColors is null
+     */
+    public void setDensityColors(ColorMap densityColors, boolean logScale) {
+        if(densityColors == null) {
+            throw new IllegalArgumentException("densityColors cannot be null");
+        }
+        this.densityColors = densityColors;
+        densityLogScale = logScale;
+    }
+
+    /**
+     * Sets the ForkJoinPool used to calculate values of functions
+     * passed as a DoubleUnaryOperator or BatchFunction in parallel,
+     * and to count points for density plots.
+     * Defaults to the common pool. Passing null calculates values
+     * on the thread drawing the graph.
+     *
+     * @param samplingPool pool to calculate function values on, or null
+     */
+    public void setSamplingPool(ForkJoinPool samplingPool) {
+        this.samplingPool = samplingPool;
+    }
+
+    /**
+     * Sets whether or not functions are sampled adaptively, and the
+     * maximum number of times a function may be evaluated when they
+     * are. Adaptive sampling starts from a coarse grid and refines
+     * wherever the plotted line would be off by more than half a
+     * pixel, so smooth functions need far fewer evaluations while
+     * spikes and asymptotes are followed closely. Discontinuities and
+     * NaN or infinite values are left as gaps instead of being joined.
+     *
+     * @param adaptiveSampling whether or not to sample functions adaptively
+     * @param samplingBudget maximum number of evaluations per function plotted
+     * @throws IndexOutOfBoundsException if samplingBudget is less than 2
+     */
+    public void setAdaptiveSampling(boolean adaptiveSampling, int samplingBudget)
+            throws IndexOutOfBoundsException {
+        if(samplingBudget < 2) {
+            throw new IndexOutOfBoundsException("samplingBudget must be at least 2");
+        }
+        this.adaptiveSampling = adaptiveSampling;
+        this.samplingBudget = samplingBudget;
+    }
+
+    /**
+     * Sets whether images are split into tiles that are drawn in
+     * parallel. Each tile draws the background, grid lines, axis,
+     * labels and plotted data clipped to its own area, so the
+     * finished image is identical to one drawn in a single piece.
+     * Passing a tileSize of 0 disables tiling.
+     *
+     * @param tileSize width and height, in pixels, of tiles, or 0
+     * @param tilePool ForkJoinPool to draw tiles on, or null to draw
+     * them on the calling thread
+     * @throws IndexOutOfBoundsException if tileSize is negative
+     */
+    public void setTiling(int tileSize, ForkJoinPool tilePool) throws IndexOutOfBoundsException {
+        if(tileSize < 0) {
+            throw new IndexOutOfBoundsException("tileSize cannot be negative");
+        }
+        this.tileSize = tileSize;
+        this.tilePool = tilePool;
+    }
+
+    /**
+     * Sets the metrics that following graphs record their work and
+     * the time spent in each RenderPhase in. A RenderMetrics may be
+     * shared by several Graphers, including those drawing on other
+     * threads. Passing null stops recording metrics; phases are
+     * still reported to JDK Flight Recorder while RenderPhaseEvents
+     * are enabled in a recording.
+     *
+     * @param metrics metrics to record drawing in, or null
+     */
+    public void setMetrics(RenderMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets whether the series passed to drawSeries() are drawn in
+     * parallel. Each series is then drawn on a transparent layer the
+     * size of the image, and the layers are composited onto the image
+     * in order once all are drawn. This takes a layer's worth of
+     * memory per series, and antialiased edges may differ by a few
+     * shades from drawing the series one after another, which is the
+     * default. Layers only pay off when several cores are free.
+     *
+     * @param layerPool ForkJoinPool to draw series on, or null to
+     * draw them one after another on the calling thread
+     */
+    public void setSeriesLayers(ForkJoinPool layerPool) {
+        this.layerPool = layerPool;
+    }
+
+    /**
+     * Sets a cache that the values functions are sampled at are kept
+     * in, so that drawing a function again, at another size or after
+     * moving the window, only evaluates it at x-values it has not been
+     * sampled at. An x-value between two cached samples no more than
+     * tolerance pixels apart across, and whose values are no more than
+     * tolerance pixels apart up the graph, is given a value
+     * interpolated between them instead of being evaluated. Functions
+     * are cached by the object passed to drawGraphOnGrid() or
+     * Series.function(), or by this Grapher for calculate(). A
+     * SampleCache may be shared by several Graphers, including those
+     * drawing on other threads.
+     *
+     * @param sampleCache cache to use, or null to evaluate functions
+     * at every x-value
+     * @param tolerance how far apart, in pixels, samples may be to be
+     * interpolated between, or 0 to only reuse exact x-values
+     * @throws IndexOutOfBoundsException if tolerance is negative
+     */
+    public void setSampleCache(SampleCache sampleCache, double tolerance) throws IndexOutOfBoundsException {
+        if(!(tolerance >= 0)) {
+            throw new IndexOutOfBoundsException("tolerance cannot be negative");
+        }
+        this.sampleCache = sampleCache;
+        this.sampleTolerance = tolerance;
+    }
+
+    /**
+     * Sets how far, in pixels, points left out of the lines of
+     * vector images (see writeSvg()) may be from the lines kept.
+     * Smaller tolerances keep more points, which shows when the image
+     * is enlarged; 0 only leaves out points lying exactly on the line.
+     * The default is half a pixel.
+     *
+     * @param vectorTolerance maximum distance, in pixels, of points left out
+     * @throws IndexOutOfBoundsException if vectorTolerance is negative
+     */
+    public void setVectorTolerance(double vectorTolerance) throws IndexOutOfBoundsException {
+        if(!(vectorTolerance >= 0)) {
+            throw new IndexOutOfBoundsException("vectorTolerance cannot be negative");
+        }
+        this.vectorTolerance = vectorTolerance;
+    }
+
+    // todo: reset() method to reset to default values
+
+    /**
+     * Draws the grid, or background, for the function/points
+     * to be plotted on the graph. Fills in the background color
+     * of the graph, draws grid lines (if drawGridLines = true),
+     * draws axis, and draws ticks (if drawTicks = true). If a
+     * GridCache is set, a grid previously drawn with the same settings
+     * is copied from the cache instead. Only whole, unscrolled grids
+     * are cached: part of a grid (see setOrigin() and setRegion()) is
+     * always drawn, as it is seldom drawn again and drawing the whole
+     * grid to copy out a strip would cost more than it saves.
+     *
+     * @param blankImage BufferedImage for grid to be drawn on
+     */
+    public void drawGrid(BufferedImage blankImage) {
+        setHeightWidth(blankImage);
+
+        if(validateSettings()) {
+            if(gridCache != null && originX == 0 && originY == 0 && region == null && pageHeight == 0) {
+                drawCachedGrid(blankImage);
+            } else {
+                drawTiles(blankImage, (graph, tile) -> drawGrid(graph));
+            }
+        }
+    }
+
+    /**
+     * Draws background, grid lines (if drawGridLines = true) and
+     * axis on the Canvas.
+     *
+     * @param canvas Canvas for grid to be drawn on
+     */
+    private void drawGrid(Canvas canvas) {
+        RenderProbe probe = RenderProbe.start(RenderPhase.BACKGROUND, metrics);
+        drawBackground(canvas);
+        end(probe);
+        if (drawGridlines) {
+            probe = RenderProbe.start(RenderPhase.GRID_LINES, metrics);
+            drawGridLines(canvas);
+            end(probe);
+        }
+        probe = RenderProbe.start(RenderPhase.AXIS, metrics);
+        drawAxis(canvas, probe);
+        end(probe);
+    }
+
+    /**
+     * Ends a phase being measured, if it is.
+     *
+     * @param probe probe measuring the phase, or null
+     */
+    private static void end(RenderProbe probe) {
+        if(probe != null) {
+            probe.end();
+        }
+    }
+
+    /**
+     * Creates the Canvas used to draw on a BufferedImage: a
+     * RasterCanvas or ByteRasterCanvas if directRaster = true and
+     * the image supports one, otherwise a GraphicsCanvas.
+     *
+     * @param image BufferedImage to be drawn on
+     * @return Canvas drawing on the image
+     */
+    private Canvas createCanvas(BufferedImage image) {
+        if(directRaster && RasterCanvas.supports(image)) {
+            return new RasterCanvas(image, labelCache);
+        } else if(directRaster && ByteRasterCanvas.supports(image)) {
+            return new ByteRasterCanvas(image, labelCache);
+        }
+        return new GraphicsCanvas(image.createGraphics());
+    }
+
+    /**
+     * Draws on the whole image at once, or, if tileSize is greater
+     * than zero, on each tile of the image in parallel with drawing
+     * clipped to the tile. Images with less than a byte per pixel are
+     * always drawn at once, as tiles could share a byte. If a region
+     * is set, drawing is clipped to it as well.
+     *
+     * @param image BufferedImage to be drawn on
+     * @param painter draws on a Canvas, given the area it is clipped
+     * to or null if the whole image is being drawn
+     */
+    private void drawTiles(BufferedImage image, TilePainter painter) {
+        if(tileSize == 0 || image.getColorModel().getPixelSize() < 8) {
+            Canvas graph = createCanvas(image);
+            if(region != null) {
+                graph.clipRect(region.x, region.y, region.width, region.height);
+            }
+            painter.paint(graph, region);
+            graph.dispose();
+        } else {
+            TileTask.run(width, height, tileSize, tilePool, tile -> {
+                Rectangle area = region == null ? tile : tile.intersection(region);
+                if(!area.isEmpty()) {
+                    Canvas graph = createCanvas(image);
+                    graph.clipRect(area.x, area.y, area.width, area.height);
+                    painter.paint(graph, area);
+                    graph.dispose();
+                }
+            });
+        }
+    }
+
+    /**
+     * Draws part of a graph on a Canvas clipped to a tile.
+     */
+    private interface TilePainter {
+
+        /**
+         * @param graph Canvas to draw on
+         * @param tile area graph is clipped to, or null if it is not clipped
+         */
+        void paint(Canvas graph, Rectangle tile);
+    }
+
+    /**
+     * Copies the grid for the current settings from gridCache into
+     * the BufferedImage, drawing and caching it first if it is not
+     * already cached. The cached grid uses the same ColorModel as
+     * the image so it can be copied without conversion.
+     *
+     * @param blankImage BufferedImage for grid to be copied to
+     */
+    private void drawCachedGrid(BufferedImage blankImage) {
+        GridKey key = new GridKey(blankImage.getColorModel(), width, height, xMin, xMax,
+                yMin, yMax, drawGridlines, gridLineSpacing, gridLineColor, gridLineStroke,
+                drawTicks, tickLength, labelTicks, backgroundColor, axisColor, axisStroke, labelFont,
+                directRaster && (RasterCanvas.supports(blankImage) || ByteRasterCanvas.supports(blankImage)));
+        BufferedImage grid = gridCache.get(key);
+        if(grid == null) {
+            ColorModel model = blankImage.getColorModel();
+            grid = new BufferedImage(model, model.createCompatibleWritableRaster(width, height),
+                    model.isAlphaPremultiplied(), null);
+            drawTiles(grid, (graph, tile) -> drawGrid(graph));
+            gridCache.put(key, grid);
+        }
+        RenderProbe probe = RenderProbe.start(RenderPhase.GRID_COPY, metrics);
+        blankImage.getRaster().setDataElements(0, 0, grid.getRaster());
+        end(probe);
+    }
+
+    /**
+     * Draws a solid background on the Canvas of
+     * color backgroundColor.
+     *
+     * @param graph Canvas with background filled in
+     */
+    private void drawBackground(Canvas graph) {
+        graph.setColor(backgroundColor);
+        graph.fillRect(0, 0, width, height);
+    }
+
+    /**
+     * Draws horizontal and vertical grid lines on the Canvas
+     * using gridLineStroke and gridLineColor, at intervals
+     * specified by gridLineSpacing.
+     *
+     * @param graph Canvas for grid lines to be drawn on
+     */
+    private void drawGridLines(Canvas graph) {
+        graph.setStroke(gridLineStroke);
+        graph.setColor(gridLineColor);
+        /* Lines just outside the window may be thick enough to show on its edge */
+        double reach = strokeReach(gridLineStroke);
+        double reach_x = xUnits(reach), reach_y = yUnits(reach);
+
+        /* Draw horizontal grid lines at each multiple of gridLineSpacing, moving down */
+        for(long k = lastGridLine(viewYMax + reach_y); k >= firstGridLine(viewYMin - reach_y); k--) {
+            int y = yToPixel(k * gridLineSpacing);
+            graph.drawLine(0, y, width, y);
+        }
+
+        /* Draw vertical grid lines at each multiple of gridLineSpacing, moving right */
+        for(long k = firstGridLine(viewXMin - reach_x); k <= lastGridLine(viewXMax + reach_x); k++) {
+            int x = xToPixel(k * gridLineSpacing);
+            graph.drawLine(x, 0, x, height);
+        }
+    }
+
+    /**
+     * Calculates the index of the first grid line at or above a value.
+     * Grid lines are drawn at each multiple of gridLineSpacing, so the
+     * same values have grid lines however the window is moved.
+     *
+     * @param min lowest value shown
+     * @return index k of the first grid line, at k * gridLineSpacing
+     */
+    private long firstGridLine(double min) {
+        return (long) Math.ceil(min / gridLineSpacing);
+    }
+
+    /**
+     * Calculates the index of the last grid line at or below a value.
+     *
+     * @param max highest value shown
+     * @return index k of the last grid line, at k * gridLineSpacing
+     */
+    private long lastGridLine(double max) {
+        return (long) Math.floor(max / gridLineSpacing);
+    }
+
+    /**
+     * Draws axis and ticks (if drawTicks = true) on the Canvas
+     * using axisStroke, axisColor, gridLineStroke, and
+     * gridLineSpacing if axis passes through the graph's window.
+     *
+     * @param graph Canvas for axis to be drawn on
+     * @param probe probe measuring the phase, or null
+     */
+    private void drawAxis(Canvas graph, RenderProbe probe) {
+        graph.setStroke(axisStroke);
+        graph.setColor(axisColor);
+        graph.setFont(labelFont);
+        LabelText label = new LabelText();
+
+        /* Axis, ticks and labels just outside the window may reach into it, and are
+         * drawn so that the graph looks the same wherever the window's edges fall.
+         * Labels are no wider than the longest number Double.toString() returns */
+        FontMetrics fm = graph.getFontMetrics();
+        double axis_reach = strokeReach(axisStroke), tick_reach = tickLength + strokeReach(gridLineStroke);
+        int label_width = labelTicks ? fm.charWidth('W') * MAX_LABEL_LENGTH : 0;
+        int label_height = labelTicks ? fm.getHeight() : 0;
+
+        /* Draw y-axis if x = 0 is on or near the graph */
+        if(viewXMin - xUnits(Math.max(axis_reach, tick_reach)) <= 0
+                && viewXMax + xUnits(Math.max(axis_reach, label_width)) >= 0) {
+            int axis_x = xToPixel(0);
+            graph.drawLine(axis_x, 0, axis_x, height);
+
+            if(drawTicks) {
+                graph.setStroke(gridLineStroke);
+                double reach_y = yUnits(Math.max(tick_reach, label_height));
+                /* Draw a tick at each horizontal grid line, moving down */
+                for(long k = lastGridLine(viewYMax + reach_y); k >= firstGridLine(viewYMin - reach_y); k--) {
+                    int y = yToPixel(k * gridLineSpacing);
+                    graph.drawLine(axis_x, y, axis_x + tickLength, y);
+
+                    /* Label every other tick, except zero (zero is labeled on the x-axis) */
+                    if(labelTicks && k % 2 == 0 && k != 0)
+                        drawLeftJustifiedLabel(graph, label.number(k * gridLineSpacing), axis_x, y, probe);
+                }
+                graph.setStroke(axisStroke);
+            }
+        }
+
+        /* Draw x-axis if y = 0 is on or near the graph */
+        if(viewYMin - yUnits(Math.max(axis_reach, tick_reach)) <= 0
+                && viewYMax + yUnits(Math.max(axis_reach, label_height)) >= 0) {
+            int axis_y = yToPixel(0);
+            graph.drawLine(0, axis_y, width, axis_y);
+
+            if(drawTicks) {
+                graph.setStroke(gridLineStroke);
+                double reach_x = xUnits(Math.max(tick_reach, label_width / 2 + 1));
+                /* Draw a tick at each vertical grid line, moving right */
+                for(long k = firstGridLine(viewXMin - reach_x); k <= lastGridLine(viewXMax + reach_x); k++) {
+                    int x = xToPixel(k * gridLineSpacing);
+                    graph.drawLine(x, axis_y, x, axis_y - tickLength);
+
+                    /* Label every other tick */
+                    if(labelTicks && k % 2 == 0)
+                        drawCenteredLabel(graph, label.number(k * gridLineSpacing), x, axis_y, probe);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates how far, in pixels, a line drawn with a stroke
+     * may reach to either side of where it is drawn.
+     *
+     * @param stroke stroke of the line
+     * @return distance, in pixels, the line may cover to either side
+     */
+    private static double strokeReach(BasicStroke stroke) {
+        return stroke.getLineWidth() / 2 + 1;
+    }
+
+    /**
+     * @param pixels distance in pixels
+     * @return distance along the x-axis covered by the pixels
+     */
+    private double xUnits(double pixels) {
+        return pixels * (xMax - xMin) / width;
+    }
+
+    /**
+     * @param pixels distance in pixels
+     * @return distance along the y-axis covered by the pixels
+     */
+    private double yUnits(double pixels) {
+        return pixels * (yMax - yMin) / graphHeight;
+    }
+
+    /**
+     * Draws a label using the current font just below and centered
+     * to given user-space coordinates.
+     *
+     * @param g Canvas for label to be drawn on
+     * @param label label to be drawn
+     * @param x x-coordinate in user-space to draw label below
+     * @param y y-coordinate in user-space to draw label below
+     * @param probe probe counting labels drawn, or null
+     */
+    private void drawCenteredLabel(Canvas g, LabelText label, int x, int y, RenderProbe probe) {
+        long start = probe == null ? 0 : probe.startLabel();
+        FontMetrics fm = g.getFontMetrics();
+        int label_width = fm.charsWidth(label.chars, 0, label.length);
+        if(x + label_width >= 0 && x - label_width <= width) {
+            g.drawChars(label.chars, 0, label.length, x - label_width / 2, y + fm.getHeight());
+            if(probe != null) {
+                probe.endLabel(start);
+            }
+        }
+    }
+
+    /**
+     * Draws a label using the current font to the left and centered
+     * vertically to given user-space coordinates.
+     *
+     * @param g Canvas for label to be drawn on
+     * @param label label to be drawn
+     * @param x x-coordinate in user-space to draw label left of
+     * @param y y-coordinate in user-space to center label on
+     * @param probe probe counting labels drawn, or null
+     */
+    private void drawLeftJustifiedLabel(Canvas g, LabelText label, int x, int y, RenderProbe probe) {
+        long start = probe == null ? 0 : probe.startLabel();
+        FontMetrics fm = g.getFontMetrics();
+        if(y + fm.getHeight() >= 0 && y - fm.getHeight() <= height) {
+            g.drawChars(label.chars, 0, label.length,
+                    x - fm.charsWidth(label.chars, 0, label.length), y + fm.getAscent() / 2 - 1); // todo: why is -1 needed?
+            if(probe != null) {
+                probe.endLabel(start);
+            }
+        }
+    }
+
+    /**
+     * "y = " or "f(x)" function used for graphing a continuous
+     * or piecewise function defined by the user. By default, returns
+     * x^2 + 4x + 4. To change this the user must enter their own
+     * expression, or plot an Expression compiled from text instead.
+     *
+     * @param x x-value used to calculate f(x)
+     * @return f(x) using expression
+     */
+    public double calculate(double x) {
+        return Math.pow(x, 2) + 4 * x + 4;
+    }
+
+    /**
+     * Checks to make sure that settings will not cause an
+     * error when the graph is drawn. To be valid, xMax must
+     * be greater than xMin and yMax must be greater than yMin.
+     * height and width must be greater than zero.
+     *
+     * @return whether all settings are valid and graphing can proceed
+     * @throws IndexOutOfBoundsException if a graph cannot be drawn
+     * using the current settings
+     */
+    private boolean validateSettings() throws IndexOutOfBoundsException { // todo: improve. what is necessary, what will be strange but not cause a fatal error?
+        if(xMax <= xMin)
+            throw new IndexOutOfBoundsException("xMax cannot be less than or equal to xMin");
+        if(yMax <= yMin)
+            throw new IndexOutOfBoundsException("yMax cannot be less than or equal to yMin");
+        if(height == 0)
+            throw new IndexOutOfBoundsException("height cannot be equal to zero");
+        if(width == 0)
+            throw new IndexOutOfBoundsException("width cannot be equal to zero");
+        return true;
+    }
+
+    /**
+     * Draws graph and plots specified points on the BufferedImage.
+     * Points outside window range will not be plotted.
+     * Coordinates of points to draw on graph are passed in 2d array
+     * where double[0][index] gives the x-coordinate of a point and
+     * double[1][index] gives the corresponding y-coordinate. Points are
+     * drawn as pointMarkers pointWidth wide in plotColor. Passing
+     * labelPoints as true will label each point with comma-separated
+     * coordinates in parentheses next to the point (e.g. (x,y)).
+     *
+     * @param blankImage BufferedImage on which to draw graph
+     * @param points x- and y-values of points to plot
+     * @param labelPoints whether or not to label points with their coordinates
+     * @throws IndexOutOfBoundsException if double[0] is a different
+     * size than double[1]
+     */
+    public void drawGraph(BufferedImage blankImage, double[][] points,
+                                   boolean labelPoints) throws IndexOutOfBoundsException {
+        setHeightWidth(blankImage);
+        if(validateSettings()) {
+            drawGrid(blankImage);
+            drawGraphOnGrid(blankImage, points, labelPoints);
+        }
+    }
+
+    /**
+     * Plots points on the specified BufferedImage,
+     * which is assumed to be a pre-rendered grid with the same
+     * window values as the current graph being drawn. Points
+     * outside window range will not be plotted. Coordinates of points
+     * to draw on graph are passed in 2d array where double[0][index]
+     * gives the x-coordinate of a point and double[1][index] gives
+     * the corresponding y-coordinate. Points are drawn as pointMarkers
+     * pointWidth wide in plotColor. Passing labelPoints as
+     * true will label each point with comma-separated coordinates
+     * in parentheses next to the point (e.g. (x,y)). If decimation
+     * is enabled and labelPoints is false, sets with more than four
+     * points per pixel column are decimated to one point per pixel
+     * before they are plotted.
+     *
+     * @param grid BufferedImage on which to plot points
+     * @param points x- and y-values of points to plot
+     * @param labelPoints whether or not to label points with their coordinates
+     * @throws IndexOutOfBoundsException if double[0] is a different
+     * size than double[1]
+     */
+    public void drawGraphOnGrid(BufferedImage grid,
+             double[][] points, boolean labelPoints) throws IndexOutOfBoundsException { // todo: catch exception and throw one with message
+        setHeightWidth(grid);
+        if(validateSettings()) {
+            if(points[1].length < points[0].length) {
+                throw new IndexOutOfBoundsException("points[1] must have at least as many elements as points[0]");
+            }
+            double[][] plotted = decimatePoints && !labelPoints && points[0].length > 4 * (width + 1)
+                    ? decimate(points, pointWidth) : points;
+            drawTiles(grid, (graph, tile) -> drawPoints(graph, plotted[0], plotted[1], plotted[0].length,
+                    labelPoints, tile));
+        }
+    }
+
+    /**
+     * Draws graph and plots points read from a PointSource on it
+     * (see drawGraphOnGrid(BufferedImage, PointSource, boolean)).
+     *
+     * @param blankImage BufferedImage on which to draw graph
+     * @param points source of points to plot
+     * @param labelPoints whether or not to label points with their coordinates
+     * @throws IOException if points cannot be read from the source
+     */
+    public void drawGraph(BufferedImage blankImage, PointSource points,
+                          boolean labelPoints) throws IOException {
+        setHeightWidth(blankImage);
+        if(validateSettings()) {
+            drawGrid(blankImage);
+            drawGraphOnGrid(blankImage, points, labelPoints);
+        }
+    }
+
+    /**
+     * Plots points read from a PointSource on the specified
+     * BufferedImage, which is assumed to be a pre-rendered grid with
+     * the same window values as the current graph being drawn. The
+     * source is read to its end in batches of fixed size, so series
+     * far larger than the heap can be plotted. Points are plotted as
+     * by drawGraphOnGrid(BufferedImage, double[][], boolean): if
+     * decimation is enabled and labelPoints is false, series with more
+     * than four points per pixel column are decimated to one point per
+     * pixel as they are read, and only the points kept are drawn.
+     * Otherwise each batch is drawn as it is read.
+     *
+     * @param grid BufferedImage on which to plot points
+     * @param points source of points to plot
+     * @param labelPoints whether or not to label points with their coordinates
+     * @throws IOException if points cannot be read from the source
+     */
+    public void drawGraphOnGrid(BufferedImage grid, PointSource points,
+                                boolean labelPoints) throws IOException {
+        setHeightWidth(grid);
+        if(!validateSettings()) {
+            return;
+        }
+        double[] x = new double[POINT_BATCH], y = new double[POINT_BATCH];
+        if(!decimatePoints || labelPoints) {
+            for(int count; (count = points.read(x, y)) >= 0; ) {
+                int batch = count;
+                drawTiles(grid, (graph, tile) -> drawPoints(graph, x, y, batch, labelPoints, tile));
+            }
+            return;
+        }
+
+        /* Hold points back until there are too many to plot without decimation,
+         * so that small series are plotted exactly as they would be from arrays */
+        int threshold = 4 * (width + 1);
+        double[] held_x = new double[threshold], held_y = new double[threshold];
+        int held = 0;
+        MarkerDecimator decimator = null;
+        for(int count; (count = points.read(x, y)) >= 0; ) {
+            if(decimator != null) {
+                decimator.add(x, y, count);
+            } else if(held + count <= threshold) {
+                System.arraycopy(x, 0, held_x, held, count);
+                System.arraycopy(y, 0, held_y, held, count);
+                held += count;
+            } else {
+                decimator = markerDecimator(pointWidth);
+                decimator.add(held_x, held_y, held);
+                decimator.add(x, y, count);
+            }
+        }
+        if(decimator == null) {
+            int total = held;
+            drawTiles(grid, (graph, tile) -> drawPoints(graph, held_x, held_y, total, false, tile));
+        } else {
+            double[][] plotted = decimator.toPoints();
+            drawTiles(grid, (graph, tile) -> drawPoints(graph, plotted[0], plotted[1], plotted[0].length,
+                    false, tile));
+        }
+    }
+
+    /**
+     * Draws graph and draws the series of a MinMaxPyramid on it as a
+     * line (see drawGraphOnGrid(BufferedImage, MinMaxPyramid)).
+     *
+     * @param blankImage BufferedImage on which to draw graph
+     * @param points pyramid of points to plot
+     */
+    public void drawGraph(BufferedImage blankImage, MinMaxPyramid points) {
+        setHeightWidth(blankImage);
+        if(validateSettings()) {
+            drawGrid(blankImage);
+            drawGraphOnGrid(blankImage, points);
+        }
+    }
+
+    /**
+     * Draws the series of a MinMaxPyramid as a line, connecting its
+     * points in order, on the specified BufferedImage, which is
+     * assumed to be a pre-rendered grid with the same window values
+     * as the current graph being drawn. The line is drawn in
+     * plotColor, and is broken at points whose y-coordinate is NaN or
+     * infinite, as a function is. Points are always decimated,
+     * whatever the decimation setting, to the first, last, lowest and
+     * highest point of each pixel column (see LineDecimator), which a
+     * line through every point draws over the same pixels. Only the
+     * parts of the pyramid covering the window are read, so the time
+     * taken depends on the width of the graph rather than on the
+     * number of points.
+     *
+     * @param grid BufferedImage on which to draw the line
+     * @param points pyramid of points to draw
+     */
+    public void drawGraphOnGrid(BufferedImage grid, MinMaxPyramid points) {
+        setHeightWidth(grid);
+        if(validateSettings()) {
+            LineDecimator decimator = new LineDecimator(transform, width);
+            points.decimate(decimator);
+            double[][] plotted = decimator.toPoints();
+            drawTiles(grid, (graph, tile) -> {
+                RenderProbe probe = RenderProbe.start(RenderPhase.LINES, metrics);
+                graph.setColor(plotColor);
+                int segments = drawPolyline(graph, plotted[0], plotted[1], plotted[0].length, tile, 2);
+                if(probe != null) {
+                    probe.segments = segments;
+                    probe.end();
+                }
+            });
+        }
+    }
+
+    /**
+     * Draws graph and a density plot of points on it (see
+     * drawDensityOnGrid(BufferedImage, double[][])).
+     *
+     * @param blankImage BufferedImage on which to draw graph
+     * @param points x- and y-values of points to plot
+     * @throws IndexOutOfBoundsException if double[0] is a different
+     * size than double[1]
+     */
+    public void drawDensity(BufferedImage blankImage, double[][] points) throws IndexOutOfBoundsException {
+        setHeightWidth(blankImage);
+        if(validateSettings()) {
+            drawGrid(blankImage);
+            drawDensityOnGrid(blankImage, points);
+        }
+    }
+
+    /**
+     * Draws a density plot of points on the specified BufferedImage,
+     * which is assumed to be a pre-rendered grid with the same window
+     * values as the current graph being drawn. Instead of drawing a
+     * circle for each point, the points falling in each pixel are
+     * counted, and every pixel holding at least one point is colored
+     * by its count (see setDensityColors()). Pixels without points
+     * are left untouched. This is far faster than plotting points
+     * when there are millions of them, and shows where they are
+     * dense instead of covering them in ink. Points are counted in
+     * parallel using samplingPool.
+     *
+     * @param grid BufferedImage on which to plot points
+     * @param points x- and y-values of points to plot
+     * @throws IndexOutOfBoundsException if double[0] is a different
+     * size than double[1]
+     */
+    public void drawDensityOnGrid(BufferedImage grid, double[][] points) throws IndexOutOfBoundsException {
+        setHeightWidth(grid);
+        if(validateSettings()) {
+            if(points[1].length < points[0].length) {
+                throw new IndexOutOfBoundsException("points[1] must have at least as many elements as points[0]");
+            }
+            RenderProbe probe = RenderProbe.start(RenderPhase.DENSITY, metrics);
+            DensityGrid density = new DensityGrid(width, height, xMin, xMax, yMin, yMax, originX, originY);
+            density.add(points[0], points[1], points[0].length, samplingPool);
+            density.draw(grid, region, densityColors, densityLogScale);
+            if(probe != null) {
+                probe.pointsSubmitted = points[0].length;
+                probe.end();
+            }
+        }
+    }
+
+    /**
+     * Draws graph and a density plot of points read from a
+     * PointSource on it (see drawDensityOnGrid(BufferedImage, double[][])).
+     *
+     * @param blankImage BufferedImage on which to draw graph
+     * @param points source of points to plot
+     * @throws IOException if points cannot be read from the source
+     */
+    public void drawDensity(BufferedImage blankImage, PointSource points) throws IOException {
+        setHeightWidth(blankImage);
+        if(validateSettings()) {
+            drawGrid(blankImage);
+            drawDensityOnGrid(blankImage, points);
+        }
+    }
+
+    /**
+     * Draws a density plot of points read from a PointSource on the
+     * specified BufferedImage (see drawDensityOnGrid(BufferedImage,
+     * double[][])). The source is read to its end in batches of
+     * fixed size.
+     *
+     * @param grid BufferedImage on which to plot points
+     * @param points source of points to plot
+     * @throws IOException if points cannot be read from the source
+     */
+    public void drawDensityOnGrid(BufferedImage grid, PointSource points) throws IOException {
+        setHeightWidth(grid);
+        if(validateSettings()) {
+            RenderProbe probe = RenderProbe.start(RenderPhase.DENSITY, metrics);
+            double[] x = new double[DENSITY_BATCH], y = new double[DENSITY_BATCH];
+            DensityGrid density = new DensityGrid(width, height, xMin, xMax, yMin, yMax, originX, originY);
+            long total = 0;
+            for(int count; (count = points.read(x, y)) >= 0; ) {
+                density.add(x, y, count, samplingPool);
+                total += count;
+            }
+            density.draw(grid, region, densityColors, densityLogScale);
+            if(probe != null) {
+                probe.pointsSubmitted = total;
+                probe.end();
+            }
+        }
+    }
+
+    /**
+     * Draws points, and labels them if labelPoints is true. When
+     * drawing a tile, points and labels that cannot reach the tile
+     * are skipped.
+     *
+     * @param graph Canvas of graph being drawn on
+     * @param x x-values of points to plot
+     * @param y y-values of points to plot
+     * @param count number of points to plot, from index 0
+     * @param labelPoints whether or not to label points with their coordinates
+     * @param tile area graph is clipped to, or null
+     */
+    private void drawPoints(Canvas graph, double[] x, double[] y, int count, boolean labelPoints,
+                            Rectangle tile) {
+        RenderProbe probe = RenderProbe.start(RenderPhase.POINTS, metrics);
+        graph.setColor(plotColor);
+        graph.setAntialiasing(true);
+        PointSprite sprite = PointSprite.get(pointMarker, pointWidth, true);
+        if(labelPoints) {
+            drawLabeledPoints(graph, sprite, x, y, count, tile, probe);
+        } else {
+            drawMarkers(graph, sprite, pointWidth, x, y, count, tile, probe);
+        }
+        end(probe);
+    }
+
+    /**
+     * Draws points by stamping a sprite of their marker, culling and
+     * converting a batch of points at a time. The Canvas's color and
+     * antialiasing must already be set.
+     *
+     * @param graph Canvas of graph being drawn on
+     * @param sprite pre-rendered point marker, size wide
+     * @param size diameter, in pixels, of points
+     * @param x x-values of points to plot
+     * @param y y-values of points to plot
+     * @param count number of points to plot, from index 0
+     * @param tile area graph is clipped to, or null
+     * @param probe probe counting points, or null
+     */
+    private void drawMarkers(Canvas graph, PointSprite sprite, int size, double[] x, double[] y, int count,
+                             Rectangle tile, RenderProbe probe) {
+        /* Points outside the window, but close enough for part of the point to show, are drawn */
+        double reach_x = xUnits(size + 2), reach_y = yUnits(size + 2);
+        double low_x = viewXMin - reach_x, high_x = viewXMax + reach_x;
+        double low_y = viewYMin - reach_y, high_y = viewYMax + reach_y;
+
+        /* Cull and convert a batch of points at a time, then stamp the ones kept */
+        int batch = Math.min(count, POINT_BATCH);
+        int[] kept = new int[batch], px = new int[batch], py = new int[batch];
+        long culled = 0, drawn = 0;
+        for(int from = 0; from < count; from += batch) {
+            int to = Math.min(count, from + batch);
+            int kept_count = transform.cullToPixels(x, y, from, to, low_x, high_x, low_y, high_y, kept, px, py);
+            culled += to - from - kept_count;
+            for(int j = 0; j < kept_count; j++) {
+                if(drawPoint(graph, sprite, size, px[j], py[j], tile)) {
+                    drawn++;
+                }
+            }
+        }
+        if(probe != null) {
+            probe.pointsSubmitted += count;
+            probe.pointsCulled += culled;
+            probe.pointsDrawn += drawn;
+        }
+    }
+
+    /**
+     * Draws points and labels each one with its coordinates.
+     *
+     * @param graph Canvas of graph being drawn on
+     * @param sprite pre-rendered point marker, pointWidth wide
+     * @param x x-values of points to plot
+     * @param y y-values of points to plot
+     * @param count number of points to plot, from index 0
+     * @param tile area graph is clipped to, or null
+     * @param probe probe counting points and labels, or null
+     */
+    private void drawLabeledPoints(Canvas graph, PointSprite sprite, double[] x, double[] y, int count,
+                                   Rectangle tile, RenderProbe probe) {
+        /* Points outside the window, but close enough for part of the point to show, are drawn */
+        double reach_x = xUnits(pointWidth + 2), reach_y = yUnits(pointWidth + 2);
+        double low_x = viewXMin - reach_x, high_x = viewXMax + reach_x;
+        double low_y = viewYMin - reach_y, high_y = viewYMax + reach_y;
+        graph.setFont(labelFont);
+        int label_height = graph.getFontMetrics().getHeight() * 2;
+        LabelText label = new LabelText();
+        long culled = 0, drawn = 0;
+        for(int i = 0; i < count; i++) {
+            int px = xToPixel(x[i]), py = yToPixel(y[i]);
+            if(x[i] >= low_x && x[i] <= high_x && y[i] >= low_y && y[i] <= high_y) {
+                if(drawPoint(graph, sprite, pointWidth, px, py, tile)) {
+                    drawn++;
+                }
+            } else {
+                culled++;
+            }
+            /* Labels are drawn just below the point, so only their height is known in advance */
+            if(tile == null || (py <= tile.y + tile.height && py + label_height >= tile.y)) {
+                drawCenteredLabel(graph, label.point(x[i], y[i]), px, py, probe);
+            }
+        }
+        if(probe != null) {
+            probe.pointsSubmitted = count;
+            probe.pointsCulled = culled;
+            probe.pointsDrawn = drawn;
+        }
+    }
+
+    /**
+     * Reduces points plotted as markers to one point per pixel using
+     * the current window settings and size.
+     *
+     * @param points x- and y-values of points to decimate
+     * @param size diameter, in pixels, of points
+     * @return x- and y-values of the points kept
+     * @throws IndexOutOfBoundsException if double[0] is a different
+     * size than double[1]
+     */
+    private double[][] decimate(double[][] points, int size) throws IndexOutOfBoundsException {
+        if(points[1].length < points[0].length) {
+            throw new IndexOutOfBoundsException("points[1] must have at least as many elements as points[0]");
+        }
+        MarkerDecimator decimator = markerDecimator(size);
+        decimator.add(points[0], points[1], points[0].length);
+        return decimator.toPoints();
+    }
+
+    /**
+     * Creates a decimator for markers drawn with the current window
+     * settings and size, covering the whole graph if the image is a
+     * band of it.
+     *
+     * @param size diameter, in pixels, of points
+     * @return the decimator
+     */
+    private MarkerDecimator markerDecimator(int size) {
+        int graph_top = pageHeight == 0 ? 0 : -originY;
+        /* Markers are culled as drawMarkers() culls them, size + 2 pixels outside the graph */
+        return new MarkerDecimator(transform, width, graph_top, graph_top + graphHeight, size + 2);
+    }
+
+    /**
+     * Draws graph and uses f(x) function in calculate(double x)
+     * to plot points continuously from rangeLow to rangeHigh
+     * on the graph. Points outside window range will not be plotted.
+     * Points are drawn as circles with diameter plotWidth and plotColor. // todo: smarter algorithm?
+     *
+     * @param blankImage BufferedImage on which to draw the graph
+     * @param rangeLow lowest x-value, inclusive, to use in calculating f(x) values
+     * @param rangeHigh highest x-value, inclusive, to use in calculating f(x) values
+     */
+    public void drawGraph(BufferedImage blankImage, double rangeLow, double rangeHigh) {
+        setHeightWidth(blankImage);
+        drawGrid(blankImage);
+        drawGraphOnGrid(blankImage, rangeLow, rangeHigh);
+    }
+
+    /**
+     * Plots points on the specified BufferedImage using f(x)
+     * function in calculate(double x) to plot points continuously
+     * form rangeLow to rangeHigh on the graph. Points outside
+     * window range will not be plotted. Points are drawn as
+     * circles with diameter plotWidth and plotColor. Because
+     * calculate(double x) may be overridden by a class that is not
+     * thread-safe, it is always evaluated on the calling thread.
+     *
+     * @param grid BufferedImage on which to plot points
+     * @param rangeLow lowest x-value, inclusive, to use in calculating f(x) values
+     * @param rangeHigh highest x-value, inclusive, to use in calculating f(x) values
+     */
+    public void drawGraphOnGrid(BufferedImage grid, double rangeLow, double rangeHigh) { // todo: exclusive v. inclusive points
+        drawFunctionOnGrid(grid, this, BatchFunction.of(this::calculate), rangeLow, rangeHigh, null);
+    }
+
+    /**
+     * Draws graph and plots function continuously from rangeLow
+     * to rangeHigh on the graph. Values of function are calculated
+     * in parallel using samplingPool, so function must be safe to
+     * call from several threads at once.
+     *
+     * @param blankImage BufferedImage on which to draw the graph
+     * @param function f(x) function to plot
+     * @param rangeLow lowest x-value, inclusive, to use in calculating f(x) values
+     * @param rangeHigh highest x-value, inclusive, to use in calculating f(x) values
+     */
+    public void drawGraph(BufferedImage blankImage, DoubleUnaryOperator function,
+                          double rangeLow, double rangeHigh) {
+        setHeightWidth(blankImage);
+        drawGrid(blankImage);
+        drawGraphOnGrid(blankImage, function, rangeLow, rangeHigh);
+    }
+
+    /**
+     * Plots function continuously from rangeLow to rangeHigh on the
+     * specified BufferedImage, which is assumed to be a pre-rendered
+     * grid with the same window values as the current graph being
+     * drawn. Values of function are calculated in parallel using
+     * samplingPool, so function must be safe to call from several
+     * threads at once.
+     *
+     * @param grid BufferedImage on which to plot function
+     * @param function f(x) function to plot
+     * @param rangeLow lowest x-value, inclusive, to use in calculating f(x) values
+     * @param rangeHigh highest x-value, inclusive, to use in calculating f(x) values
+     */
+    public void drawGraphOnGrid(BufferedImage grid, DoubleUnaryOperator function,
+                                double rangeLow, double rangeHigh) {
+        drawFunctionOnGrid(grid, function, BatchFunction.of(function), rangeLow, rangeHigh, samplingPool);
+    }
+
+    /**
+     * Draws graph and plots function continuously from rangeLow
+     * to rangeHigh on the graph. Chunks of x-values are passed to
+     * function in parallel using samplingPool.
+     *
+     * @param blankImage BufferedImage on which to draw the graph
+     * @param function f(x) function to plot
+     * @param rangeLow lowest x-value, inclusive, to use in calculating f(x) values
+     * @param rangeHigh highest x-value, inclusive, to use in calculating f(x) values
+     */
+    public void drawGraph(BufferedImage blankImage, BatchFunction function,
+                          double rangeLow, double rangeHigh) {
+        setHeightWidth(blankImage);
+        drawGrid(blankImage);
+        drawGraphOnGrid(blankImage, function, rangeLow, rangeHigh);
+    }
+
+    /**
+     * Plots function continuously from rangeLow to rangeHigh on the
+     * specified BufferedImage, which is assumed to be a pre-rendered
+     * grid with the same window values as the current graph being
+     * drawn. Chunks of x-values are passed to function in parallel
+     * using samplingPool.
+     *
+     * @param grid BufferedImage on which to plot function
+     * @param function f(x) function to plot
+     * @param rangeLow lowest x-value, inclusive, to use in calculating f(x) values
+     * @param rangeHigh highest x-value, inclusive, to use in calculating f(x) values
+     */
+    public void drawGraphOnGrid(BufferedImage grid, BatchFunction function,
+                                double rangeLow, double rangeHigh) {
+        drawFunctionOnGrid(grid, function, function, rangeLow, rangeHigh, samplingPool);
+    }
+
+    /**
+     * Draws graph and plots a compiled Expression continuously from
+     * rangeLow to rangeHigh on the graph (see
+     * drawGraphOnGrid(BufferedImage, Expression, double, double)).
+     *
+     * @param blankImage BufferedImage on which to draw the graph
+     * @param function f(x) function to plot, e.g. Expression.compile("x^2 + 4x + 4")
+     * @param rangeLow lowest x-value, inclusive, to use in calculating f(x) values
+     * @param rangeHigh highest x-value, inclusive, to use in calculating f(x) values
+     */
+    public void drawGraph(BufferedImage blankImage, Expression function,
+                          double rangeLow, double rangeHigh) {
+        drawGraph(blankImage, (BatchFunction) function, rangeLow, rangeHigh);
+    }
+
+    /**
+     * Plots a compiled Expression continuously from rangeLow to
+     * rangeHigh on the specified BufferedImage, which is assumed to be
+     * a pre-rendered grid with the same window values as the current
+     * graph being drawn. The expression is evaluated in blocks of
+     * x-values, in parallel using samplingPool.
+     *
+     * @param grid BufferedImage on which to plot function
+     * @param function f(x) function to plot
+     * @param rangeLow lowest x-value, inclusive, to use in calculating f(x) values
+     * @param rangeHigh highest x-value, inclusive, to use in calculating f(x) values
+     */
+    public void drawGraphOnGrid(BufferedImage grid, Expression function,
+                                double rangeLow, double rangeHigh) {
+        drawGraphOnGrid(grid, (BatchFunction) function, rangeLow, rangeHigh);
+    }
+
+    /**
+     * Draws graph and plots several series on it (see
+     * drawSeriesOnGrid()).
+     *
+     * @param blankImage BufferedImage on which to draw the graph
+     * @param series series to plot, from bottom to top
+     */
+    public void drawSeries(BufferedImage blankImage, List<Series> series) {
+        setHeightWidth(blankImage);
+        if(validateSettings()) {
+            drawGrid(blankImage);
+            drawSeriesOnGrid(blankImage, series);
+        }
+    }
+
+    /**
+     * Plots several series, each in its own style, on the specified
+     * BufferedImage, which is assumed to be a pre-rendered grid with
+     * the same window values as the current graph being drawn. Later
+     * series are drawn over earlier ones. This is faster than plotting
+     * each series with its own call to drawGraphOnGrid(): the window
+     * and transform are set up once, functions are sampled and points
+     * decimated before anything is drawn, and all series are drawn in
+     * one pass over each tile with the same Canvas, which only changes
+     * color, stroke or antialiasing when a series needs different
+     * ones from the series before it. If setSeriesLayers() has been
+     * given a pool, series are instead drawn in parallel on layers
+     * that are composited at the end.
+     *
+     * @param grid BufferedImage on which to plot series
+     * @param series series to plot, from bottom to top
+     */
+    public void drawSeriesOnGrid(BufferedImage grid, List<Series> series) {
+        setHeightWidth(grid);
+        if(!validateSettings()) {
+            return;
+        }
+        List<SeriesPlot> plots = new ArrayList<>(series.size());
+        for(Series s : series) {
+            plots.add(prepare(s));
+        }
+        if(layerPool == null || plots.size() < 2) {
+            drawTiles(grid, (graph, tile) -> drawPlots(graph, plots, tile));
+        } else {
+            drawLayers(grid, plots);
+        }
+    }
+
+    /**
+     * Draws graph and plots several series (see drawSeries()) on a
+     * graph taller than the image, one horizontal band at a time: each
+     * band is drawn on the image, clipped to it, and handed to the
+     * consumer before the next one is drawn over it. Functions are
+     * sampled and points decimated once, for the whole graph, and each
+     * band only draws the lines and markers that reach it, so the
+     * bands join up exactly into the graph drawSeries() would draw on
+     * one image of the full height. The graph is as wide as the image.
+     * The image may be taller than a band, as Graphics2D rounds lines
+     * differently along the edge of its clip: the rows below the band
+     * are drawn as well, so that only the last band is clipped where
+     * the full image would be.
+     *
+     * @param band BufferedImage each band is drawn on
+     * @param bandRows rows of the graph each band holds, at most the
+     * height of the image and a multiple of 8 so that Graphics2D
+     * dithers each band as it would the full image
+     * @param height height, in pixels, of the whole graph
+     * @param series series to plot, from bottom to top
+     * @param consumer receives each band once it is drawn, from top to bottom
+     * @throws IOException if the consumer throws one
+     */
+    void drawBands(BufferedImage band, int bandRows, int height, List<Series> series,
+                   BandRenderer.BandConsumer consumer) throws IOException {
+        List<SeriesPlot> plots = null;
+        setPageHeight(height);
+        try {
+            for(int top = 0; top < height; top += bandRows) {
+                Rectangle drawn = new Rectangle(band.getWidth(), Math.min(band.getHeight(), height - top));
+                setOrigin(0, top);
+                setRegion(drawn);
+                drawGrid(band);
+                if(plots == null) {
+                    plots = new ArrayList<>(series.size());
+                    for(Series s : series) {
+                        plots.add(prepare(s));
+                    }
+                }
+                /* Lines and markers that cannot reach the region are skipped */
+                List<SeriesPlot> prepared = plots;
+                drawTiles(band, (graph, tile) -> drawPlots(graph, prepared, tile));
+                setRegion(null);
+                consumer.accept(band, top, Math.min(bandRows, height - top));
+            }
+        } finally {
+            setPageHeight(0);
+            setOrigin(0, 0);
+            setRegion(null);
+        }
+    }
+
+    /**
+     * Draws graph and plots several series (see drawSeriesOnGrid()) as
+     * an SVG image, written to a Writer as it is drawn. The image
+     * looks like the one drawSeries() would draw on a BufferedImage
+     * of the same size, with one unit of the SVG's user space to a
+     * pixel. Lines that carry on from one another, such as those
+     * plotting a function or a line series, are written as single
+     * polylines simplified to within vectorTolerance pixels (see
+     * setVectorTolerance()), and markers drawn over identical markers
+     * are left out, so the size of the file depends on how much can
+     * be seen rather than on how many samples or points are plotted.
+     * The Writer is not closed, and should be buffered if writing to
+     * it is slow.
+     *
+     * @param out Writer to write the image to
+     * @param width width, in pixels, of the image
+     * @param height height, in pixels, of the image
+     * @param series series to plot, from bottom to top
+     * @throws IOException if the Writer cannot be written to
+     * @throws IndexOutOfBoundsException if width or height is not positive
+     */
+    public void writeSvg(Writer out, int width, int height, List<Series> series)
+            throws IOException, IndexOutOfBoundsException {
+        if(width <= 0 || height <= 0) {
+            throw new IndexOutOfBoundsException("width and height must be positive");
+        }
+        setHeightWidth(width, height);
+        if(!validateSettings()) {
+            return;
+        }
+        List<SeriesPlot> plots = new ArrayList<>(series.size());
+        for(Series s : series) {
+            plots.add(prepare(s));
+        }
+        SvgCanvas svg = new SvgCanvas(out, width, height, vectorTolerance);
+        try {
+            drawGrid(svg);
+            drawPlots(svg, plots, null);
+            svg.dispose();
+        } catch(UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Works out how a series is drawn, sampling its function or
+     * decimating its points if need be.
+     *
+     * @param series series to be drawn
+     * @return what to draw and how
+     */
+    private SeriesPlot prepare(Series series) {
+        Color color = series.getColor(plotColor);
+        if(series.kind == Series.Kind.POINTS) {
+            int size = series.getPointWidth(pointWidth);
+            PointSprite sprite = PointSprite.get(series.getPointMarker(pointMarker), size, true);
+            double[][] points = { series.x, series.y };
+            if(decimatePoints && series.x.length > 4 * (width + 1)) {
+                points = decimate(points, size);
+            }
+            return new SeriesPlot(color, null, sprite, size, points[0], points[1], points[0].length);
+        }
+        BasicStroke stroke = series.getStroke(LINE_STROKE);
+        int line_width = (int) Math.ceil(stroke.getLineWidth());
+        if(series.kind == Series.Kind.LINE) {
+            return new SeriesPlot(color, stroke, null, line_width, series.x, series.y, series.x.length);
+        }
+        double[][] samples = sampleFunction(series.function, series.function, series.rangeLow, series.rangeHigh,
+                samplingPool, line_width);
+        return new SeriesPlot(color, stroke, null, line_width, samples[0], samples[1], samples[0].length);
+    }
+
+    /**
+     * Draws series in order on one Canvas, only setting the color,
+     * stroke and antialiasing when they differ from the series before.
+     *
+     * @param graph Canvas of graph being drawn on
+     * @param plots series to draw, from bottom to top
+     * @param tile area graph is clipped to, or null
+     */
+    private void drawPlots(Canvas graph, List<SeriesPlot> plots, Rectangle tile) {
+        Color color = null;
+        BasicStroke stroke = null;
+        /* Antialiasing is unknown (-1), off (0) or on (1) */
+        int antialiasing = -1;
+        for(SeriesPlot plot : plots) {
+            if(!plot.color.equals(color)) {
+                graph.setColor(plot.color);
+                color = plot.color;
+            }
+            if(plot.sprite != null) {
+                if(antialiasing != 1) {
+                    graph.setAntialiasing(true);
+                    antialiasing = 1;
+                }
+                RenderProbe probe = RenderProbe.start(RenderPhase.POINTS, metrics);
+                drawMarkers(graph, plot.sprite, plot.size, plot.x, plot.y, plot.count, tile, probe);
+                end(probe);
+            } else {
+                if(!plot.stroke.equals(stroke)) {
+                    graph.setStroke(plot.stroke);
+                    stroke = plot.stroke;
+                }
+                if(antialiasing != 0) {
+                    graph.setAntialiasing(false);
+                    antialiasing = 0;
+                }
+                RenderProbe probe = RenderProbe.start(RenderPhase.LINES, metrics);
+                int segments = drawPolyline(graph, plot.x, plot.y, plot.count, tile, plot.size / 2 + 2);
+                if(probe != null) {
+                    probe.segments = segments;
+                    probe.end();
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws each series on its own transparent layer, in parallel on
+     * layerPool, then composites the layers onto the image in order.
+     *
+     * @param grid BufferedImage on which to plot series
+     * @param plots series to draw, from bottom to top
+     */
+    private void drawLayers(BufferedImage grid, List<SeriesPlot> plots) {
+        BufferedImage[] layers = new BufferedImage[plots.size()];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(plots.size());
+        for(int i = 0; i < layers.length; i++) {
+            int index = i;
+            tasks.add(layerPool.submit(() -> {
+                BufferedImage layer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                drawTiles(layer, (graph, tile) -> drawPlots(graph, plots.subList(index, index + 1), tile));
+                layers[index] = layer;
+            }));
+        }
+        for(ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        RenderProbe probe = RenderProbe.start(RenderPhase.COMPOSITE, metrics);
+        Graphics2D g = grid.createGraphics();
+        if(region != null) {
+            g.clip(region);
+        }
+        for(BufferedImage layer : layers) {
+            g.drawImage(layer, 0, 0, null);
+        }
+        g.dispose();
+        end(probe);
+    }
+
+    /**
+     * Calculates f(x) from rangeLow to rangeHigh, either adaptively
+     * (if adaptiveSampling = true) or once per pixel, and draws lines
+     * between the resulting points. Samples more than lineWidth + 1
+     * pixels outside the window are skipped, since they cannot affect
+     * the graph.
+     *
+     * @param grid BufferedImage on which to plot function
+     * @param key object the function was passed as, identifying it in sampleCache
+     * @param function f(x) function to plot
+     * @param rangeLow lowest x-value, inclusive, to use in calculating f(x) values
+     * @param rangeHigh highest x-value, inclusive, to use in calculating f(x) values
+     * @param pool ForkJoinPool to calculate f(x) values on, or null
+     * to calculate them on the calling thread
+     */
+    private void drawFunctionOnGrid(BufferedImage grid, Object key, BatchFunction function,
+                                    double rangeLow, double rangeHigh, ForkJoinPool pool) {
+        setHeightWidth(grid);
+        if(validateSettings()) {
+            double[][] samples = sampleFunction(key, function, rangeLow, rangeHigh, pool, plotWidth);
+            drawTiles(grid, (graph, tile) -> {
+                RenderProbe probe = RenderProbe.start(RenderPhase.LINES, metrics);
+                graph.setColor(plotColor);
+                int segments = drawPolyline(graph, samples[0], samples[1], samples[0].length, tile, 2);
+                if(probe != null) {
+                    probe.segments = segments;
+                    probe.end();
+                }
+            });
+        }
+    }
+
+    /**
+     * Calculates f(x) from rangeLow to rangeHigh, either adaptively
+     * (if adaptiveSampling = true) or once per pixel. Samples more
+     * than lineWidth + 1 pixels outside the window, or outside the
+     * region being drawn, are skipped. Samples lie on a grid laid out
+     * from rangeLow, so a region is sampled as it is when the whole
+     * image is drawn and panned frames match. If a SampleCache is
+     * set, values are taken from it where they can be and only the
+     * rest are calculated.
+     *
+     * @param key object the function was passed as, identifying it in sampleCache
+     * @param function f(x) function to sample
+     * @param rangeLow lowest x-value, inclusive, to use in calculating f(x) values
+     * @param rangeHigh highest x-value, inclusive, to use in calculating f(x) values
+     * @param pool ForkJoinPool to calculate f(x) values on, or null
+     * @param lineWidth width, in pixels, of the lines to be drawn
+     * between samples
+     * @return double[][] where double[0] holds the x-values and
+     * double[1] the f(x) values of the samples, in order
+     */
+    private double[][] sampleFunction(Object key, BatchFunction function, double rangeLow,
+                                      double rangeHigh, ForkJoinPool pool, int lineWidth) {
+        /* Calculate interval between pixels. Each x-value is calculated
+         * from its index so that rounding error does not build up */
+        double units_per_pxl = (xMax - xMin) / width;
+        /* Only sample the part of the window being drawn, plus enough for lines to reach across its
+         * edges. The margin is the same for a region as for the whole image, so both sample alike */
+        int left = region == null ? 0 : region.x, right = region == null ? width : region.x + region.width;
+        double view_low = viewXMin + (left - lineWidth - 1) * units_per_pxl;
+        double view_high = viewXMin + (right + lineWidth + 1) * units_per_pxl;
+        RenderProbe probe = RenderProbe.start(RenderPhase.SAMPLING, metrics);
+        if(adaptiveSampling) {
+            double low = Math.max(rangeLow, view_low);
+            double high = Math.min(rangeHigh, view_high);
+            if(high < low) {
+                end(probe);
+                return new double[2][0];
+            }
+            SampleCache.CachingFunction cached = cacheSamples(key, function, units_per_pxl);
+            AdaptiveSampler sampler = new AdaptiveSampler(cached == null ? function : cached, pool,
+                    units_per_pxl, graphHeight / (yMax - yMin), dataYMin, dataYMax, samplingBudget);
+            sampler.sample(rangeLow, rangeHigh, low, high);
+            if(cached != null) {
+                cached.finish();
+            }
+            if(probe != null) {
+                probe.evaluations = cached == null ? sampler.getEvaluations() : cached.getEvaluations();
+                probe.end();
+            }
+            return new double[][] { sampler.getX(), sampler.getY() };
+        }
+
+        long first = (long) Math.max(0, Math.ceil((view_low - rangeLow) / units_per_pxl));
+        long last = (long) Math.floor((Math.min(rangeHigh, view_high) - rangeLow) / units_per_pxl);
+        int samples = (int) Math.max(0, last - first + 1);
+
+        double[] x = new double[samples];
+        double[] y = new double[samples];
+        for(int i = 0; i < samples; i++) {
+            x[i] = rangeLow + (first + i) * units_per_pxl;
+        }
+        SampleCache.CachingFunction cached = cacheSamples(key, function, units_per_pxl);
+        ParallelSampler.sample(cached == null ? function : cached, x, y, samples, pool);
+        if(cached != null) {
+            cached.finish();
+        }
+        if(probe != null) {
+            probe.evaluations = cached == null ? samples : cached.getEvaluations();
+            probe.end();
+        }
+        return new double[][] { x, y };
+    }
+
+    /**
+     * Wraps a function to be sampled so that it uses sampleCache.
+     *
+     * @param key object the function was passed as
+     * @param function function to be sampled
+     * @param unitsPerPixel units of x per pixel
+     * @return the wrapped function, or null if no SampleCache is set
+     */
+    private SampleCache.CachingFunction cacheSamples(Object key, BatchFunction function, double unitsPerPixel) {
+        if(sampleCache == null) {
+            return null;
+        }
+        return sampleCache.wrap(key, function, unitsPerPixel * SAME_SAMPLE, unitsPerPixel * sampleTolerance,
+                (yMax - yMin) / graphHeight * sampleTolerance);
+    }
+
+    /**
+     * Draws lines between consecutive points, in order. Points
+     * with a NaN or infinite y-value are not drawn and break the
+     * line into separate pieces. When drawing a tile, lines that
+     * cannot reach the tile are skipped.
+     *
+     * @param graph Canvas of graph being drawn on
+     * @param x x-coordinates of points in graph space
+     * @param y y-coordinates of points in graph space
+     * @param count number of points
+     * @param tile area graph is clipped to, or null
+     * @param reach distance, in pixels, lines may cover beyond their
+     * ends, so that lines ending that far outside the tile are drawn
+     * @return number of lines drawn
+     */
+    private int drawPolyline(Canvas graph, double[] x, double[] y, int count, Rectangle tile, int reach) {
+        boolean connected = false;
+        int segments = 0;
+        int x0 = 0, y0 = 0;
+        int[] px = new int[count], py = new int[count];
+        transform.toPixels(x, y, 0, count, px, py);
+
+        /* Move from left to right, drawing lines between pixels */
+        for(int i = 0; i < count; i++) {
+            if(!Double.isFinite(y[i])) {
+                connected = false;
+                continue;
+            }
+            int x1 = px[i], y1 = py[i];
+            if(connected && (tile == null || (Math.max(x0, x1) >= tile.x - reach
+                    && Math.min(x0, x1) <= tile.x + tile.width + reach
+                    && Math.max(y0, y1) >= tile.y - reach
+                    && Math.min(y0, y1) <= tile.y + tile.height + reach))) {
+                graph.drawLine(x0, y0, x1, y1);
+                segments++;
+            }
+            x0 = x1;
+            y0 = y1;
+            connected = true;
+        }
+        return segments;
+    }
+
+    /**
+     * Draws point centered on a pixel by stamping a sprite of the
+     * point marker. Points are assumed to have been checked against
+     * the window already.
+     *
+     * @param graph Canvas of graph being drawn on
+     * @param sprite pre-rendered point marker, size wide
+     * @param size diameter, in pixels, of the point
+     * @param px x-coordinate of the point's pixel
+     * @param py y-coordinate of the point's pixel
+     * @param tile area graph is clipped to, or null. Points
+     * that do not overlap the tile are not plotted.
+     * @return whether the point was drawn
+     */
+    private boolean drawPoint(Canvas graph, PointSprite sprite, int size, int px, int py, Rectangle tile) {
+        /* Draw a point with diameter = size at specified coordinates in userspace.
+         * Coordinates must be adjusted because the marker's box starts at the specified
+         * coordinates and goes down and right */
+        int left = px - size / 2, top = py - size / 2;
+        int sprite_left = left + sprite.offsetX, sprite_top = top + sprite.offsetY;
+        if(tile == null || (sprite_left + sprite.width > tile.x && sprite_left < tile.x + tile.width
+                && sprite_top + sprite.height > tile.y && sprite_top < tile.y + tile.height)) {
+            graph.drawSprite(sprite, left, top);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Converts coordinates of a point on the graph to coordinates of
+     * that pixel on the userspace of the Graphics2D object where drawing
+     * takes place. Performs calculations based on current window settings.
+     * Errors will occur if these are not up to date with the current graph.
+     * Pixels per unit are calculated once per image drawn, not per point.
+     * Package-private, along with xToPixel() and yToPixel(), so the
+     * benchmarks can measure it.
+     *
+     * @param x x-coordinate of point in user space
+     * @param y y-coordinate of point in user space
+     * @return int[] where int[0] is x-coordinate and int[1] is y-coordinate of
+     * point's location in userspace
+     */
+    int[] coordinateToPixel(double x, double y) {
+        return new int[] {xToPixel(x), yToPixel(y)};
+    }
+
+    /**
+     * Converts the x-coordinate of a point on the graph to the
+     * x-coordinate of that pixel in userspace. Same as
+     * coordinateToPixel(x, y)[0] without allocating an array.
+     *
+     * @param x x-coordinate of point in graph space
+     * @return x-coordinate of point's location in userspace
+     */
+    int xToPixel(double x) {
+        return transform.x(x);
+    }
+
+    /**
+     * Converts the y-coordinate of a point on the graph to the
+     * y-coordinate of that pixel in userspace. Same as
+     * coordinateToPixel(x, y)[1] without allocating an array.
+     *
+     * @param y y-coordinate of point in graph space
+     * @return y-coordinate of point's location in userspace
+     */
+    int yToPixel(double y) {
+        return transform.y(y);
+    }
+
+    /**
+     * Text of a tick or point label, formatted into buffers that are
+     * reused from one label to the next so that labeling does not
+     * allocate a String per label.
+     */
+    private static final class LabelText {
+
+        /**
+         * Text of the label as it is formatted.
+         */
+        private final StringBuilder text = new StringBuilder(32);
+
+        /**
+         * Characters of the label, and the number of them in use.
+         */
+        private char[] chars = new char[32];
+        private int length;
+
+        /**
+         * Formats a number as Double.toString() does.
+         *
+         * @param value number to label
+         * @return this label
+         */
+        private LabelText number(double value) {
+            text.setLength(0);
+            text.append(value);
+            return copy();
+        }
+
+        /**
+         * Formats the coordinates of a point as "(x,y)".
+         *
+         * @param x x-coordinate of the point
+         * @param y y-coordinate of the point
+         * @return this label
+         */
+        private LabelText point(double x, double y) {
+            text.setLength(0);
+            text.append('(').append(x).append(',').append(y).append(')');
+            return copy();
+        }
+
+        /**
+         * Copies the formatted text into chars.
+         *
+         * @return this label
+         */
+        private LabelText copy() {
+            length = text.length();
+            if(chars.length < length) {
+                chars = new char[length * 2];
+            }
+            text.getChars(0, length, chars, 0);
+            return this;
+        }
+    }
+
+    /**
+     * A series ready to be drawn: its style, and the points to draw
+     * as markers or to join with lines.
+     */
+    private static final class SeriesPlot {
+
+        private final Color color;
+
+        /**
+         * Stroke lines are drawn with, or null if points are drawn as markers.
+         */
+        private final BasicStroke stroke;
+
+        /**
+         * Pre-rendered marker points are drawn with, or null if they
+         * are joined with lines.
+         */
+        private final PointSprite sprite;
+
+        /**
+         * Diameter, in pixels, of points, or width of lines.
+         */
+        private final int size;
+
+        private final double[] x, y;
+        private final int count;
+
+        SeriesPlot(Color color, BasicStroke stroke, PointSprite sprite, int size, double[] x, double[] y,
+                   int count) {
+            this.color = color;
+            this.stroke = stroke;
+            this.sprite = sprite;
+            this.size = size;
+            this.x = x;
+            this.y = y;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Key identifying a rendered grid in a GridCache. Holds a copy of
+     * every setting that affects how the grid is drawn, so that two
+     * keys are equal only if their grids would be identical.
+     */
+    private static final class GridKey {
+
+        /**
+         * Settings the grid was drawn with.
+         */
+        private final Object[] settings;
+
+        /**
+         * @param settings every setting the grid was drawn with
+         */
+        GridKey(Object... settings) {
+            this.settings = settings;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GridKey && Arrays.equals(settings, ((GridKey) o).settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(settings);
+        }
+    }
+
+    /**
+     * Sets height and width fields based on height and width of
+     * BufferedImage. This is used to keep the width and height
+     * fields up to date with the BufferedImage being drawn on.
+     * Also sets the bounds of the part of the window shown on it.
+     *
+     * @param to_draw BufferedImage upon which the graph will be drawn
+     */
+    private void setHeightWidth(BufferedImage to_draw) {
+        setHeightWidth(to_draw.getWidth(), to_draw.getHeight());
+    }
+
+    /**
+     * Sets the size of the image being drawn and the bounds and
+     * transform that depend on it.
+     *
+     * @param width width, in pixels, of the image
+     * @param height height, in pixels, of the image
+     */
+    private void setHeightWidth(int width, int height) {
+        this.width = width;
+        this.height = height;
+        graphHeight = pageHeight == 0 ? height : pageHeight;
+
+        double x_unit_px = (xMax - xMin) / width;
+        double y_unit_px = (yMax - yMin) / graphHeight;
+        viewXMin = xMin + originX * x_unit_px;
+        viewXMax = xMax + originX * x_unit_px;
+        viewYMin = yMin - (originY + height - graphHeight) * y_unit_px;
+        viewYMax = yMax - originY * y_unit_px;
+        dataYMin = pageHeight == 0 ? viewYMin : yMin;
+        dataYMax = pageHeight == 0 ? viewYMax : yMax;
+        transform = new PixelTransform(width, graphHeight, xMin, xMax, yMin, yMax, originX, originY);
+    }
+}
\ No newline at end of file
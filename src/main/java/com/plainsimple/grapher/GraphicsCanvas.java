@@ -0,0 +1,122 @@
+package com.plainsimple.grapher;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Canvas that draws through a Graphics2D object. Works with any kind
+ * of image and is used whenever a PixelCanvas cannot be. Text is
+ * drawn by Java 2D, which keeps its own cache of rendered glyphs.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+class GraphicsCanvas implements Canvas {
+
+    /**
+     * Graphics2D object all drawing is delegated to.
+     */
+    private final Graphics2D graphics;
+
+    /**
+     * Image of imageSprite drawn in imageColor, or null if no
+     * sprite has been drawn yet.
+     */
+    private BufferedImage spriteImage;
+
+    /**
+     * Sprite spriteImage is an image of.
+     */
+    private PointSprite imageSprite;
+
+    /**
+     * Color spriteImage is drawn in.
+     */
+    private Color imageColor;
+
+    /**
+     * @param graphics Graphics2D object to draw with
+     */
+    GraphicsCanvas(Graphics2D graphics) {
+        this.graphics = graphics;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        graphics.setColor(color);
+    }
+
+    @Override
+    public void setStroke(BasicStroke stroke) {
+        graphics.setStroke(stroke);
+    }
+
+    @Override
+    public void setAntialiasing(boolean antialiasing) {
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing ?
+                RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+    }
+
+    @Override
+    public void setFont(Font font) {
+        graphics.setFont(font);
+    }
+
+    @Override
+    public FontMetrics getFontMetrics() {
+        return graphics.getFontMetrics();
+    }
+
+    @Override
+    public void clipRect(int x, int y, int width, int height) {
+        graphics.clipRect(x, y, width, height);
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        graphics.fillRect(x, y, width, height);
+    }
+
+    @Override
+    public void drawLine(int x0, int y0, int x1, int y1) {
+        graphics.drawLine(x0, y0, x1, y1);
+    }
+
+    @Override
+    public void drawSprite(PointSprite sprite, int x, int y) {
+        Color color = graphics.getColor();
+        if(sprite != imageSprite || !color.equals(imageColor)) {
+            spriteImage = sprite.createImage(color);
+            imageSprite = sprite;
+            imageColor = color;
+        }
+        graphics.drawImage(spriteImage, x + sprite.offsetX, y + sprite.offsetY, null);
+    }
+
+    @Override
+    public void drawChars(char[] chars, int offset, int length, int x, int y) {
+        graphics.drawChars(chars, offset, length, x, y);
+    }
+
+    @Override
+    public void dispose() {
+        graphics.dispose();
+    }
+}
@@ -0,0 +1,178 @@
+package com.plainsimple.grapher;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of pre-rendered grids (background, grid lines, axis, ticks and
+ * tick labels) shared by one or more Grapher instances. Grids are keyed
+ * by every setting that affects how they are drawn, so a Grapher with
+ * the same window, size, colors, strokes and flags as an earlier render
+ * copies the cached grid into its image instead of drawing it again.
+ * The cache holds at most maxBytes of image data and evicts the least
+ * recently used grid when it is full. It is safe to share between threads.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class GridCache {
+
+    /**
+     * Maximum number of bytes of image data held by the cache.
+     */
+    private final long maxBytes;
+
+    /**
+     * Number of bytes of image data currently held by the cache.
+     */
+    private long bytes;
+
+    /**
+     * Cached grids in access order, least recently used first.
+     */
+    private final LinkedHashMap<Object, BufferedImage> grids =
+            new LinkedHashMap<Object, BufferedImage>(16, 0.75f, true);
+
+    /**
+     * Number of lookups that found a cached grid.
+     */
+    private long hits;
+
+    /**
+     * Number of lookups that did not find a cached grid.
+     */
+    private long misses;
+
+    /**
+     * Number of grids removed to keep the cache within maxBytes.
+     */
+    private long evictions;
+
+    /**
+     * Creates an empty cache holding at most maxBytes of image data.
+     *
+     * @param maxBytes maximum size, in bytes, of the images held by the cache
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    public GridCache(long maxBytes) {
+        if(maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes cannot be negative");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up the grid rendered for the given key and counts the
+     * lookup as a hit or a miss.
+     *
+     * @param key settings the grid was rendered with
+     * @return the cached grid, or null if there is none
+     */
+    synchronized BufferedImage get(Object key) {
+        BufferedImage grid = grids.get(key);
+        if(grid == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return grid;
+    }
+
+    /**
+     * Adds a grid to the cache, evicting least recently used grids
+     * until it fits. Grids larger than the whole cache are not added.
+     * The grid must not be modified after it is added.
+     *
+     * @param key settings the grid was rendered with
+     * @param grid rendered grid
+     */
+    synchronized void put(Object key, BufferedImage grid) {
+        long size = sizeOf(grid);
+        if(size > maxBytes) {
+            return;
+        }
+        BufferedImage previous = grids.put(key, grid);
+        if(previous != null) {
+            bytes -= sizeOf(previous);
+        }
+        bytes += size;
+
+        Iterator<Map.Entry<Object, BufferedImage>> eldest = grids.entrySet().iterator();
+        while(bytes > maxBytes) {
+            Map.Entry<Object, BufferedImage> entry = eldest.next();
+            bytes -= sizeOf(entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes all grids from the cache. Counters are not reset.
+     */
+    public synchronized void clear() {
+        grids.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return number of lookups that found a cached grid
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups that did not find a cached grid
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of grids evicted to keep the cache within its size
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of grids currently cached
+     */
+    public synchronized int size() {
+        return grids.size();
+    }
+
+    /**
+     * @return number of bytes of image data currently cached
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Calculates the number of bytes of image data held by a BufferedImage.
+     *
+     * @param image image to measure
+     * @return size of the image's data buffer, in bytes
+     */
+    private static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks()
+                * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
@@ -0,0 +1,298 @@
+package com.plainsimple.grapher;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Re-renders a graph interactively as its window is panned and
+ * zoomed, reusing as much of the previous frame as it can. When the
+ * window is only moved, the image is shifted by the number of pixels
+ * it moved and only the strips of the image that scroll into view are
+ * drawn: background, grid lines, axis, ticks, labels and data, each
+ * clipped to the strips. Moves are rounded to whole pixels, measured
+ * from the window the graph was last fully drawn with, so that frames
+ * line up exactly with each other. When the window is resized the
+ * whole image is drawn again, but a function's values are reused
+ * from earlier frames. Values are kept in the SampleCache of the
+ * GraphSpec if it has one, and reused as its tolerance allows (see
+ * Grapher.setSampleCache()). Otherwise they are kept in one of the
+ * renderer's own that keeps only the samples near the current window
+ * and interpolates between samples up to ZOOM_TOLERANCE pixels apart.
+ * Zooming samples the function at new x-values, which only line up
+ * with earlier ones for whole-number zoom ratios, so a zoom such as
+ * a 10% mouse-wheel step mostly draws values interpolated between
+ * the last frame's samples. Those may be off by a fraction of a
+ * pixel, and detail finer than the last frame's sampling only shows
+ * once the function is evaluated there, e.g. after zooming in far
+ * enough that samples are more than ZOOM_TOLERANCE pixels apart.
+ * A renderer draws into one image and is meant to be used by one
+ * thread at a time.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class IncrementalRenderer {
+
+    /**
+     * Grapher frames are drawn with, used only by this renderer.
+     */
+    private final Grapher grapher;
+
+    /**
+     * Image frames are drawn into.
+     */
+    private final BufferedImage image;
+
+    /**
+     * Draws the graph's data on top of its grid, or null to draw
+     * the grid alone.
+     */
+    private BatchRenderer.Job content;
+
+    /**
+     * Maximum number of bytes of function samples kept by a renderer
+     * whose GraphSpec has no SampleCache.
+     */
+    private static final long FRAME_SAMPLE_BYTES = 64 << 20;
+
+    /**
+     * How far apart, in pixels, samples in the renderer's own cache
+     * may be to be interpolated between (see Grapher.setSampleCache()).
+     * Wide enough that zooming in by up to half reuses the last frame's
+     * samples rather than evaluating the function again.
+     */
+    private static final double ZOOM_TOLERANCE = 1.5;
+
+    /**
+     * Cache function values are remembered between frames in.
+     */
+    private final SampleCache samples;
+
+    /**
+     * Whether samples is the renderer's own cache, whose samples are
+     * only kept near the current window, rather than the GraphSpec's.
+     */
+    private final boolean ownSamples;
+
+    /**
+     * Function being plotted, identifying it in samples, or null if
+     * the content is not a function.
+     */
+    private BatchFunction function;
+
+    /**
+     * Window the graph was last fully drawn with. Frames are
+     * offset from it by whole pixels.
+     */
+    private double anchorXMin, anchorXMax, anchorYMin, anchorYMax;
+
+    /**
+     * Offset, in pixels, of the current frame from the anchor window.
+     */
+    private int originX, originY;
+
+    /**
+     * Whether or not image holds a frame that can be reused.
+     */
+    private boolean valid;
+
+    /**
+     * Creates a renderer drawing frames of the given size.
+     *
+     * @param spec settings to draw the graph with. Its window is
+     * replaced by the one passed to each call to render()
+     * @param width width, in pixels, of frames
+     * @param height height, in pixels, of frames
+     * @param imageType type of BufferedImage to draw frames into,
+     * e.g. BufferedImage.TYPE_INT_RGB
+     */
+    public IncrementalRenderer(GraphSpec spec, int width, int height, int imageType) {
+        grapher = new Grapher(spec);
+        image = new BufferedImage(width, height, imageType);
+        ownSamples = grapher.getSampleCache() == null;
+        if(ownSamples) {
+            grapher.setSampleCache(new SampleCache(FRAME_SAMPLE_BYTES), ZOOM_TOLERANCE);
+        }
+        samples = grapher.getSampleCache();
+    }
+
+    /**
+     * Plots points on following frames (see Grapher.drawGraph()).
+     *
+     * @param points x- and y-values of points to plot
+     * @param labelPoints whether or not to label points with their coordinates
+     */
+    public void setPoints(double[][] points, boolean labelPoints) {
+        function = null;
+        setContent((grapher, image) -> grapher.drawGraphOnGrid(image, points, labelPoints));
+    }
+
+    /**
+     * Plots a function on following frames (see Grapher.drawGraph()).
+     *
+     * @param function function to plot
+     * @param rangeLow lowest x-value, inclusive, to plot
+     * @param rangeHigh highest x-value, inclusive, to plot
+     */
+    public void setFunction(DoubleUnaryOperator function, double rangeLow, double rangeHigh) {
+        setFunction(BatchFunction.of(function), rangeLow, rangeHigh);
+    }
+
+    /**
+     * Plots a function on following frames (see Grapher.drawGraph()).
+     *
+     * @param function function to plot
+     * @param rangeLow lowest x-value, inclusive, to plot
+     * @param rangeHigh highest x-value, inclusive, to plot
+     */
+    public void setFunction(BatchFunction function, double rangeLow, double rangeHigh) {
+        setContent((grapher, image) -> grapher.drawGraphOnGrid(image, function, rangeLow, rangeHigh));
+        this.function = function;
+    }
+
+    /**
+     * Draws the graph's data with a custom job on following frames.
+     * The job is called with the renderer's Grapher and image and
+     * should draw on top of the grid, e.g. with drawGraphOnGrid().
+     * It may be asked to draw only part of the image.
+     *
+     * @param content job drawing the data, or null to draw the grid alone
+     */
+    public void setContent(BatchRenderer.Job content) {
+        this.content = content;
+        function = null;
+        valid = false;
+    }
+
+    /**
+     * Makes the next frame draw the whole image again, e.g. after the
+     * data being plotted has changed. The values remembered for a
+     * function being plotted are forgotten.
+     */
+    public void invalidate() {
+        if(function != null) {
+            samples.invalidate(function);
+        }
+        valid = false;
+    }
+
+    /**
+     * Draws a frame showing the given window. If only the window's
+     * position changed since the last frame, the last frame is
+     * scrolled and the strips that came into view are drawn.
+     * Otherwise the whole frame is drawn.
+     *
+     * @param xMin minimum x-value to display
+     * @param xMax maximum x-value to display
+     * @param yMin minimum y-value to display
+     * @param yMax maximum y-value to display
+     * @return image holding the frame. The same image is returned
+     * and drawn over by every call
+     * @throws IndexOutOfBoundsException if xMin >= xMax or yMin >= yMax
+     */
+    public BufferedImage render(double xMin, double xMax, double yMin, double yMax)
+            throws IndexOutOfBoundsException {
+        int width = image.getWidth(), height = image.getHeight();
+        if(!valid || !sameSpan(xMax - xMin, anchorXMax - anchorXMin)
+                || !sameSpan(yMax - yMin, anchorYMax - anchorYMin)) {
+            grapher.setWindow(xMin, xMax, yMin, yMax);
+            anchorXMin = xMin;
+            anchorXMax = xMax;
+            anchorYMin = yMin;
+            anchorYMax = yMax;
+            originX = 0;
+            originY = 0;
+            draw(null);
+            valid = true;
+            endFrame(xMin, xMax);
+            return image;
+        }
+
+        /* Round the move to whole pixels from the anchor, so rounding errors do not build up */
+        int new_x = (int) Math.round((xMin - anchorXMin) / ((anchorXMax - anchorXMin) / width));
+        int new_y = (int) Math.round((anchorYMax - yMax) / ((anchorYMax - anchorYMin) / height));
+        int dx = new_x - originX, dy = new_y - originY;
+        originX = new_x;
+        originY = new_y;
+        if(Math.abs(dx) >= width || Math.abs(dy) >= height) {
+            draw(null);
+        } else if(dx != 0 || dy != 0) {
+            /* Scroll what is still visible, then draw the strips that came into view */
+            Graphics2D g = image.createGraphics();
+            g.copyArea(0, 0, width, height, -dx, -dy);
+            g.dispose();
+            if(dx != 0) {
+                draw(new Rectangle(dx > 0 ? width - dx : 0, 0, Math.abs(dx), height));
+            }
+            if(dy != 0) {
+                draw(new Rectangle(0, dy > 0 ? height - dy : 0, width, Math.abs(dy)));
+            }
+        }
+        endFrame(xMin, xMax);
+        return image;
+    }
+
+    /**
+     * @return image frames are drawn into
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Draws the grid and content of the current frame.
+     *
+     * @param region area of the image to draw, or null to draw all of it
+     */
+    private void draw(Rectangle region) {
+        grapher.setOrigin(originX, originY);
+        grapher.setRegion(region);
+        grapher.drawGrid(image);
+        if(content != null) {
+            content.render(grapher, image);
+        }
+        grapher.setRegion(null);
+    }
+
+    /**
+     * Forgets the function values of earlier frames that are no longer
+     * in or near the window, if they are kept in the renderer's own
+     * cache.
+     *
+     * @param xMin minimum x-value of the frame's window
+     * @param xMax maximum x-value of the frame's window
+     */
+    private void endFrame(double xMin, double xMax) {
+        if(function != null && ownSamples) {
+            double span = xMax - xMin;
+            samples.retain(function, xMin - span, xMax + span);
+        }
+    }
+
+    /**
+     * Checks whether two window spans are equal apart from rounding
+     * error, as when a window is moved by adding the same amount to
+     * its minimum and maximum.
+     *
+     * @param span span of the new window
+     * @param anchorSpan span of the anchor window
+     * @return whether the spans are equal
+     */
+    private static boolean sameSpan(double span, double anchorSpan) {
+        return Math.abs(span - anchorSpan) <= 1e-9 * anchorSpan;
+    }
+}
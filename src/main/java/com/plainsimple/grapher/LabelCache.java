@@ -0,0 +1,336 @@
+package com.plainsimple.grapher;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of pre-rendered glyphs used to draw tick and point
+ * labels. Each character is rendered once per font into a coverage
+ * mask, and labels are drawn afterwards by blending the masks of their
+ * characters onto the graph in the current color, rather than by
+ * laying out and rasterizing the text again. Glyphs are grouped by
+ * font and antialiasing, and the least recently used groups are
+ * evicted to keep the cache within a fixed number of bytes. A cache
+ * may be shared by several Graphers and is safe to use from several
+ * threads.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class LabelCache {
+
+    /**
+     * Maximum number of bytes of glyph data held by the cache.
+     */
+    private final long maxBytes;
+
+    /**
+     * Number of bytes of glyph data currently held by the cache.
+     */
+    private long bytes;
+
+    /**
+     * Glyphs of each font in access order, least recently used first.
+     */
+    private final LinkedHashMap<Object, Glyphs> fonts =
+            new LinkedHashMap<Object, Glyphs>(16, 0.75f, true);
+
+    /**
+     * Number of glyphs rendered into the cache.
+     */
+    private long rendered;
+
+    /**
+     * Number of fonts' glyphs removed to keep the cache within maxBytes.
+     */
+    private long evictions;
+
+    /**
+     * Creates an empty cache holding at most maxBytes of glyph data.
+     *
+     * @param maxBytes maximum size, in bytes, of the glyphs held by the cache
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    public LabelCache(long maxBytes) {
+        if(maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes cannot be negative");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the glyphs of a font, creating an empty set of glyphs
+     * if the font is not cached. Glyphs are rendered as they are
+     * first requested.
+     *
+     * @param font font of the glyphs
+     * @param antialiased whether or not the glyphs are antialiased
+     * @return glyphs of the font
+     */
+    synchronized Glyphs get(Font font, boolean antialiased) {
+        Object key = Arrays.asList(font, antialiased);
+        Glyphs glyphs = fonts.get(key);
+        if(glyphs == null) {
+            glyphs = new Glyphs(font, antialiased);
+            fonts.put(key, glyphs);
+        }
+        return glyphs;
+    }
+
+    /**
+     * Removes all glyphs from the cache. Counters are not reset.
+     */
+    public synchronized void clear() {
+        fonts.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return number of glyphs rendered into the cache
+     */
+    public synchronized long getRendered() {
+        return rendered;
+    }
+
+    /**
+     * @return number of fonts whose glyphs were evicted to keep the
+     * cache within its size
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of fonts currently cached
+     */
+    public synchronized int size() {
+        return fonts.size();
+    }
+
+    /**
+     * @return number of bytes of glyph data currently cached
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Counts a newly rendered glyph and evicts the glyphs of least
+     * recently used fonts, other than the glyph's own, until the
+     * cache is within maxBytes.
+     *
+     * @param owner glyphs the glyph was added to
+     * @param size size, in bytes, of the glyph
+     */
+    private synchronized void added(Glyphs owner, long size) {
+        rendered++;
+        if(!fonts.containsValue(owner)) {
+            /* The font was evicted while it was in use */
+            return;
+        }
+        owner.bytes += size;
+        bytes += size;
+        Iterator<Map.Entry<Object, Glyphs>> eldest = fonts.entrySet().iterator();
+        while(bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<Object, Glyphs> entry = eldest.next();
+            if(entry.getValue() != owner) {
+                bytes -= entry.getValue().bytes;
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Glyphs of one font, rendered as they are first requested.
+     */
+    final class Glyphs {
+
+        /**
+         * Font of the glyphs.
+         */
+        private final Font font;
+
+        /**
+         * Whether or not the glyphs are antialiased.
+         */
+        private final boolean antialiased;
+
+        /**
+         * Metrics of the font, as measured when drawing text with
+         * the same antialiasing.
+         */
+        final FontMetrics metrics;
+
+        /**
+         * Glyphs of the first 128 characters, indexed by character,
+         * or null for those not rendered yet.
+         */
+        private final Glyph[] ascii = new Glyph[128];
+
+        /**
+         * Glyphs of other characters.
+         */
+        private final HashMap<Character, Glyph> others = new HashMap<Character, Glyph>();
+
+        /**
+         * Number of bytes of glyph data rendered for the font.
+         * Guarded by the cache's lock.
+         */
+        private long bytes;
+
+        /**
+         * @param font font of the glyphs
+         * @param antialiased whether or not the glyphs are antialiased
+         */
+        private Glyphs(Font font, boolean antialiased) {
+            this.font = font;
+            this.antialiased = antialiased;
+            BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = createGraphics(scratch);
+            metrics = g.getFontMetrics();
+            g.dispose();
+        }
+
+        /**
+         * Returns the glyph of a character, rendering it if needed.
+         *
+         * @param c character to look up
+         * @return glyph of the character
+         */
+        Glyph get(char c) {
+            /* Glyphs are immutable, so a glyph seen without locking is complete */
+            Glyph glyph = c < ascii.length ? ascii[c] : null;
+            if(glyph == null) {
+                glyph = render(c);
+            }
+            return glyph;
+        }
+
+        /**
+         * Looks up a glyph while holding the lock on the glyphs,
+         * rendering and storing it if it is still missing.
+         *
+         * @param c character to render
+         * @return glyph of the character
+         */
+        private Glyph render(char c) {
+            Glyph glyph;
+            synchronized(this) {
+                glyph = c < ascii.length ? ascii[c] : others.get(c);
+                if(glyph != null) {
+                    return glyph;
+                }
+                glyph = new Glyph(this, c);
+                if(c < ascii.length) {
+                    ascii[c] = glyph;
+                } else {
+                    others.put(c, glyph);
+                }
+            }
+            added(this, glyph.coverage.length);
+            return glyph;
+        }
+
+        /**
+         * Creates a Graphics2D object drawing text in the font
+         * the same way Grapher does when it draws text directly.
+         *
+         * @param image image to draw on
+         * @return Graphics2D object drawing on the image
+         */
+        private Graphics2D createGraphics(BufferedImage image) {
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiased ?
+                    RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+            g.setFont(font);
+            return g;
+        }
+    }
+
+    /**
+     * Coverage mask of a single character, positioned relative to
+     * the start of its baseline.
+     */
+    static final class Glyph {
+
+        /**
+         * Coverage (0-255) of each pixel of the glyph's bounding
+         * box, row by row.
+         */
+        final byte[] coverage;
+
+        /**
+         * Dimensions, in pixels, of the glyph's bounding box.
+         */
+        final int width, height;
+
+        /**
+         * Offset, in pixels, of the bounding box's top-left corner
+         * from the start of the baseline.
+         */
+        final int offsetX, offsetY;
+
+        /**
+         * Distance, in pixels, the baseline advances past the glyph.
+         */
+        final int advance;
+
+        /**
+         * Renders a character.
+         *
+         * @param glyphs glyphs of the font the character is rendered in
+         * @param c character to render
+         */
+        private Glyph(Glyphs glyphs, char c) {
+            String s = String.valueOf(c);
+            advance = glyphs.metrics.charWidth(c);
+            FontRenderContext frc = glyphs.metrics.getFontRenderContext();
+            Rectangle bounds = glyphs.font.createGlyphVector(frc, s).getPixelBounds(frc, 0, 0);
+            if(bounds.isEmpty()) {
+                coverage = new byte[0];
+                width = height = offsetX = offsetY = 0;
+                return;
+            }
+            /* Pad the bounds by a pixel in case rendering reaches slightly past them */
+            offsetX = bounds.x - 1;
+            offsetY = bounds.y - 1;
+            width = bounds.width + 2;
+            height = bounds.height + 2;
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = glyphs.createGraphics(image);
+            g.setColor(Color.WHITE);
+            g.drawString(s, -offsetX, -offsetY);
+            g.dispose();
+            coverage = new byte[width * height];
+            for(int y = 0, i = 0; y < height; y++) {
+                for(int x = 0; x < width; x++, i++) {
+                    coverage[i] = (byte) (image.getRGB(x, y) >>> 24);
+                }
+            }
+        }
+    }
+}
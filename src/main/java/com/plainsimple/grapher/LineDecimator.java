@@ -0,0 +1,216 @@
+package com.plainsimple.grapher;
+
+import java.util.Arrays;
+
+/**
+ * Reduces a series of points drawn as a connected line to at most
+ * four points per pixel column of the graph (the first, last, lowest
+ * and highest point to fall in each column), a technique known as M4
+ * decimation. A line through them covers the same pixels as one
+ * through every point. Points are not culled by y-coordinate, since
+ * the line to a point above or below the graph may cross it, but of
+ * the points left and right of the window only the last before it and
+ * the first after it are kept, so that the line still reaches the
+ * edges of the graph. Points whose y-coordinate is NaN or infinite
+ * break the line, so the first and last of them in each column are
+ * kept as well. Used by MinMaxPyramid, which can find these points
+ * without reading every point. Memory and the size of the reduced
+ * series depend only on the width of the graph, not on the number of
+ * points added.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class LineDecimator {
+
+    /**
+     * Number of points kept for each column, and the slots they are
+     * kept in: first, last, lowest, highest, first and last break.
+     */
+    private static final int KEPT = 6;
+    private static final int FIRST = 0, LAST = 1, LOW = 2, HIGH = 3, FIRST_BREAK = 4, LAST_BREAK = 5;
+
+    /**
+     * Transform the line is drawn with, which points are assigned to
+     * columns by.
+     */
+    private final PixelTransform transform;
+
+    /**
+     * Number of pixel columns points are kept for, including the
+     * column just right of the graph, where a point at the right edge
+     * of the window falls.
+     */
+    private final int columns;
+
+    /**
+     * For each column, the sequence number of each point kept, or -1
+     * if there is none, and its coordinates, indexed by column * KEPT
+     * plus the point's slot.
+     */
+    private final long[] seqs;
+    private final double[] xs, ys;
+
+    /**
+     * Last point left of the window and first point right of it, and
+     * whether each has been seen.
+     */
+    private double beforeX, beforeY, afterX, afterY;
+    private boolean before, after;
+
+    /**
+     * Sequence number to assign to the next point added.
+     */
+    private long seq;
+
+    /**
+     * Creates a decimator for a graph.
+     *
+     * @param transform transform the line is drawn with
+     * @param width width, in pixels, of the graph
+     */
+    LineDecimator(PixelTransform transform, int width) {
+        this.transform = transform;
+        columns = width + 1;
+        seqs = new long[columns * KEPT];
+        xs = new double[columns * KEPT];
+        ys = new double[columns * KEPT];
+        Arrays.fill(seqs, -1);
+    }
+
+    /**
+     * Adds the next point of the series. Points must be added in the
+     * order the line connects them.
+     *
+     * @param x x-coordinate of point
+     * @param y y-coordinate of point
+     */
+    void add(double x, double y) {
+        long s = seq++;
+        int side = side(x);
+        if(side < 0) {
+            beforeX = x;
+            beforeY = y;
+            before = true;
+            return;
+        } else if(side > 0) {
+            if(!after) {
+                afterX = x;
+                afterY = y;
+                after = true;
+            }
+            return;
+        } else if(x != x) {
+            return;
+        }
+        int base = (int) transform.column(x) * KEPT;
+        if(!Double.isFinite(y)) {
+            if(seqs[base + FIRST_BREAK] < 0) {
+                keep(base + FIRST_BREAK, s, x, y);
+            }
+            keep(base + LAST_BREAK, s, x, y);
+            return;
+        }
+        if(seqs[base + FIRST] < 0) {
+            keep(base + FIRST, s, x, y);
+            keep(base + LOW, s, x, y);
+            keep(base + HIGH, s, x, y);
+        } else if(y < ys[base + LOW]) {
+            keep(base + LOW, s, x, y);
+        } else if(y > ys[base + HIGH]) {
+            keep(base + HIGH, s, x, y);
+        }
+        keep(base + LAST, s, x, y);
+    }
+
+    /**
+     * @param slot index of the kept point to replace
+     * @param s sequence number of the point
+     * @param x x-coordinate of the point
+     * @param y y-coordinate of the point
+     */
+    private void keep(int slot, long s, double x, double y) {
+        seqs[slot] = s;
+        xs[slot] = x;
+        ys[slot] = y;
+    }
+
+    /**
+     * Finds which side of the window a point is on, by the column of
+     * the pixel it is drawn at, so that points are sorted into columns
+     * exactly as they are drawn.
+     *
+     * @param x x-coordinate of point
+     * @return a negative number if the point is left of the window, a
+     * positive number if it is right of it, or 0 if it is in it or its
+     * x-coordinate is NaN
+     */
+    int side(double x) {
+        double column = transform.column(x);
+        return column < 0 ? -1 : column >= columns ? 1 : 0;
+    }
+
+    /**
+     * @param x0 x-coordinate of a point in the window
+     * @param x1 x-coordinate of another point in the window
+     * @return whether the points fall in the same column
+     */
+    boolean sameColumn(double x0, double x1) {
+        return transform.column(x0) == transform.column(x1);
+    }
+
+    /**
+     * Returns the decimated series in the same 2d array layout
+     * used by Grapher.drawGraphOnGrid(), where double[0][index] gives
+     * the x-coordinate of a point and double[1][index] gives the
+     * corresponding y-coordinate, in the order they were added.
+     *
+     * @return the points kept
+     */
+    double[][] toPoints() {
+        double[] x = new double[columns * KEPT + 2], y = new double[x.length];
+        int count = 0;
+        if(before) {
+            x[count] = beforeX;
+            y[count++] = beforeY;
+        }
+        int[] order = new int[KEPT];
+        for(int base = 0; base < seqs.length; base += KEPT) {
+            /* Sort the column's points by sequence number, dropping empty slots and repeats */
+            int kept = 0;
+            for(int slot = base; slot < base + KEPT; slot++) {
+                if(seqs[slot] < 0) {
+                    continue;
+                }
+                int j = kept++;
+                for(; j > 0 && seqs[order[j - 1]] > seqs[slot]; j--) {
+                    order[j] = order[j - 1];
+                }
+                order[j] = slot;
+            }
+            for(int i = 0; i < kept; i++) {
+                if(i == 0 || seqs[order[i]] != seqs[order[i - 1]]) {
+                    x[count] = xs[order[i]];
+                    y[count++] = ys[order[i]];
+                }
+            }
+        }
+        if(after) {
+            x[count] = afterX;
+            y[count++] = afterY;
+        }
+        return new double[][] {Arrays.copyOf(x, count), Arrays.copyOf(y, count)};
+    }
+}
@@ -0,0 +1,290 @@
+package com.plainsimple.grapher;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Plots a live series, such as a sensor feed, as a line scrolling
+ * from right to left, with the newest samples at the right edge.
+ * Samples are read from a SampleRingBuffer that another thread
+ * appends to, and their x-values, e.g. the times they were taken,
+ * should ascend. Each frame, the last frame is shifted left by the
+ * whole number of pixels the window moved since, only the strip that
+ * scrolled into view has its grid, axis, ticks and labels drawn, and
+ * only the samples appended since the last frame are drawn, joined to
+ * the last sample drawn before them. The cost of a frame depends on
+ * how much time and data it adds, not on how many samples are held
+ * or shown. The whole image is only drawn again when the window's
+ * span or style changes, or it jumps back or by a whole width.
+ * A chart draws into one image and is meant to be used by one thread
+ * at a time, which need not be the thread appending samples.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class LiveChart {
+
+    /**
+     * Grapher frames are drawn with, used only by this chart.
+     */
+    private final Grapher grapher;
+
+    /**
+     * Image frames are drawn into.
+     */
+    private final BufferedImage image;
+
+    /**
+     * Samples being plotted.
+     */
+    private final SampleRingBuffer samples;
+
+    /**
+     * Reads the samples appended since the last frame.
+     */
+    private SampleRingBuffer.Reader reader;
+
+    /**
+     * Width of the window in units of x, and the range of y-values shown.
+     */
+    private double span, yMin, yMax;
+
+    /**
+     * Color and stroke of the line.
+     */
+    private Color color;
+    private BasicStroke stroke;
+
+    /**
+     * Minimum x-value of the window the chart was last fully drawn
+     * with. Frames are offset from it by whole pixels.
+     */
+    private double anchorXMin;
+
+    /**
+     * Offset, in pixels, of the current frame from the anchor window.
+     */
+    private int originX;
+
+    /**
+     * Whether or not image holds a frame that can be reused.
+     */
+    private boolean valid;
+
+    /**
+     * Samples already drawn whose line may reach past the right edge
+     * of the image, with the one before them, followed by any samples
+     * read for the current frame. The first count elements are in use.
+     */
+    private double[] x = new double[256], y = new double[256];
+    private int count;
+
+    /**
+     * Creates a chart drawing frames of the given size.
+     *
+     * @param spec settings to draw the chart with. Its window is
+     * replaced by the span and y-range given here
+     * @param samples samples to plot
+     * @param span width of the window in units of x, e.g. the number
+     * of seconds shown
+     * @param yMin minimum y-value to display
+     * @param yMax maximum y-value to display
+     * @param width width, in pixels, of frames
+     * @param height height, in pixels, of frames
+     * @param imageType type of BufferedImage to draw frames into,
+     * e.g. BufferedImage.TYPE_INT_RGB
+     * @throws IndexOutOfBoundsException if span is not positive or yMin >= yMax
+     */
+    public LiveChart(GraphSpec spec, SampleRingBuffer samples, double span, double yMin, double yMax,
+                     int width, int height, int imageType) throws IndexOutOfBoundsException {
+        grapher = new Grapher(spec);
+        image = new BufferedImage(width, height, imageType);
+        this.samples = samples;
+        setWindow(span, yMin, yMax);
+    }
+
+    /**
+     * Changes the span and y-range of the window. The next frame is
+     * drawn in full.
+     *
+     * @param span width of the window in units of x
+     * @param yMin minimum y-value to display
+     * @param yMax maximum y-value to display
+     * @throws IndexOutOfBoundsException if span is not positive or yMin >= yMax
+     */
+    public void setWindow(double span, double yMin, double yMax) throws IndexOutOfBoundsException {
+        if(!(span > 0)) {
+            throw new IndexOutOfBoundsException("Error: span must be positive");
+        }
+        if(yMin >= yMax) {
+            throw new IndexOutOfBoundsException("Error: Invalid Window Range. " +
+                    "yMin must be less than yMax");
+        }
+        this.span = span;
+        this.yMin = yMin;
+        this.yMax = yMax;
+        valid = false;
+    }
+
+    /**
+     * Sets how the line is drawn. The next frame is drawn in full.
+     *
+     * @param color color of the line, or null to use the spec's plot color
+     * @param stroke stroke of the line, or null for a line one pixel wide
+     */
+    public void setLineStyle(Color color, BasicStroke stroke) {
+        this.color = color;
+        this.stroke = stroke;
+        valid = false;
+    }
+
+    /**
+     * Makes the next frame draw the whole image again from every
+     * sample held.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Draws a frame whose window ends at the given x-value, normally
+     * the current time or the x-value of the newest sample.
+     *
+     * @param xMax maximum x-value to display
+     * @return image holding the frame. The same image is returned
+     * and drawn over by every call
+     */
+    public BufferedImage render(double xMax) {
+        int width = image.getWidth(), height = image.getHeight();
+        double xMin = xMax - span;
+        /* Round the move to whole pixels from the anchor, so rounding errors do not build up */
+        int new_x = (int) Math.round((xMin - anchorXMin) / (span / width));
+        int dx = new_x - originX;
+        if(!valid || dx < 0 || dx >= width) {
+            drawAll(xMin, xMax);
+            return image;
+        }
+        originX = new_x;
+        grapher.setOrigin(originX, 0);
+        if(dx > 0) {
+            /* Scroll, then draw the strip that came into view along with lines reaching into it */
+            Graphics2D g = image.createGraphics();
+            g.copyArea(0, 0, width, height, -dx, 0);
+            g.dispose();
+            Rectangle strip = new Rectangle(width - dx, 0, dx, height);
+            grapher.setRegion(strip);
+            grapher.drawGrid(image);
+            drawLine(0, count);
+            grapher.setRegion(null);
+        }
+        int first = Math.max(0, count - 1);
+        readNew();
+        drawLine(first, count);
+        keepTail();
+        return image;
+    }
+
+    /**
+     * @return image frames are drawn into
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Draws the whole image from every sample held, and makes its
+     * window the anchor of following frames.
+     *
+     * @param xMin minimum x-value to display
+     * @param xMax maximum x-value to display
+     */
+    private void drawAll(double xMin, double xMax) {
+        grapher.setWindow(xMin, xMax, yMin, yMax);
+        anchorXMin = xMin;
+        originX = 0;
+        grapher.setOrigin(0, 0);
+        grapher.drawGrid(image);
+        reader = samples.newReader();
+        count = 0;
+        readNew();
+        /* Samples left of the window are dropped, apart from the one the line enters it from */
+        int first = 0;
+        while(first + 1 < count && x[first + 1] < xMin) {
+            first++;
+        }
+        drawLine(first, count);
+        keepTail();
+        valid = true;
+    }
+
+    /**
+     * Reads the samples appended since the last read to the end of x and y.
+     */
+    private void readNew() {
+        while(true) {
+            if(count == x.length) {
+                x = Arrays.copyOf(x, count * 2);
+                y = Arrays.copyOf(y, count * 2);
+            }
+            int read = reader.read(x, y, count);
+            if(read == 0) {
+                return;
+            }
+            count += read;
+        }
+    }
+
+    /**
+     * Draws the line joining a range of the samples held.
+     *
+     * @param from index of the first sample
+     * @param to index after the last sample
+     */
+    private void drawLine(int from, int to) {
+        if(to - from < 2) {
+            return;
+        }
+        Series line = Series.line(new double[][] { Arrays.copyOfRange(x, from, to), Arrays.copyOfRange(y, from, to) });
+        line.setColor(color);
+        line.setStroke(stroke);
+        grapher.drawSeriesOnGrid(image, Collections.singletonList(line));
+    }
+
+    /**
+     * Forgets the samples held except the last and those whose line
+     * may reach past the right edge of the image, with the one before
+     * them, which will be needed to draw the next frame.
+     */
+    private void keepTail() {
+        int width = image.getWidth();
+        double unit = span / width;
+        float line_width = stroke == null ? 1 : stroke.getLineWidth();
+        double edge = anchorXMin + (originX + width - (Math.ceil(line_width) / 2 + 2)) * unit;
+        int first = count - 1;
+        while(first > 0 && x[first] >= edge) {
+            first--;
+        }
+        if(first > 0) {
+            count -= first;
+            System.arraycopy(x, first, x, 0, count);
+            System.arraycopy(y, first, y, 0, count);
+        }
+    }
+}
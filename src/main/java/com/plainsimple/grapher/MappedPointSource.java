@@ -0,0 +1,153 @@
+package com.plainsimple.grapher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads points from a binary file of x- and y-coordinates stored as
+ * pairs of 8-byte doubles: x0, y0, x1, y1, and so on. The file is
+ * memory-mapped a segment at a time, so points are copied straight
+ * from the operating system's page cache into each batch and files
+ * of any size can be plotted without reading them onto the heap.
+ * A source can be rewound to plot the file again.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class MappedPointSource implements PointSource, Closeable {
+
+    /**
+     * Size, in bytes, of each point in the file.
+     */
+    private static final int POINT_BYTES = 16;
+
+    /**
+     * Size, in bytes, of each segment of the file mapped at once.
+     * A multiple of POINT_BYTES.
+     */
+    private static final long SEGMENT_BYTES = 64L << 20;
+
+    /**
+     * Channel of the file being read.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Byte order of the doubles in the file.
+     */
+    private final ByteOrder order;
+
+    /**
+     * Number of points in the file.
+     */
+    private final long points;
+
+    /**
+     * Index of the next point to map.
+     */
+    private long next;
+
+    /**
+     * Coordinates in the currently mapped segment, or null if no
+     * segment is mapped.
+     */
+    private DoubleBuffer segment;
+
+    /**
+     * Opens a file of doubles stored in big-endian order, as written
+     * by DataOutputStream.
+     *
+     * @param path path of file to read
+     * @throws IOException if the file cannot be opened or is not a
+     * whole number of points long
+     */
+    public MappedPointSource(Path path) throws IOException {
+        this(path, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Opens a file of doubles stored in the given byte order.
+     *
+     * @param path path of file to read
+     * @param order byte order of the doubles in the file, e.g.
+     * ByteOrder.LITTLE_ENDIAN for files written by most C programs
+     * @throws IOException if the file cannot be opened or is not a
+     * whole number of points long
+     */
+    public MappedPointSource(Path path, ByteOrder order) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if(size % POINT_BYTES != 0) {
+            channel.close();
+            throw new IOException(path + " is not a whole number of points long (" + size + " bytes)");
+        }
+        this.order = order;
+        points = size / POINT_BYTES;
+    }
+
+    @Override
+    public int read(double[] x, double[] y) throws IOException {
+        int count = 0;
+        while(count < x.length) {
+            if(segment == null || !segment.hasRemaining()) {
+                if(next == points) {
+                    break;
+                }
+                long length = Math.min(points - next, SEGMENT_BYTES / POINT_BYTES);
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, next * POINT_BYTES,
+                        length * POINT_BYTES).order(order).asDoubleBuffer();
+                next += length;
+            }
+            int batch = Math.min(x.length - count, segment.remaining() / 2);
+            for(int i = 0; i < batch; i++, count++) {
+                x[count] = segment.get();
+                y[count] = segment.get();
+            }
+        }
+        return count == 0 && x.length > 0 ? -1 : count;
+    }
+
+    /**
+     * @return number of points in the file
+     */
+    public long size() {
+        return points;
+    }
+
+    /**
+     * Starts reading from the first point of the file again.
+     */
+    public void rewind() {
+        next = 0;
+        segment = null;
+    }
+
+    /**
+     * Closes the file. Segments already mapped stay valid until
+     * they are garbage collected.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        segment = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,213 @@
+package com.plainsimple.grapher;
+
+import java.util.Arrays;
+
+/**
+ * Reduces a series of points plotted as markers to the first point to
+ * fall on each pixel, dropping points whose markers would be stamped
+ * exactly over an earlier marker and points too far off the graph for
+ * any of their marker to show. Every marker position is kept, so the
+ * only difference decimation makes is to antialiased edges: a marker
+ * stamped once has lighter edges than the same marker stamped over
+ * itself many times. Pixels are tracked with a bit each, or, on graphs
+ * too large for that, in a hash set, so memory and the size of the
+ * reduced series depend on the size of the graph and the number of
+ * pixels points fall on rather than on the number of points added.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class MarkerDecimator {
+
+    /**
+     * Points converted to pixels at a time.
+     */
+    private static final int BATCH = 4096;
+
+    /**
+     * Largest number of pixels tracked one bit per pixel.
+     */
+    private static final long MAX_BITS = 1L << 26;
+
+    /**
+     * Converts points to the pixels their markers are centered on.
+     */
+    private final PixelTransform transform;
+
+    /**
+     * Bounds, inclusive, of the pixels whose markers can show, and the
+     * number of columns between them.
+     */
+    private final int left, top, right, bottom;
+    private final long columns;
+
+    /**
+     * Bits marking the pixels points have fallen on, one per pixel
+     * row by row, or null if the graph has too many pixels and they
+     * are tracked in pixels instead.
+     */
+    private final long[] bits;
+
+    /**
+     * Open-addressed set of the pixels points have fallen on, each
+     * stored as one more than its index so that 0 marks an empty slot,
+     * used for graphs too large to track a bit per pixel.
+     */
+    private long[] pixels;
+
+    /**
+     * Number of pixels points have fallen on.
+     */
+    private int size;
+
+    /**
+     * Coordinates of the points kept, in the order they were added.
+     */
+    private double[] keptX = new double[1024], keptY = new double[1024];
+
+    /**
+     * Pixel coordinates of the batch being added.
+     */
+    private final int[] px = new int[BATCH], py = new int[BATCH];
+
+    /**
+     * Creates a decimator for a graph.
+     *
+     * @param transform transform points are drawn with
+     * @param width width, in pixels, of the graph
+     * @param graphTop row of the image at the top of the graph
+     * @param graphBottom row of the image at the bottom of the graph
+     * @param reach pixels from the graph's edge a marker can be
+     * centered at and still show
+     */
+    MarkerDecimator(PixelTransform transform, int width, int graphTop, int graphBottom, int reach) {
+        this.transform = transform;
+        left = -reach;
+        top = graphTop - reach;
+        right = width + reach;
+        bottom = graphBottom + reach;
+        columns = right - left + 1L;
+        long count = columns * (bottom - top + 1L);
+        bits = count <= MAX_BITS ? new long[(int) ((count + 63) >>> 6)] : null;
+        pixels = bits == null ? new long[1024] : null;
+    }
+
+    /**
+     * Adds the first count points of the given arrays to the series.
+     *
+     * @param x x-coordinates of points
+     * @param y y-coordinates of points
+     * @param count number of points to add
+     */
+    void add(double[] x, double[] y, int count) {
+        for(int from = 0; from < count; from += BATCH) {
+            int to = Math.min(count, from + BATCH);
+            transform.toPixels(x, y, from, to, px, py);
+            for(int i = from, j = 0; i < to; i++, j++) {
+                int column = px[j], row = py[j];
+                /* NaN converts to pixel 0, so it is checked for separately */
+                if(column >= left && column <= right && row >= top && row <= bottom
+                        && x[i] == x[i] && y[i] == y[i]
+                        && addPixel((row - top) * columns + column - left)) {
+                    keep(x[i], y[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a pixel to the set of pixels points have fallen on.
+     *
+     * @param index index of the pixel, row by row from the top-left
+     * corner of the bounds
+     * @return whether the pixel was not already in the set
+     */
+    private boolean addPixel(long index) {
+        if(bits != null) {
+            int word = (int) (index >>> 6);
+            long bit = 1L << index;
+            if((bits[word] & bit) != 0) {
+                return false;
+            }
+            bits[word] |= bit;
+            size++;
+            return true;
+        }
+        long key = index + 1;
+        int mask = pixels.length - 1;
+        int slot = slot(key, mask);
+        while(pixels[slot] != 0) {
+            if(pixels[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        pixels[slot] = key;
+        if(++size * 2 > pixels.length) {
+            /* Keep the set at most half full so that probes stay short */
+            long[] old = pixels;
+            pixels = new long[old.length * 2];
+            mask = pixels.length - 1;
+            for(long k : old) {
+                if(k != 0) {
+                    int s = slot(k, mask);
+                    while(pixels[s] != 0) {
+                        s = (s + 1) & mask;
+                    }
+                    pixels[s] = k;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param key one more than the index of a pixel
+     * @param mask one less than the size of the set
+     * @return slot to start looking for the pixel at
+     */
+    private static int slot(long key, int mask) {
+        /* Fibonacci hashing spreads the indices of neighbouring pixels across the set */
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    /**
+     * Stores the point that fell on the pixel just added to the set.
+     *
+     * @param x x-coordinate of point
+     * @param y y-coordinate of point
+     */
+    private void keep(double x, double y) {
+        int kept = size - 1;
+        if(kept == keptX.length) {
+            keptX = Arrays.copyOf(keptX, kept * 2);
+            keptY = Arrays.copyOf(keptY, kept * 2);
+        }
+        keptX[kept] = x;
+        keptY[kept] = y;
+    }
+
+    /**
+     * Returns the decimated series in the same 2d array layout
+     * used by Grapher.drawGraphOnGrid(), where double[0][index] gives
+     * the x-coordinate of a point and double[1][index] gives the
+     * corresponding y-coordinate, in the order the points were added.
+     *
+     * @return the points kept
+     */
+    double[][] toPoints() {
+        return new double[][] {Arrays.copyOf(keptX, size), Arrays.copyOf(keptY, size)};
+    }
+}
@@ -0,0 +1,557 @@
+package com.plainsimple.grapher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Level-of-detail index of a series of points sorted by x-coordinate,
+ * for plotting windows of series far larger than the graph is wide
+ * (see Grapher.drawGraphOnGrid(BufferedImage, MinMaxPyramid)). The
+ * series is divided into buckets of 32 consecutive points, those into
+ * buckets of 32 buckets, and so on, and the index records the lowest
+ * and highest point of every bucket. A graph is plotted by descending
+ * from the largest buckets, and only into buckets that overlap the
+ * edge of the window or of a pixel column: a bucket that falls within
+ * one column contributes just its first, last, lowest and highest
+ * points. The series is drawn as a line, and the points drawn are
+ * exactly those M4 decimation of the whole series would keep (see
+ * LineDecimator), so the line covers the same pixels as one through
+ * every point, but only O(width) buckets are read for a window of any
+ * size. Zooming far in on a series of a billion points reads a few
+ * thousand.
+ * <p>
+ * A pyramid is built in memory from arrays, or from a file of points
+ * in the format read by MappedPointSource, in which case the index is
+ * written to a second file that can be opened again later. Both files
+ * are memory-mapped, so neither has to fit on the heap.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class MinMaxPyramid {
+
+    /**
+     * Number of buckets or points in each bucket, as a power of two.
+     */
+    private static final int FANOUT_BITS = 5;
+    private static final int FANOUT = 1 << FANOUT_BITS;
+
+    /**
+     * Marks the start of an index file ("GRAPHPYR").
+     */
+    private static final long MAGIC = 0x4752415048505952L;
+
+    /**
+     * Version of the index file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size, in bytes, of the header of an index file: MAGIC, VERSION,
+     * FANOUT, the number of points, the byte order of the points file
+     * and 4 bytes of padding.
+     */
+    private static final int HEADER_BYTES = 32;
+
+    /**
+     * Number of points in each segment of a points file mapped at
+     * once (1 GB), as a power of two.
+     */
+    private static final int SEGMENT_BITS = 26;
+
+    /**
+     * Number of points in the series.
+     */
+    private final long count;
+
+    /**
+     * x- and y-coordinates of points held in memory, or null if
+     * the points are in a file.
+     */
+    private final double[] xs, ys;
+
+    /**
+     * Segments of the mapped points file, holding interleaved x- and
+     * y-coordinates, or null if the points are in memory.
+     */
+    private final DoubleBuffer[] segments;
+
+    /**
+     * Buckets of each level, smallest first: for each bucket, the
+     * index of its first lowest point and of its first highest point,
+     * or -1 and -1 if it holds a point whose y-coordinate is NaN.
+     */
+    private final LongBuffer[] levels;
+
+    /**
+     * Builds a pyramid of points held in memory. The arrays are
+     * not copied and must not be changed while the pyramid is used.
+     *
+     * @param points x- and y-values of points, where double[0][index]
+     * gives the x-coordinate of a point and double[1][index] gives the
+     * corresponding y-coordinate
+     * @throws IndexOutOfBoundsException if double[1] is shorter than double[0]
+     * @throws IllegalArgumentException if the x-coordinates are not in
+     * ascending order
+     */
+    public MinMaxPyramid(double[][] points) throws IndexOutOfBoundsException {
+        if(points[1].length < points[0].length) {
+            throw new IndexOutOfBoundsException("points[1] must have at least as many elements as points[0]");
+        }
+        count = points[0].length;
+        xs = points[0];
+        ys = points[1];
+        segments = null;
+        levels = new LongBuffer[depth(count)];
+        for(int level = 1; level <= levels.length; level++) {
+            levels[level - 1] = LongBuffer.allocate(2 * (int) buckets(count, level));
+        }
+        index();
+    }
+
+    /**
+     * @param count number of points in the series
+     * @param segments segments of the mapped points file
+     * @param levels buckets of each level, not filled in yet if the
+     * pyramid is being built
+     */
+    private MinMaxPyramid(long count, DoubleBuffer[] segments, LongBuffer[] levels) {
+        this.count = count;
+        xs = ys = null;
+        this.segments = segments;
+        this.levels = levels;
+    }
+
+    /**
+     * Builds a pyramid of a file of big-endian points (see
+     * MappedPointSource) and writes its index to a file.
+     *
+     * @param points path of the file of points, sorted by x-coordinate
+     * @param index path to write the index to, replacing any file there
+     * @return the pyramid
+     * @throws IOException if either file cannot be read or written, or
+     * the file of points is not a whole number of points long
+     * @throws IllegalArgumentException if the x-coordinates are not in
+     * ascending order, or there are more points than can be indexed
+     */
+    public static MinMaxPyramid build(Path points, Path index) throws IOException {
+        return build(points, ByteOrder.BIG_ENDIAN, index);
+    }
+
+    /**
+     * Builds a pyramid of a file of points (see MappedPointSource)
+     * and writes its index to a file.
+     *
+     * @param points path of the file of points, sorted by x-coordinate
+     * @param order byte order of the doubles in the file of points
+     * @param index path to write the index to, replacing any file there
+     * @return the pyramid
+     * @throws IOException if either file cannot be read or written, or
+     * the file of points is not a whole number of points long
+     * @throws IllegalArgumentException if the x-coordinates are not in
+     * ascending order, or there are more points than can be indexed
+     */
+    public static MinMaxPyramid build(Path points, ByteOrder order, Path index) throws IOException {
+        long count = pointsIn(points);
+        checkSize(count);
+        try(FileChannel channel = FileChannel.open(index, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putLong(MAGIC).putInt(VERSION).putInt(FANOUT).putLong(count)
+                    .putInt(order == ByteOrder.BIG_ENDIAN ? 0 : 1).putInt(0).flip();
+            while(header.hasRemaining()) {
+                channel.write(header);
+            }
+            MappedByteBuffer[] mapped = mapLevels(channel, count, FileChannel.MapMode.READ_WRITE);
+            LongBuffer[] levels = new LongBuffer[mapped.length];
+            for(int i = 0; i < mapped.length; i++) {
+                levels[i] = mapped[i].asLongBuffer();
+            }
+            MinMaxPyramid pyramid = new MinMaxPyramid(count, mapPoints(points, order, count), levels);
+            pyramid.index();
+            for(MappedByteBuffer level : mapped) {
+                level.force();
+            }
+            return pyramid;
+        }
+    }
+
+    /**
+     * Opens a pyramid whose index was written by build().
+     *
+     * @param points path of the file of points
+     * @param index path of the index of the points
+     * @return the pyramid
+     * @throws IOException if either file cannot be read, or the index
+     * is not an index of the file of points
+     */
+    public static MinMaxPyramid open(Path points, Path index) throws IOException {
+        long count = pointsIn(points);
+        try(FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while(header.hasRemaining() && channel.read(header) >= 0);
+            header.flip();
+            if(header.remaining() < HEADER_BYTES || header.getLong() != MAGIC || header.getInt() != VERSION
+                    || header.getInt() != FANOUT || header.getLong() != count
+                    || channel.size() != HEADER_BYTES + levelBytes(count, depth(count) + 1)) {
+                throw new IOException(index + " is not an index of " + points);
+            }
+            ByteOrder order = header.getInt() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            MappedByteBuffer[] mapped = mapLevels(channel, count, FileChannel.MapMode.READ_ONLY);
+            LongBuffer[] levels = new LongBuffer[mapped.length];
+            for(int i = 0; i < mapped.length; i++) {
+                levels[i] = mapped[i].asLongBuffer();
+            }
+            return new MinMaxPyramid(count, mapPoints(points, order, count), levels);
+        }
+    }
+
+    /**
+     * @return number of points in the series
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Adds the points of the series that decimating the whole series
+     * would keep to a decimator, along with as few others as the
+     * pyramid allows.
+     *
+     * @param decimator decimator for the graph being drawn
+     */
+    void decimate(LineDecimator decimator) {
+        /* The line enters the window from the last point before it and leaves to the first after it */
+        long start = countBefore(decimator, 0), end = countBefore(decimator, 1);
+        if(start > 0) {
+            decimator.add(x(start - 1), y(start - 1));
+        }
+        if(levels.length == 0) {
+            for(long i = start; i < end; i++) {
+                decimator.add(x(i), y(i));
+            }
+        } else {
+            /* The top level holds a single bucket */
+            decimate(decimator, levels.length, 0);
+        }
+        if(end < count) {
+            decimator.add(x(end), y(end));
+        }
+    }
+
+    /**
+     * Adds the points of a bucket within the window to a decimator,
+     * or only its first, last, lowest and highest points if the rest
+     * would be discarded anyway.
+     *
+     * @param decimator decimator for the graph being drawn
+     * @param level level of the bucket, from 1
+     * @param bucket index of the bucket in its level
+     */
+    private void decimate(LineDecimator decimator, int level, long bucket) {
+        long first = bucket << (FANOUT_BITS * level);
+        long last = Math.min(first + (1L << (FANOUT_BITS * level)), count) - 1;
+        double first_x = x(first), last_x = x(last);
+        int first_side = decimator.side(first_x), last_side = decimator.side(last_x);
+        if(last_side < 0 || first_side > 0) {
+            return;
+        }
+        LongBuffer buckets = levels[level - 1];
+        long low = buckets.get(2 * (int) bucket), high = buckets.get(2 * (int) bucket + 1);
+        /* A bucket entirely within the window and one column adds nothing but these four points,
+         * unless it holds a break in the line, which must be found */
+        if(low >= 0 && first_side == 0 && last_side == 0 && Double.isFinite(y(low)) && Double.isFinite(y(high))
+                && decimator.sameColumn(first_x, last_x)) {
+            addInOrder(decimator, first, low, high, last);
+            return;
+        }
+        if(level == 1) {
+            for(long i = first; i <= last; i++) {
+                double x = x(i);
+                if(decimator.side(x) == 0) {
+                    decimator.add(x, y(i));
+                }
+            }
+        } else {
+            long children = buckets(count, level - 1);
+            for(long child = bucket * FANOUT; child < Math.min((bucket + 1) * FANOUT, children); child++) {
+                decimate(decimator, level - 1, child);
+            }
+        }
+    }
+
+    /**
+     * Adds up to four points to a decimator in the order they appear
+     * in the series, adding each point only once.
+     *
+     * @param decimator decimator to add points to
+     * @param first index of the first point
+     * @param low index of the lowest point
+     * @param high index of the highest point
+     * @param last index of the last point
+     */
+    private void addInOrder(LineDecimator decimator, long first, long low, long high, long last) {
+        long middle_a = Math.min(low, high), middle_b = Math.max(low, high);
+        decimator.add(x(first), y(first));
+        if(middle_a != first) {
+            decimator.add(x(middle_a), y(middle_a));
+        }
+        if(middle_b != middle_a && middle_b != last) {
+            decimator.add(x(middle_b), y(middle_b));
+        }
+        if(last != first && last != middle_a) {
+            decimator.add(x(last), y(last));
+        }
+    }
+
+    /**
+     * Counts the points on the sides of the window before a side by
+     * binary search, since the points are sorted by x-coordinate.
+     *
+     * @param decimator decimator for the graph being drawn
+     * @param side 0 to count the points left of the window, or 1 to
+     * count those left of it or in it
+     * @return number of points
+     */
+    private long countBefore(LineDecimator decimator, int side) {
+        long low = 0, high = count;
+        while(low < high) {
+            long mid = (low + high) >>> 1;
+            if(decimator.side(x(mid)) < side) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Fills in every level of the pyramid, reading the points once
+     * in order.
+     *
+     * @throws IllegalArgumentException if the x-coordinates are not in
+     * ascending order
+     */
+    private void index() {
+        int depth = levels.length;
+        /* Lowest and highest point of the bucket being filled in at each level */
+        long[] low = new long[depth + 1], high = new long[depth + 1];
+        double[] low_y = new double[depth + 1], high_y = new double[depth + 1];
+        boolean[] nan = new boolean[depth + 1];
+        double previous_x = Double.NEGATIVE_INFINITY;
+        for(long i = 0; i < count; i++) {
+            double x = x(i), y = y(i);
+            if(!(x >= previous_x)) {
+                throw new IllegalArgumentException("x-coordinates must be in ascending order (point " + i + ")");
+            }
+            previous_x = x;
+            merge(low, high, low_y, high_y, nan, 0, i, i, i, y, y, y != y, count);
+        }
+    }
+
+    /**
+     * Merges a point or bucket into the bucket containing it on the
+     * level above, writing that bucket out once its last member has
+     * been merged and merging it into the level above in turn.
+     *
+     * @param low index of the lowest point of the bucket being filled
+     * in at each level
+     * @param high index of the highest point of the bucket being
+     * filled in at each level
+     * @param lowY y-coordinate of each low point
+     * @param highY y-coordinate of each high point
+     * @param nan whether or not each bucket being filled in holds a
+     * point whose y-coordinate is NaN
+     * @param level level of the member being merged, 0 for a point
+     * @param member index of the member in its level
+     * @param memberLow index of the member's lowest point
+     * @param memberHigh index of the member's highest point
+     * @param memberLowY y-coordinate of the member's lowest point
+     * @param memberHighY y-coordinate of the member's highest point
+     * @param memberNan whether or not the member holds a point whose
+     * y-coordinate is NaN
+     * @param members number of members in the member's level
+     */
+    private void merge(long[] low, long[] high, double[] lowY, double[] highY, boolean[] nan,
+                       int level, long member, long memberLow, long memberHigh,
+                       double memberLowY, double memberHighY, boolean memberNan, long members) {
+        if(level == levels.length) {
+            return;
+        }
+        int above = level + 1;
+        if(member % FANOUT == 0) {
+            low[above] = memberLow;
+            high[above] = memberHigh;
+            lowY[above] = memberLowY;
+            highY[above] = memberHighY;
+            nan[above] = memberNan;
+        } else {
+            /* Members are merged in order, so the first of several equal points is kept */
+            if(memberLowY < lowY[above]) {
+                low[above] = memberLow;
+                lowY[above] = memberLowY;
+            }
+            if(memberHighY > highY[above]) {
+                high[above] = memberHigh;
+                highY[above] = memberHighY;
+            }
+            nan[above] |= memberNan;
+        }
+        if(member % FANOUT == FANOUT - 1 || member == members - 1) {
+            long bucket = member / FANOUT;
+            LongBuffer buckets = levels[above - 1];
+            buckets.put(2 * (int) bucket, nan[above] ? -1 : low[above]);
+            buckets.put(2 * (int) bucket + 1, nan[above] ? -1 : high[above]);
+            merge(low, high, lowY, highY, nan, above, bucket, low[above], high[above],
+                    lowY[above], highY[above], nan[above], buckets(count, above));
+        }
+    }
+
+    /**
+     * @param i index of a point
+     * @return x-coordinate of the point
+     */
+    private double x(long i) {
+        if(xs != null) {
+            return xs[(int) i];
+        }
+        return segments[(int) (i >>> SEGMENT_BITS)].get(2 * (int) (i & ((1 << SEGMENT_BITS) - 1)));
+    }
+
+    /**
+     * @param i index of a point
+     * @return y-coordinate of the point
+     */
+    private double y(long i) {
+        if(ys != null) {
+            return ys[(int) i];
+        }
+        return segments[(int) (i >>> SEGMENT_BITS)].get(2 * (int) (i & ((1 << SEGMENT_BITS) - 1)) + 1);
+    }
+
+    /**
+     * Calculates the number of levels of a pyramid, which is the
+     * number needed for the top level to hold one bucket.
+     *
+     * @param count number of points in the series
+     * @return number of levels, 0 if there is at most one point
+     */
+    private static int depth(long count) {
+        int depth = 0;
+        while(buckets(count, depth) > 1) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * @param count number of points in the series
+     * @param level level of the pyramid, 0 for the points themselves
+     * @return number of buckets in the level
+     */
+    private static long buckets(long count, int level) {
+        long size = 1L << (FANOUT_BITS * level);
+        return (count + size - 1) / size;
+    }
+
+    /**
+     * @param count number of points in the series
+     * @param levels number of levels to total, from level 1
+     * @return size, in bytes, of the first levels - 1 levels of the index
+     */
+    private static long levelBytes(long count, int levels) {
+        long bytes = 0;
+        for(int level = 1; level < levels; level++) {
+            bytes += buckets(count, level) * 16;
+        }
+        return bytes;
+    }
+
+    /**
+     * @param count number of points in the series
+     * @throws IllegalArgumentException if the largest level of the
+     * index cannot be mapped at once
+     */
+    private static void checkSize(long count) {
+        if(buckets(count, 1) * 16 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot index more than "
+                    + (Integer.MAX_VALUE / 16L * FANOUT) + " points");
+        }
+    }
+
+    /**
+     * @param points path of a file of points
+     * @return number of points in the file
+     * @throws IOException if the file is not a whole number of points long
+     */
+    private static long pointsIn(Path points) throws IOException {
+        try(FileChannel channel = FileChannel.open(points, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size % 16 != 0) {
+                throw new IOException(points + " is not a whole number of points long (" + size + " bytes)");
+            }
+            return size / 16;
+        }
+    }
+
+    /**
+     * Maps a file of points a segment at a time.
+     *
+     * @param points path of the file of points
+     * @param order byte order of the doubles in the file
+     * @param count number of points in the file
+     * @return segments of the file
+     * @throws IOException if the file cannot be mapped
+     */
+    private static DoubleBuffer[] mapPoints(Path points, ByteOrder order, long count) throws IOException {
+        try(FileChannel channel = FileChannel.open(points, StandardOpenOption.READ)) {
+            long segment_points = 1L << SEGMENT_BITS;
+            DoubleBuffer[] segments = new DoubleBuffer[(int) ((count + segment_points - 1) / segment_points)];
+            for(int i = 0; i < segments.length; i++) {
+                long start = i * segment_points;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start * 16,
+                        Math.min(segment_points, count - start) * 16).order(order).asDoubleBuffer();
+            }
+            return segments;
+        }
+    }
+
+    /**
+     * Maps each level of an index file.
+     *
+     * @param channel channel of the index file
+     * @param count number of points indexed
+     * @param mode mode to map the levels in
+     * @return the levels, smallest first
+     * @throws IOException if the file cannot be mapped
+     */
+    private static MappedByteBuffer[] mapLevels(FileChannel channel, long count, FileChannel.MapMode mode)
+            throws IOException {
+        MappedByteBuffer[] levels = new MappedByteBuffer[depth(count)];
+        for(int level = 1; level <= levels.length; level++) {
+            levels[level - 1] = channel.map(mode, HEADER_BYTES + levelBytes(count, level),
+                    buckets(count, level) * 16);
+        }
+        return levels;
+    }
+}
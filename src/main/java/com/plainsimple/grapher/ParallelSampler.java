@@ -0,0 +1,102 @@
+package com.plainsimple.grapher;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates a BatchFunction over an array of x-values by splitting
+ * the array into chunks that are evaluated in parallel on a
+ * ForkJoinPool. Each chunk writes only its own range of the output
+ * array, so the samples come back in order and can be drawn as a
+ * polyline once evaluation finishes.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class ParallelSampler extends RecursiveAction {
+
+    /**
+     * Samplers are Serializable only because ForkJoinTask is.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Smallest number of samples worth handing to another thread.
+     */
+    private static final int MIN_CHUNK = 64;
+
+    /**
+     * Function being evaluated.
+     */
+    private final BatchFunction function;
+
+    /**
+     * x-values to evaluate at and array results are stored in.
+     */
+    private final double[] x, y;
+
+    /**
+     * Range of indices this task evaluates, from inclusive to exclusive.
+     */
+    private final int from, to;
+
+    /**
+     * Largest range of indices evaluated without splitting further.
+     */
+    private final int chunk;
+
+    private ParallelSampler(BatchFunction function, double[] x, double[] y,
+                            int from, int to, int chunk) {
+        this.function = function;
+        this.x = x;
+        this.y = y;
+        this.from = from;
+        this.to = to;
+        this.chunk = chunk;
+    }
+
+    /**
+     * Calculates y[i] = f(x[i]) for the first count x-values.
+     * If pool is null or there are too few samples to split,
+     * the function is evaluated on the calling thread.
+     *
+     * @param function function to evaluate
+     * @param x x-values to calculate f(x) for
+     * @param y array to store f(x) values in
+     * @param count number of samples to calculate
+     * @param pool ForkJoinPool to evaluate chunks on, or null
+     */
+    static void sample(BatchFunction function, double[] x, double[] y,
+                       int count, ForkJoinPool pool) {
+        if(pool == null || count < 2 * MIN_CHUNK) {
+            function.evaluate(x, y, 0, count);
+            return;
+        }
+        /* Aim for several chunks per thread so uneven costs balance out */
+        int chunk = Math.max(MIN_CHUNK, count / (pool.getParallelism() * 8));
+        pool.invoke(new ParallelSampler(function, x, y, 0, count, chunk));
+    }
+
+    @Override
+    protected void compute() {
+        if(to - from <= chunk) {
+            function.evaluate(x, y, from, to);
+        } else {
+            int mid = (from + to) >>> 1;
+            invokeAll(new ParallelSampler(function, x, y, from, mid, chunk),
+                    new ParallelSampler(function, x, y, mid, to, chunk));
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.plainsimple.grapher;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.math.BigInteger;
+
+/**
+ * Canvas that writes pixels straight into the array backing a
+ * BufferedImage, leaving how a pixel is stored to its subclasses:
+ * RasterCanvas for images with an int per pixel and ByteRasterCanvas
+ * for compact gray, palette and 1-bit images. Lines are drawn with
+ * Bresenham's algorithm (or Wu's algorithm when antialiasing is on),
+ * each pixel found from the whole line however much of it is clipped
+ * away, so that a line covers the same pixels wherever the image's
+ * edges and clip fall on it. Point markers are stamped from PointSprites rendered once per
+ * shape and size, so drawing does not allocate. Text is drawn by
+ * blending glyphs from a LabelCache, so each character is only
+ * rendered once.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+abstract class PixelCanvas implements Canvas {
+
+    /**
+     * Width, in pixels, of the image.
+     */
+    private final int width;
+
+    /**
+     * Bounds of the clip: pixels from clipLeft, inclusive, to
+     * clipRight, exclusive, and clipTop, inclusive, to clipBottom,
+     * exclusive, may be drawn.
+     */
+    private int clipLeft, clipTop, clipRight, clipBottom;
+
+    /**
+     * Alpha component of the current color.
+     */
+    private int alpha;
+
+    /**
+     * Width, in pixels, of lines drawn by drawLine().
+     */
+    private int lineWidth = 1;
+
+    /**
+     * Whether or not lines and text are antialiased.
+     */
+    private boolean antialiasing;
+
+    /**
+     * Range of the line parameter t, from 0 at the start of the line
+     * to 1 at its end, visible after clipping.
+     */
+    private double clipT0, clipT1;
+
+    /**
+     * Cache text is drawn from.
+     */
+    private final LabelCache labelCache;
+
+    /**
+     * Font used for text.
+     */
+    private Font font;
+
+    /**
+     * Glyphs of the current font with the current antialiasing,
+     * or null if they have not been looked up yet.
+     */
+    private LabelCache.Glyphs glyphs;
+
+    /**
+     * @param width width, in pixels, of the image
+     * @param height height, in pixels, of the image
+     * @param labelCache cache to draw text from
+     */
+    PixelCanvas(int width, int height, LabelCache labelCache) {
+        this.width = width;
+        this.labelCache = labelCache;
+        clipRight = width;
+        clipBottom = height;
+    }
+
+    /**
+     * Checks whether an image's pixels start at the first element of
+     * its data buffer and are stored row after row with nothing between
+     * rows, so that pixel (col, row) is at row * stride + col. An image
+     * from getSubimage() shares its parent's array at an offset and
+     * with the parent's row length, so it is usually not packed.
+     *
+     * @param image image to check
+     * @param stride elements per row of a packed image of its width
+     * @return whether the image is packed
+     */
+    static boolean isPacked(BufferedImage image, int stride) {
+        WritableRaster raster = image.getRaster();
+        if(raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+                || raster.getDataBuffer().getOffset() != 0 || raster.getDataBuffer().getNumBanks() != 1) {
+            return false;
+        }
+        SampleModel model = raster.getSampleModel();
+        if(model instanceof SinglePixelPackedSampleModel) {
+            return ((SinglePixelPackedSampleModel) model).getScanlineStride() == stride;
+        } else if(model instanceof MultiPixelPackedSampleModel) {
+            MultiPixelPackedSampleModel packed = (MultiPixelPackedSampleModel) model;
+            return packed.getDataBitOffset() == 0 && packed.getScanlineStride() == stride;
+        } else if(model instanceof ComponentSampleModel) {
+            ComponentSampleModel component = (ComponentSampleModel) model;
+            return component.getNumBands() == 1 && component.getPixelStride() == 1
+                    && component.getBandOffsets()[0] == 0 && component.getScanlineStride() == stride;
+        }
+        return false;
+    }
+
+    /**
+     * Sets every pixel of part of a row to the current color, which
+     * is opaque.
+     *
+     * @param row y-coordinate of pixels
+     * @param from x-coordinate of first pixel, inclusive
+     * @param to x-coordinate of last pixel, exclusive
+     */
+    abstract void fill(int row, int from, int to);
+
+    /**
+     * Sets a pixel to the current color, which is opaque.
+     *
+     * @param row y-coordinate of pixel
+     * @param col x-coordinate of pixel
+     */
+    abstract void put(int row, int col);
+
+    /**
+     * Composites the current color over a pixel using the
+     * Porter-Duff "source over" rule.
+     *
+     * @param row y-coordinate of pixel
+     * @param col x-coordinate of pixel
+     * @param a weight of the current color, 1-255, taking its alpha
+     * and the fraction of the pixel covered into account
+     */
+    abstract void blend(int row, int col, int a);
+
+    @Override
+    public void setColor(Color color) {
+        alpha = color.getAlpha();
+    }
+
+    @Override
+    public void setStroke(BasicStroke stroke) {
+        lineWidth = Math.max(1, Math.round(stroke.getLineWidth()));
+    }
+
+    @Override
+    public void setAntialiasing(boolean antialiasing) {
+        if(antialiasing != this.antialiasing) {
+            glyphs = null;
+        }
+        this.antialiasing = antialiasing;
+    }
+
+    @Override
+    public void setFont(Font font) {
+        this.font = font;
+        glyphs = null;
+    }
+
+    @Override
+    public FontMetrics getFontMetrics() {
+        return getGlyphs().metrics;
+    }
+
+    @Override
+    public void clipRect(int x, int y, int w, int h) {
+        clipLeft = Math.max(clipLeft, x);
+        clipTop = Math.max(clipTop, y);
+        clipRight = Math.min(clipRight, x + w);
+        clipBottom = Math.min(clipBottom, y + h);
+    }
+
+    @Override
+    public void fillRect(int x, int y, int w, int h) {
+        int x0 = Math.max(x, clipLeft), x1 = Math.min(x + w, clipRight);
+        int y0 = Math.max(y, clipTop), y1 = Math.min(y + h, clipBottom);
+        if(x0 >= x1) {
+            return;
+        }
+        for(int row = y0; row < y1; row++) {
+            if(alpha == 255) {
+                fill(row, x0, x1);
+            } else {
+                for(int col = x0; col < x1; col++) {
+                    cover(row, col, 255);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void drawLine(int x0, int y0, int x1, int y1) {
+        /* Horizontal and vertical lines are rectangles extended by
+         * half the line width past each end, like a square-capped stroke */
+        int half = lineWidth / 2;
+        if(y0 == y1 || x0 == x1) {
+            /* Clamped to just outside the clip, so that lines far off the image cannot overflow */
+            long left = Math.max(Math.min(x0, x1) - (long) half, clipLeft - 1L);
+            long right = Math.min(Math.max(x0, x1) - (long) half + lineWidth, clipRight + 1L);
+            long top = Math.max(Math.min(y0, y1) - (long) half, clipTop - 1L);
+            long bottom = Math.min(Math.max(y0, y1) - (long) half + lineWidth, clipBottom + 1L);
+            if(left < right && top < bottom) {
+                fillRect((int) left, (int) top, (int) (right - left), (int) (bottom - top));
+            }
+        } else if(clipLine(x0, y0, x1, y1)) {
+            if(antialiasing && lineWidth == 1) {
+                drawWuLine(x0, y0, x1, y1);
+            } else {
+                drawBresenhamLine(x0, y0, x1, y1);
+            }
+        }
+    }
+
+    /**
+     * Clips a line to the clip rectangle, extended by the line width
+     * on every side, using the Liang-Barsky algorithm so that lines to
+     * points far off the image (e.g. near an asymptote) are not walked
+     * pixel by pixel. The visible range of the line is stored in
+     * clipT0 and clipT1; the line's endpoints are left as they are, so
+     * that the pixels drawn do not depend on where it was clipped.
+     *
+     * @return whether any part of the line is inside the bounds
+     */
+    private boolean clipLine(int x0, int y0, int x1, int y1) {
+        double min_x = clipLeft - lineWidth, max_x = clipRight + lineWidth;
+        double min_y = clipTop - lineWidth, max_y = clipBottom + lineWidth;
+        double dx = (double) x1 - x0, dy = (double) y1 - y0;
+        clipT0 = 0;
+        clipT1 = 1;
+        return clipEdge(-dx, x0 - min_x) && clipEdge(dx, max_x - x0)
+                && clipEdge(-dy, y0 - min_y) && clipEdge(dy, max_y - y0);
+    }
+
+    /**
+     * Narrows the visible range [clipT0, clipT1] of the line being
+     * clipped to one edge of the clip rectangle.
+     *
+     * @param p change along the edge's axis, negated for minimum edges
+     * @param q distance from the start of the line to the edge
+     * @return whether part of the line is still visible
+     */
+    private boolean clipEdge(double p, double q) {
+        if(p == 0) {
+            return q >= 0;
+        }
+        double t = q / p;
+        if(p < 0) {
+            clipT0 = Math.max(clipT0, t);
+        } else {
+            clipT1 = Math.min(clipT1, t);
+        }
+        return clipT0 <= clipT1;
+    }
+
+    /**
+     * Draws the visible part of a line using Bresenham's algorithm,
+     * stamping a square of lineWidth pixels at every step. Step i of
+     * n along the major axis is moved round(i * d / n) pixels, ties
+     * away from the start, along the minor axis, where d is the
+     * line's extent along it: the pixels Bresenham's algorithm visits
+     * walking the whole line. Only the steps from clipT0 to clipT1
+     * are walked.
+     */
+    private void drawBresenhamLine(int x0, int y0, int x1, int y1) {
+        long dx = Math.abs((long) x1 - x0), dy = Math.abs((long) y1 - y0);
+        int sx = x0 < x1 ? 1 : -1, sy = y0 < y1 ? 1 : -1;
+        boolean x_major = dx >= dy;
+        long n = x_major ? dx : dy, d = x_major ? dy : dx;
+        long first = Math.max(0, (long) Math.floor(clipT0 * n) - 1);
+        long last = Math.min(n, (long) Math.ceil(clipT1 * n) + 1);
+
+        /* The minor offset of step i is floor((2id + n) / 2n); the remainder is carried from step to step */
+        long minor, remainder;
+        if(n < 1L << 30) {
+            long numerator = 2 * first * d + n;
+            minor = numerator / (2 * n);
+            remainder = numerator % (2 * n);
+        } else {
+            /* 2id may not fit in a long for lines between points far off the image */
+            BigInteger[] division = BigInteger.valueOf(first).multiply(BigInteger.valueOf(2 * d))
+                    .add(BigInteger.valueOf(n)).divideAndRemainder(BigInteger.valueOf(2 * n));
+            minor = division[0].longValue();
+            remainder = division[1].longValue();
+        }
+        int half = lineWidth / 2;
+        for(long i = first; i <= last; i++) {
+            int x = (int) (x0 + sx * (x_major ? i : minor));
+            int y = (int) (y0 + sy * (x_major ? minor : i));
+            if(lineWidth == 1) {
+                plot(x, y, 255);
+            } else {
+                fillRect(x - half, y - half, lineWidth, lineWidth);
+            }
+            remainder += 2 * d;
+            if(remainder >= 2 * n) {
+                remainder -= 2 * n;
+                minor++;
+            }
+        }
+    }
+
+    /**
+     * Draws the visible part of a one pixel wide antialiased line
+     * using Wu's algorithm. The minor coordinate at each step is
+     * calculated from the start of the line rather than summed step
+     * by step, so it does not depend on where drawing starts.
+     */
+    private void drawWuLine(int x0, int y0, int x1, int y1) {
+        boolean steep = Math.abs((long) y1 - y0) > Math.abs((long) x1 - x0);
+        long a0 = steep ? y0 : x0, a1 = steep ? y1 : x1;
+        long b0 = steep ? x0 : y0, b1 = steep ? x1 : y1;
+
+        /* Major coordinates of the visible part, before the line is turned to run forwards */
+        double from = a0 + clipT0 * (a1 - a0), to = a0 + clipT1 * (a1 - a0);
+        if(a0 > a1) {
+            long t = a0; a0 = a1; a1 = t;
+            t = b0; b0 = b1; b1 = t;
+        }
+        double gradient = (double) (b1 - b0) / (a1 - a0);
+        long first = Math.max(a0, (long) Math.floor(Math.min(from, to)) - 1);
+        long last = Math.min(a1, (long) Math.ceil(Math.max(from, to)) + 1);
+        for(long a = first; a <= last; a++) {
+            double b = b0 + gradient * (a - a0);
+            long base = (long) Math.floor(b);
+            int coverage = (int) ((b - base) * 255);
+            if(steep) {
+                plot((int) base, (int) a, 255 - coverage);
+                plot((int) base + 1, (int) a, coverage);
+            } else {
+                plot((int) a, (int) base, 255 - coverage);
+                plot((int) a, (int) base + 1, coverage);
+            }
+        }
+    }
+
+    @Override
+    public void drawSprite(PointSprite sprite, int x, int y) {
+        drawMask(sprite.coverage, sprite.width, sprite.height, x + sprite.offsetX, y + sprite.offsetY);
+    }
+
+    @Override
+    public void drawChars(char[] chars, int offset, int length, int x, int y) {
+        LabelCache.Glyphs glyphs = getGlyphs();
+        for(int i = offset; i < offset + length; i++) {
+            LabelCache.Glyph glyph = glyphs.get(chars[i]);
+            drawMask(glyph.coverage, glyph.width, glyph.height, x + glyph.offsetX, y + glyph.offsetY);
+            x += glyph.advance;
+        }
+    }
+
+    /**
+     * Blends the current color over the pixels covered by a coverage
+     * mask, such as a glyph or a point marker.
+     *
+     * @param coverage coverage (0-255) of each pixel of the mask, row by row
+     * @param maskWidth width, in pixels, of the mask
+     * @param maskHeight height, in pixels, of the mask
+     * @param x x-coordinate of the left edge of the mask
+     * @param y y-coordinate of the top edge of the mask
+     */
+    private void drawMask(byte[] coverage, int maskWidth, int maskHeight, int x, int y) {
+        int x0 = Math.max(x, clipLeft), x1 = Math.min(x + maskWidth, clipRight);
+        int y0 = Math.max(y, clipTop), y1 = Math.min(y + maskHeight, clipBottom);
+        for(int row = y0; row < y1; row++) {
+            int mask_offset = (row - y) * maskWidth - x;
+            for(int col = x0; col < x1; col++) {
+                int c = coverage[mask_offset + col] & 0xFF;
+                if(c == 255 && alpha == 255) {
+                    put(row, col);
+                } else if(c != 0) {
+                    cover(row, col, c);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return glyphs of the current font with the current antialiasing,
+     * looked up if needed
+     */
+    private LabelCache.Glyphs getGlyphs() {
+        if(glyphs == null) {
+            glyphs = labelCache.get(font, antialiasing);
+        }
+        return glyphs;
+    }
+
+    @Override
+    public void dispose() {
+        /* Pixels are written directly, so there is nothing to release */
+    }
+
+    /**
+     * Draws the current color over a pixel with the given coverage.
+     * Pixels outside the clip are ignored.
+     *
+     * @param x x-coordinate of pixel
+     * @param y y-coordinate of pixel
+     * @param coverage fraction of the pixel covered, 0-255
+     */
+    private void plot(int x, int y, int coverage) {
+        if(x < clipLeft || y < clipTop || x >= clipRight || y >= clipBottom) {
+            return;
+        }
+        if(coverage == 255 && alpha == 255) {
+            put(y, x);
+        } else {
+            cover(y, x, coverage);
+        }
+    }
+
+    /**
+     * Draws the current color over a pixel, inside the clip, that it
+     * only partly covers or that it does not hide.
+     *
+     * @param row y-coordinate of pixel
+     * @param col x-coordinate of pixel
+     * @param coverage fraction of the pixel covered, 0-255
+     */
+    private void cover(int row, int col, int coverage) {
+        int a = alpha * coverage / 255;
+        if(a != 0) {
+            blend(row, col, a);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.plainsimple.grapher;
+
+/**
+ * Converts coordinates in graph space to pixels, one value at a time
+ * or over whole arrays. The pixels per unit along each axis are
+ * calculated once, when the transform is created, rather than for
+ * every point. toPixels() and the culling pass of cullToPixels() are
+ * plain counted loops without calls or data-dependent branches, so
+ * that the JIT can unroll them and, where the CPU supports it, compile
+ * them to SIMD instructions. Every method gives exactly the same
+ * pixels as x() and y().
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class PixelTransform {
+
+    /**
+     * Dimensions, in pixels, of the graph.
+     */
+    private final int width, height;
+
+    /**
+     * Values of x and y at the left and bottom edges of the window,
+     * and pixels per unit along each axis.
+     */
+    private final double xMin, xPxUnit, yMin, yPxUnit;
+
+    /**
+     * Offset of the image from the top-left corner of the window
+     * (see Grapher.setOrigin()).
+     */
+    private final int originX, originY;
+
+    /**
+     * Creates a transform for a graph with the given window settings
+     * and size.
+     *
+     * @param width width, in pixels, of the graph
+     * @param height height, in pixels, of the graph
+     * @param xMin value of x-coordinate at the left edge of the window
+     * @param xMax value of x-coordinate at the right edge of the window
+     * @param yMin value of y-coordinate at the bottom edge of the window
+     * @param yMax value of y-coordinate at the top edge of the window
+     * @param originX pixels the graph is scrolled right by
+     * @param originY pixels the graph is scrolled down by
+     */
+    PixelTransform(int width, int height, double xMin, double xMax, double yMin, double yMax,
+                   int originX, int originY) {
+        this.width = width;
+        this.height = height;
+        this.xMin = xMin;
+        this.yMin = yMin;
+        xPxUnit = width / (xMax - xMin);
+        yPxUnit = height / (yMax - yMin);
+        this.originX = originX;
+        this.originY = originY;
+    }
+
+    /**
+     * Pixels are moved by the origin before they are rounded to an
+     * int, so that coordinates far off the graph saturate rather than
+     * overflow.
+     *
+     * @param x x-coordinate in graph space
+     * @return x-coordinate of its pixel
+     */
+    int x(double x) {
+        return (int) (Math.floor((x - xMin) * xPxUnit) - originX);
+    }
+
+    /**
+     * Same as x(), but as a double, so that coordinates too far off
+     * the graph for an int still compare correctly with its columns.
+     *
+     * @param x x-coordinate in graph space
+     * @return x-coordinate of its pixel
+     */
+    double column(double x) {
+        return Math.floor((x - xMin) * xPxUnit) - originX;
+    }
+
+    /**
+     * @param y y-coordinate in graph space
+     * @return y-coordinate of its pixel
+     */
+    int y(double y) {
+        return (int) (Math.floor(height - (y - yMin) * yPxUnit) - originY);
+    }
+
+    /**
+     * Converts a range of points to pixels: px[i - from] = x(x[i])
+     * and py[i - from] = y(y[i]) for each i from from, inclusive, to
+     * to, exclusive.
+     *
+     * @param x x-coordinates of points
+     * @param y y-coordinates of points
+     * @param from index of the first point to convert
+     * @param to index after the last point to convert
+     * @param px array to store x-coordinates of pixels in
+     * @param py array to store y-coordinates of pixels in
+     */
+    void toPixels(double[] x, double[] y, int from, int to, int[] px, int[] py) {
+        int n = to - from;
+        double x_min = xMin, x_px_unit = xPxUnit;
+        for(int i = 0; i < n; i++) {
+            px[i] = (int) (Math.floor((x[from + i] - x_min) * x_px_unit) - originX);
+        }
+        double y_min = yMin, y_px_unit = yPxUnit;
+        for(int i = 0; i < n; i++) {
+            py[i] = (int) (Math.floor(height - (y[from + i] - y_min) * y_px_unit) - originY);
+        }
+    }
+
+    /**
+     * Finds the points of a range that fall within bounds, inclusive,
+     * and converts them to pixels. The indices of the points kept are
+     * stored in kept, in order, and their pixels in px and py at the
+     * same positions.
+     *
+     * @param x x-coordinates of points
+     * @param y y-coordinates of points
+     * @param from index of the first point to test
+     * @param to index after the last point to test
+     * @param xLow lowest x-coordinate kept
+     * @param xHigh highest x-coordinate kept
+     * @param yLow lowest y-coordinate kept
+     * @param yHigh highest y-coordinate kept
+     * @param kept array to store indices of the points kept in, at
+     * least to - from long
+     * @param px array to store x-coordinates of pixels in
+     * @param py array to store y-coordinates of pixels in
+     * @return number of points kept
+     */
+    int cullToPixels(double[] x, double[] y, int from, int to, double xLow, double xHigh,
+                     double yLow, double yHigh, int[] kept, int[] px, int[] py) {
+        /* Write every index and advance past the ones kept, so the loop does not branch per point */
+        int count = 0;
+        for(int i = from; i < to; i++) {
+            double a = x[i], b = y[i];
+            kept[count] = i;
+            count += a >= xLow && a <= xHigh && b >= yLow && b <= yHigh ? 1 : 0;
+        }
+        for(int j = 0; j < count; j++) {
+            int i = kept[j];
+            px[j] = x(x[i]);
+            py[j] = y(y[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Counts the points of a range that fall on the graph into an
+     * array of width * height pixels stored row by row. Pixels are
+     * found and counted in the same loop, which is faster than
+     * storing them first because the counts are scattered anyway.
+     *
+     * @param x x-coordinates of points
+     * @param y y-coordinates of points
+     * @param from index of the first point to count
+     * @param to index after the last point to count
+     * @param bins number of points in each pixel, added to
+     */
+    void countPixels(double[] x, double[] y, int from, int to, int[] bins) {
+        double x_min = xMin, x_px_unit = xPxUnit, y_min = yMin, y_px_unit = yPxUnit;
+        for(int i = from; i < to; i++) {
+            /* Pixels are compared as doubles so that values far off the graph cannot overflow */
+            double column = Math.floor((x[i] - x_min) * x_px_unit) - originX;
+            double row = Math.floor(height - (y[i] - y_min) * y_px_unit) - originY;
+            if(column >= 0 && column < width && row >= 0 && row < height) {
+                bins[(int) row * width + (int) column]++;
+            }
+        }
+    }
+}
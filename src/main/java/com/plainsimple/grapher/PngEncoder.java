@@ -0,0 +1,657 @@
+package com.plainsimple.grapher;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes images as PNG files, compressing bands of rows in parallel.
+ * Each band is filtered and deflated on its own thread, with the end
+ * of the band before it as a preset dictionary, and ends on a byte
+ * boundary so that the bands join into a single valid zlib stream,
+ * as pigz does for gzip. Bands are written to the output in order as
+ * soon as they are compressed, each as its own IDAT chunk, so large
+ * images are streamed rather than held compressed in memory.
+ * Images with an alpha channel are written as 8-bit RGBA and others
+ * as 8-bit RGB, except for compact images (see ByteRasterCanvas),
+ * whose rows are written as they are stored: TYPE_BYTE_GRAY as 8-bit
+ * gray, TYPE_BYTE_INDEXED as an 8-bit palette and 1-bit
+ * TYPE_BYTE_BINARY as a 1-bit palette, so that they are filtered and
+ * compressed as a quarter or less of the data. Subimages of compact
+ * images, whose rows are not stored on their own, are written as
+ * RGB. An encoder holds no state between images and may be used by
+ * several threads at once.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class PngEncoder {
+
+    /**
+     * Signature every PNG file starts with.
+     */
+    private static final byte[] SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+
+    /**
+     * Approximate number of bytes of filtered image data in a band.
+     */
+    private static final int BAND_BYTES = 1 << 18;
+
+    /**
+     * Size of a deflate window, and of the dictionary given to each band.
+     */
+    private static final int WINDOW = 1 << 15;
+
+    /**
+     * Modulus of Adler-32 checksums.
+     */
+    private static final int ADLER_BASE = 65521;
+
+    /**
+     * PNG filter types.
+     */
+    private static final byte NONE = 0, SUB = 1, UP = 2, AVERAGE = 3, PAETH = 4;
+
+    /**
+     * Lowest compression level at which the Average and Paeth filters
+     * are tried as well as None, Sub and Up.
+     */
+    private static final int SLOW_FILTER_LEVEL = 4;
+
+    /**
+     * zlib compression level, from 0 (store) to 9 (smallest).
+     */
+    private final int compressionLevel;
+
+    /**
+     * ForkJoinPool bands are compressed on, or null to compress them
+     * on the calling thread.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an encoder. Lower compression levels are faster and
+     * write larger files. At level 0, rows are stored unfiltered and
+     * uncompressed. At any other level, each row is filtered with the
+     * PNG filter that best suits it, as libpng does, choosing among
+     * None, Sub and Up below level 4 and among all five filters from
+     * level 4 up.
+     *
+     * @param compressionLevel zlib compression level, from 0 (fastest) to 9 (smallest)
+     * @param pool ForkJoinPool to compress bands on, or null to compress
+     * them on the calling thread
+     * @throws IllegalArgumentException if compressionLevel is not from 0 to 9
+     */
+    public PngEncoder(int compressionLevel, ForkJoinPool pool) {
+        if(compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("compressionLevel must be from 0 to 9");
+        }
+        this.compressionLevel = compressionLevel;
+        this.pool = pool;
+    }
+
+    /**
+     * Writes an image as a PNG file. The stream is not closed.
+     *
+     * @param image image to write
+     * @param out stream to write to
+     * @throws IOException if the stream cannot be written to
+     */
+    public void write(BufferedImage image, OutputStream out) throws IOException {
+        write(image, Channels.newChannel(out));
+    }
+
+    /**
+     * Writes an image as a PNG file. The channel is not closed.
+     *
+     * @param image image to write
+     * @param out channel to write to
+     * @throws IOException if the channel cannot be written to
+     */
+    public void write(BufferedImage image, WritableByteChannel out) throws IOException {
+        start(out, image.getWidth(), image.getHeight()).write(image, image.getHeight());
+    }
+
+    /**
+     * Starts writing a PNG file whose rows are given a few at a time,
+     * from top to bottom, so that the whole image never has to be held
+     * in memory (see BandRenderer). The rows are compressed into the
+     * same file write() would write for the whole image.
+     *
+     * @param out channel to write to, which is not closed
+     * @param width width, in pixels, of the image
+     * @param height height, in pixels, of the image
+     * @return writer to give the rows to
+     * @throws IllegalArgumentException if width or height is less than 1
+     */
+    public RowWriter start(WritableByteChannel out, int width, int height) {
+        if(width < 1 || height < 1) {
+            throw new IllegalArgumentException("width and height must be at least 1");
+        }
+        return new RowWriter(out, width, height);
+    }
+
+    /**
+     * Writes the rows of a PNG file as they are given. The header is
+     * written along with the first rows, whose type of image every
+     * later row must share, and the file is finished once its last
+     * row is written. Only the last few rows given, enough to prime
+     * the compression of the rows after them, are kept between calls.
+     */
+    public final class RowWriter {
+
+        /**
+         * Channel the file is written to.
+         */
+        private final WritableByteChannel out;
+
+        /**
+         * Dimensions, in pixels, of the image.
+         */
+        private final int width, height;
+
+        /**
+         * Number of rows written so far.
+         */
+        private int written;
+
+        /**
+         * Type and ColorModel of the images rows are given in, or null
+         * until the first rows are given.
+         */
+        private int type;
+        private ColorModel model;
+
+        /**
+         * Whether rows are copied as they are stored, and whether they
+         * are written with an alpha channel.
+         */
+        private boolean compact, alpha;
+
+        /**
+         * Bytes per row, not counting the filter type.
+         */
+        private int rowBytes;
+
+        /**
+         * Adler-32 checksum of the filtered data written so far.
+         */
+        private long adler = 1;
+
+        /**
+         * Bytes of the last rows written, read again to filter and prime
+         * the compression of the next rows, and the row the first of
+         * them is.
+         */
+        private byte[][] tail = new byte[0][];
+        private int tailTop;
+
+        private RowWriter(WritableByteChannel out, int width, int height) {
+            this.out = out;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Writes the next rows of the image, compressing them in bands
+         * on the encoder's pool, and returns once they are written, so
+         * the image may then be drawn over.
+         *
+         * @param image image holding the rows, as its top rows
+         * @param rows number of rows to write
+         * @throws IOException if the channel cannot be written to
+         * @throws IllegalArgumentException if the image is not as wide as
+         * the file, does not hold the rows, holds more rows than are left
+         * to write, or is not of the same type as the first rows
+         * @throws IllegalStateException if every row has been written and
+         * the file finished
+         */
+        public void write(BufferedImage image, int rows) throws IOException {
+            if(written == height) {
+                throw new IllegalStateException("PNG file has been finished");
+            } else if(image.getWidth() != width) {
+                throw new IllegalArgumentException("image must be " + width + " pixels wide");
+            } else if(rows < 0 || rows > image.getHeight() || rows > height - written) {
+                throw new IllegalArgumentException("rows must be in the image and no more than are left to write");
+            }
+            if(model == null) {
+                writeHeader(image);
+            } else if(image.getType() != type || !image.getColorModel().equals(model)) {
+                throw new IllegalArgumentException("rows must all be of the same type of image");
+            }
+
+            int top = written, end = written + rows;
+            int band_rows = Math.max(1, BAND_BYTES / (rowBytes + 1));
+            int window = pool == null ? 1 : pool.getParallelism() * 2;
+            Deque<ForkJoinTask<Band>> pending = new ArrayDeque<>();
+            for(int row = top; row < end || !pending.isEmpty(); ) {
+                /* Keep a few bands per thread compressing ahead of the one being written */
+                while(row < end && pending.size() < window) {
+                    Band band = new Band(this, image, top, row, Math.min(end, row + band_rows));
+                    row = band.end;
+                    ForkJoinTask<Band> task = ForkJoinTask.adapt(band::compress, band);
+                    pending.add(pool == null ? task : pool.submit(task));
+                }
+                ForkJoinTask<Band> next = pending.poll();
+                Band band = pool == null ? next.invoke() : next.join();
+                writeChunk(out, "IDAT", band.compressed, 0, band.compressedLength);
+                adler = combineAdler(adler, band.adler, band.length);
+            }
+
+            if(end < height) {
+                /* Keep as many rows as a band's dictionary takes, and the row above them */
+                int keep = Math.min(end, (WINDOW + rowBytes) / (rowBytes + 1) + 1);
+                byte[][] last = new byte[keep][rowBytes];
+                int[] argb = compact ? null : new int[width];
+                for(int i = 0; i < keep; i++) {
+                    readRow(image, top, end - keep + i, argb, last[i]);
+                }
+                tail = last;
+                tailTop = end - keep;
+            } else {
+                tail = null;
+                ByteBuffer checksum = ByteBuffer.allocate(4);
+                checksum.putInt((int) adler);
+                writeChunk(out, "IDAT", checksum.array(), 0, 4);
+                writeChunk(out, "IEND", new byte[0], 0, 0);
+            }
+            written = end;
+        }
+
+        /**
+         * Chooses how rows are written from the first image given, and
+         * writes the signature, header, palette if there is one, and
+         * start of the zlib stream.
+         *
+         * @param image image holding the first rows
+         * @throws IOException if the channel cannot be written to
+         */
+        private void writeHeader(BufferedImage image) throws IOException {
+            type = image.getType();
+            model = image.getColorModel();
+            compact = ByteRasterCanvas.supports(image);
+            alpha = !compact && model.hasAlpha();
+            int bit_depth = compact && type == BufferedImage.TYPE_BYTE_BINARY ? 1 : 8;
+            int color_type = compact ? (type == BufferedImage.TYPE_BYTE_GRAY ? 0 : 3) : alpha ? 6 : 2;
+            rowBytes = compact ? (width * bit_depth + 7) / 8 : width * (alpha ? 4 : 3);
+
+            writeFully(out, ByteBuffer.wrap(SIGNATURE));
+            ByteBuffer header = ByteBuffer.allocate(13);
+            header.putInt(width).putInt(height).put((byte) bit_depth).put((byte) color_type)
+                    .put((byte) 0).put((byte) 0).put((byte) 0);
+            writeChunk(out, "IHDR", header.array(), 0, 13);
+            if(color_type == 3) {
+                writePalette(out, (IndexColorModel) model);
+            }
+
+            /* zlib header: deflate with a 32K window, compression level hint, and check bits */
+            int level_hint = compressionLevel < 2 ? 0 : compressionLevel < 6 ? 1 : compressionLevel == 6 ? 2 : 3;
+            int flags = level_hint << 6;
+            flags += 31 - (0x78 * 256 + flags) % 31;
+            writeChunk(out, "IDAT", new byte[] {0x78, (byte) flags}, 0, 2);
+        }
+
+        /**
+         * Reads a row of the image as RGB or RGBA bytes, or, for a
+         * compact image, as the bytes it is stored as. Rows above the
+         * image being written are read from those kept from before.
+         *
+         * @param image image being written
+         * @param imageTop row of the file the image's top row is
+         * @param row row of the file to read
+         * @param argb buffer for the row's ARGB colors, or null for a
+         * compact image
+         * @param bytes array to store the row's bytes in
+         */
+        private void readRow(BufferedImage image, int imageTop, int row, int[] argb, byte[] bytes) {
+            if(row < imageTop) {
+                System.arraycopy(tail[row - tailTop], 0, bytes, 0, rowBytes);
+                return;
+            }
+            row -= imageTop;
+            if(compact) {
+                byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                System.arraycopy(pixels, row * rowBytes, bytes, 0, rowBytes);
+                return;
+            }
+            if(RasterCanvas.supports(image)) {
+                int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                System.arraycopy(pixels, row * width, argb, 0, width);
+            } else {
+                image.getRGB(0, row, width, 1, argb, 0, width);
+            }
+            if(alpha) {
+                for(int x = 0, i = 0; x < width; x++, i += 4) {
+                    int c = argb[x];
+                    bytes[i] = (byte) (c >> 16);
+                    bytes[i + 1] = (byte) (c >> 8);
+                    bytes[i + 2] = (byte) c;
+                    bytes[i + 3] = (byte) (c >>> 24);
+                }
+            } else {
+                for(int x = 0, i = 0; x < width; x++, i += 3) {
+                    int c = argb[x];
+                    bytes[i] = (byte) (c >> 16);
+                    bytes[i + 1] = (byte) (c >> 8);
+                    bytes[i + 2] = (byte) c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the PLTE chunk holding the colors of a palette, followed
+     * by a tRNS chunk holding their alpha if any is translucent.
+     *
+     * @param out channel to write to
+     * @param model palette of the image
+     * @throws IOException if the channel cannot be written to
+     */
+    private static void writePalette(WritableByteChannel out, IndexColorModel model) throws IOException {
+        int size = model.getMapSize();
+        byte[] colors = new byte[size * 3], alphas = new byte[size];
+        int translucent = 0;
+        for(int i = 0; i < size; i++) {
+            colors[i * 3] = (byte) model.getRed(i);
+            colors[i * 3 + 1] = (byte) model.getGreen(i);
+            colors[i * 3 + 2] = (byte) model.getBlue(i);
+            alphas[i] = (byte) model.getAlpha(i);
+            if(model.getAlpha(i) != 255) {
+                translucent = i + 1;
+            }
+        }
+        writeChunk(out, "PLTE", colors, 0, colors.length);
+        if(translucent > 0) {
+            /* Entries past the last translucent one default to opaque */
+            writeChunk(out, "tRNS", alphas, 0, translucent);
+        }
+    }
+
+    /**
+     * Rows of an image filtered and compressed together.
+     */
+    private final class Band {
+
+        /**
+         * Writer of the file the band is part of.
+         */
+        private final RowWriter writer;
+
+        /**
+         * Image the rows are read from, and the row of the file its top
+         * row is.
+         */
+        private final BufferedImage image;
+        private final int imageTop;
+
+        /**
+         * First row of the band, and the row after its last row.
+         */
+        private final int start, end;
+
+        /**
+         * Compressed data, and the number of bytes of it in use.
+         */
+        private byte[] compressed;
+        private int compressedLength;
+
+        /**
+         * Adler-32 checksum and length of the filtered data.
+         */
+        private long adler;
+        private long length;
+
+        Band(RowWriter writer, BufferedImage image, int imageTop, int start, int end) {
+            this.writer = writer;
+            this.image = image;
+            this.imageTop = imageTop;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Filters and compresses the band, along with enough of the rows
+         * before it to prime the compressor with a dictionary.
+         */
+        private void compress() {
+            /* Filters compare bytes a whole pixel apart, or the byte before for less than a byte per pixel */
+            int pixel_bytes = writer.compact ? 1 : writer.alpha ? 4 : 3, row_bytes = writer.rowBytes;
+            int dictionary_rows = start == 0 ? 0 : Math.min(start, (WINDOW + row_bytes) / (row_bytes + 1));
+            int first = start - dictionary_rows;
+            byte[] filtered = new byte[(end - first) * (row_bytes + 1)];
+
+            byte[] previous = new byte[row_bytes], current = new byte[row_bytes], swap;
+            int[] argb = writer.compact ? null : new int[writer.width];
+            if(first > 0) {
+                writer.readRow(image, imageTop, first - 1, argb, previous);
+            }
+            for(int row = first; row < end; row++) {
+                writer.readRow(image, imageTop, row, argb, current);
+                filterRow(current, previous, pixel_bytes, filtered, (row - first) * (row_bytes + 1));
+                swap = previous;
+                previous = current;
+                current = swap;
+            }
+
+            int offset = dictionary_rows * (row_bytes + 1);
+            length = filtered.length - offset;
+            Adler32 checksum = new Adler32();
+            checksum.update(filtered, offset, (int) length);
+            adler = checksum.getValue();
+
+            Deflater deflater = new Deflater(compressionLevel, true);
+            deflater.setStrategy(compressionLevel == 0 ? Deflater.DEFAULT_STRATEGY : Deflater.FILTERED);
+            if(offset > 0) {
+                int dictionary = Math.min(offset, WINDOW);
+                deflater.setDictionary(filtered, offset - dictionary, dictionary);
+            }
+            deflater.setInput(filtered, offset, (int) length);
+            compressed = new byte[(int) Math.min(Integer.MAX_VALUE - 8, length + length / 1000 + 64)];
+            /* The last band ends the stream; the others flush to a byte boundary so bands can be joined */
+            boolean last = end == writer.height;
+            if(last) {
+                deflater.finish();
+            }
+            int mode = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+            while(true) {
+                if(compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                int written = deflater.deflate(compressed, compressedLength,
+                        compressed.length - compressedLength, mode);
+                compressedLength += written;
+                if(last ? deflater.finished() : compressedLength < compressed.length && deflater.needsInput()) {
+                    break;
+                }
+            }
+            deflater.end();
+        }
+    }
+
+    /**
+     * Filters a row into out, preceded by its filter type. At level 0
+     * rows are not filtered. Otherwise the filter whose output has the
+     * smallest sum of absolute values is chosen, which tends to give
+     * the smallest files. Average and Paeth are only considered from
+     * SLOW_FILTER_LEVEL up.
+     *
+     * @param row bytes of the row
+     * @param previous bytes of the row above, or zeros for the first row
+     * @param bpp bytes per pixel
+     * @param out array to write the filtered row to
+     * @param offset index in out of the filter type byte
+     */
+    private void filterRow(byte[] row, byte[] previous, int bpp, byte[] out, int offset) {
+        int n = row.length;
+        if(compressionLevel == 0) {
+            out[offset] = NONE;
+            System.arraycopy(row, 0, out, offset + 1, n);
+            return;
+        }
+        /* Score the filters. The first pixel has no pixel to its left */
+        long none = 0, sub = 0, up = 0;
+        for(int i = 0; i < bpp; i++) {
+            none += Math.abs(row[i]);
+            up += Math.abs((byte) (row[i] - previous[i]));
+        }
+        sub = none;
+        for(int i = bpp; i < n; i++) {
+            none += Math.abs(row[i]);
+            sub += Math.abs((byte) (row[i] - row[i - bpp]));
+            up += Math.abs((byte) (row[i] - previous[i]));
+        }
+        /* The slower predictors are only tried at higher levels */
+        long average = Long.MAX_VALUE, paeth = Long.MAX_VALUE;
+        if(compressionLevel >= SLOW_FILTER_LEVEL) {
+            average = 0;
+            paeth = 0;
+            for(int i = 0; i < bpp; i++) {
+                int b = previous[i] & 0xFF;
+                average += Math.abs((byte) (row[i] - (b >> 1)));
+                paeth += Math.abs((byte) (row[i] - b));
+            }
+            for(int i = bpp; i < n; i++) {
+                int a = row[i - bpp] & 0xFF, b = previous[i] & 0xFF, c = previous[i - bpp] & 0xFF;
+                average += Math.abs((byte) (row[i] - ((a + b) >> 1)));
+                paeth += Math.abs((byte) (row[i] - paethPredictor(a, b, c)));
+            }
+        }
+        long best = Math.min(Math.min(none, sub), Math.min(Math.min(up, average), paeth));
+        byte type = best == none ? NONE : best == sub ? SUB : best == up ? UP : best == average ? AVERAGE : PAETH;
+
+        out[offset++] = type;
+        switch(type) {
+            case NONE:
+                System.arraycopy(row, 0, out, offset, n);
+                break;
+            case SUB:
+                System.arraycopy(row, 0, out, offset, bpp);
+                for(int i = bpp; i < n; i++) {
+                    out[offset + i] = (byte) (row[i] - row[i - bpp]);
+                }
+                break;
+            case UP:
+                for(int i = 0; i < n; i++) {
+                    out[offset + i] = (byte) (row[i] - previous[i]);
+                }
+                break;
+            case AVERAGE:
+                for(int i = 0; i < bpp; i++) {
+                    out[offset + i] = (byte) (row[i] - ((previous[i] & 0xFF) >> 1));
+                }
+                for(int i = bpp; i < n; i++) {
+                    out[offset + i] = (byte) (row[i] - (((row[i - bpp] & 0xFF) + (previous[i] & 0xFF)) >> 1));
+                }
+                break;
+            default:
+                for(int i = 0; i < bpp; i++) {
+                    out[offset + i] = (byte) (row[i] - previous[i]);
+                }
+                for(int i = bpp; i < n; i++) {
+                    out[offset + i] = (byte) (row[i] - paethPredictor(row[i - bpp] & 0xFF, previous[i] & 0xFF,
+                            previous[i - bpp] & 0xFF));
+                }
+                break;
+        }
+    }
+
+    /**
+     * @param a byte to the left
+     * @param b byte above
+     * @param c byte above and to the left
+     * @return whichever of a, b and c is closest to a + b - c
+     */
+    private static int paethPredictor(int a, int b, int c) {
+        int pa = Math.abs(b - c), pb = Math.abs(a - c), pc = Math.abs(a + b - 2 * c);
+        return pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+    }
+
+    /**
+     * Combines the Adler-32 checksums of two pieces of data into the
+     * checksum of the two joined, as zlib's adler32_combine() does.
+     *
+     * @param adler1 checksum of the first piece
+     * @param adler2 checksum of the second piece
+     * @param length2 length of the second piece
+     * @return checksum of the first piece followed by the second
+     */
+    private static long combineAdler(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = remainder * sum1 % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        sum1 %= ADLER_BASE;
+        sum2 %= ADLER_BASE;
+        return sum1 | sum2 << 16;
+    }
+
+    /**
+     * Writes a PNG chunk: its length, type, data and CRC.
+     *
+     * @param out channel to write to
+     * @param type four-letter type of the chunk
+     * @param data array holding the chunk's data
+     * @param offset index of the data in the array
+     * @param length number of bytes of data
+     * @throws IOException if the channel cannot be written to
+     */
+    private static void writeChunk(WritableByteChannel out, String type, byte[] data, int offset, int length)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(length);
+        for(int i = 0; i < 4; i++) {
+            header.put((byte) type.charAt(i));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 4, 4);
+        crc.update(data, offset, length);
+        header.flip();
+        writeFully(out, header);
+        writeFully(out, ByteBuffer.wrap(data, offset, length));
+        ByteBuffer footer = ByteBuffer.allocate(4);
+        footer.putInt((int) crc.getValue());
+        footer.flip();
+        writeFully(out, footer);
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to a channel.
+     *
+     * @param out channel to write to
+     * @param buffer bytes to write
+     * @throws IOException if the channel cannot be written to
+     */
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
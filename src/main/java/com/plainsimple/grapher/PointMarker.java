@@ -0,0 +1,75 @@
+package com.plainsimple.grapher;
+
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Shape drawn at each point of a scatter plot (see
+ * Grapher.setPointMarker()). Each marker fills a square box
+ * pointWidth pixels wide centered on the point.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public enum PointMarker {
+
+    /**
+     * Filled circle, drawn as by Graphics.fillOval().
+     */
+    CIRCLE {
+        @Override
+        Shape getShape(int size) {
+            return new Ellipse2D.Float(0, 0, size, size);
+        }
+    },
+
+    /**
+     * Filled square.
+     */
+    SQUARE {
+        @Override
+        Shape getShape(int size) {
+            return new Rectangle2D.Float(0, 0, size, size);
+        }
+    },
+
+    /**
+     * Diagonal cross ("x") of two strokes a fifth of the box wide.
+     */
+    CROSS {
+        @Override
+        Shape getShape(int size) {
+            float stroke = Math.max(1, size / 5f), inset = stroke / 2;
+            BasicStroke pen = new BasicStroke(stroke, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER);
+            Path2D.Float cross = new Path2D.Float();
+            cross.append(pen.createStrokedShape(new Line2D.Float(inset, inset, size - inset, size - inset)), false);
+            cross.append(pen.createStrokedShape(new Line2D.Float(inset, size - inset, size - inset, inset)), false);
+            return cross;
+        }
+    };
+
+    /**
+     * Returns the outline of the marker in a box with its top-left
+     * corner at the origin.
+     *
+     * @param size width and height, in pixels, of the box
+     * @return shape to fill to draw the marker
+     */
+    abstract Shape getShape(int size);
+}
@@ -0,0 +1,42 @@
+package com.plainsimple.grapher;
+
+import java.io.IOException;
+
+/**
+ * A series of points read a batch at a time, for plotting data sets
+ * too large to hold in memory as a double[][] (see
+ * Grapher.drawGraphOnGrid(BufferedImage, PointSource, boolean)).
+ * Grapher reads a source from start to end once per graph, using
+ * the same fixed-size arrays for every batch, so memory use does not
+ * depend on the number of points.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public interface PointSource {
+
+    /**
+     * Reads the next points of the series, filling x[i] and y[i] from
+     * index 0. Fewer points than the arrays hold may be read even if
+     * more remain.
+     *
+     * @param x array to store x-coordinates of points in
+     * @param y array to store y-coordinates of points in, at least as
+     * long as x
+     * @return number of points read, or -1 if the series has ended
+     * @throws IOException if the points cannot be read
+     */
+    int read(double[] x, double[] y) throws IOException;
+}
@@ -0,0 +1,148 @@
+package com.plainsimple.grapher;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Point marker rendered once into a coverage mask, so that scatter
+ * plots can stamp the mask at every point instead of rasterizing the
+ * marker's shape again each time. PixelCanvas blends the mask into
+ * the image's pixels in the current color; GraphicsCanvas draws an
+ * image of the marker in that color, which each GraphicsCanvas keeps
+ * for as long as it draws the same sprite in the same color, so
+ * canvases drawing in different colors at once do not share or
+ * replace each other's images. Recently used sprites are kept in a
+ * small cache shared by all Graphers.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class PointSprite {
+
+    /**
+     * Maximum number of sprites kept in the cache.
+     */
+    private static final int CACHE_SIZE = 64;
+
+    /**
+     * Recently used sprites in access order, least recently used first.
+     */
+    private static final Map<Object, PointSprite> CACHE =
+            new LinkedHashMap<Object, PointSprite>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, PointSprite> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    /**
+     * Shape of the marker, and width and height, in pixels, of its box.
+     */
+    final PointMarker marker;
+    final int size;
+
+    /**
+     * Coverage (0-255) of each pixel of the sprite, row by row.
+     */
+    final byte[] coverage;
+
+    /**
+     * Dimensions, in pixels, of the sprite.
+     */
+    final int width, height;
+
+    /**
+     * Offset, in pixels, of the sprite's top-left corner from the
+     * top-left corner of the marker's box. The sprite is padded by a
+     * pixel on each side in case antialiasing reaches past the box.
+     */
+    final int offsetX, offsetY;
+
+    /**
+     * Returns a sprite of a marker, rendering it if it is not cached.
+     *
+     * @param marker shape of the marker
+     * @param size width and height, in pixels, of the marker's box
+     * @param antialiased whether or not the marker is antialiased
+     * @return the sprite
+     */
+    static PointSprite get(PointMarker marker, int size, boolean antialiased) {
+        Object key = Arrays.asList(marker, size, antialiased);
+        synchronized(CACHE) {
+            PointSprite sprite = CACHE.get(key);
+            if(sprite == null) {
+                sprite = new PointSprite(marker, size, antialiased);
+                CACHE.put(key, sprite);
+            }
+            return sprite;
+        }
+    }
+
+    /**
+     * Renders a marker.
+     *
+     * @param marker shape of the marker
+     * @param size width and height, in pixels, of the marker's box
+     * @param antialiased whether or not the marker is antialiased
+     */
+    private PointSprite(PointMarker marker, int size, boolean antialiased) {
+        this.marker = marker;
+        this.size = size;
+        offsetX = offsetY = -1;
+        width = height = Math.max(0, size) + 2;
+        BufferedImage mask = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = mask.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiased ?
+                RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        g.setColor(Color.WHITE);
+        if(size > 0) {
+            g.translate(-offsetX, -offsetY);
+            g.fill(marker.getShape(size));
+        }
+        g.dispose();
+        coverage = new byte[width * height];
+        for(int y = 0, i = 0; y < height; y++) {
+            for(int x = 0; x < width; x++, i++) {
+                coverage[i] = (byte) (mask.getRGB(x, y) >>> 24);
+            }
+        }
+    }
+
+    /**
+     * Creates an image of the marker drawn in a color, with the same
+     * dimensions as the sprite.
+     *
+     * @param color color to draw the marker in
+     * @return image of the marker
+     */
+    BufferedImage createImage(Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        int rgb = color.getRGB() & 0xFFFFFF, alpha = color.getAlpha();
+        int[] row = new int[width];
+        for(int y = 0, i = 0; y < height; y++) {
+            for(int x = 0; x < width; x++, i++) {
+                row[x] = ((coverage[i] & 0xFF) * alpha + 127) / 255 << 24 | rgb;
+            }
+            /* setRGB() converts the non-premultiplied colors to the image's premultiplied ones */
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,133 @@
+package com.plainsimple.grapher;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * PixelCanvas that writes pixels straight into the int[] backing a
+ * TYPE_INT_RGB or TYPE_INT_ARGB BufferedImage, compositing in 8-bit
+ * sRGB.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class RasterCanvas extends PixelCanvas {
+
+    /**
+     * Pixels of the image, one int per pixel, row by row.
+     */
+    private final int[] pixels;
+
+    /**
+     * Width, in pixels, of the image.
+     */
+    private final int width;
+
+    /**
+     * Whether or not the image has an alpha channel that
+     * must be blended (TYPE_INT_ARGB).
+     */
+    private final boolean hasAlpha;
+
+    /**
+     * Current color as an ARGB int.
+     */
+    private int argb;
+
+    /**
+     * @param image TYPE_INT_RGB or TYPE_INT_ARGB image to draw on
+     * @param labelCache cache to draw text from
+     * @throws IllegalArgumentException if the image is not one of
+     * the supported types or is not packed
+     */
+    RasterCanvas(BufferedImage image, LabelCache labelCache) {
+        super(image.getWidth(), image.getHeight(), labelCache);
+        if(!supports(image)) {
+            throw new IllegalArgumentException("image must be a packed TYPE_INT_RGB or TYPE_INT_ARGB image");
+        }
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        width = image.getWidth();
+        hasAlpha = image.getType() == BufferedImage.TYPE_INT_ARGB;
+        setColor(Color.BLACK);
+    }
+
+    /**
+     * Checks whether a RasterCanvas can draw on the image.
+     *
+     * @param image image to check
+     * @return whether the image is TYPE_INT_RGB or TYPE_INT_ARGB and
+     * packed (see PixelCanvas.isPacked()), which a subimage usually
+     * is not
+     */
+    static boolean supports(BufferedImage image) {
+        int type = image.getType();
+        return (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && isPacked(image, image.getWidth());
+    }
+
+    @Override
+    public void setColor(Color color) {
+        super.setColor(color);
+        argb = color.getRGB();
+    }
+
+    @Override
+    void fill(int row, int from, int to) {
+        int offset = row * width;
+        Arrays.fill(pixels, offset + from, offset + to, argb);
+    }
+
+    @Override
+    void put(int row, int col) {
+        pixels[row * width + col] = argb;
+    }
+
+    /**
+     * Composites the current color over a pixel using the Porter-Duff
+     * "source over" rule.
+     *
+     * @param row y-coordinate of pixel
+     * @param col x-coordinate of pixel
+     * @param a weight of the current color, 1-255
+     */
+    @Override
+    void blend(int row, int col, int a) {
+        int i = row * width + col;
+        int dst = pixels[i];
+        int da = hasAlpha ? dst >>> 24 : 255;
+        if(da == 255) {
+            /* Opaque destination: the result is opaque, so divide by 255 instead of its alpha.
+               ((n + 1) * 257) >> 16 equals n / 255 for every n up to 255 * 255 */
+            int na = 255 - a;
+            int r = ((((argb >> 16) & 0xFF) * a + ((dst >> 16) & 0xFF) * na + 1) * 257) >> 16;
+            int g = ((((argb >> 8) & 0xFF) * a + ((dst >> 8) & 0xFF) * na + 1) * 257) >> 16;
+            int b = (((argb & 0xFF) * a + (dst & 0xFF) * na + 1) * 257) >> 16;
+            pixels[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            return;
+        }
+        /* Destination's contribution, weighted by its alpha and what the source lets through */
+        int dw = da * (255 - a) / 255;
+        int oa = a + dw;
+        if(oa == 0) {
+            return;
+        }
+        int r = (((argb >> 16) & 0xFF) * a + ((dst >> 16) & 0xFF) * dw) / oa;
+        int g = (((argb >> 8) & 0xFF) * a + ((dst >> 8) & 0xFF) * dw) / oa;
+        int b = ((argb & 0xFF) * a + (dst & 0xFF) * dw) / oa;
+        pixels[i] = (hasAlpha ? oa << 24 : 0xFF000000) | (r << 16) | (g << 8) | b;
+    }
+}
@@ -0,0 +1,169 @@
+package com.plainsimple.grapher;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Pool of images reused from one render to the next, so that drawing
+ * many graphs of the same size and ColorModel (e.g. thumbnails drawn
+ * by a BatchRenderer) does not allocate and clear a new raster for
+ * each one. An image is taken from the pool with acquire() and given
+ * back with release() once it has been written out, and is handed
+ * out again as it was released: drawing a graph with an opaque
+ * background covers every pixel. The pool holds at most maxImages
+ * idle images and drops any released beyond that. It is safe to
+ * share between threads.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class RasterPool {
+
+    /**
+     * Maximum number of idle images held by the pool.
+     */
+    private final int maxImages;
+
+    /**
+     * Idle images, most recently released last.
+     */
+    private final ArrayDeque<BufferedImage> images = new ArrayDeque<BufferedImage>();
+
+    /**
+     * Number of images handed out from the pool.
+     */
+    private long hits;
+
+    /**
+     * Number of images created because none in the pool matched.
+     */
+    private long misses;
+
+    /**
+     * Number of released images dropped because the pool was full.
+     */
+    private long discards;
+
+    /**
+     * Creates an empty pool holding at most maxImages idle images.
+     *
+     * @param maxImages maximum number of idle images held by the pool
+     * @throws IllegalArgumentException if maxImages is negative
+     */
+    public RasterPool(int maxImages) {
+        if(maxImages < 0) {
+            throw new IllegalArgumentException("maxImages cannot be negative");
+        }
+        this.maxImages = maxImages;
+    }
+
+    /**
+     * Takes an image with the given ColorModel and size from the pool,
+     * or creates one if there is none. The image holds whatever was
+     * last drawn on it.
+     *
+     * @param model color model of the image, e.g. from
+     * Grapher.createColorModel()
+     * @param width width, in pixels, of the image
+     * @param height height, in pixels, of the image
+     * @return image to draw on, to be given back with release()
+     * @throws IllegalArgumentException if width or height is less than 1
+     */
+    public BufferedImage acquire(ColorModel model, int width, int height) {
+        if(width < 1 || height < 1) {
+            throw new IllegalArgumentException("width and height must be at least 1");
+        }
+        BufferedImage image = take(model, width, height);
+        if(image == null) {
+            /* Created outside the lock so that threads do not wait on each other's allocations */
+            image = new BufferedImage(model, model.createCompatibleWritableRaster(width, height),
+                    model.isAlphaPremultiplied(), null);
+        }
+        return image;
+    }
+
+    /**
+     * Removes the most recently released image with the given
+     * ColorModel and size from the pool and counts a hit, or counts
+     * a miss if there is none.
+     *
+     * @return the image, or null if there is none
+     */
+    private synchronized BufferedImage take(ColorModel model, int width, int height) {
+        Iterator<BufferedImage> newest = images.descendingIterator();
+        while(newest.hasNext()) {
+            BufferedImage image = newest.next();
+            if(image.getWidth() == width && image.getHeight() == height
+                    && (image.getColorModel() == model || image.getColorModel().equals(model))) {
+                newest.remove();
+                hits++;
+                return image;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Gives an image back to the pool once it is no longer used. If
+     * the pool is full, the image is dropped instead.
+     *
+     * @param image image from acquire(), or any other image to be reused
+     */
+    public synchronized void release(BufferedImage image) {
+        if(images.size() < maxImages) {
+            images.add(image);
+        } else {
+            discards++;
+        }
+    }
+
+    /**
+     * Removes all idle images from the pool. Counters are not reset.
+     */
+    public synchronized void clear() {
+        images.clear();
+    }
+
+    /**
+     * @return number of images handed out from the pool
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of images created because none in the pool matched
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of released images dropped because the pool was full
+     */
+    public synchronized long getDiscards() {
+        return discards;
+    }
+
+    /**
+     * @return number of idle images currently held
+     */
+    public synchronized int size() {
+        return images.size();
+    }
+}
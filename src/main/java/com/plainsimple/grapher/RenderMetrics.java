@@ -0,0 +1,274 @@
+package com.plainsimple.grapher;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the work done drawing graphs and records how long each
+ * RenderPhase takes, so that a running application can be scraped
+ * for where rendering time goes. Set it on one or more Graphers with
+ * Grapher.setMetrics(); it may be shared by any number of threads.
+ * Counters, and the power-of-two buckets of the histograms latencies
+ * are counted in, are LongAdders, which spread updates from threads
+ * that collide over separate cells, so recording does not contend.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class RenderMetrics {
+
+    /**
+     * Quantities counted while drawing.
+     */
+    public enum Counter {
+
+        /**
+         * Points passed to be plotted, or counted in a density plot.
+         * Decimated points are counted after decimation.
+         */
+        POINTS_SUBMITTED,
+
+        /**
+         * Points not drawn because they are outside the window.
+         */
+        POINTS_CULLED,
+
+        /**
+         * Point markers drawn. When tiles are drawn in parallel, points
+         * overlapping several tiles are counted once per tile.
+         */
+        POINTS_DRAWN,
+
+        /**
+         * Times a plotted function was evaluated.
+         */
+        FUNCTION_EVALUATIONS,
+
+        /**
+         * Line segments drawn between function samples.
+         */
+        SEGMENTS_DRAWN,
+
+        /**
+         * Tick and point labels drawn.
+         */
+        LABELS_DRAWN
+    }
+
+    /**
+     * Number of latency buckets. Bucket i counts durations from
+     * 2^(i-1), inclusive, to 2^i nanoseconds, exclusive; bucket 0
+     * counts durations of 0.
+     */
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final LongAdder[][] buckets = new LongAdder[RenderPhase.values().length][BUCKETS];
+    private final LongAdder[] totals = new LongAdder[RenderPhase.values().length];
+    private final LongAccumulator[] maxima = new LongAccumulator[RenderPhase.values().length];
+
+    /**
+     * Creates metrics with every counter and histogram at zero.
+     */
+    public RenderMetrics() {
+        for(int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        for(int i = 0; i < buckets.length; i++) {
+            for(int b = 0; b < BUCKETS; b++) {
+                buckets[i][b] = new LongAdder();
+            }
+            totals[i] = new LongAdder();
+            maxima[i] = new LongAccumulator(Math::max, 0);
+        }
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter counter to add to
+     * @param amount amount to add
+     */
+    void add(Counter counter, long amount) {
+        if(amount != 0) {
+            counters[counter.ordinal()].add(amount);
+        }
+    }
+
+    /**
+     * Records the duration of one run of a phase.
+     *
+     * @param phase phase that ran
+     * @param nanos duration of the phase, in nanoseconds
+     */
+    void record(RenderPhase phase, long nanos) {
+        int i = phase.ordinal();
+        nanos = Math.max(0, nanos);
+        buckets[i][BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+        totals[i].add(nanos);
+        maxima[i].accumulate(nanos);
+    }
+
+    /**
+     * Captures the current value of every counter and histogram.
+     * Values recorded while the snapshot is taken may or may not be
+     * included.
+     *
+     * @return the current metrics
+     */
+    public Snapshot snapshot() {
+        Map<Counter, Long> counts = new EnumMap<>(Counter.class);
+        for(Counter counter : Counter.values()) {
+            counts.put(counter, counters[counter.ordinal()].sum());
+        }
+        Map<RenderPhase, Latency> latencies = new EnumMap<>(RenderPhase.class);
+        for(RenderPhase phase : RenderPhase.values()) {
+            int i = phase.ordinal();
+            long[] copy = new long[BUCKETS];
+            for(int b = 0; b < BUCKETS; b++) {
+                copy[b] = buckets[i][b].sum();
+            }
+            latencies.put(phase, new Latency(copy, totals[i].sum(), maxima[i].get()));
+        }
+        return new Snapshot(counts, latencies);
+    }
+
+    /**
+     * Resets every counter and histogram to zero.
+     */
+    public void reset() {
+        for(LongAdder counter : counters) {
+            counter.reset();
+        }
+        for(int i = 0; i < buckets.length; i++) {
+            for(int b = 0; b < BUCKETS; b++) {
+                buckets[i][b].reset();
+            }
+            totals[i].reset();
+            maxima[i].reset();
+        }
+    }
+
+    /**
+     * Values of the counters and histograms at one moment.
+     */
+    public static final class Snapshot {
+
+        private final Map<Counter, Long> counts;
+        private final Map<RenderPhase, Latency> latencies;
+
+        private Snapshot(Map<Counter, Long> counts, Map<RenderPhase, Latency> latencies) {
+            this.counts = counts;
+            this.latencies = latencies;
+        }
+
+        /**
+         * @param counter a counter
+         * @return value of the counter
+         */
+        public long getCount(Counter counter) {
+            return counts.get(counter);
+        }
+
+        /**
+         * @param phase a phase
+         * @return histogram of the durations of the phase
+         */
+        public Latency getLatency(RenderPhase phase) {
+            return latencies.get(phase);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for(Map.Entry<Counter, Long> count : counts.entrySet()) {
+                text.append(count.getKey()).append('=').append(count.getValue()).append('\n');
+            }
+            for(Map.Entry<RenderPhase, Latency> latency : latencies.entrySet()) {
+                text.append(latency.getKey()).append(": ").append(latency.getValue()).append('\n');
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Histogram of the durations of a phase, in power-of-two buckets.
+     */
+    public static final class Latency {
+
+        private final long[] buckets;
+        private final long count, totalNanos, maxNanos;
+
+        private Latency(long[] buckets, long totalNanos, long maxNanos) {
+            this.buckets = buckets;
+            long sum = 0;
+            for(long bucket : buckets) {
+                sum += bucket;
+            }
+            count = sum;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * @return number of times the phase ran
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return total time spent in the phase, in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return longest time the phase took, in nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Estimates a percentile of the durations of the phase as the
+         * upper bound of the bucket it falls in, so it is never more
+         * than twice the true value.
+         *
+         * @param percentile percentile, from 0 to 100
+         * @return the percentile, in nanoseconds, or 0 if the phase never ran
+         */
+        public long getPercentileNanos(double percentile) {
+            long rank = (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * count);
+            long seen = 0;
+            for(int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if(seen > 0 && seen >= rank) {
+                    return b == BUCKETS - 1 ? maxNanos : Math.min(maxNanos, (1L << b) - 1);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + " total=" + totalNanos + "ns p50=" + getPercentileNanos(50)
+                    + "ns p99=" + getPercentileNanos(99) + "ns max=" + maxNanos + "ns";
+        }
+    }
+}
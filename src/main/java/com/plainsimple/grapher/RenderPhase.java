@@ -0,0 +1,74 @@
+package com.plainsimple.grapher;
+
+/**
+ * Parts of drawing a graph that are timed separately by RenderMetrics
+ * and reported as RenderPhaseEvents to JDK Flight Recorder.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public enum RenderPhase {
+
+    /**
+     * Filling the background color.
+     */
+    BACKGROUND,
+
+    /**
+     * Drawing grid lines.
+     */
+    GRID_LINES,
+
+    /**
+     * Drawing the axis, ticks and tick labels.
+     */
+    AXIS,
+
+    /**
+     * Drawing the text of tick and point labels. Included in AXIS or
+     * POINTS as well.
+     */
+    LABELS,
+
+    /**
+     * Copying a cached grid into the image.
+     */
+    GRID_COPY,
+
+    /**
+     * Culling and drawing individually plotted points and their labels.
+     */
+    POINTS,
+
+    /**
+     * Calculating the values of a function to plot.
+     */
+    SAMPLING,
+
+    /**
+     * Drawing the lines between the samples of a function.
+     */
+    LINES,
+
+    /**
+     * Counting and coloring the points of a density plot.
+     */
+    DENSITY,
+
+    /**
+     * Compositing series drawn in parallel on separate layers.
+     */
+    COMPOSITE
+}
@@ -0,0 +1,66 @@
+package com.plainsimple.grapher;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event recorded for each phase of drawing a
+ * graph (see RenderPhase). When tiles are drawn in parallel, each tile
+ * records its own events. Events are only created while they are
+ * enabled in a recording or a RenderMetrics is set on the Grapher, so
+ * instrumentation costs next to nothing otherwise.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@Name("com.plainsimple.grapher.RenderPhase")
+@Label("Grapher Render Phase")
+@Category("Grapher")
+@Description("Time spent in one phase of drawing a graph")
+@StackTrace(false)
+final class RenderPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Points Submitted")
+    long pointsSubmitted;
+
+    @Label("Points Culled")
+    @Description("Points outside the window that were not drawn")
+    long pointsCulled;
+
+    @Label("Points Drawn")
+    long pointsDrawn;
+
+    @Label("Function Evaluations")
+    long functionEvaluations;
+
+    @Label("Segments Drawn")
+    long segmentsDrawn;
+
+    @Label("Labels Drawn")
+    long labelsDrawn;
+
+    @Label("Label Time")
+    @Description("Time spent drawing label text during the phase")
+    @Timespan(Timespan.NANOSECONDS)
+    long labelTime;
+}
@@ -0,0 +1,115 @@
+package com.plainsimple.grapher;
+
+import com.plainsimple.grapher.RenderMetrics.Counter;
+
+/**
+ * Measures one run of a RenderPhase, reporting it as a
+ * RenderPhaseEvent and to a RenderMetrics. start() returns null
+ * when neither is listening, so that drawing code only has to check
+ * for null, and pays no more than that, when instrumentation is off.
+ * The counts are plain fields that drawing code adds to directly.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class RenderProbe {
+
+    private final RenderPhase phase;
+    private final RenderMetrics metrics;
+    private final RenderPhaseEvent event;
+    private final long start;
+
+    /**
+     * Work done during the phase.
+     */
+    long pointsSubmitted, pointsCulled, pointsDrawn, evaluations, segments, labels;
+
+    /**
+     * Time spent drawing label text during the phase, in nanoseconds.
+     */
+    long labelNanos;
+
+    private RenderProbe(RenderPhase phase, RenderMetrics metrics, RenderPhaseEvent event) {
+        this.phase = phase;
+        this.metrics = metrics;
+        this.event = event;
+        event.begin();
+        start = System.nanoTime();
+    }
+
+    /**
+     * Starts measuring a phase.
+     *
+     * @param phase phase being started
+     * @param metrics metrics to record the phase in, or null
+     * @return probe measuring the phase, or null if neither metrics
+     * nor a Flight Recorder recording will record it
+     */
+    static RenderProbe start(RenderPhase phase, RenderMetrics metrics) {
+        RenderPhaseEvent event = new RenderPhaseEvent();
+        if(metrics == null && !event.isEnabled()) {
+            return null;
+        }
+        return new RenderProbe(phase, metrics, event);
+    }
+
+    /**
+     * @return the current time, in nanoseconds, to pass to endLabel()
+     */
+    long startLabel() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Counts a label drawn since startLabel().
+     *
+     * @param labelStart value returned by startLabel()
+     */
+    void endLabel(long labelStart) {
+        labelNanos += System.nanoTime() - labelStart;
+        labels++;
+    }
+
+    /**
+     * Ends the phase and reports it.
+     */
+    void end() {
+        long nanos = System.nanoTime() - start;
+        event.end();
+        if(event.shouldCommit()) {
+            event.phase = phase.name();
+            event.pointsSubmitted = pointsSubmitted;
+            event.pointsCulled = pointsCulled;
+            event.pointsDrawn = pointsDrawn;
+            event.functionEvaluations = evaluations;
+            event.segmentsDrawn = segments;
+            event.labelsDrawn = labels;
+            event.labelTime = labelNanos;
+            event.commit();
+        }
+        if(metrics != null) {
+            metrics.record(phase, nanos);
+            if(labels > 0) {
+                metrics.record(RenderPhase.LABELS, labelNanos);
+            }
+            metrics.add(Counter.POINTS_SUBMITTED, pointsSubmitted);
+            metrics.add(Counter.POINTS_CULLED, pointsCulled);
+            metrics.add(Counter.POINTS_DRAWN, pointsDrawn);
+            metrics.add(Counter.FUNCTION_EVALUATIONS, evaluations);
+            metrics.add(Counter.SEGMENTS_DRAWN, segments);
+            metrics.add(Counter.LABELS_DRAWN, labels);
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package com.plainsimple.grapher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the values functions were sampled at, shared by one or
+ * more Grapher instances, so that a function drawn again with a
+ * different size or window is only evaluated where it was not before.
+ * Each function's samples are held in x-order in primitive arrays and
+ * keyed by the function itself, or by the DoubleUnaryOperator or
+ * Grapher subclass it was passed as, compared with equals(). A render
+ * takes the value of every x-value already sampled, interpolates
+ * between two samples close enough together (see
+ * Grapher.setSampleCache()) and evaluates the function only at the
+ * x-values left. Functions are sampled at the same x-values as the
+ * window is moved, so panning mostly reuses samples; shrinking the
+ * graph mostly interpolates them. The cache holds at most maxBytes of
+ * samples and evicts the least recently used function's samples when
+ * it is full. It is safe to share between threads. A function whose
+ * values change, such as an Expression whose parameters are edited
+ * in place, must be passed to invalidate() before it is drawn again.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class SampleCache {
+
+    /**
+     * Bytes taken by each sample: an x-value and a y-value.
+     */
+    private static final int SAMPLE_BYTES = 16;
+
+    /**
+     * Maximum number of bytes of samples held by the cache.
+     */
+    private final long maxBytes;
+
+    /**
+     * Number of bytes of samples currently held by the cache.
+     */
+    private long bytes;
+
+    /**
+     * Samples of each function in access order, least recently used first.
+     */
+    private final LinkedHashMap<Object, Samples> functions =
+            new LinkedHashMap<Object, Samples>(16, 0.75f, true);
+
+    /**
+     * Number of samples taken from the cache, interpolated between
+     * samples in the cache, and evaluated because they were not in it.
+     */
+    private long hits, interpolated, misses;
+
+    /**
+     * Number of functions whose samples were removed to keep the
+     * cache within maxBytes.
+     */
+    private long evictions;
+
+    /**
+     * Creates an empty cache holding at most maxBytes of samples.
+     *
+     * @param maxBytes maximum size, in bytes, of the samples held by
+     * the cache, at 16 bytes a sample
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    public SampleCache(long maxBytes) {
+        if(maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes cannot be negative");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Wraps a function so that it takes values from the cache where it
+     * can, and remembers the values it calculates. finish() must be
+     * called on the result once sampling is done to add them to the
+     * cache.
+     *
+     * @param key object identifying the function
+     * @param function function to sample
+     * @param match maximum distance in x of a cached sample from an
+     * x-value for its value to be used as is
+     * @param maxGap maximum distance apart in x of two samples
+     * interpolated between, or 0 to never interpolate
+     * @param maxStep maximum difference in y of two samples
+     * interpolated between
+     * @return function to sample in place of function
+     */
+    CachingFunction wrap(Object key, BatchFunction function, double match, double maxGap, double maxStep) {
+        Samples known;
+        synchronized(this) {
+            known = functions.get(key);
+        }
+        return new CachingFunction(key, function, known == null ? Samples.EMPTY : known, match,
+                maxGap, maxStep);
+    }
+
+    /**
+     * Adds samples to those cached for a function, evicting least
+     * recently used functions until they fit. If the function's
+     * samples alone would not fit, only those near the new samples
+     * are kept.
+     *
+     * @param key object identifying the function
+     * @param x x-values of new samples, in ascending order
+     * @param y values of the function at them
+     */
+    private synchronized void put(Object key, double[] x, double[] y) {
+        Samples previous = functions.get(key);
+        Samples merged = previous == null ? new Samples(x, y) : previous.merge(x, y);
+        if((long) merged.x.length * SAMPLE_BYTES > maxBytes && x.length > 0) {
+            double span = x[x.length - 1] - x[0];
+            merged = merged.range(x[0] - span, x[x.length - 1] + span);
+        }
+        if(previous != null) {
+            functions.remove(key);
+            bytes -= (long) previous.x.length * SAMPLE_BYTES;
+        }
+        long size = (long) merged.x.length * SAMPLE_BYTES;
+        if(size > maxBytes) {
+            return;
+        }
+        functions.put(key, merged);
+        bytes += size;
+
+        Iterator<Map.Entry<Object, Samples>> eldest = functions.entrySet().iterator();
+        while(bytes > maxBytes) {
+            Map.Entry<Object, Samples> entry = eldest.next();
+            bytes -= (long) entry.getValue().x.length * SAMPLE_BYTES;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Forgets the samples of a function, e.g. because its values have changed.
+     *
+     * @param key the function, or the object it was drawn as
+     */
+    public synchronized void invalidate(Object key) {
+        Samples removed = functions.remove(key);
+        if(removed != null) {
+            bytes -= (long) removed.x.length * SAMPLE_BYTES;
+        }
+    }
+
+    /**
+     * Keeps only the samples of a function from low to high,
+     * inclusive, e.g. those near the window of an interactive graph,
+     * so that the samples of a graph panned far from where it began do
+     * not build up.
+     *
+     * @param key object identifying the function
+     * @param low lowest x-value to keep
+     * @param high highest x-value to keep
+     */
+    synchronized void retain(Object key, double low, double high) {
+        Samples previous = functions.get(key);
+        if(previous != null) {
+            Samples kept = previous.range(low, high);
+            functions.put(key, kept);
+            bytes -= (long) (previous.x.length - kept.x.length) * SAMPLE_BYTES;
+        }
+    }
+
+    /**
+     * Removes all samples from the cache. Counters are not reset.
+     */
+    public synchronized void clear() {
+        functions.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return number of samples whose values were taken from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of samples whose values were interpolated between
+     * samples in the cache
+     */
+    public synchronized long getInterpolated() {
+        return interpolated;
+    }
+
+    /**
+     * @return number of samples that had to be evaluated
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of functions whose samples were evicted to keep
+     * the cache within its size
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of functions with samples cached
+     */
+    public synchronized int size() {
+        return functions.size();
+    }
+
+    /**
+     * @return number of bytes of samples currently cached
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Samples of a function in ascending order of x, never modified
+     * once created, so they can be read without holding a lock.
+     */
+    private static final class Samples {
+
+        private static final Samples EMPTY = new Samples(new double[0], new double[0]);
+
+        private final double[] x, y;
+
+        private Samples(double[] x, double[] y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * Merges new samples with these, keeping these where both have
+         * the same x-value.
+         *
+         * @param newX x-values of new samples, in ascending order
+         * @param newY values at them
+         * @return all the samples
+         */
+        private Samples merge(double[] newX, double[] newY) {
+            double[] merged_x = new double[x.length + newX.length];
+            double[] merged_y = new double[merged_x.length];
+            int i = 0, j = 0, n = 0;
+            while(i < x.length || j < newX.length) {
+                if(j == newX.length || (i < x.length && x[i] <= newX[j])) {
+                    if(j < newX.length && x[i] == newX[j]) {
+                        j++;
+                    }
+                    merged_x[n] = x[i];
+                    merged_y[n++] = y[i++];
+                } else {
+                    merged_x[n] = newX[j];
+                    merged_y[n++] = newY[j++];
+                }
+            }
+            return new Samples(Arrays.copyOf(merged_x, n), Arrays.copyOf(merged_y, n));
+        }
+
+        /**
+         * @param low lowest x-value to keep
+         * @param high highest x-value to keep
+         * @return the samples from low to high, inclusive
+         */
+        private Samples range(double low, double high) {
+            int from = lowerBound(x, low), to = lowerBound(x, Math.nextUp(high));
+            return new Samples(Arrays.copyOfRange(x, from, to), Arrays.copyOfRange(y, from, to));
+        }
+    }
+
+    /**
+     * Function that takes values from a snapshot of the cache where it
+     * can and evaluates the function it wraps everywhere else. Safe to
+     * evaluate from several threads at once.
+     */
+    final class CachingFunction implements BatchFunction {
+
+        private final Object key;
+        private final BatchFunction function;
+        private final Samples known;
+        private final double match, maxGap, maxStep;
+
+        /**
+         * Samples evaluated so far, as pairs of x-value and y-value arrays.
+         */
+        private final List<double[][]> recorded = new ArrayList<>();
+
+        /**
+         * Number of samples taken from the cache, interpolated and evaluated.
+         */
+        private final AtomicLong reused = new AtomicLong(), blended = new AtomicLong(),
+                evaluated = new AtomicLong();
+
+        private CachingFunction(Object key, BatchFunction function, Samples known, double match,
+                                double maxGap, double maxStep) {
+            this.key = key;
+            this.function = function;
+            this.known = known;
+            this.match = match;
+            this.maxGap = maxGap;
+            this.maxStep = maxStep;
+        }
+
+        @Override
+        public void evaluate(double[] x, double[] y, int from, int to) {
+            double[] known_x = known.x, known_y = known.y;
+            double[] missing_x = new double[to - from];
+            int[] missing_index = new int[to - from];
+            int missing = 0, interpolations = 0;
+            for(int i = from; i < to; i++) {
+                int found = Arrays.binarySearch(known_x, x[i]);
+                if(found >= 0) {
+                    y[i] = known_y[found];
+                    continue;
+                }
+                /* Use a sample only rounding error away, or interpolate between the samples
+                 * either side if they are close together */
+                int high = -found - 1, low = high - 1;
+                if(low >= 0 && x[i] - known_x[low] <= match) {
+                    y[i] = known_y[low];
+                } else if(high < known_x.length && known_x[high] - x[i] <= match) {
+                    y[i] = known_y[high];
+                } else if(low >= 0 && high < known_x.length && known_x[high] - known_x[low] <= maxGap
+                        && Math.abs(known_y[high] - known_y[low]) <= maxStep) {
+                    y[i] = known_y[low] + (known_y[high] - known_y[low])
+                            * ((x[i] - known_x[low]) / (known_x[high] - known_x[low]));
+                    interpolations++;
+                } else {
+                    missing_x[missing] = x[i];
+                    missing_index[missing++] = i;
+                }
+            }
+            if(missing > 0) {
+                double[] missing_y = new double[missing];
+                function.evaluate(missing_x, missing_y, 0, missing);
+                for(int i = 0; i < missing; i++) {
+                    y[missing_index[i]] = missing_y[i];
+                }
+                synchronized(recorded) {
+                    recorded.add(new double[][] { Arrays.copyOf(missing_x, missing), missing_y });
+                }
+            }
+            reused.addAndGet(to - from - missing - interpolations);
+            blended.addAndGet(interpolations);
+            evaluated.addAndGet(missing);
+        }
+
+        /**
+         * @return number of times the wrapped function has been evaluated
+         */
+        long getEvaluations() {
+            return evaluated.get();
+        }
+
+        /**
+         * Adds the samples evaluated to the cache, along with the
+         * number of samples reused, interpolated and evaluated.
+         */
+        void finish() {
+            double[] all_x, all_y;
+            synchronized(recorded) {
+                int count = 0;
+                for(double[][] samples : recorded) {
+                    count += samples[0].length;
+                }
+                all_x = new double[count];
+                all_y = new double[count];
+                int n = 0;
+                for(double[][] samples : recorded) {
+                    System.arraycopy(samples[0], 0, all_x, n, samples[0].length);
+                    System.arraycopy(samples[1], 0, all_y, n, samples[1].length);
+                    n += samples[0].length;
+                }
+                recorded.clear();
+            }
+            Samples evaluated_samples = sortUnique(all_x, all_y);
+            synchronized(SampleCache.this) {
+                hits += reused.getAndSet(0);
+                interpolated += blended.getAndSet(0);
+                misses += evaluated.get();
+            }
+            if(evaluated_samples.x.length > 0) {
+                put(key, evaluated_samples.x, evaluated_samples.y);
+            }
+        }
+    }
+
+    /**
+     * Sorts samples by x-value, unless they are sorted already, as
+     * they are when a function is sampled at evenly spaced x-values,
+     * and drops all but the first of samples at the same x-value, as
+     * when two regions of a graph drawn together overlap.
+     *
+     * @param x x-values of samples
+     * @param y values at them
+     * @return the samples, in ascending order of x
+     */
+    private static Samples sortUnique(double[] x, double[] y) {
+        boolean sorted = true;
+        for(int i = 1; i < x.length && sorted; i++) {
+            sorted = x[i - 1] < x[i];
+        }
+        if(sorted) {
+            return new Samples(x, y);
+        }
+        int[] index = new int[x.length];
+        for(int i = 0; i < index.length; i++) {
+            index[i] = i;
+        }
+        /* Merge sort the indices, which is stable, so the first sample at an x-value stays first */
+        int[] buffer = new int[index.length];
+        for(int run = 1; run < index.length; run *= 2) {
+            for(int low = 0; low < index.length; low += 2 * run) {
+                int mid = Math.min(low + run, index.length), high = Math.min(low + 2 * run, index.length);
+                for(int i = low, j = mid, k = low; k < high; k++) {
+                    buffer[k] = j == high || (i < mid && x[index[i]] <= x[index[j]]) ? index[i++] : index[j++];
+                }
+            }
+            int[] swap = index;
+            index = buffer;
+            buffer = swap;
+        }
+        double[] sorted_x = new double[x.length], sorted_y = new double[x.length];
+        int kept = 0;
+        for(int i : index) {
+            if(kept == 0 || x[i] != sorted_x[kept - 1]) {
+                sorted_x[kept] = x[i];
+                sorted_y[kept++] = y[i];
+            }
+        }
+        return new Samples(Arrays.copyOf(sorted_x, kept), Arrays.copyOf(sorted_y, kept));
+    }
+
+    /**
+     * @param sorted values in ascending order
+     * @param value value to look for
+     * @return index of the first value in sorted not less than value
+     */
+    private static int lowerBound(double[] sorted, double value) {
+        int low = 0, high = sorted.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
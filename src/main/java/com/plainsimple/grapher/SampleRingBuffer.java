@@ -0,0 +1,252 @@
+package com.plainsimple.grapher;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-capacity buffer of the most recent samples of a live series,
+ * such as readings from a sensor, held in primitive double arrays.
+ * One producer thread appends samples without locking or allocating;
+ * once the buffer is full each new sample overwrites the oldest.
+ * Consumers read the samples appended since their last read through
+ * a Reader, on any other thread. Every sample is numbered by the
+ * order it was appended in, starting at 0, and samples are published
+ * to readers only after they are completely written, so readers
+ * never see a partly written sample. A reader that falls more than
+ * the buffer's capacity behind skips the samples that were
+ * overwritten before it read them.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class SampleRingBuffer {
+
+    /**
+     * x- and y-values of samples. The sample numbered n is held at
+     * index n &amp; mask.
+     */
+    private final double[] x, y;
+    private final int mask;
+
+    /**
+     * Number of samples appended so far: the number of the next sample.
+     * Written only by the producer, with release semantics, after the
+     * samples it publishes.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Number of samples appended so far, including any being written.
+     * Written only by the producer, before the slots it overwrites, so
+     * that readers can tell which of the samples they copied may have
+     * been overwritten while they copied them, as with a seqlock.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /**
+     * The producer's own copy of count.
+     */
+    private long appended;
+
+    /**
+     * Creates an empty buffer holding at least capacity samples. The
+     * capacity is rounded up to a power of two.
+     *
+     * @param capacity minimum number of samples held
+     * @throws IllegalArgumentException if capacity is less than 1 or
+     * more than 2^30
+     */
+    public SampleRingBuffer(int capacity) {
+        if(capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be from 1 to 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity) {
+            size <<= 1;
+        }
+        x = new double[size];
+        y = new double[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Appends a sample. Must only be called by one thread at a time.
+     *
+     * @param x x-value of the sample, e.g. the time it was taken
+     * @param y y-value of the sample
+     */
+    public void append(double x, double y) {
+        long n = appended;
+        claimed.lazySet(n + 1);
+        VarHandle.storeStoreFence();
+        int i = (int) n & mask;
+        this.x[i] = x;
+        this.y[i] = y;
+        appended = n + 1;
+        count.lazySet(n + 1);
+    }
+
+    /**
+     * Appends a range of samples, publishing them to readers
+     * together. Must only be called by one thread at a time.
+     *
+     * @param x x-values of samples
+     * @param y y-values of samples
+     * @param from index of the first sample to append
+     * @param to index after the last sample to append
+     * @throws IndexOutOfBoundsException if from or to is out of bounds for x or y
+     */
+    public void append(double[] x, double[] y, int from, int to) {
+        if(from < 0 || from > to || to > x.length || to > y.length) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds");
+        }
+        long n = appended;
+        claimed.lazySet(n + to - from);
+        VarHandle.storeStoreFence();
+        /* Only the last capacity samples would survive, so the rest are not written */
+        for(int i = Math.max(from, to - this.x.length); i < to; i++) {
+            int j = (int) (n + i - from) & mask;
+            this.x[j] = x[i];
+            this.y[j] = y[i];
+        }
+        appended = n + to - from;
+        count.lazySet(appended);
+    }
+
+    /**
+     * @return number of samples appended so far
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return maximum number of samples held
+     */
+    public int getCapacity() {
+        return x.length;
+    }
+
+    /**
+     * Creates a reader starting at the oldest sample held.
+     *
+     * @return the reader
+     */
+    public Reader newReader() {
+        return new Reader(Math.max(0, count.get() - x.length));
+    }
+
+    /**
+     * Reads the samples of a SampleRingBuffer in order. A reader
+     * remembers where it got to, so each call to read() returns
+     * samples appended since the last. A reader must only be used by
+     * one thread at a time; any number of readers may read the same
+     * buffer at once.
+     */
+    public final class Reader {
+
+        /**
+         * Number of the next sample to read.
+         */
+        private long next;
+
+        /**
+         * Number of samples overwritten before they could be read.
+         */
+        private long skipped;
+
+        private Reader(long next) {
+            this.next = next;
+        }
+
+        /**
+         * Copies the samples appended since the last read, as many as
+         * fit in the arrays, to the start of the arrays.
+         *
+         * @param x array to copy x-values into
+         * @param y array to copy y-values into, at least as long as x
+         * @return number of samples copied, or 0 if there are no new samples
+         */
+        public int read(double[] x, double[] y) {
+            return read(x, y, 0);
+        }
+
+        /**
+         * Copies the samples appended since the last read, as many as
+         * fit in the arrays, to the arrays starting at offset.
+         *
+         * @param x array to copy x-values into
+         * @param y array to copy y-values into, at least as long as x
+         * @param offset index to copy the first sample to
+         * @return number of samples copied, or 0 if there are no new samples
+         * @throws IndexOutOfBoundsException if offset is out of bounds for x
+         */
+        public int read(double[] x, double[] y, int offset) {
+            if(offset < 0 || offset > x.length) {
+                throw new IndexOutOfBoundsException("offset " + offset + " out of bounds for length " + x.length);
+            }
+            long end = count.get();
+            long start = Math.max(next, end - SampleRingBuffer.this.x.length);
+            int n = (int) Math.min(end - start, x.length - offset);
+            copy(start, n, x, y, offset);
+            /* Samples the producer may have overwritten while they were copied are dropped */
+            VarHandle.loadLoadFence();
+            long oldest = claimed.get() - SampleRingBuffer.this.x.length;
+            if(oldest > start) {
+                int lost = (int) Math.min(oldest - start, n);
+                System.arraycopy(x, offset + lost, x, offset, n - lost);
+                System.arraycopy(y, offset + lost, y, offset, n - lost);
+                start += lost;
+                n -= lost;
+            }
+            skipped += start - next;
+            next = start + n;
+            return n;
+        }
+
+        /**
+         * @return number of the next sample to be read
+         */
+        public long getPosition() {
+            return next;
+        }
+
+        /**
+         * @return number of samples overwritten before this reader could read them
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+    }
+
+    /**
+     * Copies samples out of the buffer, in at most two pieces when they
+     * wrap around its end.
+     *
+     * @param start number of the first sample to copy
+     * @param n number of samples to copy
+     * @param toX array to copy x-values into
+     * @param toY array to copy y-values into
+     * @param offset index to copy the first sample to
+     */
+    private void copy(long start, int n, double[] toX, double[] toY, int offset) {
+        int i = (int) start & mask;
+        int first = Math.min(n, x.length - i);
+        System.arraycopy(x, i, toX, offset, first);
+        System.arraycopy(y, i, toY, offset, first);
+        System.arraycopy(x, 0, toX, offset + first, n - first);
+        System.arraycopy(y, 0, toY, offset + first, n - first);
+    }
+}
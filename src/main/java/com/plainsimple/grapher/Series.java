@@ -0,0 +1,163 @@
+package com.plainsimple.grapher;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+
+/**
+ * One set of data drawn by Grapher.drawSeries(), with its own style:
+ * points drawn as markers, points joined by lines, or a function
+ * plotted over a range. Styles left unset are taken from the Grapher
+ * drawing the series: its plot color, point width and point marker.
+ * Lines are one pixel wide unless a stroke is set.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class Series {
+
+    /**
+     * How a series is drawn.
+     */
+    enum Kind {
+        POINTS, LINE, FUNCTION
+    }
+
+    final Kind kind;
+
+    /**
+     * x- and y-values of POINTS and LINE series, or null.
+     */
+    final double[] x, y;
+
+    /**
+     * Function plotted by a FUNCTION series, from rangeLow to rangeHigh, or null.
+     */
+    final BatchFunction function;
+    final double rangeLow, rangeHigh;
+
+    /**
+     * Style of the series, or null or 0 to use the Grapher's.
+     */
+    private Color color;
+    private BasicStroke stroke;
+    private int pointWidth;
+    private PointMarker pointMarker;
+
+    private Series(Kind kind, double[] x, double[] y, BatchFunction function, double rangeLow,
+                   double rangeHigh) {
+        this.kind = kind;
+        this.x = x;
+        this.y = y;
+        this.function = function;
+        this.rangeLow = rangeLow;
+        this.rangeHigh = rangeHigh;
+    }
+
+    /**
+     * Creates a series of points drawn as markers. Points are
+     * decimated as by Grapher.drawGraphOnGrid() if decimation is enabled.
+     *
+     * @param points x- and y-values of points, in points[0] and points[1]
+     * @return the series
+     * @throws IndexOutOfBoundsException if points[1] has fewer
+     * elements than points[0]
+     */
+    public static Series points(double[][] points) throws IndexOutOfBoundsException {
+        checkLengths(points);
+        return new Series(Kind.POINTS, points[0], points[1], null, 0, 0);
+    }
+
+    /**
+     * Creates a series of points joined by lines in order. Points
+     * with a NaN or infinite y-value break the line.
+     *
+     * @param points x- and y-values of points, in points[0] and points[1]
+     * @return the series
+     * @throws IndexOutOfBoundsException if points[1] has fewer
+     * elements than points[0]
+     */
+    public static Series line(double[][] points) throws IndexOutOfBoundsException {
+        checkLengths(points);
+        return new Series(Kind.LINE, points[0], points[1], null, 0, 0);
+    }
+
+    /**
+     * Creates a series plotting a function continuously from rangeLow
+     * to rangeHigh, sampled as by Grapher.drawGraphOnGrid().
+     *
+     * @param function f(x) function to plot, such as a compiled Expression
+     * @param rangeLow lowest x-value, inclusive, to plot
+     * @param rangeHigh highest x-value, inclusive, to plot
+     * @return the series
+     */
+    public static Series function(BatchFunction function, double rangeLow, double rangeHigh) {
+        return new Series(Kind.FUNCTION, null, null, function, rangeLow, rangeHigh);
+    }
+
+    private static void checkLengths(double[][] points) throws IndexOutOfBoundsException {
+        if(points[1].length < points[0].length) {
+            throw new IndexOutOfBoundsException("points[1] must have at least as many elements as points[0]");
+        }
+    }
+
+    /**
+     * @param color color to draw the series in, or null to use the Grapher's plot color
+     */
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    /**
+     * @param stroke stroke lines are drawn with, or null for lines one pixel wide
+     */
+    public void setStroke(BasicStroke stroke) {
+        this.stroke = stroke;
+    }
+
+    /**
+     * @param pointWidth diameter, in pixels, of points, or 0 to use
+     * the Grapher's point width
+     * @throws IndexOutOfBoundsException if pointWidth is negative
+     */
+    public void setPointWidth(int pointWidth) throws IndexOutOfBoundsException {
+        if(pointWidth < 0) {
+            throw new IndexOutOfBoundsException("pointWidth cannot be negative");
+        }
+        this.pointWidth = pointWidth;
+    }
+
+    /**
+     * @param pointMarker shape of points, or null to use the Grapher's point marker
+     */
+    public void setPointMarker(PointMarker pointMarker) {
+        this.pointMarker = pointMarker;
+    }
+
+    Color getColor(Color defaultColor) {
+        return color == null ? defaultColor : color;
+    }
+
+    BasicStroke getStroke(BasicStroke defaultStroke) {
+        return stroke == null ? defaultStroke : stroke;
+    }
+
+    int getPointWidth(int defaultWidth) {
+        return pointWidth == 0 ? defaultWidth : pointWidth;
+    }
+
+    PointMarker getPointMarker(PointMarker defaultMarker) {
+        return pointMarker == null ? defaultMarker : pointMarker;
+    }
+}
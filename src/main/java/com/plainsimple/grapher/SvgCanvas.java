@@ -0,0 +1,704 @@
+package com.plainsimple.grapher;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canvas that writes an SVG image to a Writer as it is drawn on,
+ * rather than holding the whole image in memory. Lines that follow on
+ * from one another with the same color and stroke, as the lines of a
+ * function plot do, are joined into one polyline. Runs of points of a
+ * polyline within one column of pixels are cut down to the points
+ * that reach furthest, and the polyline is then simplified with the
+ * Ramer-Douglas-Peucker algorithm, so that no point is dropped that
+ * is more than a tolerance away from the line kept. Markers are drawn
+ * as references to one path per shape, and opaque markers that would
+ * only cover pixels already covered by markers just like them are
+ * left out. The size of the file therefore follows how much is
+ * visible rather than how many points are plotted. Polylines are
+ * written a chunk of points at a time, so memory use stays bounded
+ * however long they are. Elements are grouped by color, stroke and
+ * font, which are written once per group. Viewers antialias
+ * everything, so antialiasing settings are ignored. The Writer is
+ * not closed by dispose().
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class SvgCanvas implements Canvas {
+
+    /**
+     * Number of points of a polyline simplified and written at a time.
+     */
+    private static final int CHUNK = 4096;
+
+    /**
+     * Number of characters buffered before they are written out.
+     */
+    private static final int BUFFER = 1 << 13;
+
+    /**
+     * Writer the image is written to.
+     */
+    private final Writer out;
+
+    /**
+     * Text waiting to be written out.
+     */
+    private final StringBuilder buffer = new StringBuilder(BUFFER + 256);
+
+    /**
+     * Dimensions, in pixels, of the image.
+     */
+    private final int width, height;
+
+    /**
+     * Maximum distance, in pixels, of points dropped from a polyline
+     * from the line kept.
+     */
+    private final double tolerance;
+
+    /**
+     * Current color, stroke and font, and those of the open group
+     * of elements, if any.
+     */
+    private Color color = Color.BLACK;
+    private BasicStroke stroke = new BasicStroke(1);
+    private Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+    private Color groupColor;
+    private BasicStroke groupStroke;
+    private Font groupFont;
+    private boolean groupOpen;
+
+    /**
+     * Number of groups opened by clipRect() that are still open.
+     */
+    private int clips;
+
+    /**
+     * Points of the polyline being built, and how many there are.
+     * Earlier points of the polyline may already have been written,
+     * in which case pathWritten is true and its element is still open.
+     */
+    private final int[] pathX = new int[CHUNK], pathY = new int[CHUNK];
+    private int pathCount;
+    private boolean pathWritten;
+
+    /**
+     * Work space for simplifying polylines: which points are kept,
+     * and the stack of ranges still to be simplified.
+     */
+    private final boolean[] keep = new boolean[CHUNK];
+    private final int[] ranges = new int[2 * CHUNK];
+
+    /**
+     * Ids of the paths markers have been defined with.
+     */
+    private final Map<PointSprite, String> markers = new HashMap<>();
+
+    /**
+     * Pixels of the image completely covered by the markers drawn
+     * since the last marker with another sprite or color, or anything
+     * else, was drawn, and the sprite and color of those markers.
+     */
+    private final BitSet covered = new BitSet();
+    private PointSprite drawnSprite;
+    private Color drawnColor;
+
+    /**
+     * Graphics font metrics are taken from, created when first needed.
+     */
+    private Graphics2D metrics;
+
+    /**
+     * Starts an image, writing the SVG header.
+     *
+     * @param out Writer to write the image to
+     * @param width width, in pixels, of the image
+     * @param height height, in pixels, of the image
+     * @param tolerance maximum distance, in pixels, of points dropped
+     * from polylines from the line kept
+     */
+    SvgCanvas(Writer out, int width, int height, double tolerance) {
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.tolerance = tolerance;
+        buffer.append("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\"")
+                .append(width).append("\" height=\"").append(height).append("\" viewBox=\"0 0 ")
+                .append(width).append(' ').append(height).append("\">\n")
+                .append("<style>line,polyline{fill:none;stroke:currentColor}")
+                .append("rect,text,use{fill:currentColor;stroke:none}</style>\n");
+    }
+
+    @Override
+    public void setColor(Color color) {
+        if(!color.equals(this.color)) {
+            endPath();
+            this.color = color;
+        }
+    }
+
+    @Override
+    public void setStroke(BasicStroke stroke) {
+        if(!stroke.equals(this.stroke)) {
+            endPath();
+            this.stroke = stroke;
+        }
+    }
+
+    @Override
+    public void setAntialiasing(boolean antialiasing) {
+    }
+
+    @Override
+    public void setFont(Font font) {
+        this.font = font;
+    }
+
+    @Override
+    public FontMetrics getFontMetrics() {
+        if(metrics == null) {
+            metrics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        }
+        return metrics.getFontMetrics(font);
+    }
+
+    @Override
+    public void clipRect(int x, int y, int width, int height) {
+        endPath();
+        closeGroup();
+        String id = "c" + clips++;
+        buffer.append("<clipPath id=\"").append(id).append("\"><rect x=\"").append(x).append("\" y=\"").append(y)
+                .append("\" width=\"").append(width).append("\" height=\"").append(height)
+                .append("\"/></clipPath><g clip-path=\"url(#").append(id).append(")\">\n");
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        endPath();
+        drawnSprite = null;
+        openGroup();
+        buffer.append("<rect x=\"").append(x).append("\" y=\"").append(y).append("\" width=\"").append(width)
+                .append("\" height=\"").append(height).append("\"/>\n");
+        flushIfFull();
+    }
+
+    @Override
+    public void drawLine(int x0, int y0, int x1, int y1) {
+        /* A line starting where the last one ended carries on the same polyline */
+        if(pathCount == 0 || x0 != pathX[pathCount - 1] || y0 != pathY[pathCount - 1]) {
+            endPath();
+            openGroup();
+            drawnSprite = null;
+            pathX[0] = x0;
+            pathY[0] = y0;
+            pathX[1] = x1;
+            pathY[1] = y1;
+            pathCount = 2;
+            return;
+        }
+        if(x1 == x0 && y1 == y0) {
+            return;
+        }
+        if(pathCount == CHUNK) {
+            writePath();
+        }
+        pathX[pathCount] = x1;
+        pathY[pathCount++] = y1;
+    }
+
+    @Override
+    public void drawSprite(PointSprite sprite, int x, int y) {
+        if(sprite.size <= 0 || hidden(sprite, x, y)) {
+            return;
+        }
+        endPath();
+        openGroup();
+        String id = markers.get(sprite);
+        if(id == null) {
+            id = "m" + markers.size();
+            markers.put(sprite, id);
+            buffer.append("<defs><path id=\"").append(id).append("\" d=\"");
+            appendShape(sprite.marker, sprite.size);
+            buffer.append("\"/></defs>");
+        }
+        buffer.append("<use xlink:href=\"#").append(id).append("\" x=\"").append(x).append("\" y=\"")
+                .append(y).append("\"/>\n");
+        flushIfFull();
+    }
+
+    @Override
+    public void drawChars(char[] chars, int offset, int length, int x, int y) {
+        endPath();
+        drawnSprite = null;
+        openGroup();
+        buffer.append("<text x=\"").append(x).append("\" y=\"").append(y).append("\">");
+        for(int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            if(c == '<') {
+                buffer.append("&lt;");
+            } else if(c == '>') {
+                buffer.append("&gt;");
+            } else if(c == '&') {
+                buffer.append("&amp;");
+            } else if(c < ' ' || c > '~') {
+                buffer.append("&#").append((int) c).append(';');
+            } else {
+                buffer.append(c);
+            }
+        }
+        buffer.append("</text>\n");
+        flushIfFull();
+    }
+
+    /**
+     * Ends the image, writing out everything still buffered.
+     *
+     * @throws UncheckedIOException if the Writer cannot be written to
+     */
+    @Override
+    public void dispose() {
+        if(metrics != null) {
+            metrics.dispose();
+            metrics = null;
+        }
+        endPath();
+        closeGroup();
+        for(; clips > 0; clips--) {
+            buffer.append("</g>");
+        }
+        buffer.append("</svg>\n");
+        flush();
+    }
+
+    /**
+     * Checks whether a marker would not change the image because every
+     * pixel it touches is already completely covered by opaque markers
+     * of the same color and shape drawn just before it, as happens
+     * where points are dense, and marks the pixels it covers if not.
+     *
+     * @param sprite marker to be drawn
+     * @param x x-coordinate of the left edge of the marker's box
+     * @param y y-coordinate of the top edge of the marker's box
+     * @return whether the marker can be left out
+     */
+    private boolean hidden(PointSprite sprite, int x, int y) {
+        if(color.getAlpha() < 255) {
+            drawnSprite = null;
+            return false;
+        }
+        if(sprite != drawnSprite || !color.equals(drawnColor)) {
+            covered.clear();
+            drawnSprite = sprite;
+            drawnColor = color;
+        }
+        int left = x + sprite.offsetX, top = y + sprite.offsetY;
+        boolean visible = false;
+        for(int row = 0, i = 0; row < sprite.height && !visible; row++) {
+            int py = top + row;
+            for(int column = 0; column < sprite.width; column++, i++) {
+                int px = left + column;
+                if(sprite.coverage[i] != 0 && px >= 0 && px < width && py >= 0 && py < height
+                        && !covered.get(py * width + px)) {
+                    visible = true;
+                    break;
+                }
+            }
+        }
+        if(visible) {
+            for(int row = 0, i = 0; row < sprite.height; row++) {
+                int py = top + row;
+                for(int column = 0; column < sprite.width; column++, i++) {
+                    int px = left + column;
+                    if(sprite.coverage[i] == (byte) 255 && px >= 0 && px < width && py >= 0 && py < height) {
+                        covered.set(py * width + px);
+                    }
+                }
+            }
+        }
+        return !visible;
+    }
+
+    /**
+     * Simplifies and writes the points of the polyline held, keeping
+     * the last so that the polyline can carry on from it.
+     */
+    private void writePath() {
+        int kept = simplify(pathX, pathY, collapseColumns(pathX, pathY, pathCount), tolerance, keep, ranges);
+        /* Later chunks start with the point earlier chunks ended with, which is not written twice */
+        int first = 0;
+        if(!pathWritten) {
+            buffer.append("<polyline points=\"");
+            pathWritten = true;
+        } else {
+            first = 1;
+        }
+        for(int i = first; i < kept; i++) {
+            if(i > 0) {
+                buffer.append(' ');
+            }
+            appendHalf(pathX[i]);
+            buffer.append(',');
+            appendHalf(pathY[i]);
+        }
+        flushIfFull();
+        pathX[0] = pathX[kept - 1];
+        pathY[0] = pathY[kept - 1];
+        pathCount = 1;
+    }
+
+    /**
+     * Writes out the rest of the polyline being built, if any, and
+     * closes its element.
+     */
+    private void endPath() {
+        if(pathCount > 1 || pathWritten) {
+            if(pathCount > 1) {
+                writePath();
+            }
+            buffer.append("\"/>\n");
+            flushIfFull();
+        }
+        pathCount = 0;
+        pathWritten = false;
+    }
+
+    /**
+     * Replaces each run of consecutive points of a polyline in the
+     * same column of pixels with its first point, its highest and
+     * lowest points in the order they come, and its last point. The
+     * lines between them cover the same pixels as the whole run did,
+     * which matters when many more points are plotted than there are
+     * columns. Points kept are moved to the start of the arrays.
+     *
+     * @param x x-coordinates of points
+     * @param y y-coordinates of points
+     * @param count number of points
+     * @return number of points kept
+     */
+    static int collapseColumns(int[] x, int[] y, int count) {
+        int kept = 0;
+        for(int start = 0, end; start < count; start = end + 1) {
+            int low = start, high = start;
+            for(end = start; end + 1 < count && x[end + 1] == x[start]; end++) {
+                if(y[end + 1] < y[low]) {
+                    low = end + 1;
+                } else if(y[end + 1] > y[high]) {
+                    high = end + 1;
+                }
+            }
+            /* Points are only ever moved back, to indices that have already been read */
+            int first = Math.min(low, high), second = Math.max(low, high);
+            x[kept] = x[start];
+            y[kept++] = y[start];
+            if(first != start && first != end) {
+                x[kept] = x[first];
+                y[kept++] = y[first];
+            }
+            if(second != start && second != end && second != first) {
+                x[kept] = x[second];
+                y[kept++] = y[second];
+            }
+            if(end != start) {
+                x[kept] = x[end];
+                y[kept++] = y[end];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Drops the points of a polyline that lie within a tolerance of
+     * the line kept, with the Ramer-Douglas-Peucker algorithm, moving
+     * the points kept to the start of the arrays. The first and last
+     * points are always kept.
+     *
+     * @param x x-coordinates of points
+     * @param y y-coordinates of points
+     * @param count number of points
+     * @param tolerance maximum distance of a point dropped from the line kept
+     * @param keep work space at least count long
+     * @param ranges work space at least 2 * count long
+     * @return number of points kept
+     */
+    static int simplify(int[] x, int[] y, int count, double tolerance, boolean[] keep, int[] ranges) {
+        if(count < 3) {
+            return count;
+        }
+        Arrays.fill(keep, 0, count, false);
+        keep[0] = true;
+        keep[count - 1] = true;
+        double max_squared = tolerance * tolerance;
+        int top = 0;
+        ranges[top++] = 0;
+        ranges[top++] = count - 1;
+        while(top > 0) {
+            int end = ranges[--top], start = ranges[--top];
+            /* Find the point furthest from the segment joining the ends of the range */
+            long ax = x[start], ay = y[start];
+            long dx = x[end] - ax, dy = y[end] - ay, length_squared = dx * dx + dy * dy;
+            double furthest = -1;
+            int index = -1;
+            for(int i = start + 1; i < end; i++) {
+                long px = x[i] - ax, py = y[i] - ay;
+                double distance;
+                long dot = px * dx + py * dy;
+                if(length_squared == 0 || dot <= 0) {
+                    distance = px * px + py * py;
+                } else if(dot >= length_squared) {
+                    long qx = x[i] - x[end], qy = y[i] - y[end];
+                    distance = qx * qx + qy * qy;
+                } else {
+                    double cross = px * dy - py * dx;
+                    distance = cross * cross / length_squared;
+                }
+                if(distance > furthest) {
+                    furthest = distance;
+                    index = i;
+                }
+            }
+            if(furthest > max_squared) {
+                keep[index] = true;
+                ranges[top++] = start;
+                ranges[top++] = index;
+                ranges[top++] = index;
+                ranges[top++] = end;
+            }
+        }
+        int kept = 0;
+        for(int i = 0; i < count; i++) {
+            if(keep[i]) {
+                x[kept] = x[i];
+                y[kept++] = y[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Opens a group of elements with the current color, stroke and
+     * font, unless the open group already has them.
+     */
+    private void openGroup() {
+        if(groupOpen && color.equals(groupColor) && stroke.equals(groupStroke) && font.equals(groupFont)) {
+            return;
+        }
+        closeGroup();
+        buffer.append("<g color=\"#");
+        String rgb = Integer.toHexString(color.getRGB() & 0xFFFFFF);
+        for(int i = rgb.length(); i < 6; i++) {
+            buffer.append('0');
+        }
+        buffer.append(rgb).append('"');
+        if(color.getAlpha() < 255) {
+            buffer.append(" fill-opacity=\"");
+            appendNumber(color.getAlpha() / 255.0);
+            buffer.append("\" stroke-opacity=\"");
+            appendNumber(color.getAlpha() / 255.0);
+            buffer.append('"');
+        }
+        if(stroke.getLineWidth() != 1) {
+            buffer.append(" stroke-width=\"");
+            appendNumber(stroke.getLineWidth());
+            buffer.append('"');
+        }
+        if(stroke.getEndCap() != BasicStroke.CAP_BUTT) {
+            buffer.append(stroke.getEndCap() == BasicStroke.CAP_ROUND ? " stroke-linecap=\"round\""
+                    : " stroke-linecap=\"square\"");
+        }
+        if(stroke.getLineJoin() == BasicStroke.JOIN_MITER) {
+            buffer.append(" stroke-miterlimit=\"");
+            appendNumber(Math.max(1, stroke.getMiterLimit()));
+            buffer.append('"');
+        } else {
+            buffer.append(stroke.getLineJoin() == BasicStroke.JOIN_ROUND ? " stroke-linejoin=\"round\""
+                    : " stroke-linejoin=\"bevel\"");
+        }
+        float[] dashes = stroke.getDashArray();
+        if(dashes != null) {
+            buffer.append(" stroke-dasharray=\"");
+            for(int i = 0; i < dashes.length; i++) {
+                if(i > 0) {
+                    buffer.append(' ');
+                }
+                appendNumber(dashes[i]);
+            }
+            buffer.append("\" stroke-dashoffset=\"");
+            appendNumber(stroke.getDashPhase());
+            buffer.append('"');
+        }
+        buffer.append(" font-family=\"").append(fontFamily(font)).append("\" font-size=\"");
+        appendNumber(font.getSize2D());
+        buffer.append('"');
+        if(font.isBold()) {
+            buffer.append(" font-weight=\"bold\"");
+        }
+        if(font.isItalic()) {
+            buffer.append(" font-style=\"italic\"");
+        }
+        buffer.append(">\n");
+        groupColor = color;
+        groupStroke = stroke;
+        groupFont = font;
+        groupOpen = true;
+    }
+
+    private void closeGroup() {
+        if(groupOpen) {
+            buffer.append("</g>\n");
+            groupOpen = false;
+        }
+    }
+
+    /**
+     * @param font a font
+     * @return the font's family, with Java's logical fonts named by
+     * their CSS generic families
+     */
+    private static String fontFamily(Font font) {
+        String family = font.getFamily();
+        switch(family) {
+            case Font.SANS_SERIF:
+            case Font.DIALOG:
+            case Font.DIALOG_INPUT:
+                return "sans-serif";
+            case Font.SERIF:
+                return "serif";
+            case Font.MONOSPACED:
+                return "monospace";
+            default:
+                return family.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;");
+        }
+    }
+
+    /**
+     * Writes the outline of a marker as SVG path data.
+     *
+     * @param marker shape of the marker
+     * @param size width and height, in pixels, of the marker's box
+     */
+    private void appendShape(PointMarker marker, int size) {
+        double[] coords = new double[6];
+        for(PathIterator it = marker.getShape(size).getPathIterator(null); !it.isDone(); it.next()) {
+            int type = it.currentSegment(coords);
+            int points;
+            switch(type) {
+                case PathIterator.SEG_MOVETO:
+                    buffer.append('M');
+                    points = 1;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    buffer.append('L');
+                    points = 1;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    buffer.append('Q');
+                    points = 2;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    buffer.append('C');
+                    points = 3;
+                    break;
+                default:
+                    buffer.append('Z');
+                    points = 0;
+                    break;
+            }
+            for(int i = 0; i < 2 * points; i++) {
+                if(i > 0) {
+                    buffer.append(' ');
+                }
+                appendNumber(coords[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the center of a pixel: the coordinate of its edge plus a
+     * half, which is where lines are drawn so one pixel wide lines
+     * cover whole pixels, as they do in Java 2D.
+     *
+     * @param coordinate coordinate of the pixel
+     */
+    private void appendHalf(int coordinate) {
+        if(coordinate < 0) {
+            buffer.append('-').append(-(coordinate + 1));
+        } else {
+            buffer.append(coordinate);
+        }
+        buffer.append(".5");
+    }
+
+    /**
+     * Writes a number with up to three decimal places.
+     *
+     * @param value number to write
+     */
+    private void appendNumber(double value) {
+        long thousandths = Math.round(value * 1000);
+        if(thousandths < 0) {
+            buffer.append('-');
+            thousandths = -thousandths;
+        }
+        buffer.append(thousandths / 1000);
+        long fraction = thousandths % 1000;
+        if(fraction != 0) {
+            buffer.append('.');
+            if(fraction < 100) {
+                buffer.append('0');
+            }
+            if(fraction < 10) {
+                buffer.append('0');
+            }
+            while(fraction % 10 == 0) {
+                fraction /= 10;
+            }
+            buffer.append(fraction);
+        }
+    }
+
+    private void flushIfFull() {
+        if(buffer.length() >= BUFFER) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes out the text buffered so far.
+     *
+     * @throws UncheckedIOException if the Writer cannot be written to
+     */
+    private void flush() {
+        try {
+            out.append(buffer);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.setLength(0);
+    }
+}
@@ -0,0 +1,102 @@
+package com.plainsimple.grapher;
+
+import java.awt.Rectangle;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Splits an image into square tiles and paints them in parallel on a
+ * ForkJoinPool. Each tile is painted independently, so the painter
+ * must only touch pixels inside the tile it is given (e.g. by clipping
+ * to it). Tiles do not overlap, which lets several threads draw into
+ * the same image at once without interfering with each other.
+ * Copyright (C) 2015 Stefan Kussmaul
+ * See https://github.com/Stefan4472/Grapher for more information.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class TileTask extends RecursiveAction {
+
+    /**
+     * Tasks are never serialized; declared to keep the build free of
+     * lint warnings.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Tiles covering the image, row by row.
+     */
+    private final Rectangle[] tiles;
+
+    /**
+     * Range of tiles this task paints, from inclusive to exclusive.
+     */
+    private final int from, to;
+
+    /**
+     * Paints a single tile.
+     */
+    private final Consumer<Rectangle> painter;
+
+    private TileTask(Rectangle[] tiles, int from, int to, Consumer<Rectangle> painter) {
+        this.tiles = tiles;
+        this.from = from;
+        this.to = to;
+        this.painter = painter;
+    }
+
+    /**
+     * Paints every tile of an image of the given size. If pool is
+     * null, tiles are painted one after another on the calling thread.
+     *
+     * @param width width, in pixels, of the image
+     * @param height height, in pixels, of the image
+     * @param tileSize width and height, in pixels, of each tile
+     * @param pool ForkJoinPool to paint tiles on, or null
+     * @param painter paints the tile it is given
+     */
+    static void run(int width, int height, int tileSize, ForkJoinPool pool,
+                    Consumer<Rectangle> painter) {
+        int columns = (width + tileSize - 1) / tileSize;
+        int rows = (height + tileSize - 1) / tileSize;
+        Rectangle[] tiles = new Rectangle[columns * rows];
+        for(int row = 0, i = 0; row < rows; row++) {
+            for(int column = 0; column < columns; column++, i++) {
+                int x = column * tileSize, y = row * tileSize;
+                tiles[i] = new Rectangle(x, y, Math.min(tileSize, width - x),
+                        Math.min(tileSize, height - y));
+            }
+        }
+
+        if(pool == null) {
+            for(Rectangle tile : tiles) {
+                painter.accept(tile);
+            }
+        } else {
+            pool.invoke(new TileTask(tiles, 0, tiles.length, painter));
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if(to - from == 1) {
+            painter.accept(tiles[from]);
+        } else if(to > from) {
+            int mid = (from + to) >>> 1;
+            invokeAll(new TileTask(tiles, from, mid, painter),
+                    new TileTask(tiles, mid, to, painter));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.plainsimple.grapher;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that BandRenderer writes a PNG file holding the same pixels as
+ * the one drawSeries() and PngEncoder.write() give for one image of the
+ * whole graph. The files themselves differ, as rows are compressed in
+ * different runs.
+ */
+class BandRendererTest {
+
+    private static final int WIDTH = 300, HEIGHT = 250, BAND_HEIGHT = 24;
+
+    private static final int[] STANDARD_TYPES = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_3BYTE_BGR};
+
+    private static final int[] COMPACT_TYPES = {BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_INDEXED,
+            BufferedImage.TYPE_BYTE_BINARY};
+
+    @Test
+    void bandsMatchFullImagesOfStandardTypes() throws IOException {
+        for(boolean direct : new boolean[] {false, true}) {
+            for(int type : STANDARD_TYPES) {
+                Grapher grapher = grapher(direct);
+                assertSameFile(grapher, new BufferedImage(1, 1, type).getColorModel(),
+                        "type " + type + ", direct=" + direct);
+            }
+        }
+    }
+
+    @Test
+    void bandsMatchFullImagesOfCompactTypes() throws IOException {
+        for(boolean direct : new boolean[] {false, true}) {
+            for(int type : COMPACT_TYPES) {
+                Grapher grapher = grapher(direct);
+                assertSameFile(grapher, grapher.createColorModel(type), "type " + type + ", direct=" + direct);
+            }
+        }
+    }
+
+    /**
+     * @param direct whether or not to draw directly into the raster
+     * @return Grapher drawing the test graph
+     */
+    private static Grapher grapher(boolean direct) {
+        Grapher grapher = new Grapher();
+        grapher.setWindow(-10, 10, -6, 6);
+        grapher.setDirectRaster(direct);
+        return grapher;
+    }
+
+    /**
+     * @return series leaving the graph through its top and bottom
+     * edges, so that lines cross from band to band at steep angles
+     */
+    private static List<Series> series() {
+        double[][] points = {{-9, -5}, {-6, 5.5}, {-4, -20}, {0, 0}, {2, 30}, {5, -1}, {9, 4}};
+        return Arrays.asList(
+                Series.function(BatchFunction.of(Math::tan), -10, 10),
+                Series.function(BatchFunction.of(x -> 8 * Math.sin(x)), -10, 10),
+                Series.line(points),
+                Series.points(points));
+    }
+
+    /**
+     * Checks that BandRenderer writes the pixels PngEncoder writes
+     * for the whole graph drawn on one image.
+     *
+     * @param grapher Grapher with the settings to draw with
+     * @param model ColorModel of the images
+     * @param description what is drawn, for failure messages
+     */
+    private static void assertSameFile(Grapher grapher, ColorModel model, String description)
+            throws IOException {
+        PngEncoder encoder = new PngEncoder(6, null);
+        BufferedImage full;
+        if(model instanceof IndexColorModel) {
+            IndexColorModel palette = (IndexColorModel) model;
+            full = new BufferedImage(WIDTH, HEIGHT, typeOf(palette), palette);
+        } else {
+            full = imageOf(model);
+        }
+        new Grapher(grapher.getSpec()).drawSeries(full, series());
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        encoder.write(full, expected);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        new BandRenderer(grapher.getSpec(), WIDTH, HEIGHT, BAND_HEIGHT, model)
+                .writePng(series(), encoder, Channels.newChannel(actual));
+        BufferedImage expected_image = ImageIO.read(new ByteArrayInputStream(expected.toByteArray()));
+        BufferedImage actual_image = ImageIO.read(new ByteArrayInputStream(actual.toByteArray()));
+        assertEquals(0, IncrementalRendererTest.countDifferences(expected_image, actual_image), description);
+    }
+
+    /**
+     * @return TYPE_BYTE_BINARY for a model with 1 bit per pixel, or TYPE_BYTE_INDEXED
+     */
+    private static int typeOf(IndexColorModel model) {
+        return model.getPixelSize() == 1 ? BufferedImage.TYPE_BYTE_BINARY : BufferedImage.TYPE_BYTE_INDEXED;
+    }
+
+    /**
+     * @return a WIDTH by HEIGHT image of the standard type with the given model
+     */
+    private static BufferedImage imageOf(ColorModel model) {
+        for(int type = BufferedImage.TYPE_INT_RGB; type <= BufferedImage.TYPE_BYTE_GRAY; type++) {
+            if(new BufferedImage(1, 1, type).getColorModel().equals(model)) {
+                return new BufferedImage(WIDTH, HEIGHT, type);
+            }
+        }
+        throw new IllegalArgumentException("No standard type has " + model);
+    }
+}
@@ -0,0 +1,93 @@
+package com.plainsimple.grapher;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that Expression compiles and evaluates expressions correctly,
+ * and rejects input too long or too deeply nested to compile without
+ * running out of stack.
+ */
+class ExpressionTest {
+
+    @Test
+    void evaluatesOperatorsWithPrecedence() {
+        Expression e = Expression.compile("x^2 + 4x + 4");
+        assertEquals(9, e.applyAsDouble(1));
+        assertEquals(-9, Expression.compile("-x^2").applyAsDouble(3));
+        assertEquals(512, Expression.compile("2^3^2").applyAsDouble(0));
+        assertEquals(4, Expression.compile("x < 0 ? -x : sqrt(x)").applyAsDouble(16));
+        assertEquals(3, Expression.compile("x < 0 ? -x : sqrt(x)").applyAsDouble(-3));
+    }
+
+    @Test
+    void evaluatesArraysLikeSingleValues() {
+        Expression e = Expression.compile("3sin(2x) / x + x*x*x*x*x*x*x*x*x*x*x - 2x + 1");
+        double[] x = new double[1000];
+        double[] y = new double[1000];
+        for(int i = 0; i < x.length; i++) {
+            x[i] = i * 0.37 - 100;
+        }
+        e.evaluate(x, y, 0, x.length);
+        for(int i = 0; i < x.length; i++) {
+            assertEquals(e.applyAsDouble(x[i]), y[i], 0);
+        }
+    }
+
+    @Test
+    void compilesLongFlatSums() {
+        StringBuilder source = new StringBuilder("x");
+        for(int i = 0; i < 5000; i++) {
+            source.append(i % 2 == 0 ? " + x" : " - 2x");
+        }
+        Expression e = Expression.compile(source.toString());
+        assertEquals(-2499, e.applyAsDouble(1));
+        double[] y = new double[1];
+        e.evaluate(new double[] {1}, y, 0, 1);
+        assertEquals(-2499, y[0]);
+    }
+
+    @Test
+    void compilesLongFlatProductsAndConditions() {
+        StringBuilder product = new StringBuilder("x");
+        StringBuilder or = new StringBuilder("x > 5000");
+        for(int i = 0; i < 5000; i++) {
+            product.append(i % 2 == 0 ? " * x" : " / x");
+            or.append(" || x == ").append(i);
+        }
+        assertEquals(2, Expression.compile(product.toString()).applyAsDouble(2));
+        assertEquals(1, Expression.compile(or.toString()).applyAsDouble(4999));
+        assertEquals(0, Expression.compile(or.toString()).applyAsDouble(0.5));
+    }
+
+    @Test
+    void compilesNestingUpToTheLimit() {
+        int depth = ExpressionParser.MAX_DEPTH;
+        String source = "(".repeat(depth) + "x" + ")".repeat(depth);
+        assertEquals(2, Expression.compile(source).applyAsDouble(2));
+    }
+
+    @Test
+    void rejectsDeepNesting() {
+        String parentheses = "(".repeat(2000) + "x" + ")".repeat(2000);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> Expression.compile(parentheses));
+        assertTrue(e.getMessage().contains("at position " + (ExpressionParser.MAX_DEPTH + 1)), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> Expression.compile("sin(".repeat(2000) + "x"));
+        assertThrows(IllegalArgumentException.class, () -> Expression.compile("-".repeat(2000) + "x"));
+        assertThrows(IllegalArgumentException.class, () -> Expression.compile("2^".repeat(2000) + "x"));
+        assertThrows(IllegalArgumentException.class, () -> Expression.compile("x ? ".repeat(2000) + "x"));
+    }
+
+    @Test
+    void rejectsTooManyNodes() {
+        StringBuilder source = new StringBuilder("x");
+        for(int i = 0; i <= ExpressionParser.MAX_NODES; i++) {
+            source.append("+x");
+        }
+        assertThrows(IllegalArgumentException.class, () -> Expression.compile(source.toString()));
+    }
+}
@@ -0,0 +1,167 @@
+package com.plainsimple.grapher;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that the frames IncrementalRenderer scrolls or zooms to are
+ * pixel for pixel the frames a Grapher draws in full at the same
+ * origin and window, on both the Graphics2D and the direct-raster
+ * canvas.
+ */
+class IncrementalRendererTest {
+
+    private static final int WIDTH = 240, HEIGHT = 160;
+
+    /**
+     * Window of the first frame. One pixel is 0.05 units across and
+     * up, so moves by whole pixels are exact.
+     */
+    private static final double X_MIN = -6, X_MAX = 6, Y_MIN = -4, Y_MAX = 4;
+
+    /**
+     * Moves of the window, in pixels right and up, from one frame to
+     * the next, including some that leave none of the last frame.
+     */
+    private static final int[][] MOVES = {{7, 0}, {0, 5}, {-13, -9}, {31, 17}, {-3, 2}, {250, 0}, {1, -170}};
+
+    private static final double[][] POINTS = {{-5.5, 3.9}, {-2, -1}, {-0.5, 0.25}, {1.25, 2}, {3, -3.5},
+            {4.5, 0}, {5.9, -3.9}, {8, 6}};
+
+    @Test
+    void pansGridLikeFullRenders() {
+        for(boolean direct : new boolean[] {false, true}) {
+            assertPansMatch(spec(direct), null, "grid, direct=" + direct);
+        }
+    }
+
+    @Test
+    void pansLabeledPointsLikeFullRenders() {
+        for(boolean direct : new boolean[] {false, true}) {
+            assertPansMatch(spec(direct), (grapher, image) -> grapher.drawGraphOnGrid(image, POINTS, true),
+                    "points, direct=" + direct);
+        }
+    }
+
+    @Test
+    void pansFunctionsLeavingTheImageLikeFullRenders() {
+        for(boolean direct : new boolean[] {false, true}) {
+            /* tan leaves the image near every asymptote, and 3sin(x) above and below it */
+            assertPansMatch(spec(direct), (grapher, image) -> grapher.drawGraphOnGrid(image,
+                    (java.util.function.DoubleUnaryOperator) Math::tan, -20, 20), "tan, direct=" + direct);
+            assertPansMatch(spec(direct), (grapher, image) -> grapher.drawGraphOnGrid(image,
+                    (java.util.function.DoubleUnaryOperator) x -> 5 * Math.sin(x), -20, 20),
+                    "5sin(x), direct=" + direct);
+        }
+    }
+
+    @Test
+    void pansAntialiasedLinesLikeFullRenders() {
+        Grapher grapher = new Grapher();
+        grapher.setDirectRaster(true);
+        grapher.setStrokes(1, 1);
+        grapher.setPlotWidth(1);
+        assertPansMatch(grapher.getSpec(), (g, image) -> g.drawGraphOnGrid(image,
+                (java.util.function.DoubleUnaryOperator) x -> x * x * x, -20, 20), "x^3, width 1");
+    }
+
+    @Test
+    void zoomsLikeFullRenders() {
+        for(boolean direct : new boolean[] {false, true}) {
+            Grapher settings = new Grapher();
+            settings.setDirectRaster(direct);
+            /* Without interpolation, zoomed frames must not differ from full renders at all */
+            settings.setSampleCache(new SampleCache(1 << 20), 0);
+            GraphSpec spec = settings.getSpec();
+            BatchRenderer.Job content = (grapher, image) -> {
+                grapher.drawGraphOnGrid(image, (java.util.function.DoubleUnaryOperator) Math::tan, -20, 20);
+                grapher.drawGraphOnGrid(image, POINTS, true);
+            };
+            IncrementalRenderer renderer = new IncrementalRenderer(spec, WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            renderer.setContent(content);
+            double scale = 1;
+            for(double zoom : new double[] {1, 1.1, 1.1, 2, 1 / 1.3, 0.5}) {
+                scale *= zoom;
+                double x_min = X_MIN / scale, x_max = X_MAX / scale, y_min = Y_MIN / scale, y_max = Y_MAX / scale;
+                BufferedImage frame = renderer.render(x_min, x_max, y_min, y_max);
+                BufferedImage full = fullRender(spec, content, x_min, x_max, y_min, y_max, 0, 0);
+                assertEquals(0, countDifferences(full, frame), "zoom " + scale + ", direct=" + direct);
+            }
+        }
+    }
+
+    /**
+     * @param direct whether or not to draw directly into the raster
+     * @return settings to draw test frames with
+     */
+    private static GraphSpec spec(boolean direct) {
+        Grapher grapher = new Grapher();
+        grapher.setDirectRaster(direct);
+        return grapher.getSpec();
+    }
+
+    /**
+     * Pans a renderer through MOVES and checks that every frame is
+     * the one drawn in full at the same origin.
+     *
+     * @param spec settings to draw with
+     * @param content data drawn on the grid, or null for the grid alone
+     * @param description what is drawn, for failure messages
+     */
+    private static void assertPansMatch(GraphSpec spec, BatchRenderer.Job content, String description) {
+        IncrementalRenderer renderer = new IncrementalRenderer(spec, WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        renderer.setContent(content);
+        double x_unit = (X_MAX - X_MIN) / WIDTH, y_unit = (Y_MAX - Y_MIN) / HEIGHT;
+        int right = 0, up = 0;
+        renderer.render(X_MIN, X_MAX, Y_MIN, Y_MAX);
+        for(int[] move : MOVES) {
+            right += move[0];
+            up += move[1];
+            BufferedImage frame = renderer.render(X_MIN + right * x_unit, X_MAX + right * x_unit,
+                    Y_MIN + up * y_unit, Y_MAX + up * y_unit);
+            BufferedImage full = fullRender(spec, content, X_MIN, X_MAX, Y_MIN, Y_MAX, right, -up);
+            assertEquals(0, countDifferences(full, frame),
+                    description + ", panned " + right + " right and " + up + " up");
+        }
+    }
+
+    /**
+     * Draws a whole frame in one go.
+     *
+     * @param spec settings to draw with
+     * @param content data drawn on the grid, or null for the grid alone
+     * @param originX pixels the graph is scrolled right by
+     * @param originY pixels the graph is scrolled down by
+     * @return the frame
+     */
+    static BufferedImage fullRender(GraphSpec spec, BatchRenderer.Job content, double xMin, double xMax,
+                                    double yMin, double yMax, int originX, int originY) {
+        Grapher grapher = new Grapher(spec);
+        grapher.setWindow(xMin, xMax, yMin, yMax);
+        grapher.setOrigin(originX, originY);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        grapher.drawGrid(image);
+        if(content != null) {
+            content.render(grapher, image);
+        }
+        return image;
+    }
+
+    /**
+     * @return number of pixels whose colors differ between two images of the same size
+     */
+    static int countDifferences(BufferedImage expected, BufferedImage actual) {
+        int differences = 0;
+        for(int y = 0; y < expected.getHeight(); y++) {
+            for(int x = 0; x < expected.getWidth(); x++) {
+                if(expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    differences++;
+                }
+            }
+        }
+        return differences;
+    }
+}
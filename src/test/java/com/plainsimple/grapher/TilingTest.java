@@ -0,0 +1,86 @@
+package com.plainsimple.grapher;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that graphs drawn in tiles, on the calling thread or in
+ * parallel, are pixel for pixel those drawn in a single piece, on both
+ * the Graphics2D and the direct-raster canvas.
+ */
+class TilingTest {
+
+    private static final int WIDTH = 301, HEIGHT = 203;
+
+    /**
+     * Tile size that divides neither dimension, so edge tiles are
+     * smaller than the rest.
+     */
+    private static final int TILE_SIZE = 37;
+
+    private static final int[] TYPES = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_3BYTE_BGR};
+
+    private static final double[][] POINTS = {{-9.5, 5.9}, {-4, -2}, {-0.5, 0.25}, {1.25, 3}, {3, -5.5},
+            {6.5, 0}, {9.9, -5.9}, {12, 8}};
+
+    @Test
+    void tilesOnCallingThreadMatchSinglePiece() {
+        assertTilesMatch(null);
+    }
+
+    @Test
+    void tilesInParallelMatchSinglePiece() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertTilesMatch(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Draws the test graph in tiles on the given pool and in a single
+     * piece for every type and canvas, and checks that they match.
+     *
+     * @param pool ForkJoinPool to draw tiles on, or null
+     */
+    private static void assertTilesMatch(ForkJoinPool pool) {
+        for(boolean direct : new boolean[] {false, true}) {
+            for(int type : TYPES) {
+                BufferedImage single = draw(direct, type, 0, null);
+                BufferedImage tiled = draw(direct, type, TILE_SIZE, pool);
+                assertEquals(0, IncrementalRendererTest.countDifferences(single, tiled),
+                        "type " + type + ", direct=" + direct);
+            }
+        }
+    }
+
+    /**
+     * Draws the grid, functions leaving the image through its top and
+     * bottom edges, and labeled points.
+     *
+     * @param direct whether or not to draw directly into the raster
+     * @param type type of image to draw on
+     * @param tileSize size of tiles, or 0 to draw in a single piece
+     * @param pool ForkJoinPool to draw tiles on, or null
+     * @return the image
+     */
+    private static BufferedImage draw(boolean direct, int type, int tileSize, ForkJoinPool pool) {
+        Grapher grapher = new Grapher();
+        grapher.setWindow(-10, 10, -6, 6);
+        grapher.setDirectRaster(direct);
+        grapher.setTiling(tileSize, pool);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        grapher.drawGrid(image);
+        grapher.drawGraphOnGrid(image, (DoubleUnaryOperator) Math::tan, -10, 10);
+        grapher.drawGraphOnGrid(image, (DoubleUnaryOperator) x -> 8 * Math.sin(x), -10, 10);
+        grapher.drawGraphOnGrid(image, POINTS, true);
+        return image;
+    }
+}